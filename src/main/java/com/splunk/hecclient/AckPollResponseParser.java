@@ -0,0 +1,90 @@
+/*
+ * Copyright 2017 Splunk, Inc..
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.splunk.hecclient;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.function.LongConsumer;
+
+// AckPollResponseParser walks the tokens of an ack poll response
+// {"acks":{"1":true,"2":false,...}} and hands every acked id to the consumer right away, so a
+// poll result never materializes as maps or sets of boxed ids. Field name canonicalization is off
+// since ack ids are one-off names which would only fill up the symbol table.
+final class AckPollResponseParser {
+    private static final JsonFactory jsonFactory = new JsonFactory()
+            .disable(JsonFactory.Feature.CANONICALIZE_FIELD_NAMES);
+    private static final int maxAckIdDigits = 18; // no overflow for long
+
+    private AckPollResponseParser() {
+    }
+
+    // returns the number of acked ids, ids already handed to the consumer stay handed over
+    // when a later part of the response turns out to be malformed. parse does not close the stream.
+    static int parse(final InputStream in, final LongConsumer acked) throws IOException {
+        try (JsonParser parser = jsonFactory.createParser(in)) {
+            return parse(parser, acked);
+        }
+    }
+
+    private static int parse(final JsonParser parser, final LongConsumer acked) throws IOException {
+        if (parser.nextToken() != JsonToken.START_OBJECT) {
+            throw new IOException("ack poll response is not a json object");
+        }
+
+        int count = 0;
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            boolean isAcks = "acks".equals(parser.getCurrentName());
+            if (parser.nextToken() != JsonToken.START_OBJECT || !isAcks) {
+                parser.skipChildren();
+                continue;
+            }
+
+            while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                long ackId = parseAckId(parser);
+                if (parser.nextToken() == JsonToken.VALUE_TRUE) {
+                    acked.accept(ackId);
+                    count++;
+                } else {
+                    parser.skipChildren();
+                }
+            }
+        }
+        return count;
+    }
+
+    private static long parseAckId(final JsonParser parser) throws IOException {
+        char[] chars = parser.getTextCharacters();
+        int offset = parser.getTextOffset();
+        int len = parser.getTextLength();
+        if (len == 0 || len > maxAckIdDigits) {
+            throw new IOException("invalid ack id in ack poll response");
+        }
+
+        long ackId = 0;
+        for (int i = offset; i < offset + len; i++) {
+            char c = chars[i];
+            if (c < '0' || c > '9') {
+                throw new IOException("invalid ack id in ack poll response");
+            }
+            ackId = ackId * 10 + (c - '0');
+        }
+        return ackId;
+    }
+}
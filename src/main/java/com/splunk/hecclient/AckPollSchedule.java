@@ -0,0 +1,85 @@
+/*
+ * Copyright 2017 Splunk, Inc..
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.splunk.hecclient;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.function.BooleanSupplier;
+
+// AckPollSchedule decides when the acks of one channel are polled next. The first poll happens
+// about the expected indexing time after the channel got outstanding batches, a poll which finds
+// every ack still pending doubles the delay up to the max, and a poll which made progress goes back
+// to the expected indexing time. Every delay gets +-20% jitter so channels don't poll in lockstep.
+// Only one poll per channel is in flight at any time. It is multi-thread safe.
+final class AckPollSchedule {
+    private final long minDelay; // in milli-seconds
+    private final long maxDelay; // in milli-seconds
+
+    private long delay;
+    private long nextPoll; // 0 when the channel has nothing outstanding
+    private boolean inFlight;
+
+    public AckPollSchedule(long minDelay, long maxDelay) {
+        this.minDelay = minDelay;
+        this.maxDelay = Math.max(minDelay, maxDelay);
+    }
+
+    // called when a batch becomes outstanding, schedules the first poll unless one is scheduled already
+    public synchronized void activate(long now, double expectedDelay) {
+        if (nextPoll != 0 || inFlight) {
+            return;
+        }
+        delay = clamp(expectedDelay);
+        nextPoll = now + jitter(delay);
+    }
+
+    // returns true and marks the poll in flight when it is due
+    public synchronized boolean tryStart(long now) {
+        if (inFlight || nextPoll == 0 || now < nextPoll) {
+            return false;
+        }
+        inFlight = true;
+        return true;
+    }
+
+    // outstanding is checked under the lock, so a batch added while the poll was in flight either
+    // keeps the schedule active here or activates it afterwards
+    public synchronized void finish(long now, boolean progress, double expectedDelay, BooleanSupplier outstanding) {
+        inFlight = false;
+        if (!outstanding.getAsBoolean()) {
+            nextPoll = 0;
+            return;
+        }
+
+        delay = progress ? clamp(expectedDelay) : Math.min(delay * 2, maxDelay);
+        nextPoll = now + jitter(delay);
+    }
+
+    public synchronized long getNextPoll() {
+        return nextPoll;
+    }
+
+    public synchronized long getDelay() {
+        return delay;
+    }
+
+    private long clamp(double expectedDelay) {
+        return Math.max(minDelay, Math.min((long) expectedDelay, maxDelay));
+    }
+
+    private static long jitter(long delay) {
+        return (long) (delay * (0.8 + 0.4 * ThreadLocalRandom.current().nextDouble()));
+    }
+}
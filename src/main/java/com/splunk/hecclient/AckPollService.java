@@ -0,0 +1,164 @@
+/*
+ * Copyright 2017 Splunk, Inc..
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.splunk.hecclient;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+// AckPollService is the ack polling machinery shared JVM wide by all started HecAckPollers, no matter
+// how many tasks and ConcurrentHec workers create them. One scheduler thread ticks every poller and
+// one pool of poll threads runs the ack queries of all of them. The pool has as many threads as the
+// registered pollers asked for together, at most maxPollThreads which the JVM system property
+// splunk.hec.ack.poll.max.threads sets for all connectors of a worker, 32 by default. Every tick
+// starts with the next poller in turn, so the channels of one owner don't keep the head of the poll
+// queue. The service starts with the first registered poller and stops with the last.
+final class AckPollService {
+    private static final Logger log = LoggerFactory.getLogger(AckPollService.class);
+    static final long pollTick = 100; // in milli-seconds, resolution of the per channel schedules
+    static final String maxPollThreadsProperty = "splunk.hec.ack.poll.max.threads";
+    private static final int defaultMaxPollThreads = 32;
+
+    private static AckPollService instance; // guarded by AckPollService.class
+
+    private final List<HecAckPoller> pollers = new CopyOnWriteArrayList<>();
+    private final Map<HecAckPoller, Integer> requestedThreads = new HashMap<>(); // guarded by AckPollService.class
+    private final ScheduledThreadPoolExecutor scheduler;
+    private final ThreadPoolExecutor executor;
+    private int next; // poller to start the next tick with, only used on the scheduler thread
+
+    private AckPollService() {
+        ThreadFactory f = (Runnable r) -> new Thread(r, "HEC-ACK-poller-scheduler");
+        scheduler = new ScheduledThreadPoolExecutor(1, f);
+        scheduler.setExecuteExistingDelayedTasksAfterShutdownPolicy(false);
+        scheduler.setContinueExistingPeriodicTasksAfterShutdownPolicy(false);
+
+        AtomicInteger threadId = new AtomicInteger(0);
+        ThreadFactory e = (Runnable r) -> new Thread(r, "HEC-ACK-poller-" + threadId.incrementAndGet());
+        executor = new ThreadPoolExecutor(1, 1, 0, TimeUnit.MILLISECONDS, new LinkedBlockingQueue<>(), e);
+
+        scheduler.scheduleWithFixedDelay(this::tick, pollTick, pollTick, TimeUnit.MILLISECONDS);
+    }
+
+    static synchronized AckPollService register(HecAckPoller poller, int pollThreads) {
+        if (instance == null) {
+            instance = new AckPollService();
+        }
+        instance.add(poller, pollThreads);
+        return instance;
+    }
+
+    static synchronized void unregister(HecAckPoller poller) {
+        if (instance == null || !instance.pollers.remove(poller)) {
+            return;
+        }
+
+        instance.requestedThreads.remove(poller);
+        if (instance.pollers.isEmpty()) {
+            instance.scheduler.shutdownNow();
+            instance.executor.shutdownNow();
+            instance = null;
+            log.info("shared ack poller stopped");
+        } else {
+            instance.resize();
+        }
+    }
+
+    // the running service or null
+    static synchronized AckPollService current() {
+        return instance;
+    }
+
+    void submit(Runnable query) {
+        executor.execute(query);
+    }
+
+    int getPollThreads() {
+        return executor.getMaximumPoolSize();
+    }
+
+    int getPollers() {
+        return pollers.size();
+    }
+
+    private void add(HecAckPoller poller, int pollThreads) {
+        pollers.add(poller);
+        requestedThreads.put(poller, Math.max(pollThreads, 1));
+        resize();
+    }
+
+    private void resize() {
+        int threads = 0;
+        for (int requested: requestedThreads.values()) {
+            threads += requested;
+        }
+        threads = Math.max(Math.min(threads, maxPollThreads()), 1);
+
+        if (threads > executor.getMaximumPoolSize()) {
+            // grow the max first, the core size must not exceed it
+            executor.setMaximumPoolSize(threads);
+            executor.setCorePoolSize(threads);
+        } else if (threads < executor.getMaximumPoolSize()) {
+            executor.setCorePoolSize(threads);
+            executor.setMaximumPoolSize(threads);
+        }
+        log.info("shared ack poller serves {} pollers with {} poll threads", pollers.size(), threads);
+    }
+
+    static int maxPollThreads() {
+        String max = System.getProperty(maxPollThreadsProperty);
+        if (max == null) {
+            return defaultMaxPollThreads;
+        }
+        try {
+            return Math.max(Integer.parseInt(max.trim()), 1);
+        } catch (NumberFormatException ex) {
+            log.warn("ignore invalid {}={}", maxPollThreadsProperty, max);
+            return defaultMaxPollThreads;
+        }
+    }
+
+    private void tick() {
+        Object[] snapshot = pollers.toArray();
+        if (snapshot.length == 0) {
+            return;
+        }
+
+        long now = System.currentTimeMillis();
+        int start = next++ % snapshot.length;
+        if (next < 0) {
+            next = 0;
+        }
+        for (int i = 0; i < snapshot.length; i++) {
+            HecAckPoller poller = (HecAckPoller) snapshot[(start + i) % snapshot.length];
+            try {
+                poller.tick(now);
+            } catch (Exception ex) {
+                log.error("failed to poll", ex);
+            }
+        }
+    }
+}
@@ -0,0 +1,87 @@
+/*
+ * Copyright 2017 Splunk, Inc..
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.splunk.hecclient;
+
+import org.apache.http.client.methods.HttpUriRequest;
+import org.apache.http.impl.client.CloseableHttpClient;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.Set;
+
+// AckResolver polls the acks of channels left behind by a former Hec, e.g. the one before a task
+// restart, once. The caller can then tell which of the batches sent back then are indexed already.
+public final class AckResolver implements AutoCloseable {
+    private static final Logger log = LoggerFactory.getLogger(AckResolver.class);
+
+    private final HecConfig config;
+    private final CloseableHttpClient httpClient;
+    private final boolean ownHttpClient;
+
+    public AckResolver(HecConfig config) {
+        this(config, Hec.createAckHttpClient(config), true);
+    }
+
+    public AckResolver(HecConfig config, CloseableHttpClient client, boolean ownHttpClient) {
+        this.config = config;
+        this.httpClient = client;
+        this.ownHttpClient = ownHttpClient;
+    }
+
+    // returns the acked ones of the ack ids, none if the channel is unknown to the indexer by now
+    public Set<Long> resolve(String uri, String channelId, Collection<Long> ackIds) {
+        Set<Long> acked = new HashSet<>();
+        if (ackIds.isEmpty()) {
+            return acked;
+        }
+
+        StringBuilder sb = new StringBuilder(16 + ackIds.size() * 8);
+        sb.append("{\"acks\":[");
+        for (Long ackId: ackIds) {
+            sb.append(ackId).append(',');
+        }
+        sb.setLength(sb.length() - 1);
+        sb.append("]}");
+
+        Indexer indexer = new Indexer(uri, config.getToken(), httpClient, null, channelId);
+        indexer.setKeepAlive(config.getHttpKeepAlive());
+        HttpUriRequest req = HecAckPoller.createAckPollHttpRequest(indexer.getChannel(), sb.toString());
+        if (req == null) {
+            return acked;
+        }
+
+        try {
+            indexer.executeHttpRequest(req, entity -> AckPollResponseParser.parse(entity.getContent(), acked::add));
+        } catch (HecException ex) {
+            log.warn("failed to resolve {} acks of channel={} on indexer={}", ackIds.size(), channelId, uri, ex);
+        }
+        return acked;
+    }
+
+    @Override
+    public void close() {
+        if (ownHttpClient) {
+            try {
+                httpClient.close();
+            } catch (IOException ex) {
+                throw new HecException("failed to close http client", ex);
+            }
+        }
+    }
+}
@@ -0,0 +1,231 @@
+/*
+ * Copyright 2017 Splunk, Inc..
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.splunk.hecclient;
+
+import java.util.List;
+import java.util.function.ObjLongConsumer;
+
+// AckWindow holds the outstanding batches of one channel by ack id. Splunk hands out ack ids per
+// channel in increasing order, so the pending ids form a narrow window which is kept in a ring:
+// the batch of ack id n sits at slot n & mask of an array and a bitset marks the pending slots.
+// Adding, removing and listing pending ids need no boxing and no hashing. The ring grows when the
+// span between the oldest pending and the newest ack id outgrows it. It is multi-thread safe.
+// When the indexer restarts, it hands out the ack ids of the channel from the start again. The
+// batches pending under the old ids will never be acked, put hands them back as stale instead of
+// stretching the ring from the new ids up to the old ones.
+final class AckWindow {
+    private static final int initialCapacity = 64; // a power of 2 and a multiple of 64
+
+    private long base; // lowest pending ack id, valid when size > 0
+    private long limit; // highest pending ack id + 1, valid when size > 0
+    private int size;
+    private int mask;
+    private EventBatch[] batches;
+    private long[] pending;
+
+    public AckWindow() {
+        allocate(initialCapacity);
+    }
+
+    // adds the batch of the ack id and appends the batches of a previous ack id sequence to stale.
+    // A lower ack id which still fits the ring is a response overtaken by a later one of the same
+    // channel. One which doesn't, or an ack id which is already pending, means the ids restarted:
+    // all pending batches, respectively the one holding the ack id, are stale.
+    public synchronized void put(long ackId, final EventBatch batch, final List<EventBatch> stale) {
+        if (size > 0 && ackId < base && limit - ackId > batches.length) {
+            forEach((old, id) -> stale.add(old));
+            size = 0;
+            allocate(initialCapacity);
+        }
+
+        if (size == 0) {
+            base = ackId;
+            limit = ackId + 1;
+        } else if (ackId < base) {
+            base = ackId;
+        } else if (ackId >= limit) {
+            ensureSpan(ackId + 1 - base);
+            limit = ackId + 1;
+        }
+
+        int slot = slot(ackId);
+        if (batches[slot] != null) {
+            stale.add(batches[slot]);
+            size--;
+        }
+        batches[slot] = batch;
+        pending[slot >>> 6] |= 1L << slot;
+        size++;
+    }
+
+    // returns the batch of the ack id or null if it is not pending
+    public synchronized EventBatch get(long ackId) {
+        if (size == 0 || ackId < base || ackId >= limit) {
+            return null;
+        }
+        return batches[slot(ackId)];
+    }
+
+    // returns null if the ack id is not pending
+    public synchronized EventBatch remove(long ackId) {
+        if (size == 0 || ackId < base || ackId >= limit) {
+            return null;
+        }
+
+        int slot = slot(ackId);
+        EventBatch batch = batches[slot];
+        if (batch == null) {
+            return null;
+        }
+        clear(slot);
+        if (size > 0 && ackId == base) {
+            base = nextPending(ackId + 1);
+        }
+        if (size > 0 && ackId == limit - 1) {
+            limit = prevPending(ackId - 1) + 1;
+        }
+        return batch;
+    }
+
+    // removes the ack id only if it is still pending for the given batch
+    public synchronized boolean remove(long ackId, final EventBatch batch) {
+        if (size == 0 || ackId < base || ackId >= limit || batches[slot(ackId)] != batch) {
+            return false;
+        }
+        remove(ackId);
+        return true;
+    }
+
+    // removes the pending ones of the first count ack ids under one lock and adds their batches to
+    // removed, returns the number of removed batches
+    public synchronized int removeAll(final long[] ackIds, int count, final List<EventBatch> removed) {
+        int n = 0;
+        for (int i = 0; i < count; i++) {
+            EventBatch batch = remove(ackIds[i]);
+            if (batch != null) {
+                removed.add(batch);
+                n++;
+            }
+        }
+        return n;
+    }
+
+    // appends the pending ack ids as a comma separated list, in increasing order
+    public void appendPendingIds(final StringBuilder sb) {
+        appendPendingIds(sb, 0, Integer.MAX_VALUE);
+    }
+
+    // appends at most max pending ack ids >= from as a comma separated list, in increasing order.
+    // Returns the pending ack id to continue from for the next chunk or -1 if there is none left.
+    public synchronized long appendPendingIds(final StringBuilder sb, long from, int max) {
+        if (size == 0) {
+            return -1;
+        }
+
+        long id = nextPending(Math.max(from, base));
+        for (int n = 0; id >= 0 && n < max; n++, id = nextPending(id + 1)) {
+            if (n > 0) {
+                sb.append(',');
+            }
+            sb.append(id);
+        }
+        return id;
+    }
+
+    // visits the pending batches in increasing ack id order
+    public synchronized void forEach(final ObjLongConsumer<EventBatch> visitor) {
+        for (long id = size == 0 ? -1 : base; id >= 0; id = nextPending(id + 1)) {
+            visitor.accept(batches[slot(id)], id);
+        }
+    }
+
+    public synchronized int size() {
+        return size;
+    }
+
+    public synchronized boolean isEmpty() {
+        return size == 0;
+    }
+
+    // number of ack ids the ring can span before it has to grow
+    synchronized int capacity() {
+        return batches.length;
+    }
+
+    // returns the lowest pending ack id >= id or -1, skips 64 ids per empty bitset word
+    private long nextPending(long id) {
+        while (id < limit) {
+            int slot = slot(id);
+            long word = pending[slot >>> 6] >>> slot;
+            if (word != 0) {
+                long found = id + Long.numberOfTrailingZeros(word);
+                return found < limit ? found : -1;
+            }
+            // slots and ids are aligned on word boundaries since the capacity is a multiple of 64
+            id += 64 - (slot & 63);
+        }
+        return -1;
+    }
+
+    // returns the highest pending ack id <= id, there has to be one >= base
+    private long prevPending(long id) {
+        while (true) {
+            int slot = slot(id);
+            long word = pending[slot >>> 6] << (63 - (slot & 63));
+            if (word != 0) {
+                return id - Long.numberOfLeadingZeros(word);
+            }
+            id -= (slot & 63) + 1;
+        }
+    }
+
+    private void clear(int slot) {
+        batches[slot] = null;
+        pending[slot >>> 6] &= ~(1L << slot);
+        size--;
+    }
+
+    private void ensureSpan(long span) {
+        if (span <= batches.length) {
+            return;
+        }
+        if (span > (1 << 30)) {
+            throw new HecException("ack id window spans too many ack ids, span=" + span);
+        }
+
+        EventBatch[] oldBatches = batches;
+        int oldMask = mask;
+        allocate(Integer.highestOneBit((int) span - 1) << 1);
+        for (long id = base; id < limit; id++) {
+            EventBatch batch = oldBatches[(int) (id & oldMask)];
+            if (batch != null) {
+                int slot = slot(id);
+                batches[slot] = batch;
+                pending[slot >>> 6] |= 1L << slot;
+            }
+        }
+    }
+
+    private void allocate(int capacity) {
+        batches = new EventBatch[capacity];
+        pending = new long[capacity >>> 6];
+        mask = capacity - 1;
+    }
+
+    private int slot(long ackId) {
+        return (int) (ackId & mask);
+    }
+}
@@ -0,0 +1,45 @@
+/*
+ * Copyright 2017 Splunk, Inc..
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.splunk.hecclient;
+
+import java.util.Map;
+
+// ChannelAckState is the outstanding batches of one channel by ack id. Splunk keeps the acks of a
+// channel by its id, so they can still be polled with the id after the channel is gone.
+public final class ChannelAckState {
+    private final String uri;
+    private final String channelId;
+    private final Map<Long, EventBatch> batches;
+
+    public ChannelAckState(String uri, String channelId, Map<Long, EventBatch> batches) {
+        this.uri = uri;
+        this.channelId = channelId;
+        this.batches = batches;
+    }
+
+    public String getUri() {
+        return uri;
+    }
+
+    public String getChannelId() {
+        return channelId;
+    }
+
+    // ack id to batch, in increasing ack id order
+    public Map<Long, EventBatch> getBatches() {
+        return batches;
+    }
+}
@@ -0,0 +1,94 @@
+/*
+ * Copyright 2017 Splunk, Inc..
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.splunk.hecclient;
+
+import java.util.List;
+
+// ChannelAutoScaler decides how many channels an indexer should have. Splunk throttles per channel,
+// so an indexer gets one more channel when its channels have too many outstanding acks on average
+// or acks take too long, and gives one back once the load dropped well below both thresholds.
+// Channels are added and retired one at a time so a single burst can't flap the channel count.
+// Without an explicit min, an indexer never drops below the channels it started with, so turning on
+// auto-scaling only ever adds channels on top of the configured ones.
+final class ChannelAutoScaler {
+    // scale down below this fraction of the thresholds, the gap avoids oscillation
+    static final double scaleDownRatio = 0.25;
+
+    private final int minChannels; // <= 0 keeps the initial channels of every indexer
+    private final int maxChannels;
+    private final int outstandingThreshold; // outstanding batches per channel, <= 0 disables
+    private final long ackLatencyThreshold; // in milli-seconds, <= 0 disables
+
+    public ChannelAutoScaler(int minChannels, int maxChannels, int outstandingThreshold, long ackLatencyThreshold) {
+        if (maxChannels < 1 || maxChannels < minChannels) {
+            throw new HecException("invalid channel bounds, min=" + minChannels + ", max=" + maxChannels);
+        }
+
+        this.minChannels = minChannels;
+        this.maxChannels = maxChannels;
+        this.outstandingThreshold = outstandingThreshold;
+        this.ackLatencyThreshold = ackLatencyThreshold;
+    }
+
+    // returns the channel count the indexer owning the channels should have next, initialChannels is
+    // the count it started with
+    public int desiredChannels(final List<HecChannel> channels, int initialChannels) {
+        int minChannels = getMinChannels(initialChannels);
+        int current = channels.size();
+        if (current < minChannels) {
+            return minChannels;
+        }
+        if (current > maxChannels) {
+            return maxChannels;
+        }
+
+        long outstanding = 0;
+        double ackLatency = 0;
+        for (HecChannel channel: channels) {
+            int batches = channel.getOutstandingBatches();
+            outstanding += batches;
+            // the ack latency of a channel without outstanding batches is stale
+            if (batches > 0) {
+                ackLatency = Math.max(ackLatency, channel.getAckLatency());
+            }
+        }
+        double avgOutstanding = (double) outstanding / current;
+
+        boolean overloaded = (outstandingThreshold > 0 && avgOutstanding > outstandingThreshold)
+                || (ackLatencyThreshold > 0 && ackLatency > ackLatencyThreshold);
+        if (overloaded) {
+            return Math.min(current + 1, maxChannels);
+        }
+
+        boolean idle = (outstandingThreshold <= 0 || avgOutstanding < outstandingThreshold * scaleDownRatio)
+                && (ackLatencyThreshold <= 0 || ackLatency < ackLatencyThreshold * scaleDownRatio);
+        if (idle) {
+            return Math.max(current - 1, minChannels);
+        }
+        return current;
+    }
+
+    public int getMinChannels(int initialChannels) {
+        if (minChannels > 0) {
+            return minChannels;
+        }
+        return Math.max(Math.min(initialChannels, maxChannels), 1);
+    }
+
+    public int getMaxChannels() {
+        return maxChannels;
+    }
+}
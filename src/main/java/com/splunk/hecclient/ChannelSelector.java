@@ -0,0 +1,42 @@
+/*
+ * Copyright 2017 Splunk, Inc..
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.splunk.hecclient;
+
+// ChannelSelector picks the channel a batch goes to. The channels array is a read only snapshot
+// owned by the LoadBalancer. Implementations must be multi-thread safe and lock free.
+interface ChannelSelector {
+    // returns null when every channel has back pressure
+    HecChannel select(final HecChannel[] channels);
+
+    // selectors which route by batch override this, the others ignore the batch
+    default HecChannel select(final HecChannel[] channels, final EventBatch batch) {
+        return select(channels);
+    }
+
+    static ChannelSelector create(String policy) {
+        if (policy == null || LoadBalancer.ROUND_ROBIN.equals(policy)) {
+            return new WeightedRoundRobinSelector();
+        } else if (LoadBalancer.POWER_OF_TWO_CHOICES.equals(policy)) {
+            // expected wait, the latency of a channel multiplied by the work already queued on it
+            return new PowerOfTwoChoicesSelector(ch -> Math.max(ch.getLatency(), 1) * (ch.getOutstandingBatches() + 1));
+        } else if (LoadBalancer.POWER_OF_TWO_CHOICES_OUTSTANDING.equals(policy)) {
+            return new PowerOfTwoChoicesSelector(ch -> ch.getOutstandingBatches());
+        } else if (LoadBalancer.POWER_OF_TWO_CHOICES_LATENCY.equals(policy)) {
+            return new PowerOfTwoChoicesSelector(ch -> ch.getLatency());
+        }
+        throw new HecException("unsupported load balancer policy=" + policy);
+    }
+}
@@ -0,0 +1,100 @@
+/*
+ * Copyright 2017 Splunk, Inc..
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.splunk.hecclient;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.concurrent.ThreadLocalRandom;
+
+// CircuitBreaker tracks the health of one indexer from active health probes and is shared by
+// every Indexer (channel) pointing to the same URI. It is multi-thread safe.
+//  - CLOSED: healthy, all traffic is allowed.
+//  - OPEN: failureThreshold probes in a row failed, no traffic is allowed.
+//  - HALF_OPEN: a probe succeeded again. A fraction of the traffic is let through while
+//    probes confirm the recovery, successThreshold successful probes in a row close the
+//    breaker, any failed probe opens it again.
+final class CircuitBreaker {
+    private static final Logger log = LoggerFactory.getLogger(CircuitBreaker.class);
+
+    enum State {
+        CLOSED,
+        OPEN,
+        HALF_OPEN,
+    }
+
+    static final double halfOpenTrafficRatio = 0.2;
+
+    private final String name;
+    private final int failureThreshold;
+    private final int successThreshold;
+
+    private volatile State state = State.CLOSED;
+    private int consecutiveFailures;
+    private int consecutiveSuccesses;
+
+    CircuitBreaker(String name, int failureThreshold, int successThreshold) {
+        this.name = name;
+        this.failureThreshold = Math.max(failureThreshold, 1);
+        this.successThreshold = Math.max(successThreshold, 1);
+    }
+
+    // allowRequest has no side effects so it can be called freely by channel selection
+    boolean allowRequest() {
+        State current = state;
+        if (current == State.CLOSED) {
+            return true;
+        } else if (current == State.OPEN) {
+            return false;
+        }
+        return ThreadLocalRandom.current().nextDouble() < halfOpenTrafficRatio;
+    }
+
+    synchronized void recordSuccess() {
+        consecutiveFailures = 0;
+        if (state == State.CLOSED) {
+            return;
+        }
+
+        if (state == State.OPEN) {
+            consecutiveSuccesses = 1;
+            transitionTo(State.HALF_OPEN);
+        } else {
+            consecutiveSuccesses++;
+        }
+
+        if (consecutiveSuccesses >= successThreshold) {
+            transitionTo(State.CLOSED);
+        }
+    }
+
+    synchronized void recordFailure() {
+        consecutiveSuccesses = 0;
+        consecutiveFailures++;
+        if (state == State.HALF_OPEN || (state == State.CLOSED && consecutiveFailures >= failureThreshold)) {
+            transitionTo(State.OPEN);
+        }
+    }
+
+    State getState() {
+        return state;
+    }
+
+    private void transitionTo(State next) {
+        log.info("circuit breaker for indexer={} transitioned from {} to {}", name, state, next);
+        state = next;
+    }
+}
@@ -25,19 +25,23 @@ import java.util.concurrent.*;
 
 public class ConcurrentHec implements HecInf {
     private static final Logger log = LoggerFactory.getLogger(ConcurrentHec.class);
+    // idle workers re-check the retries this often, in milli-seconds
+    private static final long pollInterval = 50;
 
     private LinkedBlockingQueue<EventBatch> batches;
+    private LinkedBlockingQueue<EventBatch> retries; // failed batches sent again, taken before new ones
     private ExecutorService executorService;
     private List<Hec> hecs;
     private PollerCallback pollerCallback;
     private volatile boolean stopped;
 
     public ConcurrentHec(int numberOfThreads, boolean useAck, HecConfig config, PollerCallback cb) {
-        this(numberOfThreads, useAck, config, cb, new LoadBalancer());
+        this(numberOfThreads, useAck, config, cb, new LoadBalancer(config.getLoadBalancerPolicy(), config.getStickyPartitions()));
     }
 
     public ConcurrentHec(int numberOfThreads, boolean useAck, HecConfig config, PollerCallback cb, LoadBalancerInf loadBalancer) {
         batches = new LinkedBlockingQueue<>(100);
+        retries = new LinkedBlockingQueue<>(100);
         ThreadFactory e = (Runnable r) -> new Thread(r, "Concurrent-HEC-worker");
         executorService = Executors.newFixedThreadPool(numberOfThreads, e);
         initHec(numberOfThreads, useAck, config, cb, loadBalancer);
@@ -55,11 +59,17 @@ public class ConcurrentHec implements HecInf {
 
     @Override
     public final void send(final EventBatch batch) {
+        LinkedBlockingQueue<EventBatch> queue = batch.getFailureCount() > 0 ? retries : batches;
+        boolean offered;
         try {
-            batches.offer(batch, 1000, TimeUnit.MILLISECONDS);
+            offered = queue.offer(batch, 1000, TimeUnit.MILLISECONDS);
         } catch (InterruptedException ex) {
             throw new HecException("failed to offer batch into queue", ex);
         }
+        if (!offered) {
+            // the caller fails the batch, so it doesn't stay tracked without ever being sent
+            throw new HecException("failed to offer batch into queue, the queue is full");
+        }
     }
 
     @Override
@@ -73,13 +83,25 @@ public class ConcurrentHec implements HecInf {
         executorService.shutdown();
     }
 
+    // a best effort snapshot while the workers may still be sending
+    @Override
+    public List<ChannelAckState> getOutstandingAcks() {
+        List<ChannelAckState> states = new ArrayList<>();
+        for (Hec hec: hecs) {
+            states.addAll(hec.getOutstandingAcks());
+        }
+        return states;
+    }
+
     private void run(int id) {
         // Note, never exit this function unless a shutdown, otherwise the worker thread will be gone.
         final Hec hec = hecs.get(id);
         while (!stopped) {
-            EventBatch batch;
+            EventBatch batch = retries.poll();
             try {
-                batch = batches.poll(1, TimeUnit.SECONDS);
+                if (batch == null) {
+                    batch = batches.poll(pollInterval, TimeUnit.MILLISECONDS);
+                }
             } catch (InterruptedException ex) {
                 continue;
             }
@@ -0,0 +1,63 @@
+/*
+ * Copyright 2017 Splunk, Inc..
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.splunk.hecclient;
+
+import java.net.Inet6Address;
+import java.net.InetAddress;
+import java.net.URI;
+import java.net.UnknownHostException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+// DnsIndexerDiscovery resolves every A/AAAA record behind one HEC host name and turns each
+// address into its own indexer URI, so each indexer gets its own channels instead of sharing the
+// connections which happen to land on it. The certificates of the indexers have to be valid for
+// the addresses or certificate validation has to be disabled.
+// Note the JVM caches lookups for networkaddress.cache.ttl seconds.
+final class DnsIndexerDiscovery implements IndexerDiscovery {
+    private final String scheme;
+    private final String host;
+    private final int port;
+
+    DnsIndexerDiscovery(String uri) {
+        URI parsed = URI.create(uri);
+        if (parsed.getHost() == null) {
+            throw new HecException("invalid dns indexer discovery uri=" + uri);
+        }
+        this.scheme = parsed.getScheme() != null ? parsed.getScheme() : "https";
+        this.host = parsed.getHost();
+        this.port = parsed.getPort() > 0 ? parsed.getPort() : 8088;
+    }
+
+    @Override
+    public List<String> discover() throws UnknownHostException {
+        List<String> uris = new ArrayList<>();
+        for (InetAddress address: InetAddress.getAllByName(host)) {
+            String ip = address.getHostAddress();
+            if (address instanceof Inet6Address) {
+                ip = "[" + ip + "]";
+            }
+
+            String uri = String.format("%s://%s:%d", scheme, ip, port);
+            if (!uris.contains(uri)) {
+                uris.add(uri);
+            }
+        }
+        Collections.sort(uris);
+        return uris;
+    }
+}
@@ -28,6 +28,7 @@ import java.util.ArrayList;
 import java.util.Enumeration;
 import java.util.List;
 import java.util.Map;
+import java.util.function.Predicate;
 
 public abstract class EventBatch {
     private static Logger log = LoggerFactory.getLogger(EventBatch.class);
@@ -38,7 +39,9 @@ public abstract class EventBatch {
 
     private volatile int status = INIT;
     private int failureCount = 0;
-    private long sendTimestamp = System.currentTimeMillis() / 1000; // in seconds
+    private long sendTimestamp = System.currentTimeMillis(); // in milli-seconds
+    private Object partition; // routing key of the source partition, null when the batch mixes partitions
+    private volatile String lastIndexer; // uri of the indexer the batch was last sent to
     protected int len;
     protected List<Event> events = new ArrayList<>();
 
@@ -58,8 +61,8 @@ public abstract class EventBatch {
     }
 
     public final boolean isTimedout(long ttl) {
-        long flightTime = System.currentTimeMillis() / 1000 - sendTimestamp;
-        if (flightTime < ttl) {
+        long flightTime = System.currentTimeMillis() - sendTimestamp;
+        if (flightTime < ttl * 1000) {
             return false;
         }
 
@@ -67,8 +70,32 @@ public abstract class EventBatch {
         return true;
     }
 
+    public final EventBatch setPartition(Object partition) {
+        this.partition = partition;
+        return this;
+    }
+
+    public final Object getPartition() {
+        return partition;
+    }
+
+    public final EventBatch setLastIndexer(String uri) {
+        this.lastIndexer = uri;
+        return this;
+    }
+
+    // the indexer a failed batch failed on, retries prefer another one
+    public final String getLastIndexer() {
+        return lastIndexer;
+    }
+
+    // in milli-seconds
+    public final long getSendTimestamp() {
+        return sendTimestamp;
+    }
+
     public final void resetSendTimestamp() {
-        sendTimestamp = System.currentTimeMillis() / 1000;
+        sendTimestamp = System.currentTimeMillis();
     }
 
     public final boolean isFailed() {
@@ -103,6 +130,19 @@ public abstract class EventBatch {
         return events;
     }
 
+    // removeEvents drops the events matching the filter, e.g. the ones of revoked partitions before
+    // a failed batch is sent again
+    public final EventBatch removeEvents(final Predicate<Event> filter) {
+        if (events.removeIf(filter)) {
+            int newLength = 0;
+            for (final Event event: events) {
+                newLength += event.length();
+            }
+            len = newLength;
+        }
+        return this;
+    }
+
     // Total length of data for all events
     public final int length() {
         return len;
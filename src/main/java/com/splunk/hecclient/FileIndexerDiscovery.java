@@ -0,0 +1,67 @@
+/*
+ * Copyright 2017 Splunk, Inc..
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.splunk.hecclient;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+
+// FileIndexerDiscovery reads HEC URIs from a local file and only re-reads it once its
+// modification time changed
+final class FileIndexerDiscovery implements IndexerDiscovery {
+    private final File file;
+    private long lastModified = -1;
+    private List<String> uris = new ArrayList<>();
+
+    FileIndexerDiscovery(String path) {
+        this.file = new File(path);
+    }
+
+    @Override
+    public synchronized List<String> discover() throws IOException {
+        long modified = file.lastModified();
+        if (modified == 0) {
+            throw new IOException("indexer discovery file=" + file + " does not exist");
+        }
+
+        if (modified != lastModified) {
+            uris = parse(Files.readAllLines(file.toPath(), StandardCharsets.UTF_8));
+            lastModified = modified;
+        }
+        return uris;
+    }
+
+    static List<String> parse(List<String> lines) {
+        List<String> result = new ArrayList<>();
+        for (String line: lines) {
+            int comment = line.indexOf('#');
+            if (comment >= 0) {
+                line = line.substring(0, comment);
+            }
+
+            for (String uri: line.split(",")) {
+                uri = uri.trim();
+                if (!uri.isEmpty() && !result.contains(uri)) {
+                    result.add(uri);
+                }
+            }
+        }
+        return result;
+    }
+}
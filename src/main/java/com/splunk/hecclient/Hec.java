@@ -15,17 +15,22 @@
  */
 package com.splunk.hecclient;
 
+import org.apache.http.conn.routing.HttpRoute;
 import org.apache.http.impl.client.CloseableHttpClient;
+import org.apache.http.pool.ConnPoolControl;
 
-import java.io.FileInputStream;
-import java.io.IOException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
-import java.security.cert.CertificateException;
 import java.security.KeyStore;
 import java.security.KeyStoreException;
 import java.security.NoSuchAlgorithmException;
 import java.security.SecureRandom;
 import java.security.KeyManagementException;
+import java.util.*;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
 
 import org.apache.commons.lang3.StringUtils;
 
@@ -56,10 +61,23 @@ import javax.net.ssl.TrustManagerFactory;
  * @see         HecAckPoller
  */
 public class Hec implements HecInf {
+    private static final Logger log = LoggerFactory.getLogger(Hec.class);
+    private static final int schedulerShutdownTimeout = 10; // in seconds
+
     private LoadBalancerInf loadBalancer;
     private Poller poller;
     private CloseableHttpClient httpClient;
+    private CloseableHttpClient ackHttpClient; // pool of the ack poll lane, httpClient unless given separately
+    private HecHealthChecker healthChecker; // null when health checking is disabled
+    private HecConfig config;
+    private Map<String, List<Indexer>> indexers = new LinkedHashMap<>(); // uri to its indexers, guarded by this
+    private int totalWeight; // sum of the weights of the configured uris
+    private ScheduledThreadPoolExecutor discoveryScheduler; // null when indexer discovery is disabled
+    private ChannelAutoScaler autoScaler; // null when channel auto-scaling is disabled
+    private ScheduledThreadPoolExecutor autoScaleScheduler;
     private boolean ownHttpClient = false; //flag for when the HTTPClient is created as part of this Hec object being created
+    private ConnPoolControl<HttpRoute> connectionPool; // of an own httpClient, null otherwise
+    private ConnPoolControl<HttpRoute> ackConnectionPool; // of an own ackHttpClient, null otherwise
 
    /**
     * Factory method to creates a new HEC Client with Acknowledgment.
@@ -72,9 +90,8 @@ public class Hec implements HecInf {
     * @see             PollerCallback
     */
     public static Hec newHecWithAck(HecConfig config, PollerCallback callback) {
-        Hec hec = newHecWithAck(config, Hec.createHttpClient(config), callback);
-        hec.setOwnHttpClient(true);
-        return hec;
+        return newHecWithOwnHttpClients(config, createPoller(config, callback),
+                new LoadBalancer(config.getLoadBalancerPolicy(), config.getStickyPartitions()));
     }
 
    /**
@@ -90,7 +107,7 @@ public class Hec implements HecInf {
     * @see               CloseableHttpClient
     */
     public static Hec newHecWithAck(HecConfig config, CloseableHttpClient httpClient, PollerCallback callback) {
-        return new Hec(config, httpClient, createPoller(config, callback), new LoadBalancer());
+        return new Hec(config, httpClient, createPoller(config, callback), new LoadBalancer(config.getLoadBalancerPolicy(), config.getStickyPartitions()));
     }
 
    /**
@@ -106,9 +123,7 @@ public class Hec implements HecInf {
     * @see                 LoadBalancer
     */
     public static Hec newHecWithAck(HecConfig config, PollerCallback callback, LoadBalancerInf loadBalancer) {
-        Hec hec = new Hec(config, Hec.createHttpClient(config), createPoller(config, callback), loadBalancer);
-        hec.setOwnHttpClient(true);
-        return hec;
+        return newHecWithOwnHttpClients(config, createPoller(config, callback), loadBalancer);
     }
 
    /**
@@ -122,8 +137,10 @@ public class Hec implements HecInf {
     * @see                 PollerCallback
     */
     public static Hec newHecWithoutAck(HecConfig config, PollerCallback callback) {
-        Hec hec = newHecWithoutAck(config, Hec.createHttpClient(config), callback);
+        HttpClientBuilder builder = httpClientBuilder(config, config.getMaxHttpConnectionPerChannel());
+        Hec hec = newHecWithoutAck(config, builder.build(), callback);
         hec.setOwnHttpClient(true);
+        hec.setConnectionPools(builder.getConnectionPool(), null);
         return hec;
     }
 
@@ -140,7 +157,7 @@ public class Hec implements HecInf {
     * @see               CloseableHttpClient
     */
     public static Hec newHecWithoutAck(HecConfig config, CloseableHttpClient httpClient, PollerCallback callback) {
-        return new Hec(config, httpClient, new ResponsePoller(callback), new LoadBalancer());
+        return new Hec(config, httpClient, new ResponsePoller(callback), new LoadBalancer(config.getLoadBalancerPolicy(), config.getStickyPartitions()));
     }
 
    /**
@@ -156,8 +173,20 @@ public class Hec implements HecInf {
     * @see                 LoadBalancer
     */
     public static Hec newHecWithoutAck(HecConfig config, PollerCallback callback, LoadBalancerInf loadBalancer) {
-        Hec hec = new Hec(config, Hec.createHttpClient(config), new ResponsePoller(callback), loadBalancer);
+        HttpClientBuilder builder = httpClientBuilder(config, config.getMaxHttpConnectionPerChannel());
+        Hec hec = new Hec(config, builder.build(), new ResponsePoller(callback), loadBalancer);
+        hec.setOwnHttpClient(true);
+        hec.setConnectionPools(builder.getConnectionPool(), null);
+        return hec;
+    }
+
+    // a Hec with http clients of its own for events and ACK polls, their pools grow with the indexers and channels
+    private static Hec newHecWithOwnHttpClients(HecConfig config, Poller poller, LoadBalancerInf loadBalancer) {
+        HttpClientBuilder builder = httpClientBuilder(config, config.getMaxHttpConnectionPerChannel());
+        HttpClientBuilder ackBuilder = httpClientBuilder(config, config.getAckPollMaxHttpConnection());
+        Hec hec = new Hec(config, builder.build(), ackBuilder.build(), poller, loadBalancer);
         hec.setOwnHttpClient(true);
+        hec.setConnectionPools(builder.getConnectionPool(), ackBuilder.getConnectionPool());
         return hec;
     }
 
@@ -176,7 +205,9 @@ public class Hec implements HecInf {
     public static HecAckPoller createPoller(HecConfig config, PollerCallback callback) {
         return new HecAckPoller(callback)
                 .setAckPollInterval(config.getAckPollInterval())
+                .setAckPollMinInterval(config.getAckPollMinInterval())
                 .setAckPollThreads(config.getAckPollThreads())
+                .setAckPollChunkSize(config.getAckPollChunkSize())
                 .setEventBatchTimeout(config.getEventBatchTimeout());
     }
 
@@ -194,19 +225,266 @@ public class Hec implements HecInf {
     * @see                 LoadBalancerInf
     */
     public Hec(HecConfig config, CloseableHttpClient httpClient, Poller poller, LoadBalancerInf loadBalancer) {
-        for (int i = 0; i < config.getTotalChannels(); ) {
-            for (String uri : config.getUris()) {
-                Indexer indexer = new Indexer(uri, config.getToken(), httpClient, poller);
-                indexer.setKeepAlive(config.getHttpKeepAlive());
-                loadBalancer.add(indexer.getChannel().setTracking(config.getEnableChannelTracking()));
-                i++;
-            }
+        this(config, httpClient, httpClient, poller, loadBalancer);
+    }
+
+   /**
+    * Hec is created to send events to Splunk's HTTP Event Collector with a separate connection pool for ACK polls, so
+    * ACK polls don't wait for connections busy with event uploads.
+    *
+    * @param config        HecConfig containing settings to configure HEC Client
+    * @param httpClient    CloseableHttpClient provided to factory to be used sending events.
+    * @param ackHttpClient CloseableHttpClient used to poll ACKs.
+    * @param poller        HecAckPoller for polling acknowledgments from Splunk. ReponsePoller for No acknowledgment.
+    * @param loadBalancer  Load Balancer Interface for channel management.
+    * @since               1.1.0
+    * @see                 HecConfig
+    * @see                 CloseableHttpClient
+    * @see                 Poller
+    * @see                 LoadBalancerInf
+    */
+    public Hec(HecConfig config, CloseableHttpClient httpClient, CloseableHttpClient ackHttpClient, Poller poller,
+               LoadBalancerInf loadBalancer) {
+        if (config.getHealthCheckInterval() > 0) {
+            healthChecker = new HecHealthChecker(httpClient, config.getHealthCheckInterval(), config.getHealthCheckFailureThreshold());
         }
 
+        this.config = config;
         this.loadBalancer = loadBalancer;
         this.poller = poller;
-        this.poller.start();
         this.httpClient = httpClient;
+        this.ackHttpClient = ackHttpClient;
+
+        // the total channels are split over the configured uris in proportion to their weights,
+        // indexers discovered later get channels at the same rate
+        for (String uri: config.getUris()) {
+            totalWeight += config.getUriWeight(uri);
+        }
+        updateIndexers(config.getUris());
+
+        this.poller.start();
+        if (healthChecker != null) {
+            healthChecker.start();
+        }
+        if (StringUtils.isNotBlank(config.getIndexerDiscovery())) {
+            startIndexerDiscovery(IndexerDiscovery.create(config.getIndexerDiscovery()), config.getIndexerDiscoveryInterval());
+        }
+        if (config.getChannelAutoScaleInterval() > 0) {
+            autoScaler = new ChannelAutoScaler(config.getChannelAutoScaleMin(), config.getChannelAutoScaleMax(),
+                    config.getChannelAutoScaleOutstandingThreshold(), config.getChannelAutoScaleAckLatencyThreshold() * 1000L);
+            startChannelAutoScaling(config.getChannelAutoScaleInterval());
+        }
+    }
+
+    // updateIndexers creates channels for new uris and takes the channels of vanished uris out of
+    // the load balancer. Batches already sent through a removed channel are still acked or timed
+    // out by the poller, so removed indexers drain instead of dropping data.
+    synchronized void updateIndexers(Collection<String> uris) {
+        List<String> added = new ArrayList<>();
+        for (String uri: uris) {
+            if (!indexers.containsKey(uri) && !added.contains(uri)) {
+                added.add(uri);
+            }
+        }
+
+        List<String> removed = new ArrayList<>();
+        for (String uri: indexers.keySet()) {
+            if (!uris.contains(uri)) {
+                removed.add(uri);
+            }
+        }
+
+        if (!indexers.isEmpty() && (!added.isEmpty() || !removed.isEmpty())) {
+            log.info("indexers changed, added={}, removed={}", added, removed);
+        }
+
+        Map<String, Integer> channels = new HashMap<>();
+        int maxChannels = 0;
+        for (String uri: added) {
+            channels.put(uri, channelsFor(uri));
+            maxChannels = Math.max(maxChannels, channels.get(uri));
+        }
+
+        // interleave the channels of the new indexers in the load balancer
+        for (int i = 0; i < maxChannels; i++) {
+            for (String uri: added) {
+                int count = channels.get(uri);
+                if (i >= count) {
+                    continue;
+                }
+
+                // channels share the weight of their indexer, rounding of the channel count is
+                // evened out by weighted selection
+                Indexer indexer = createIndexer(uri);
+                indexer.getChannel().setWeight((double) config.getUriWeight(uri) / count);
+                loadBalancer.add(indexer.getChannel());
+                indexers.computeIfAbsent(uri, k -> new ArrayList<>()).add(indexer);
+            }
+        }
+
+        for (String uri: removed) {
+            int outstanding = 0;
+            for (Indexer indexer: indexers.remove(uri)) {
+                loadBalancer.remove(indexer.getChannel());
+                outstanding += indexer.getChannel().getOutstandingBatches();
+            }
+            if (healthChecker != null) {
+                healthChecker.unregister(uri);
+            }
+            log.info("removed indexer={}, draining {} outstanding event batches", uri, outstanding);
+        }
+        resizeConnectionPools();
+    }
+
+    // scaleChannels adds or retires one channel per indexer as the auto-scaler decides. Like removed
+    // indexers, retired channels are only taken out of the load balancer and drain through the poller.
+    synchronized void scaleChannels() {
+        for (Map.Entry<String, List<Indexer>> entry: indexers.entrySet()) {
+            String uri = entry.getKey();
+            List<Indexer> current = entry.getValue();
+            List<HecChannel> channels = new ArrayList<>();
+            for (Indexer indexer: current) {
+                channels.add(indexer.getChannel());
+            }
+
+            int desired = autoScaler.desiredChannels(channels, channelsFor(uri));
+            if (desired == current.size()) {
+                continue;
+            }
+            log.info("scale channels of indexer={} from {} to {}", uri, current.size(), desired);
+
+            List<Indexer> added = new ArrayList<>();
+            while (current.size() + added.size() < desired) {
+                added.add(createIndexer(uri));
+            }
+
+            List<Indexer> retired = new ArrayList<>();
+            while (current.size() > desired) {
+                // the channel with the least outstanding batches drains first
+                Indexer idle = Collections.min(current,
+                        Comparator.comparingInt((Indexer indexer) -> indexer.getChannel().getOutstandingBatches()));
+                current.remove(idle);
+                retired.add(idle);
+            }
+            current.addAll(added);
+
+            // reweight before changing the load balancer, which then picks up the new weights
+            double weight = (double) config.getUriWeight(uri) / desired;
+            for (Indexer indexer: current) {
+                indexer.getChannel().setWeight(weight);
+            }
+            for (Indexer indexer: added) {
+                loadBalancer.add(indexer.getChannel());
+            }
+            for (Indexer indexer: retired) {
+                loadBalancer.remove(indexer.getChannel());
+            }
+        }
+        resizeConnectionPools();
+    }
+
+    // setConnectionPools hands over the pools of own http clients, which are then sized to the indexers
+    synchronized void setConnectionPools(ConnPoolControl<HttpRoute> pool, ConnPoolControl<HttpRoute> ackPool) {
+        this.connectionPool = pool;
+        this.ackConnectionPool = ackPool;
+        resizeConnectionPools();
+    }
+
+    // resizeConnectionPools sizes the own pools to the current indexers, so discovered indexers and
+    // channels added by auto-scaling don't wait for connection leases. Every indexer gets the configured
+    // connections per destination, more in proportion when auto-scaling added channels.
+    private void resizeConnectionPools() {
+        if (connectionPool != null) {
+            int perDest = config.getMaxHttpConnectionPerChannel();
+            int maxPerRoute = perDest;
+            int total = 0;
+            for (Map.Entry<String, List<Indexer>> entry: indexers.entrySet()) {
+                int base = Math.max(channelsFor(entry.getKey()), 1);
+                int connections = perDest * ((entry.getValue().size() + base - 1) / base);
+                maxPerRoute = Math.max(maxPerRoute, connections);
+                total += connections;
+            }
+            connectionPool.setDefaultMaxPerRoute(maxPerRoute);
+            connectionPool.setMaxTotal(Math.max(total, maxPerRoute));
+        }
+
+        if (ackConnectionPool != null) {
+            int perDest = config.getAckPollMaxHttpConnection();
+            ackConnectionPool.setDefaultMaxPerRoute(perDest);
+            ackConnectionPool.setMaxTotal(perDest * Math.max(indexers.size(), 1));
+        }
+    }
+
+    private Indexer createIndexer(String uri) {
+        // a channel id left behind by a former Hec keeps its acks
+        Indexer indexer = new Indexer(uri, config.getToken(), httpClient, poller, config.takeChannelId(uri));
+        indexer.setAckHttpClient(ackHttpClient)
+                .setKeepAlive(config.getHttpKeepAlive())
+                .setBackPressureThreshhold(config.getBackoffInitial() * 1000L)
+                .setMaxBackPressureThreshhold(config.getBackoffMax() * 1000L)
+                .setRampPeriod(config.getBackoffRampPeriod() * 1000L);
+        if (healthChecker != null) {
+            indexer.setCircuitBreaker(healthChecker.register(uri));
+        }
+        indexer.getChannel().setTracking(config.getEnableChannelTracking());
+        return indexer;
+    }
+
+    // ceil(totalChannels * weight / totalWeight), which is the former ceil(totalChannels / uris)
+    // when no weights are configured
+    private int channelsFor(String uri) {
+        if (totalWeight <= 0) {
+            return 0;
+        }
+        long weighted = (long) config.getTotalChannels() * config.getUriWeight(uri);
+        return (int) ((weighted + totalWeight - 1) / totalWeight);
+    }
+
+    synchronized List<Indexer> getIndexers(String uri) {
+        List<Indexer> result = indexers.get(uri);
+        return result == null ? new ArrayList<>() : new ArrayList<>(result);
+    }
+
+    synchronized Set<String> getIndexerUris() {
+        return new LinkedHashSet<>(indexers.keySet());
+    }
+
+    private void startIndexerDiscovery(IndexerDiscovery discovery, int interval /* seconds */) {
+        ThreadFactory f = (Runnable r) -> new Thread(r, "HEC-indexer-discovery");
+        discoveryScheduler = new ScheduledThreadPoolExecutor(1, f);
+        discoveryScheduler.setExecuteExistingDelayedTasksAfterShutdownPolicy(false);
+        discoveryScheduler.setContinueExistingPeriodicTasksAfterShutdownPolicy(false);
+
+        Runnable refresh = () -> {
+            try {
+                List<String> uris = discovery.discover();
+                if (uris.isEmpty()) {
+                    log.warn("indexer discovery returned no indexers, keep current indexers={}", getIndexerUris());
+                    return;
+                }
+                updateIndexers(uris);
+            } catch (Exception ex) {
+                log.error("failed to discover indexers, keep current indexers={}", getIndexerUris(), ex);
+            }
+        };
+        // the first refresh runs right away, the configured uris are only the starting point
+        discoveryScheduler.scheduleWithFixedDelay(refresh, 0, interval, TimeUnit.SECONDS);
+    }
+
+    private void startChannelAutoScaling(int interval /* seconds */) {
+        ThreadFactory f = (Runnable r) -> new Thread(r, "HEC-channel-autoscaler");
+        autoScaleScheduler = new ScheduledThreadPoolExecutor(1, f);
+        autoScaleScheduler.setExecuteExistingDelayedTasksAfterShutdownPolicy(false);
+        autoScaleScheduler.setContinueExistingPeriodicTasksAfterShutdownPolicy(false);
+
+        Runnable scale = () -> {
+            try {
+                scaleChannels();
+            } catch (Exception ex) {
+                log.error("failed to scale channels", ex);
+            }
+        };
+        autoScaleScheduler.scheduleWithFixedDelay(scale, interval, interval, TimeUnit.SECONDS);
     }
 
    /**
@@ -233,21 +511,58 @@ public class Hec implements HecInf {
         loadBalancer.send(batch);
     }
 
+   /**
+    * @see HecInf#getOutstandingAcks()
+    */
+    @Override
+    public List<ChannelAckState> getOutstandingAcks() {
+        if (poller instanceof HecAckPoller) {
+            return ((HecAckPoller) poller).getOutstandingAcks();
+        }
+        return Collections.emptyList();
+    }
+
    /**
     * @see HecInf#close()
     */
     @Override
     public final void close() {
+        // a running discovery or scaling must not create channels on the clients closed below
+        shutdown(discoveryScheduler);
+        shutdown(autoScaleScheduler);
+        if (healthChecker != null) {
+            healthChecker.stop();
+        }
         poller.stop();
+        // the handshake metrics are JVM wide, not of this client
+        log.debug("{}", SSLHandshakeMetrics.summary());
         if (ownHttpClient) {
             try {
                 httpClient.close();
+                if (ackHttpClient != httpClient) {
+                    ackHttpClient.close();
+                }
             } catch (Exception ex) {
                 throw new HecException("failed to close http client", ex);
             }
         }
     }
 
+    private static void shutdown(ScheduledThreadPoolExecutor scheduler) {
+        if (scheduler == null) {
+            return;
+        }
+
+        scheduler.shutdownNow();
+        try {
+            if (!scheduler.awaitTermination(schedulerShutdownTimeout, TimeUnit.SECONDS)) {
+                log.warn("{} seconds passed and the scheduler is still running, go on closing", schedulerShutdownTimeout);
+            }
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
    /**
     * createHttpClient will construct 2 different versions of the a CloseableHttpClient depending on whether a custom
     * trust store is to be used or a default configuration is substantial enough. When a trust store path and password
@@ -262,7 +577,29 @@ public class Hec implements HecInf {
     * @see          HecException
     */
     public static CloseableHttpClient createHttpClient(final HecConfig config) {
-        int poolSizePerDest = config.getMaxHttpConnectionPerChannel();
+        return createHttpClient(config, config.getMaxHttpConnectionPerChannel());
+    }
+
+   /**
+    * createAckHttpClient constructs the CloseableHttpClient for ACK polls, configured like createHttpClient but with a
+    * small connection pool of its own per indexer.
+    *
+    * @param config Hec Configuration used to construct
+    * @since        1.1.0
+    * @throws       HecException
+    * @return       A configured CloseableHTTPClient for ACK polls.
+    * @see          CloseableHttpClient
+    * @see          HecException
+    */
+    public static CloseableHttpClient createAckHttpClient(final HecConfig config) {
+        return createHttpClient(config, config.getAckPollMaxHttpConnection());
+    }
+
+    private static CloseableHttpClient createHttpClient(final HecConfig config, int poolSizePerDest) {
+        return httpClientBuilder(config, poolSizePerDest).build();
+    }
+
+    private static HttpClientBuilder httpClientBuilder(final HecConfig config, int poolSizePerDest) {
 
         // Code block for default client construction
         if(!config.getHasCustomTrustStore() &&
@@ -272,7 +609,9 @@ public class Hec implements HecInf {
             return new HttpClientBuilder().setDisableSSLCertVerification(config.getDisableSSLCertVerification())
                     .setMaxConnectionPoolSizePerDestination(poolSizePerDest)
                     .setMaxConnectionPoolSize(poolSizePerDest * config.getUris().size())
-                    .build();
+                    .setConnectionTimeToLive(config.getConnectionTimeToLive())
+                    .setIdleConnectionTimeout(config.getIdleConnectionTimeout())
+                    .setDnsCacheTtl(config.getDnsCacheTtl());
         }
 
         // Code block for custom keystore client construction
@@ -283,8 +622,10 @@ public class Hec implements HecInf {
                 .setDisableSSLCertVerification(config.getDisableSSLCertVerification())
                 .setMaxConnectionPoolSizePerDestination(poolSizePerDest)
                 .setMaxConnectionPoolSize(poolSizePerDest * config.getUris().size())
-                .setSslContext(context)
-                .build();
+                .setConnectionTimeToLive(config.getConnectionTimeToLive())
+                .setIdleConnectionTimeout(config.getIdleConnectionTimeout())
+                .setDnsCacheTtl(config.getDnsCacheTtl())
+                .setSslContext(context);
         }
         else {
              //failure configuring SSL Context created from trust store path and password values
@@ -295,7 +636,8 @@ public class Hec implements HecInf {
    /**
     * loadCustomSSLContext will take a path to a java key store and a password decode and load the key-store.
     * Passing on the keystore to the loadTrustManagerFactory to retrieve an SSL Context to be used in the creation of
-    * a Hec Client with custom key store functionality.
+    * a Hec Client with custom key store functionality. The SSL Context is cached JVM wide by trust store path and
+    * content, so all Hec Clients using the same trust store share one TLS session cache.
     *
     * @param    path  A file path to the custom key store to be used.
     * @param    pass  The password for the key store file.
@@ -304,20 +646,10 @@ public class Hec implements HecInf {
     * @return         A configured SSLContect to be used in a CloseableHttpClient
     * @see            KeyStore
     * @see            SSLContext
+    * @see            SSLContextCache
     */
     public static SSLContext loadCustomSSLContext(String path, String pass) {
-        try {
-            KeyStore ks = KeyStore.getInstance("JKS");
-            FileInputStream fileInputStream = new FileInputStream(path);
-            ks.load(fileInputStream, pass.toCharArray());
-
-            SSLContext sslContext = loadTrustManagerFactory(ks);
-            fileInputStream.close();
-
-            return sslContext;
-        } catch (KeyStoreException | IOException | NoSuchAlgorithmException | CertificateException ex) {
-            throw new HecException("error loading trust store, check values for trust store and trust store-password", ex);
-        }
+        return SSLContextCache.getOrLoad(path, pass);
     }
 
    /**
@@ -15,8 +15,6 @@
  */
 package com.splunk.hecclient;
 
-import com.fasterxml.jackson.core.JsonProcessingException;
-import com.fasterxml.jackson.databind.ObjectMapper;
 import org.apache.http.client.methods.HttpPost;
 import org.apache.http.client.methods.HttpUriRequest;
 import org.apache.http.entity.StringEntity;
@@ -27,30 +25,43 @@ import java.io.UnsupportedEncodingException;
 import java.util.*;
 import java.util.concurrent.*;
 import java.util.concurrent.atomic.*;
-
-// HecAckPoller, it is multi-thread safe class
+import java.util.function.LongConsumer;
+
+// HecAckPoller, it is multi-thread safe class. Every channel polls its acks on its own adaptive
+// schedule between ackPollMinInterval and ackPollInterval, see AckPollSchedule. Outstanding batches
+// also go into a deadline ordered queue, so expiring timed out batches only looks at the expired
+// ones. Entries of batches acked in the meantime are skipped when they come up. A poll of a channel
+// is split into chunks of at most ackPollChunkSize ack ids which run in parallel on the poll threads.
+// Scheduler and poll threads are shared by all pollers of the JVM, see AckPollService.
 public final class HecAckPoller implements Poller {
     private static final Logger log = LoggerFactory.getLogger(HecAckPoller.class);
-    private static final ObjectMapper jsonMapper = new ObjectMapper();
 
     private static final String ackEndpoint = "/services/collector/ack";
 
-    private ConcurrentHashMap<HecChannel, ConcurrentHashMap<Long, EventBatch>> outstandingEventBatches;
+    private ConcurrentHashMap<HecChannel, AckWindow> outstandingEventBatches;
+    private ConcurrentHashMap<HecChannel, AckPollSchedule> schedules;
+    private PriorityBlockingQueue<Deadline> deadlines;
     private AtomicLong totalOutstandingEventBatches;
     private int eventBatchTimeout; // in seconds
     private int ackPollInterval; // in seconds
+    private int ackPollMinInterval; // in seconds
     private int pollThreads;
+    private int ackPollChunkSize; // max number of ack ids in one ack poll request
     private PollerCallback pollerCallback;
-    private ScheduledThreadPoolExecutor scheduler;
-    private ExecutorService executorService;
+    private volatile AckPollService service; // null until registered
+    private long lastStatus; // in milli-seconds, only used on the scheduler thread
     private AtomicBoolean started;
 
     public HecAckPoller(PollerCallback cb) {
         outstandingEventBatches = new ConcurrentHashMap<>();
+        schedules = new ConcurrentHashMap<>();
+        deadlines = new PriorityBlockingQueue<>();
         totalOutstandingEventBatches = new AtomicLong(0);
         ackPollInterval = 10; // 10 seconds
+        ackPollMinInterval = 1; // 1 second
         eventBatchTimeout = 2 * 60; // 2 mins
         pollThreads = 2;
+        ackPollChunkSize = 1000;
         pollerCallback = cb;
         started = new AtomicBoolean(false);
     }
@@ -61,23 +72,8 @@ public final class HecAckPoller implements Poller {
             return;
         }
 
-        ThreadFactory f = (Runnable r) -> new Thread(r, "HEC-ACK-poller-scheduler");
-        scheduler = new ScheduledThreadPoolExecutor(1, f);
-        scheduler.setExecuteExistingDelayedTasksAfterShutdownPolicy(false);
-        scheduler.setContinueExistingPeriodicTasksAfterShutdownPolicy(false);
-        scheduler.setRemoveOnCancelPolicy(true);
-
-        Runnable poller = () -> {
-            try {
-                poll();
-            } catch (HecException e) {
-                log.error("failed to poll", e);
-            }
-        };
-        scheduler.scheduleWithFixedDelay(poller, ackPollInterval, ackPollInterval, TimeUnit.SECONDS);
-
-        ThreadFactory e = (Runnable r) -> new Thread(r, "HEC-ACK-poller");
-        executorService = Executors.newFixedThreadPool(pollThreads, e);
+        lastStatus = System.currentTimeMillis();
+        service = AckPollService.register(this, pollThreads);
     }
 
     @Override
@@ -86,70 +82,75 @@ public final class HecAckPoller implements Poller {
             return;
         }
 
-        scheduler.shutdownNow();
-        executorService.shutdownNow();
+        AckPollService.unregister(this);
         log.info("HecAckPoller stopped with {} outstanding un-ACKed events", totalOutstandingEventBatches.get());
     }
 
-    @Override
-    public HecChannel getMinLoadChannel() {
-        HecChannel minCh = null;
-        long minEvents = Long.MAX_VALUE;
-
-        // Find channel which has min outstanding events
-        for (Map.Entry<HecChannel, ConcurrentHashMap<Long, EventBatch>> entry: outstandingEventBatches.entrySet()) {
-            HecChannel ch = entry.getKey();
-            Map<Long, EventBatch> val = entry.getValue();
-
-            if (val.size() < minEvents) {
-                minCh = ch;
-                minEvents = val.size();
-            }
-        }
-        return minCh;
-    }
-
     @Override
     public long getTotalOutstandingEventBatches() {
         return totalOutstandingEventBatches.get();
     }
 
     @Override
-    public void add(HecChannel channel, EventBatch batch, String response) {
-        PostResponse resp = null;
+    public void add(HecChannel channel, EventBatch batch, PostResponse resp) {
+        AckWindow channelEvents = outstandingEventBatches.computeIfAbsent(channel, ch -> new AckWindow());
+        List<EventBatch> stale = new ArrayList<>();
         try {
-            resp = jsonMapper.readValue(response, PostResponse.class);
-        } catch (Exception ex) {
-            log.error("failed to parse response", ex);
+            channelEvents.put(resp.getAckId(), batch, stale);
+        } catch (HecException ex) {
             fail(channel, batch, ex);
             return;
         }
 
-        ConcurrentHashMap<Long, EventBatch> channelEvents = outstandingEventBatches.get(channel);
-        if (channelEvents == null) {
-            outstandingEventBatches.putIfAbsent(channel, new ConcurrentHashMap<>());
-            channelEvents = outstandingEventBatches.get(channel);
-        }
-
-        if (channelEvents.get(resp.getAckId()) != null) {
-            log.error("ackId={} already exists for channel={} index={}", resp.getAckId(), channel, channel.getIndexer());
-            return;
+        // increase total number of event batches
+        totalOutstandingEventBatches.incrementAndGet();
+        if (!stale.isEmpty()) {
+            failStale(channel, stale, resp.getAckId());
         }
+        deadlines.add(new Deadline(batch.getSendTimestamp() + eventBatchTimeout * 1000L, channel, resp.getAckId()));
 
-        channelEvents.put(resp.getAckId(), batch);
+        schedules.computeIfAbsent(channel, ch -> new AckPollSchedule(ackPollMinInterval * 1000L, ackPollInterval * 1000L))
+                .activate(System.currentTimeMillis(), channel.getAckLatency());
+    }
 
-        // increase total number of event batches
-        totalOutstandingEventBatches.incrementAndGet();
+    // the indexer restarted its ack ids, the batches pending under the old ones will never be acked
+    private void failStale(HecChannel channel, List<EventBatch> stale, long ackId) {
+        log.warn("ackId={} restarted the ack ids of channel={} indexer={}, failing {} pending event batches",
+                ackId, channel, channel.getIndexer(), stale.size());
+        totalOutstandingEventBatches.addAndGet(-stale.size());
+        channel.releaseBatches(stale.size());
+        for (EventBatch batch: stale) {
+            batch.fail();
+        }
+        if (pollerCallback != null) {
+            pollerCallback.onEventFailure(stale, new HecException("ack ids restarted"));
+        }
     }
 
     @Override
     public void fail(HecChannel channel, EventBatch batch, Exception ex) {
+        channel.releaseBatches(1);
         batch.fail();
         if (pollerCallback != null) {
             pollerCallback.onEventFailure(Arrays.asList(batch), ex);
         }
     }
 
+    // getOutstandingAcks takes a snapshot of the not yet acked batches of every channel, after stop
+    // they are what Splunk may still be indexing
+    public List<ChannelAckState> getOutstandingAcks() {
+        List<ChannelAckState> states = new ArrayList<>();
+        for (Map.Entry<HecChannel, AckWindow> entry: outstandingEventBatches.entrySet()) {
+            HecChannel channel = entry.getKey();
+            Map<Long, EventBatch> batches = new LinkedHashMap<>();
+            entry.getValue().forEach((batch, ackId) -> batches.put(ackId, batch));
+            if (!batches.isEmpty()) {
+                states.add(new ChannelAckState(channel.getIndexer().getBaseUrl(), channel.getId(), batches));
+            }
+        }
+        return states;
+    }
+
     public boolean isStarted() {
         return started.get();
     }
@@ -166,12 +167,24 @@ public final class HecAckPoller implements Poller {
         return this;
     }
 
-    // setAckPollInterval before calling start
+    // setAckPollInterval before calling start, the longest delay between two polls of a channel
     public HecAckPoller setAckPollInterval(int interval) {
         ackPollInterval = interval;
         return this;
     }
 
+    // setAckPollMinInterval before calling start, the shortest delay between two polls of a channel
+    public HecAckPoller setAckPollMinInterval(int interval) {
+        ackPollMinInterval = interval;
+        return this;
+    }
+
+    // setAckPollChunkSize before calling start
+    public HecAckPoller setAckPollChunkSize(int size) {
+        ackPollChunkSize = size;
+        return this;
+    }
+
     public int getAckPollThreads() {
         return pollThreads;
     }
@@ -184,32 +197,102 @@ public final class HecAckPoller implements Poller {
         return ackPollInterval;
     }
 
-    private void poll() {
-        if (totalOutstandingEventBatches.get() <= 0 || outstandingEventBatches.size() <= 0) {
+    public int getAckPollMinInterval() {
+        return ackPollMinInterval;
+    }
+
+    public int getAckPollChunkSize() {
+        return ackPollChunkSize;
+    }
+
+    // tick is called by the shared scheduler thread every AckPollService.pollTick
+    void tick(long now) {
+        if (!started.get() || service == null) {
             return;
         }
 
-        log.info("start polling {} outstanding acks for {} channels", totalOutstandingEventBatches.get(), outstandingEventBatches.size());
+        expireTimedoutBatches(now);
+        pollDueChannels(now);
+        if (now - lastStatus >= ackPollInterval * 1000L) {
+            lastStatus = now;
+            if (totalOutstandingEventBatches.get() > 0) {
+                log.info("{} outstanding acks for {} channels", totalOutstandingEventBatches.get(), outstandingEventBatches.size());
+            }
+        }
+    }
 
-        List<EventBatch> timeouts = new ArrayList<>();
-        for (Map.Entry<HecChannel, ConcurrentHashMap<Long, EventBatch>> entry: outstandingEventBatches.entrySet()) {
-            Map<Long, EventBatch> batches = entry.getValue();
-            findAndRemoveTimedoutBatches(batches, timeouts);
+    // pollDueChannels submits an ack poll for every channel whose schedule is due
+    private void pollDueChannels(long now) {
+        if (totalOutstandingEventBatches.get() <= 0) {
+            return;
+        }
+        for (Map.Entry<HecChannel, AckWindow> entry: outstandingEventBatches.entrySet()) {
+            HecChannel channel = entry.getKey();
+            AckPollSchedule schedule = schedules.get(channel);
+            if (schedule == null || !schedule.tryStart(now)) {
+                continue;
+            }
 
-            Set<Long> ids = batches.keySet();
-            if (ids.isEmpty()) {
+            AckWindow batches = entry.getValue();
+            List<HttpUriRequest> ackReqs = createAckPollHttpRequests(channel, batches);
+            if (ackReqs.isEmpty()) {
+                schedule.finish(now, false, channel.getAckLatency(), () -> !batches.isEmpty());
                 continue;
             }
-            HecChannel channel = entry.getKey();
-            log.info("polling {} acks for channel={} on indexer={}", ids.size(), channel, channel.getIndexer());
-            HttpUriRequest ackReq = createAckPollHttpRequest(entry.getKey(), ids);
+
+            log.debug("polling {} acks in {} requests for channel={} on indexer={}", batches.size(), ackReqs.size(), channel, channel.getIndexer());
+            AckPollRound round = new AckPollRound(channel, schedule, ackReqs.size());
+            for (HttpUriRequest ackReq: ackReqs) {
+                service.submit(new RunAckQuery(ackReq, round));
+            }
+        }
+    }
+
+    // createAckPollHttpRequests takes the pending ack ids chunk by chunk, the window is only locked
+    // while one chunk is copied out
+    private List<HttpUriRequest> createAckPollHttpRequests(HecChannel channel, AckWindow batches) {
+        List<HttpUriRequest> ackReqs = new ArrayList<>();
+        StringBuilder sb = new StringBuilder(16 + Math.min(batches.size(), ackPollChunkSize) * 8);
+        for (long from = 0; from >= 0; ) {
+            // Prepare the payload, {"acks":[1,2,3]}
+            sb.setLength(0);
+            sb.append("{\"acks\":[");
+            from = batches.appendPendingIds(sb, from, ackPollChunkSize);
+            if (sb.charAt(sb.length() - 1) == '[') {
+                break;
+            }
+            sb.append("]}");
+
+            HttpUriRequest ackReq = createAckPollHttpRequest(channel, sb.toString());
             if (ackReq != null) {
-                executorService.submit(new RunAckQuery(ackReq, channel));
+                ackReqs.add(ackReq);
             }
         }
+        return ackReqs;
+    }
+
+    // expireTimedoutBatches costs O(expired deadlines), it only runs on the scheduler thread. The
+    // deadlines don't hold the batches, an acked batch is only referenced by its ack window until
+    // the ACK arrives.
+    private void expireTimedoutBatches(long now) {
+        List<EventBatch> timeouts = new ArrayList<>();
+        for (Deadline head = deadlines.peek(); head != null && head.deadline <= now; head = deadlines.peek()) {
+            deadlines.poll();
+            AckWindow window = outstandingEventBatches.get(head.channel);
+            EventBatch batch = window == null ? null : window.get(head.ackId);
+            // acked or failed in the meantime, or the ack id was handed out again for a later batch
+            // which has a deadline of its own
+            if (batch == null || batch.getSendTimestamp() + eventBatchTimeout * 1000L > now
+                    || !window.remove(head.ackId, batch)) {
+                continue;
+            }
+            batch.fail();
+            head.channel.releaseBatches(1);
+            timeouts.add(batch);
+        }
 
         if (!timeouts.isEmpty()) {
-            log.warn("detected {} event batches timedout", timeouts.size());
+            log.warn("detected {} event batches timedout after {} seconds not acked", timeouts.size(), eventBatchTimeout);
             totalOutstandingEventBatches.addAndGet(-timeouts.size());
             if (pollerCallback != null) {
                 pollerCallback.onEventFailure(timeouts, new HecException("timeouts"));
@@ -217,90 +300,136 @@ public final class HecAckPoller implements Poller {
         }
     }
 
+    private static final class Deadline implements Comparable<Deadline> {
+        private final long deadline; // in milli-seconds
+        private final HecChannel channel;
+        private final long ackId;
+
+        Deadline(long deadline, HecChannel channel, long ackId) {
+            this.deadline = deadline;
+            this.channel = channel;
+            this.ackId = ackId;
+        }
+
+        @Override
+        public int compareTo(Deadline other) {
+            return Long.compare(deadline, other.deadline);
+        }
+    }
+
+    // AckPollRound tracks the chunks of one poll of a channel, the last chunk to finish reschedules
+    // the channel
+    private final class AckPollRound {
+        private final HecChannel channel;
+        private final AckPollSchedule schedule;
+        private final AtomicInteger remaining;
+        private final AtomicInteger committed;
+
+        AckPollRound(HecChannel channel, AckPollSchedule schedule, int chunks) {
+            this.channel = channel;
+            this.schedule = schedule;
+            remaining = new AtomicInteger(chunks);
+            committed = new AtomicInteger(0);
+        }
+
+        void done(int committedBatches) {
+            committed.addAndGet(committedBatches);
+            if (remaining.decrementAndGet() == 0) {
+                AckWindow batches = outstandingEventBatches.get(channel);
+                schedule.finish(System.currentTimeMillis(), committed.get() > 0, channel.getAckLatency(), () -> !batches.isEmpty());
+            }
+        }
+    }
+
     private final class RunAckQuery implements Runnable {
-        private HecChannel channel;
         private HttpUriRequest request;
+        private AckPollRound round;
 
-        RunAckQuery(HttpUriRequest req, HecChannel ch) {
-            channel = ch;
+        RunAckQuery(HttpUriRequest req, AckPollRound round) {
             request = req;
+            this.round = round;
         }
 
         @Override
         public void run() {
+            HecChannel channel = round.channel;
+            int committed = 0;
             try {
-                String resp = channel.executeHttpRequest(request);
-                handleAckPollResponse(resp, channel);
+                if (!started.get()) {
+                    // queued before the poller stopped
+                    return;
+                }
+                AckIds acked = new AckIds(Math.min(ackPollChunkSize, 1024));
+                try {
+                    // the acked ids are parsed straight from the response stream
+                    channel.executeHttpRequest(request, entity -> AckPollResponseParser.parse(entity.getContent(), acked));
+                } catch (HecException ex) {
+                    // the ids acked before a malformed part of the response are still committed below
+                    log.error("failed to handle ack polled result for channel={} on indexer={}", channel, channel.getIndexer(), ex);
+                }
+                committed = handleAckedIds(acked, channel);
             } catch (Exception ex) {
                 String msg = String.format("failed to poll ack for channel=%s on indexer=%s", channel, channel.getIndexer());
                 log.error(msg, ex);
+            } finally {
+                round.done(committed);
             }
         }
     }
 
-    private void findAndRemoveTimedoutBatches(Map<Long, EventBatch> batches, List<EventBatch> timeouts) {
-        Iterator<Map.Entry<Long, EventBatch>> iterator = batches.entrySet().iterator();
-        while (iterator.hasNext()) {
-            EventBatch batch = iterator.next().getValue();
-            if (batch.isTimedout(eventBatchTimeout)) {
-                batch.fail();
-                timeouts.add(batch);
-                iterator.remove();
-            }
+    // returns the number of committed batches. The acked ids of a chunk are parsed into a primitive
+    // array and removed from the ack window under one lock, so parallel chunks of a channel hardly
+    // contend on it.
+    private int handleAckedIds(AckIds acked, HecChannel channel) {
+        log.debug("{} acked ids polled for channel={}", acked.count, channel);
+        if (acked.count == 0) {
+            log.debug("no ackIds are ready for channel={} on indexer={}", channel, channel.getIndexer());
+            return 0;
         }
-    }
 
-    private void handleAckPollResponse(String resp, HecChannel channel) {
-        log.debug("ackPollResponse={}, channel={}", resp, channel);
-        HecAckPollResponse ackPollResult;
-        try {
-            ackPollResult = jsonMapper.readValue(resp, HecAckPollResponse.class);
-        } catch (Exception ex) {
-            log.error("failed to handle ack polled result", ex);
-            return;
+        List<EventBatch> committedBatches = new ArrayList<>(acked.count);
+        AckWindow channelBatches = outstandingEventBatches.get(channel);
+        int removed = channelBatches.removeAll(acked.ids, acked.count, committedBatches);
+        if (removed < acked.count) {
+            log.warn("{} acked event batches for channel={} on host={} are not in map anymore", acked.count - removed, channel, channel.getIndexer());
         }
-        handleAckPollResult(channel, ackPollResult);
-    }
-
-    private void handleAckPollResult(HecChannel channel, HecAckPollResponse result) {
-        Collection<Long> ids = result.getSuccessIds();
-        if (ids.isEmpty()) {
-            log.info("no ackIds are ready for channel={} on indexer={}", channel, channel.getIndexer());
-            return;
+        if (committedBatches.isEmpty()) {
+            return 0;
         }
 
-        log.info("polled {} acks for channel={} on indexer={}", ids.size(), channel, channel.getIndexer());
-
-        List<EventBatch> committedBatches = new ArrayList<>();
-        ConcurrentHashMap<Long, EventBatch> channelBatches = outstandingEventBatches.get(channel);
-        for (Long id: ids) {
-            EventBatch batch = channelBatches.remove(id);
-            if (batch == null) {
-                log.warn("event batch id={} for channel={} on host={} is not in map anymore", id, channel, channel.getIndexer());
-                continue;
-            }
-            totalOutstandingEventBatches.decrementAndGet();
+        long now = System.currentTimeMillis();
+        for (EventBatch batch: committedBatches) {
             batch.commit();
-            committedBatches.add(batch);
+            channel.recordAckLatency(now - batch.getSendTimestamp());
         }
 
+        log.debug("polled {} acks for channel={} on indexer={}", committedBatches.size(), channel, channel.getIndexer());
+        totalOutstandingEventBatches.addAndGet(-committedBatches.size());
+        channel.releaseBatches(committedBatches.size());
         if (!committedBatches.isEmpty() && pollerCallback != null) {
             pollerCallback.onEventCommitted(committedBatches);
         }
+        return committedBatches.size();
     }
 
-    private static HttpUriRequest createAckPollHttpRequest(HecChannel ch, Set<Long> ids) {
-        // Prepare the payload
-        String ackIds;
-        Map<String, Object> json = new HashMap<>();
-        try {
-            json.put("acks", ids);
-            ackIds = jsonMapper.writeValueAsString(json);
-        } catch (JsonProcessingException ex) {
-            log.error("failed to create ack poll request", ex);
-            return null;
+    private static final class AckIds implements LongConsumer {
+        private long[] ids;
+        private int count;
+
+        AckIds(int capacity) {
+            ids = new long[Math.max(capacity, 1)];
         }
 
+        @Override
+        public void accept(long id) {
+            if (count == ids.length) {
+                ids = Arrays.copyOf(ids, count * 2);
+            }
+            ids[count++] = id;
+        }
+    }
+
+    static HttpUriRequest createAckPollHttpRequest(HecChannel ch, String ackIds) {
         log.debug("acks={} channel={} indexer={}", ackIds, ch, ch.getIndexer());
 
         StringEntity entity = null;
@@ -19,14 +19,26 @@ import org.apache.http.client.methods.HttpUriRequest;
 
 import java.util.HashMap;
 import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
 
 final class HecChannel {
     private String id;
     private Map<String, String> chField;
     private IndexerInf indexer;
+    private AtomicInteger outstandingBatches = new AtomicInteger(0); // sent but not yet committed or failed
+    private volatile double latency; // EWMA of event POST latency in milli-seconds
+    private volatile double ackLatency; // EWMA of the time from POST to ack in milli-seconds
+    private volatile double weight = 1; // share of the traffic relative to the other channels
+
+    private static final double latencyDecay = 0.2; // weight of the newest latency sample
 
     public HecChannel(IndexerInf idx) {
-        id = newChannelId();
+        this(idx, newChannelId());
+    }
+
+    // reuses the id of a former channel, Splunk keeps the acks by channel id
+    public HecChannel(IndexerInf idx, String id) {
+        this.id = id;
         indexer = idx;
     }
 
@@ -38,6 +50,15 @@ final class HecChannel {
         return id;
     }
 
+    public HecChannel setWeight(double weight) {
+        this.weight = weight;
+        return this;
+    }
+
+    public double getWeight() {
+        return weight;
+    }
+
     public HecChannel setTracking(boolean trackChannel) {
         if (trackChannel) {
             enableTracking();
@@ -52,18 +73,56 @@ final class HecChannel {
         if (chField != null) {
             batch.addExtraFields(chField);
         }
+        outstandingBatches.incrementAndGet();
+        batch.setLastIndexer(indexer.getBaseUrl());
         indexer.send(batch);
     }
 
+    // pollers release batches when they are committed, failed or timed out
+    public void releaseBatches(int count) {
+        outstandingBatches.addAndGet(-count);
+    }
+
+    public int getOutstandingBatches() {
+        return outstandingBatches.get();
+    }
+
+    // concurrent updates may drop a sample now and then which is fine for an average
+    public void recordLatency(long ms) {
+        latency = ewma(latency, ms);
+    }
+
+    // EWMA of event POST latency in milli-seconds, 0 until the first sample
+    public double getLatency() {
+        return latency;
+    }
+
+    public void recordAckLatency(long ms) {
+        ackLatency = ewma(ackLatency, ms);
+    }
+
+    // EWMA of the time from POST to ack in milli-seconds, 0 until the first sample
+    public double getAckLatency() {
+        return ackLatency;
+    }
+
     // for convenience
     public String executeHttpRequest(final HttpUriRequest req) {
         return indexer.executeHttpRequest(req);
     }
 
+    public <T> T executeHttpRequest(final HttpUriRequest req, final EntityReader<T> reader) {
+        return indexer.executeHttpRequest(req, reader);
+    }
+
     public boolean hasBackPressure() {
         return indexer.hasBackPressure();
     }
 
+    public boolean isRampingUp() {
+        return indexer.isRampingUp();
+    }
+
     @Override
     public boolean equals(Object obj) {
         if (obj == null) {
@@ -100,6 +159,13 @@ final class HecChannel {
         return this;
     }
 
+    private static double ewma(double current, long sample) {
+        if (current == 0) {
+            return sample;
+        }
+        return current + latencyDecay * (sample - current);
+    }
+
     private static String newChannelId() {
         return java.util.UUID.randomUUID().toString();
     }
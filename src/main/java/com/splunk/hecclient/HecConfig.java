@@ -15,7 +15,12 @@
  */
 package com.splunk.hecclient;
 
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
 
 public final class HecConfig {
 
@@ -27,9 +32,33 @@ public final class HecConfig {
     private int totalChannels = 2;
     private int eventBatchTimeout = 60 * 2; // in seconds
     private int ackPollInterval = 10; // in seconds
+    private int ackPollMinInterval = 1; // in seconds
     private int ackPollThreads = 2;
+    private int ackPollChunkSize = 1000;
+    private int ackPollMaxHttpConnection = 2; // per indexer
     private int socketTimeout = 60; // in seconds
     private int socketSendBufferSize = 8 * 1024 * 1024; // in byte
+    private int connectionTimeToLive = -1; // in seconds
+    private int idleConnectionTimeout = -1; // in seconds
+    private int dnsCacheTtl = -1; // in seconds
+    private String loadBalancerPolicy = LoadBalancer.ROUND_ROBIN;
+    private int healthCheckInterval = -1; // in seconds
+    private int healthCheckFailureThreshold = 3;
+    private String indexerDiscovery;
+    private int indexerDiscoveryInterval = 60; // in seconds
+    private Map<String, Integer> uriWeights = new HashMap<>();
+    private int backoffInitial = 1; // in seconds
+    private int backoffMax = 60; // in seconds
+    private int backoffRampPeriod = 10; // in seconds
+    private int channelAutoScaleInterval = -1; // in seconds, disabled by default
+    private int channelAutoScaleMin = -1; // channels per indexer, -1 keeps the initial channels
+    private int channelAutoScaleMax = 8; // channels per indexer
+    private int channelAutoScaleOutstandingThreshold = 50; // outstanding batches per channel
+    private int channelAutoScaleAckLatencyThreshold = -1; // in seconds
+    private boolean stickyPartitions = false;
+    // channel ids to reuse by uri, e.g. the ones of the Hec before a restart. Hecs sharing this config
+    // take them in turn, so no id is used twice
+    private Map<String, Queue<String>> channelIds = new ConcurrentHashMap<>();
     private boolean enableChannelTracking = false;
     private boolean hasCustomTrustStore = false;
     private String trustStorePath;
@@ -64,6 +93,84 @@ public final class HecConfig {
         return socketSendBufferSize;
     }
 
+    public int getConnectionTimeToLive() {
+        return connectionTimeToLive;
+    }
+
+    public int getIdleConnectionTimeout() {
+        return idleConnectionTimeout;
+    }
+
+    public int getDnsCacheTtl() {
+        return dnsCacheTtl;
+    }
+
+    public String getLoadBalancerPolicy() {
+        return loadBalancerPolicy;
+    }
+
+    public int getHealthCheckInterval() {
+        return healthCheckInterval;
+    }
+
+    public int getHealthCheckFailureThreshold() {
+        return healthCheckFailureThreshold;
+    }
+
+    public String getIndexerDiscovery() {
+        return indexerDiscovery;
+    }
+
+    public int getIndexerDiscoveryInterval() {
+        return indexerDiscoveryInterval;
+    }
+
+    public Map<String, Integer> getUriWeights() {
+        return uriWeights;
+    }
+
+    public int getBackoffInitial() {
+        return backoffInitial;
+    }
+
+    public int getBackoffMax() {
+        return backoffMax;
+    }
+
+    public int getBackoffRampPeriod() {
+        return backoffRampPeriod;
+    }
+
+    public int getChannelAutoScaleInterval() {
+        return channelAutoScaleInterval;
+    }
+
+    public int getChannelAutoScaleMin() {
+        return channelAutoScaleMin;
+    }
+
+    public int getChannelAutoScaleMax() {
+        return channelAutoScaleMax;
+    }
+
+    public int getChannelAutoScaleOutstandingThreshold() {
+        return channelAutoScaleOutstandingThreshold;
+    }
+
+    public int getChannelAutoScaleAckLatencyThreshold() {
+        return channelAutoScaleAckLatencyThreshold;
+    }
+
+    public boolean getStickyPartitions() {
+        return stickyPartitions;
+    }
+
+    // uris without a weight have weight 1
+    public int getUriWeight(String uri) {
+        Integer weight = uriWeights.get(uri);
+        return weight == null ? 1 : weight;
+    }
+
     public int getMaxHttpConnectionPerChannel() {
         return maxHttpConnectionPerChannel;
     }
@@ -76,10 +183,22 @@ public final class HecConfig {
         return ackPollInterval;
     }
 
+    public int getAckPollMinInterval() {
+        return ackPollMinInterval;
+    }
+
     public int getAckPollThreads() {
         return ackPollThreads;
     }
 
+    public int getAckPollChunkSize() {
+        return ackPollChunkSize;
+    }
+
+    public int getAckPollMaxHttpConnection() {
+        return ackPollMaxHttpConnection;
+    }
+
     public int getTotalChannels() {
         return totalChannels;
     }
@@ -115,6 +234,112 @@ public final class HecConfig {
         return this;
     }
 
+    public HecConfig setConnectionTimeToLive(int ttl /*seconds*/) {
+        connectionTimeToLive = ttl;
+        return this;
+    }
+
+    public HecConfig setIdleConnectionTimeout(int timeout /*seconds*/) {
+        idleConnectionTimeout = timeout;
+        return this;
+    }
+
+    public HecConfig setDnsCacheTtl(int ttl /*seconds*/) {
+        dnsCacheTtl = ttl;
+        return this;
+    }
+
+    public HecConfig setLoadBalancerPolicy(String policy) {
+        loadBalancerPolicy = policy;
+        return this;
+    }
+
+    public HecConfig setHealthCheckInterval(int interval /*seconds*/) {
+        healthCheckInterval = interval;
+        return this;
+    }
+
+    public HecConfig setHealthCheckFailureThreshold(int threshold) {
+        healthCheckFailureThreshold = threshold;
+        return this;
+    }
+
+    // discovery is file:/path, dns:https://host:port or srv:https://_service._tcp.domain
+    public HecConfig setIndexerDiscovery(String discovery) {
+        indexerDiscovery = discovery;
+        return this;
+    }
+
+    public HecConfig setIndexerDiscoveryInterval(int interval /*seconds*/) {
+        indexerDiscoveryInterval = interval;
+        return this;
+    }
+
+    public HecConfig setBackoffInitial(int backoff /*seconds*/) {
+        backoffInitial = backoff;
+        return this;
+    }
+
+    public HecConfig setBackoffMax(int backoff /*seconds*/) {
+        backoffMax = backoff;
+        return this;
+    }
+
+    public HecConfig setBackoffRampPeriod(int period /*seconds*/) {
+        backoffRampPeriod = period;
+        return this;
+    }
+
+    public HecConfig setChannelAutoScaleInterval(int interval /*seconds*/) {
+        channelAutoScaleInterval = interval;
+        return this;
+    }
+
+    public HecConfig setChannelAutoScaleMin(int channels) {
+        channelAutoScaleMin = channels;
+        return this;
+    }
+
+    public HecConfig setChannelAutoScaleMax(int channels) {
+        channelAutoScaleMax = channels;
+        return this;
+    }
+
+    public HecConfig setChannelAutoScaleOutstandingThreshold(int batches) {
+        channelAutoScaleOutstandingThreshold = batches;
+        return this;
+    }
+
+    public HecConfig setChannelAutoScaleAckLatencyThreshold(int latency /*seconds*/) {
+        channelAutoScaleAckLatencyThreshold = latency;
+        return this;
+    }
+
+    public HecConfig setStickyPartitions(boolean sticky) {
+        stickyPartitions = sticky;
+        return this;
+    }
+
+    public HecConfig setChannelIds(Map<String, List<String>> ids) {
+        channelIds = new ConcurrentHashMap<>();
+        for (Map.Entry<String, List<String>> entry: ids.entrySet()) {
+            channelIds.put(entry.getKey(), new ConcurrentLinkedQueue<>(entry.getValue()));
+        }
+        return this;
+    }
+
+    // returns a channel id to reuse for the uri or null, every id is handed out once
+    String takeChannelId(String uri) {
+        Queue<String> ids = channelIds.get(uri);
+        return ids == null ? null : ids.poll();
+    }
+
+    // weights are relative capacities of the indexers, uri to positive weight
+    public HecConfig setUriWeights(Map<String, Integer> weights) {
+        uriWeights = weights;
+        return this;
+    }
+
     public HecConfig setMaxHttpConnectionPerChannel(int poolSize) {
         maxHttpConnectionPerChannel = poolSize;
         return this;
@@ -130,11 +355,26 @@ public final class HecConfig {
         return this;
     }
 
+    public HecConfig setAckPollMinInterval(int interval /*seconds*/) {
+        ackPollMinInterval = interval;
+        return this;
+    }
+
     public HecConfig setAckPollThreads(int num) {
         ackPollThreads = num;
         return this;
     }
 
+    public HecConfig setAckPollChunkSize(int size) {
+        ackPollChunkSize = size;
+        return this;
+    }
+
+    public HecConfig setAckPollMaxHttpConnection(int connections /*per indexer*/) {
+        ackPollMaxHttpConnection = connections;
+        return this;
+    }
+
     public HecConfig setTotalChannels(int channels) {
         totalChannels = channels;
         return this;
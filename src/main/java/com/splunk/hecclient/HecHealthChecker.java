@@ -0,0 +1,149 @@
+/*
+ * Copyright 2017 Splunk, Inc..
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.splunk.hecclient;
+
+import org.apache.http.client.config.RequestConfig;
+import org.apache.http.client.methods.CloseableHttpResponse;
+import org.apache.http.client.methods.HttpGet;
+import org.apache.http.impl.client.CloseableHttpClient;
+import org.apache.http.util.EntityUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+// HecHealthChecker periodically probes /services/collector/health on every registered indexer
+// and feeds the result into the indexer's CircuitBreaker, so traffic drains away from a degraded
+// indexer before event batches start failing. Probes for different indexers run in parallel and
+// a probe is skipped while the previous one for the same indexer is still outstanding.
+final class HecHealthChecker {
+    private static final Logger log = LoggerFactory.getLogger(HecHealthChecker.class);
+
+    static final String healthEndpoint = "/services/collector/health";
+    private static final int maxProbeThreads = 4;
+
+    private final CloseableHttpClient httpClient;
+    private final int interval; // in seconds
+    private final int failureThreshold;
+    private final RequestConfig requestConfig;
+    private final ConcurrentHashMap<String, CircuitBreaker> breakers;
+    private final Set<String> probing;
+    private final AtomicBoolean started;
+    private ScheduledThreadPoolExecutor scheduler;
+    private ExecutorService executorService;
+
+    HecHealthChecker(CloseableHttpClient client, int interval /* seconds */, int failureThreshold) {
+        this.httpClient = client;
+        this.interval = interval;
+        this.failureThreshold = failureThreshold;
+        this.breakers = new ConcurrentHashMap<>();
+        this.probing = ConcurrentHashMap.newKeySet();
+        this.started = new AtomicBoolean(false);
+
+        // a hung indexer must not hold the probe longer than one interval
+        int timeout = interval * 1000;
+        this.requestConfig = RequestConfig.custom()
+                .setConnectTimeout(timeout)
+                .setConnectionRequestTimeout(timeout)
+                .setSocketTimeout(timeout)
+                .build();
+    }
+
+    // returns the breaker shared by every channel of the indexer uri
+    CircuitBreaker register(String uri) {
+        return breakers.computeIfAbsent(uri, u -> new CircuitBreaker(u, failureThreshold, failureThreshold));
+    }
+
+    void unregister(String uri) {
+        breakers.remove(uri);
+    }
+
+    void start() {
+        if (!started.compareAndSet(false, true)) {
+            return;
+        }
+
+        ThreadFactory f = (Runnable r) -> new Thread(r, "HEC-health-checker-scheduler");
+        scheduler = new ScheduledThreadPoolExecutor(1, f);
+        scheduler.setExecuteExistingDelayedTasksAfterShutdownPolicy(false);
+        scheduler.setContinueExistingPeriodicTasksAfterShutdownPolicy(false);
+        scheduler.scheduleWithFixedDelay(this::checkAll, interval, interval, TimeUnit.SECONDS);
+
+        ThreadFactory e = (Runnable r) -> new Thread(r, "HEC-health-checker");
+        executorService = Executors.newFixedThreadPool(maxProbeThreads, e);
+    }
+
+    void stop() {
+        if (!started.compareAndSet(true, false)) {
+            return;
+        }
+
+        scheduler.shutdownNow();
+        executorService.shutdownNow();
+    }
+
+    private void checkAll() {
+        for (Map.Entry<String, CircuitBreaker> entry: breakers.entrySet()) {
+            String uri = entry.getKey();
+            if (!probing.add(uri)) {
+                log.warn("previous health probe for indexer={} is still outstanding", uri);
+                continue;
+            }
+
+            try {
+                executorService.submit(() -> {
+                    try {
+                        check(uri, entry.getValue());
+                    } finally {
+                        probing.remove(uri);
+                    }
+                });
+            } catch (RejectedExecutionException ex) {
+                probing.remove(uri);
+            }
+        }
+    }
+
+    void check(String uri, CircuitBreaker breaker) {
+        if (probe(uri)) {
+            breaker.recordSuccess();
+        } else {
+            breaker.recordFailure();
+        }
+    }
+
+    // returns true if the indexer reports HEC is healthy
+    boolean probe(String uri) {
+        HttpGet req = new HttpGet(uri + healthEndpoint);
+        req.setConfig(requestConfig);
+        try (CloseableHttpResponse resp = httpClient.execute(req)) {
+            int status = resp.getStatusLine().getStatusCode();
+            // HEC answers 503 with "HEC is unhealthy, queues are full" when it is overloaded
+            String payload = resp.getEntity() != null ? EntityUtils.toString(resp.getEntity(), "utf-8") : "";
+            if (status != 200) {
+                log.warn("health probe for indexer={} failed, status={}, resp={}", uri, status, payload);
+                return false;
+            }
+            return true;
+        } catch (Exception ex) {
+            log.warn("health probe for indexer={} failed", uri, ex);
+            return false;
+        }
+    }
+}
@@ -15,7 +15,15 @@
  */
 package com.splunk.hecclient;
 
+import java.util.Collections;
+import java.util.List;
+
 public interface HecInf {
     void send(final EventBatch batch);
     void close();
+
+    // the outstanding acks of every channel, empty without acknowledgement
+    default List<ChannelAckState> getOutstandingAcks() {
+        return Collections.emptyList();
+    }
 }
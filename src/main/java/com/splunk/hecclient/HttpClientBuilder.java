@@ -15,27 +15,54 @@
  */
 package com.splunk.hecclient;
 
+import org.apache.http.HttpResponse;
 import org.apache.http.client.config.CookieSpecs;
 import org.apache.http.client.config.RequestConfig;
+import org.apache.http.config.Registry;
+import org.apache.http.config.RegistryBuilder;
 import org.apache.http.config.SocketConfig;
+import org.apache.http.client.protocol.HttpClientContext;
+import org.apache.http.conn.ConnectionKeepAliveStrategy;
+import org.apache.http.conn.DnsResolver;
+import org.apache.http.conn.ManagedHttpClientConnection;
+import org.apache.http.conn.routing.HttpRoute;
+import org.apache.http.conn.socket.ConnectionSocketFactory;
+import org.apache.http.conn.socket.PlainConnectionSocketFactory;
 import org.apache.http.conn.ssl.SSLConnectionSocketFactory;
-import org.apache.http.conn.ssl.TrustStrategy;
 import org.apache.http.impl.client.CloseableHttpClient;
+import org.apache.http.impl.client.DefaultConnectionKeepAliveStrategy;
 import org.apache.http.impl.client.HttpClients;
-import org.apache.http.ssl.SSLContextBuilder;
+import org.apache.http.impl.conn.PoolingHttpClientConnectionManager;
+import org.apache.http.pool.ConnPoolControl;
+import org.apache.http.protocol.HttpContext;
+import org.apache.commons.lang3.StringUtils;
 
 import javax.net.ssl.HostnameVerifier;
 import javax.net.ssl.SSLContext;
 import javax.net.ssl.SSLSession;
-import java.security.cert.X509Certificate;
+import javax.net.ssl.SSLSocket;
+import javax.net.ssl.SSLSocketFactory;
+import java.io.IOException;
+import java.net.Socket;
+import java.nio.ByteBuffer;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.WeakHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
 
 public final class HttpClientBuilder {
     private int maxConnectionPoolSizePerDestination = 4;
     private int maxConnectionPoolSize = 4 * 2;
     private int socketTimeout = 60; // in seconds
     private int socketSendBufferSize = 8 * 1024 * 1024; // in bytes
+    private int connectionTimeToLive = -1; // in seconds, -1 keeps connections forever
+    private int idleConnectionTimeout = -1; // in seconds, -1 disables idle eviction
+    private int dnsCacheTtl = -1; // in seconds, -1 uses the system resolver
     private boolean disableSSLCertVerification = false;
     private SSLContext sslContext = null;
+    private PoolingHttpClientConnectionManager connectionManager; // of the client built last
 
     public HttpClientBuilder setMaxConnectionPoolSizePerDestination(int connections) {
         this.maxConnectionPoolSizePerDestination = connections;
@@ -57,6 +84,21 @@ public final class HttpClientBuilder {
         return this;
     }
 
+    public HttpClientBuilder setConnectionTimeToLive(int ttl /*seconds*/) {
+        this.connectionTimeToLive = ttl;
+        return this;
+    }
+
+    public HttpClientBuilder setIdleConnectionTimeout(int timeout /*seconds*/) {
+        this.idleConnectionTimeout = timeout;
+        return this;
+    }
+
+    public HttpClientBuilder setDnsCacheTtl(int ttl /*seconds*/) {
+        this.dnsCacheTtl = ttl;
+        return this;
+    }
+
     public HttpClientBuilder setDisableSSLCertVerification(boolean disableVerification) {
         disableSSLCertVerification = disableVerification;
         return this;
@@ -68,7 +110,6 @@ public final class HttpClientBuilder {
     }
 
     public CloseableHttpClient build() {
-        SSLConnectionSocketFactory sslFactory = getSSLConnectionFactory();
         SocketConfig config = SocketConfig.custom()
                 .setSndBufSize(socketSendBufferSize)
                 .setSoTimeout(socketTimeout * 1000)
@@ -77,14 +118,46 @@ public final class HttpClientBuilder {
                 .setCookieSpec(CookieSpecs.STANDARD)
                 .build();
 
-        return HttpClients.custom()
-                .useSystemProperties()
-                .setSSLSocketFactory(sslFactory)
-                .setMaxConnPerRoute(maxConnectionPoolSizePerDestination)
-                .setMaxConnTotal(maxConnectionPoolSize)
-                .setDefaultSocketConfig(config)
-                .setDefaultRequestConfig(requestConfig)
+        // the pool is built here rather than by HttpClients, so its size can be changed later on
+        Registry<ConnectionSocketFactory> registry = RegistryBuilder.<ConnectionSocketFactory>create()
+                .register("http", PlainConnectionSocketFactory.getSocketFactory())
+                .register("https", getSSLConnectionFactory())
                 .build();
+        DnsResolver dnsResolver = dnsCacheTtl > 0 ? new RoundRobinDnsResolver(dnsCacheTtl * 1000L) : null;
+        JitteredTimeToLive timeToLive = null;
+        long maxTtl = -1;
+        if (connectionTimeToLive > 0) {
+            // recycle connections which are older than ttl so a VIP gets a chance to rebalance them. The
+            // pool's ttl only caps the jittered one of each connection
+            timeToLive = new JitteredTimeToLive(connectionTimeToLive * 1000L);
+            maxTtl = timeToLive.getMaxTimeToLive();
+        }
+        connectionManager = new PoolingHttpClientConnectionManager(registry, null, null, dnsResolver, maxTtl,
+                TimeUnit.MILLISECONDS);
+        connectionManager.setDefaultSocketConfig(config);
+        connectionManager.setDefaultMaxPerRoute(maxConnectionPoolSizePerDestination);
+        connectionManager.setMaxTotal(maxConnectionPoolSize);
+
+        org.apache.http.impl.client.HttpClientBuilder builder = HttpClients.custom()
+                .useSystemProperties()
+                .setConnectionManager(connectionManager)
+                .setDefaultRequestConfig(requestConfig);
+
+        if (timeToLive != null) {
+            builder.setKeepAliveStrategy(timeToLive)
+                    .evictExpiredConnections();
+        }
+
+        if (idleConnectionTimeout > 0) {
+            builder.evictIdleConnections(idleConnectionTimeout, TimeUnit.SECONDS);
+        }
+
+        return builder.build();
+    }
+
+    // the connection pool of the client built last, to resize it while the client is in use
+    ConnPoolControl<HttpRoute> getConnectionPool() {
+        return connectionManager;
     }
 
     private SSLConnectionSocketFactory getSSLConnectionFactory() {
@@ -96,13 +169,6 @@ public final class HttpClientBuilder {
     }
 
     private SSLConnectionSocketFactory getUnsecureSSLConnectionSocketFactory() {
-        TrustStrategy trustStrategy = new TrustStrategy() {
-            @Override
-            public boolean isTrusted(X509Certificate[] chain, String authType) {
-                return true;
-            }
-        };
-
         HostnameVerifier hostnameVerifier = new HostnameVerifier() {
             @Override
             public boolean verify(String hostname, SSLSession session) {
@@ -110,20 +176,115 @@ public final class HttpClientBuilder {
             }
         };
 
-        try {
-            this.sslContext = new SSLContextBuilder().loadTrustMaterial(trustStrategy).build();
-        } catch (Exception ex) {
-            throw new HecException("failed to create SSL connection factory", ex);
-        }
-
-        return new SSLConnectionSocketFactory(this.sslContext, hostnameVerifier);
+        // share one trust-all context JVM wide so TLS sessions can be resumed across clients
+        this.sslContext = SSLContextCache.getUnsecure();
+        return new MeteredSSLConnectionSocketFactory(this.sslContext.getSocketFactory(), hostnameVerifier);
     }
 
     private SSLConnectionSocketFactory getSecureSSLConnectionFactory() {
         if (this.sslContext == null) {
-            return null; // use system default one
+            // system default context, the same as HttpClients.useSystemProperties() would build
+            return new MeteredSSLConnectionSocketFactory(
+                    (SSLSocketFactory) SSLSocketFactory.getDefault(),
+                    split(System.getProperty("https.protocols")),
+                    split(System.getProperty("https.cipherSuites")),
+                    SSLConnectionSocketFactory.getDefaultHostnameVerifier());
         } else {
-            return new SSLConnectionSocketFactory(this.sslContext);
+            return new MeteredSSLConnectionSocketFactory(this.sslContext.getSocketFactory(),
+                    SSLConnectionSocketFactory.getDefaultHostnameVerifier());
+        }
+    }
+
+    private static String[] split(final String s) {
+        if (StringUtils.isBlank(s)) {
+            return null;
+        }
+        return s.split(" *, *");
+    }
+
+    // JitteredTimeToLive gives every connection a time to live of its own, the configured ttl plus up to
+    // 20% jitter, so connections opened together don't reconnect in lockstep. The pool expires a released
+    // connection once the keep alive returned here passed, the server's keep alive still applies when shorter.
+    // A connection's ttl starts when it is released first, which is right after its first request.
+    static final class JitteredTimeToLive implements ConnectionKeepAliveStrategy {
+        private final long ttl; // in milli-seconds
+        private final Map<Socket, Long> deadlines = Collections.synchronizedMap(new WeakHashMap<>());
+
+        JitteredTimeToLive(long ttl) {
+            this.ttl = ttl;
+        }
+
+        long getMaxTimeToLive() {
+            return ttl + ttl / 5;
+        }
+
+        @Override
+        public long getKeepAliveDuration(HttpResponse response, HttpContext context) {
+            long keepAlive = DefaultConnectionKeepAliveStrategy.INSTANCE.getKeepAliveDuration(response, context);
+            ManagedHttpClientConnection conn = HttpClientContext.adapt(context).getConnection(ManagedHttpClientConnection.class);
+            Socket socket = conn != null && conn.isOpen() ? conn.getSocket() : null;
+            if (socket == null) {
+                return keepAlive;
+            }
+
+            long remaining = remainingTimeToLive(socket, System.currentTimeMillis());
+            return keepAlive > 0 ? Math.min(keepAlive, remaining) : remaining;
+        }
+
+        // the time the connection of the socket has left, at least 1 ms as 0 keeps a connection forever
+        long remainingTimeToLive(Socket socket, long now) {
+            long deadline = deadlines.computeIfAbsent(socket,
+                    k -> now + ttl + ThreadLocalRandom.current().nextLong(ttl / 5 + 1));
+            return Math.max(deadline - now, 1);
+        }
+    }
+
+    // MeteredSSLConnectionSocketFactory records latency of each TLS handshake and whether
+    // the handshake resumed a cached session
+    private static final class MeteredSSLConnectionSocketFactory extends SSLConnectionSocketFactory {
+        private final SessionIds sessionIds = new SessionIds();
+
+        MeteredSSLConnectionSocketFactory(SSLSocketFactory factory, HostnameVerifier verifier) {
+            super(factory, verifier);
+        }
+
+        MeteredSSLConnectionSocketFactory(SSLSocketFactory factory, String[] protocols, String[] cipherSuites,
+                                          HostnameVerifier verifier) {
+            super(factory, protocols, cipherSuites, verifier);
+        }
+
+        @Override
+        public Socket createLayeredSocket(Socket socket, String target, int port, HttpContext context) throws IOException {
+            long start = System.nanoTime();
+            Socket sock = super.createLayeredSocket(socket, target, port, context);
+            long latency = (System.nanoTime() - start) / 1000;
+
+            if (sock instanceof SSLSocket) {
+                SSLSession session = ((SSLSocket) sock).getSession();
+                SSLHandshakeMetrics.record(latency, sessionIds.add(session.getId()));
+            }
+            return sock;
+        }
+    }
+
+    // SessionIds remembers the ids of the latest TLS sessions a client established. A handshake
+    // resumed a session when it ends up with the id of an earlier one.
+    static final class SessionIds {
+        private static final int maxIds = 4096;
+
+        private final Map<ByteBuffer, Boolean> ids = new LinkedHashMap<ByteBuffer, Boolean>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<ByteBuffer, Boolean> eldest) {
+                return size() > maxIds;
+            }
+        };
+
+        // returns true if the session id was seen before, sessions without an id never resume
+        synchronized boolean add(byte[] id) {
+            if (id == null || id.length == 0) {
+                return false;
+            }
+            return ids.put(ByteBuffer.wrap(id.clone()), Boolean.TRUE) != null;
         }
     }
 }
@@ -17,11 +17,14 @@ package com.splunk.hecclient;
 
 import org.apache.http.Header;
 import org.apache.http.HttpEntity;
+import org.apache.http.client.CookieStore;
 import org.apache.http.client.methods.CloseableHttpResponse;
 import org.apache.http.client.methods.HttpUriRequest;
 import org.apache.http.client.protocol.HttpClientContext;
+import org.apache.http.client.utils.DateUtils;
 import org.apache.http.impl.client.CloseableHttpClient;
 import org.apache.http.client.methods.HttpPost;
+import org.apache.http.impl.client.BasicCookieStore;
 import org.apache.http.message.BasicHeader;
 import org.apache.http.protocol.HttpContext;
 import org.apache.http.util.EntityUtils;
@@ -29,32 +32,56 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.io.IOException;
+import java.util.Date;
+import java.util.concurrent.ThreadLocalRandom;
 
+// Indexer posts event batches through a single synchronized lane on httpClient. Ack polls take a
+// lane of their own on ackHttpClient, which runs concurrently with the POSTs, so acks don't queue
+// behind large uploads. Both lanes share one cookie store to stick to the same indexer behind a
+// load balancer.
 final class Indexer implements IndexerInf {
     private static final Logger log = LoggerFactory.getLogger(Indexer.class);
 
     private CloseableHttpClient httpClient;
+    private CloseableHttpClient ackHttpClient;
     private HttpContext context;
+    private CookieStore cookieStore;
     private String baseUrl;
     private String hecToken;
     private boolean keepAlive;
     private HecChannel channel;
     private Header[] headers;
     private Poller poller;
-    private long backPressure;
-    private long lastBackPressure;
-    private long backPressureThreshhold = 60 * 1000; // 1 min
+    // back pressure state is written under backPressureLock and read lock free by the load balancer
+    private final Object backPressureLock = new Object();
+    private volatile int backPressure; // consecutive back pressure signals, reset by a success
+    private volatile long lastBackPressure;
+    private volatile double backPressureJitter = 1;
+    private volatile long retryAfter; // in milli-seconds, 0 if the indexer did not send Retry-After
+    private volatile long rampStart; // end of the last back-off window, traffic ramps up from here
+    private long backPressureThreshhold = 1000; // initial back-off, in milli-seconds
+    private long maxBackPressureThreshhold = 60 * 1000; // 1 min
+    private long rampPeriod = 0; // in milli-seconds, 0 disables ramping
+    private CircuitBreaker circuitBreaker; // null when health checking is disabled
 
-    // Indexer doesn't own client, ack poller
+    // Indexer doesn't own client, ack poller. Ack polls share client until setAckHttpClient.
     public Indexer(String baseUrl, String hecToken, CloseableHttpClient client, Poller poller) {
+        this(baseUrl, hecToken, client, poller, null);
+    }
+
+    // channelId is the id of the indexer's channel, a new one if null
+    public Indexer(String baseUrl, String hecToken, CloseableHttpClient client, Poller poller, String channelId) {
         this.httpClient = client;
+        this.ackHttpClient = client;
         this.baseUrl = baseUrl;
         this.hecToken = hecToken;
         this.poller = poller;
-        this.context = HttpClientContext.create();
-        backPressure = 0;
+        this.cookieStore = new BasicCookieStore();
+        HttpClientContext ctx = HttpClientContext.create();
+        ctx.setCookieStore(cookieStore);
+        this.context = ctx;
 
-        channel = new HecChannel(this);
+        channel = channelId == null ? new HecChannel(this) : new HecChannel(this, channelId);
 
         // Init headers
         headers = new Header[3];
@@ -65,11 +92,38 @@ final class Indexer implements IndexerInf {
         setKeepAlive(true);
     }
 
+    // initial back-off, it doubles with every consecutive back pressure up to the max
     public Indexer setBackPressureThreshhold(long threshhold /* milli-seconds */) {
         backPressureThreshhold = threshhold;
         return this;
     }
 
+    public Indexer setMaxBackPressureThreshhold(long threshhold /* milli-seconds */) {
+        maxBackPressureThreshhold = threshhold;
+        return this;
+    }
+
+    // after a back-off the share of traffic grows linearly from 10% to 100% over the ramp period
+    public Indexer setRampPeriod(long period /* milli-seconds */) {
+        rampPeriod = period;
+        return this;
+    }
+
+    // the connection pool for ack polls, Indexer doesn't own it either
+    public Indexer setAckHttpClient(CloseableHttpClient client) {
+        ackHttpClient = client;
+        return this;
+    }
+
+    Indexer setCircuitBreaker(CircuitBreaker breaker) {
+        circuitBreaker = breaker;
+        return this;
+    }
+
+    CircuitBreaker getCircuitBreaker() {
+        return circuitBreaker;
+    }
+
     public Indexer setKeepAlive(boolean keepAlive) {
         if (this.keepAlive == keepAlive) {
             return this;
@@ -115,13 +169,15 @@ final class Indexer implements IndexerInf {
         httpPost.setHeaders(headers);
         httpPost.setEntity(batch.getHttpEntity());
 
-        String resp;
+        PostResponse resp;
+        long start = System.currentTimeMillis();
         try {
-            resp = executeHttpRequest(httpPost);
+            resp = executePostRequest(httpPost);
         } catch (HecException ex) {
             poller.fail(channel, batch, ex);
             return false;
         }
+        channel.recordLatency(System.currentTimeMillis() - start);
 
         // we are all good
         poller.add(channel, batch, resp);
@@ -130,26 +186,56 @@ final class Indexer implements IndexerInf {
         return true;
     }
 
-    // executeHttpRequest is synchronized since there are multi-threads to access the context
     @Override
-    public synchronized String executeHttpRequest(final HttpUriRequest req) {
-        CloseableHttpResponse resp;
+    public String executeHttpRequest(final HttpUriRequest req) {
+        return executeHttpRequest(req, entity -> EntityUtils.toString(entity, "utf-8"));
+    }
+
+    // executeHttpRequest runs ack polls on the ack lane. It takes no lock, every request gets a
+    // context of its own around the thread safe cookie store.
+    @Override
+    public <T> T executeHttpRequest(final HttpUriRequest req, final EntityReader<T> reader) {
+        HttpClientContext ackContext = HttpClientContext.create();
+        ackContext.setCookieStore(cookieStore);
+        return readAndCloseResponse(execute(ackHttpClient, req, ackContext, false), reader, false);
+    }
+
+    // executePostRequest is synchronized since there are multi-threads to access the context. It
+    // parses successful event POST responses straight from the entity stream instead of
+    // materializing the body as a String first.
+    private synchronized PostResponse executePostRequest(final HttpUriRequest req) {
+        return readAndCloseResponse(execute(httpClient, req, context, true), entity -> PostResponseParser.parse(entity.getContent()), true);
+    }
+
+    // only the POST lane tracks back pressure: Splunk keeps answering ack polls while it pushes back
+    // on event POSTs, so a successful poll must not end the back-off of the POSTs
+    private CloseableHttpResponse execute(final CloseableHttpClient client, final HttpUriRequest req, final HttpContext ctx,
+            boolean postLane) {
         try {
-            resp = httpClient.execute(req, context);
+            return client.execute(req, ctx);
         } catch (Exception ex) {
-            logBackPressure();
+            if (postLane) {
+                logBackPressure(0);
+            }
             log.error("encountered io exception", ex);
             throw new HecException("encountered exception when post data", ex);
         }
-
-        return readAndCloseResponse(resp);
     }
 
-    private String readAndCloseResponse(CloseableHttpResponse resp) {
-        String respPayload;
+    private <T> T readAndCloseResponse(CloseableHttpResponse resp, EntityReader<T> reader, boolean postLane) {
+        // log.info("event posting, channel={}, cookies={}", channel, resp.getHeaders("Set-Cookie"));
+        int status = resp.getStatusLine().getStatusCode();
+        boolean succeed = status == 200 || status == 201;
+
+        T respPayload = null;
+        String errPayload = null;
         HttpEntity entity = resp.getEntity();
         try {
-            respPayload = EntityUtils.toString(entity, "utf-8");
+            if (succeed) {
+                respPayload = reader.read(entity);
+            } else {
+                errPayload = EntityUtils.toString(entity, "utf-8");
+            }
         } catch (Exception ex) {
             log.error("failed to process http response", ex);
             throw new HecException("failed to process http response", ex);
@@ -161,31 +247,82 @@ final class Indexer implements IndexerInf {
             }
         }
 
-        // log.info("event posting, channel={}, cookies={}", channel, resp.getHeaders("Set-Cookie"));
-        int status = resp.getStatusLine().getStatusCode();
-        // FIXME 503 server is busy backpressure
-        if (status != 200 && status != 201) {
-            if (status == 503) {
-                logBackPressure();
+        if (!succeed) {
+            // 503 server is busy, 429 too many requests
+            if (postLane && (status == 503 || status == 429)) {
+                logBackPressure(parseRetryAfter(resp.getFirstHeader("Retry-After")));
             }
 
-            log.error("failed to post events resp={}, status={}", respPayload, status);
-            throw new HecException(String.format("failed to post events resp=%s, status=%d", respPayload, status));
+            log.error("failed to post events resp={}, status={}", errPayload, status);
+            throw new HecException(String.format("failed to post events resp=%s, status=%d", errPayload, status));
         }
 
-        clearBackPressure();
-
+        if (postLane) {
+            clearBackPressure();
+        }
         return respPayload;
     }
 
-    private void logBackPressure() {
-        backPressure += 1;
-        lastBackPressure = System.currentTimeMillis();
+    private void logBackPressure(long retryAfter /* milli-seconds */) {
+        synchronized (backPressureLock) {
+            // spread the retries of all clients which were pushed back at the same time
+            backPressureJitter = 0.8 + 0.4 * ThreadLocalRandom.current().nextDouble();
+            this.retryAfter = Math.min(retryAfter, maxBackPressureThreshhold);
+            lastBackPressure = System.currentTimeMillis();
+            backPressure += 1;
+        }
     }
 
     private void clearBackPressure() {
-        backPressure = 0;
-        lastBackPressure = 0;
+        if (backPressure == 0) {
+            return;
+        }
+
+        synchronized (backPressureLock) {
+            int n = backPressure;
+            if (n > 0) {
+                // ramp up from the end of the back-off window, or from now if traffic came back earlier
+                rampStart = Math.min(System.currentTimeMillis(), lastBackPressure + backPressureWindow(n));
+                backPressure = 0;
+            }
+        }
+    }
+
+    // the window is computed when it is checked, so threshold changes apply right away
+    private long backPressureWindow(int n) {
+        if (retryAfter > 0) {
+            return (long) (retryAfter * Math.max(backPressureJitter, 1));
+        }
+
+        long window = backPressureThreshhold << Math.min(n - 1, 30);
+        if (window <= 0 || window > maxBackPressureThreshhold) {
+            window = maxBackPressureThreshhold;
+        }
+        return (long) (window * backPressureJitter);
+    }
+
+    // current back-off in milli-seconds, 0 when the indexer is healthy
+    long getBackPressureWindow() {
+        int n = backPressure;
+        return n > 0 ? backPressureWindow(n) : 0;
+    }
+
+    // Retry-After is either delay seconds or an HTTP date, returns 0 if absent or invalid
+    static long parseRetryAfter(Header header) {
+        if (header == null || header.getValue() == null) {
+            return 0;
+        }
+
+        String value = header.getValue().trim();
+        try {
+            return Math.max(Long.parseLong(value) * 1000, 0);
+        } catch (NumberFormatException ex) {
+            Date date = DateUtils.parseDate(value);
+            if (date == null) {
+                return 0;
+            }
+            return Math.max(date.getTime() - System.currentTimeMillis(), 0);
+        }
     }
 
     @Override
@@ -195,15 +332,50 @@ final class Indexer implements IndexerInf {
 
     @Override
     public boolean hasBackPressure() {
-        if (backPressure > 0) {
-            if (System.currentTimeMillis() - lastBackPressure < backPressureThreshhold) {
-                // still in the backpressure window
-                return true;
-            } else {
-                clearBackPressure();
-                return false;
-            }
+        long now = System.currentTimeMillis();
+        if (inBackPressureWindow(now)) {
+            return true;
+        }
+
+        long elapsed = rampElapsed(now);
+        if (elapsed < 0) {
+            return false;
+        }
+
+        // recovering, hold back part of the traffic
+        double share = Math.max(0.1, (double) elapsed / rampPeriod);
+        return ThreadLocalRandom.current().nextDouble() >= share;
+    }
+
+    // isRampingUp tells if the indexer is out of its back-off and only sheds part of the traffic while
+    // it ramps up. The load balancer still sends to it when no other indexer takes the batch.
+    @Override
+    public boolean isRampingUp() {
+        long now = System.currentTimeMillis();
+        return !inBackPressureWindow(now) && rampElapsed(now) >= 0;
+    }
+
+    private boolean inBackPressureWindow(long now) {
+        if (circuitBreaker != null && !circuitBreaker.allowRequest()) {
+            return true;
+        }
+
+        int n = backPressure;
+        return n > 0 && now < lastBackPressure + backPressureWindow(n);
+    }
+
+    // milli-seconds into the ramp up, -1 when the indexer is not ramping up
+    private long rampElapsed(long now) {
+        long rampFrom = rampStart;
+        int n = backPressure;
+        if (n > 0) {
+            rampFrom = lastBackPressure + backPressureWindow(n);
+        }
+
+        long elapsed = now - rampFrom;
+        if (rampPeriod <= 0 || elapsed < 0 || elapsed >= rampPeriod) {
+            return -1;
         }
-        return false;
+        return elapsed;
     }
 }
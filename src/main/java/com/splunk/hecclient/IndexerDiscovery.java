@@ -0,0 +1,46 @@
+/*
+ * Copyright 2017 Splunk, Inc..
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.splunk.hecclient;
+
+import java.util.List;
+
+// IndexerDiscovery returns the current set of HEC URIs. Hec calls it periodically and adds or
+// removes channels in the live LoadBalancer when the set changes.
+//  - file:/path/to/uris               one or more URIs per line separated by comma, # comments
+//  - dns:https://hec.example.com:8088 every A/AAAA record of the host becomes one indexer
+//  - srv:https://_hec._tcp.example.com every SRV record target:port becomes one indexer
+interface IndexerDiscovery {
+    // returns the discovered URIs, an empty list or an exception keeps the current indexers
+    List<String> discover() throws Exception;
+
+    static IndexerDiscovery create(String spec) {
+        int idx = spec.indexOf(':');
+        if (idx <= 0) {
+            throw new HecException("invalid indexer discovery=" + spec + ", expect file:, dns: or srv: prefix");
+        }
+
+        String kind = spec.substring(0, idx);
+        String target = spec.substring(idx + 1);
+        if ("file".equals(kind)) {
+            return new FileIndexerDiscovery(target);
+        } else if ("dns".equals(kind)) {
+            return new DnsIndexerDiscovery(target);
+        } else if ("srv".equals(kind)) {
+            return new SrvIndexerDiscovery(target);
+        }
+        throw new HecException("invalid indexer discovery=" + spec + ", expect file:, dns: or srv: prefix");
+    }
+}
@@ -21,7 +21,13 @@ import org.apache.http.client.methods.HttpUriRequest;
 interface IndexerInf {
     boolean send(final EventBatch batch);
     String executeHttpRequest(final HttpUriRequest req);
+    <T> T executeHttpRequest(final HttpUriRequest req, final EntityReader<T> reader);
     boolean hasBackPressure();
     String getBaseUrl();
     Header[] getHeaders();
+
+    // true while the indexer only holds back part of the traffic after a back-off
+    default boolean isRampingUp() {
+        return false;
+    }
 }
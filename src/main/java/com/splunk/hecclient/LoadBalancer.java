@@ -15,55 +15,139 @@
  */
 package com.splunk.hecclient;
 
-import java.util.ArrayList;
-import java.util.Iterator;
-import java.util.List;
+import java.util.Arrays;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicReference;
 
+// LoadBalancer is lock free and multi-thread safe. Channels are kept in a copy-on-write array,
+// so send only reads a snapshot which the configured ChannelSelector picks from.
+// Adding or removing channels is rare compared to sending and pays for the copy instead.
+// A failed batch is retried on a channel of another indexer than the one it failed on, if any.
 public final class LoadBalancer implements LoadBalancerInf {
-    private List<HecChannel> channels;
-    private int index;
+    // load balancing policies. The p2c ones differ in the cost the two sampled channels are compared by
+    public static final String ROUND_ROBIN = "round_robin";
+    public static final String POWER_OF_TWO_CHOICES = "p2c"; // latency times outstanding batches
+    public static final String POWER_OF_TWO_CHOICES_OUTSTANDING = "p2c_outstanding";
+    public static final String POWER_OF_TWO_CHOICES_LATENCY = "p2c_latency"; // moving average POST latency
+
+    private static final HecChannel[] noChannels = new HecChannel[0];
+
+    private final AtomicReference<HecChannel[]> channels;
+    private final ChannelSelector selector;
 
     public LoadBalancer() {
-        channels = new ArrayList<>();
-        index = 0;
+        this(ROUND_ROBIN);
+    }
+
+    public LoadBalancer(String policy) {
+        this(policy, false);
+    }
+
+    // with stickyPartitions, batches of one source partition keep going to the same channel and
+    // the policy only spreads batches without a partition
+    public LoadBalancer(String policy, boolean stickyPartitions) {
+        this(stickyPartitions ? new StickyPartitionSelector(ChannelSelector.create(policy)) : ChannelSelector.create(policy));
+    }
+
+    LoadBalancer(ChannelSelector selector) {
+        this.channels = new AtomicReference<>(noChannels);
+        this.selector = selector;
     }
 
     @Override
     public void add(HecChannel channel) {
-        channels.add(channel);
+        while (true) {
+            HecChannel[] current = channels.get();
+            HecChannel[] updated = Arrays.copyOf(current, current.length + 1);
+            updated[current.length] = channel;
+            if (channels.compareAndSet(current, updated)) {
+                return;
+            }
+        }
     }
 
     @Override
     public void remove(HecChannel channel) {
-        for (Iterator<HecChannel> iter = channels.listIterator(); iter.hasNext();) {
-            HecChannel ch = iter.next();
-            if (ch.equals(channel)) {
-                iter.remove();
+        while (true) {
+            HecChannel[] current = channels.get();
+            HecChannel[] updated = new HecChannel[current.length];
+            int size = 0;
+            for (HecChannel ch: current) {
+                if (!ch.equals(channel)) {
+                    updated[size++] = ch;
+                }
+            }
+
+            if (size == current.length) {
+                // not found
+                return;
+            }
+
+            if (channels.compareAndSet(current, Arrays.copyOf(updated, size))) {
+                return;
             }
         }
     }
 
     @Override
     public void send(final EventBatch batch) {
-        if (channels.isEmpty()) {
+        HecChannel[] snapshot = channels.get();
+        if (snapshot.length == 0) {
             throw new HecException("No channels are available / registered with LoadBalancer");
         }
 
-        for (int tried = 0; tried != channels.size(); tried++) {
-            HecChannel channel = channels.get(index);
-            index = (index + 1) % channels.size();
-            if (!channel.hasBackPressure()) {
-                channel.send(batch);
-                return;
+        HecChannel channel = selector.select(snapshot, batch);
+        if (channel != null && batch.getFailureCount() > 0 && isLastIndexer(channel, batch)) {
+            HecChannel other = selectOtherIndexer(snapshot, batch);
+            if (other != null) {
+                channel = other;
             }
         }
 
+        if (channel == null) {
+            // the ramp up only sheds load, it does not fail batches no other indexer takes
+            channel = selectRampingUp(snapshot);
+        }
+
+        if (channel != null) {
+            channel.send(batch);
+            return;
+        }
+
         // all indexers have back pressure
         throw new HecException("All channels have back pressure");
     }
 
     @Override
     public int size() {
-        return channels.size();
+        return channels.get().length;
+    }
+
+    // selectOtherIndexer scans from a random channel for one without back pressure on another indexer
+    // than the batch was last sent to. The selector is bypassed since it may keep state per snapshot.
+    private static HecChannel selectOtherIndexer(final HecChannel[] snapshot, final EventBatch batch) {
+        int start = ThreadLocalRandom.current().nextInt(snapshot.length);
+        for (int i = 0; i < snapshot.length; i++) {
+            HecChannel channel = snapshot[(start + i) % snapshot.length];
+            if (!isLastIndexer(channel, batch) && !channel.hasBackPressure()) {
+                return channel;
+            }
+        }
+        return null;
+    }
+
+    private static HecChannel selectRampingUp(final HecChannel[] snapshot) {
+        int start = ThreadLocalRandom.current().nextInt(snapshot.length);
+        for (int i = 0; i < snapshot.length; i++) {
+            HecChannel channel = snapshot[(start + i) % snapshot.length];
+            if (channel.isRampingUp()) {
+                return channel;
+            }
+        }
+        return null;
+    }
+
+    private static boolean isLastIndexer(final HecChannel channel, final EventBatch batch) {
+        return channel.getIndexer().getBaseUrl().equals(batch.getLastIndexer());
     }
 }
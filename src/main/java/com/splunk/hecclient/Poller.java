@@ -18,10 +18,20 @@ package com.splunk.hecclient;
 public interface Poller {
     void start();
     void stop();
-    void add(HecChannel channel, EventBatch batch, String response);
+    void add(HecChannel channel, EventBatch batch, PostResponse response);
     void fail(HecChannel channel, EventBatch batch, Exception ex);
 
-    // minimum load channel
-    HecChannel getMinLoadChannel();
+    // add parses the raw HEC response, parse failures go to fail()
+    default void add(HecChannel channel, EventBatch batch, String response) {
+        PostResponse resp;
+        try {
+            resp = PostResponseParser.parse(response);
+        } catch (Exception ex) {
+            fail(channel, batch, ex);
+            return;
+        }
+        add(channel, batch, resp);
+    }
+
     long getTotalOutstandingEventBatches();
 }
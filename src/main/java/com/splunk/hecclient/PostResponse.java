@@ -18,7 +18,7 @@ package com.splunk.hecclient;
 import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
 
 @JsonIgnoreProperties(ignoreUnknown = true)
-final class PostResponse {
+public final class PostResponse {
     // {"text":"Success","code":0,"ackId":7}
     private String text;
     private int code = -1;
@@ -0,0 +1,128 @@
+/*
+ * Copyright 2017 Splunk, Inc..
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.splunk.hecclient;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+
+// PostResponseParser parses HEC event POST responses straight from the response stream.
+// The common {"text":"Success","code":0,"ackId":N} and {"text":"Success","code":0} bodies are
+// matched byte by byte in a thread local buffer, everything else falls back to Jackson.
+final class PostResponseParser {
+    private static final ObjectMapper jsonMapper = new ObjectMapper();
+
+    private static final String SUCCESS = "Success";
+    private static final byte[] successPrefix = "{\"text\":\"Success\",\"code\":0".getBytes(StandardCharsets.UTF_8);
+    private static final byte[] ackIdField = ",\"ackId\":".getBytes(StandardCharsets.UTF_8);
+    private static final int maxAckIdDigits = 18; // no overflow for long
+
+    private static final int bufferSize = 256;
+    private static final ThreadLocal<byte[]> buffers = ThreadLocal.withInitial(() -> new byte[bufferSize]);
+
+    private PostResponseParser() {
+    }
+
+    // parse does not close the stream
+    static PostResponse parse(final InputStream in) throws IOException {
+        byte[] buf = buffers.get();
+        int len = 0;
+        while (len < buf.length) {
+            int read = in.read(buf, len, buf.length - len);
+            if (read < 0) {
+                break;
+            }
+            len += read;
+        }
+
+        if (len == buf.length) {
+            // unusually large response, it is definitely not the common shape
+            ByteArrayOutputStream out = new ByteArrayOutputStream(buf.length * 2);
+            out.write(buf, 0, len);
+            int read;
+            while ((read = in.read(buf)) >= 0) {
+                out.write(buf, 0, read);
+            }
+            return jsonMapper.readValue(out.toByteArray(), PostResponse.class);
+        }
+        return parse(buf, len);
+    }
+
+    static PostResponse parse(final String resp) throws IOException {
+        byte[] data = resp.getBytes(StandardCharsets.UTF_8);
+        return parse(data, data.length);
+    }
+
+    private static PostResponse parse(final byte[] data, final int len) throws IOException {
+        PostResponse resp = parseSuccess(data, len);
+        if (resp != null) {
+            return resp;
+        }
+        return jsonMapper.readValue(data, 0, len, PostResponse.class);
+    }
+
+    // returns null when the data is not one of the common success shapes
+    private static PostResponse parseSuccess(final byte[] data, int len) {
+        while (len > 0 && isWhitespace(data[len - 1])) {
+            len--;
+        }
+
+        if (!matches(data, 0, len, successPrefix)) {
+            return null;
+        }
+
+        int pos = successPrefix.length;
+        if (pos == len - 1 && data[pos] == '}') {
+            return new PostResponse().setText(SUCCESS).setCode(0);
+        }
+
+        if (!matches(data, pos, len, ackIdField)) {
+            return null;
+        }
+        pos += ackIdField.length;
+
+        long ackId = 0;
+        int digits = 0;
+        for (; pos < len && data[pos] >= '0' && data[pos] <= '9'; pos++, digits++) {
+            ackId = ackId * 10 + (data[pos] - '0');
+        }
+
+        if (digits == 0 || digits > maxAckIdDigits || pos != len - 1 || data[pos] != '}') {
+            return null;
+        }
+        return new PostResponse().setText(SUCCESS).setCode(0).setAckId(ackId);
+    }
+
+    private static boolean matches(final byte[] data, int offset, int len, final byte[] expected) {
+        if (len - offset < expected.length) {
+            return false;
+        }
+
+        for (int i = 0; i < expected.length; i++) {
+            if (data[offset + i] != expected[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static boolean isWhitespace(byte b) {
+        return b == ' ' || b == '\n' || b == '\r' || b == '\t';
+    }
+}
@@ -0,0 +1,68 @@
+/*
+ * Copyright 2017 Splunk, Inc..
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.splunk.hecclient;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.function.ToDoubleFunction;
+
+// PowerOfTwoChoicesSelector samples two distinct random channels and picks the cheaper one.
+// Selection is O(1) regardless of the number of channels and avoids the herding a strict
+// "pick the global minimum" causes when many senders read the same stale load numbers.
+// A linear scan is only done when both samples have back pressure. The cost is divided by the
+// channel weight, so a channel of a twice as heavy indexer is picked at twice the cost.
+final class PowerOfTwoChoicesSelector implements ChannelSelector {
+    private final ToDoubleFunction<HecChannel> cost;
+
+    PowerOfTwoChoicesSelector(ToDoubleFunction<HecChannel> cost) {
+        this.cost = cost;
+    }
+
+    @Override
+    public HecChannel select(final HecChannel[] channels) {
+        int n = channels.length;
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        if (n == 1) {
+            return channels[0].hasBackPressure() ? null : channels[0];
+        }
+
+        int first = random.nextInt(n);
+        int second = random.nextInt(n - 1);
+        if (second >= first) {
+            second++;
+        }
+
+        HecChannel lhs = channels[first];
+        HecChannel rhs = channels[second];
+        boolean lhsAvailable = !lhs.hasBackPressure();
+        boolean rhsAvailable = !rhs.hasBackPressure();
+        if (lhsAvailable && rhsAvailable) {
+            return cost.applyAsDouble(rhs) / rhs.getWeight() < cost.applyAsDouble(lhs) / lhs.getWeight() ? rhs : lhs;
+        } else if (lhsAvailable) {
+            return lhs;
+        } else if (rhsAvailable) {
+            return rhs;
+        }
+
+        // both samples are back pressured, take the first available one
+        for (int i = 0; i < n; i++) {
+            HecChannel channel = channels[(first + i) % n];
+            if (!channel.hasBackPressure()) {
+                return channel;
+            }
+        }
+        return null;
+    }
+}
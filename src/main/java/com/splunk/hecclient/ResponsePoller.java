@@ -15,16 +15,9 @@
  */
 package com.splunk.hecclient;
 
-import com.fasterxml.jackson.databind.ObjectMapper;
-import org.slf4j.Logger;
-import org.slf4j.LoggerFactory;
-
 import java.util.Arrays;
 
 public final class ResponsePoller implements Poller {
-    private static final Logger log = LoggerFactory.getLogger(ResponsePoller.class);
-    private static final ObjectMapper jsonMapper = new ObjectMapper();
-
     private PollerCallback callback;
 
     public ResponsePoller(PollerCallback callback) {
@@ -41,6 +34,7 @@ public final class ResponsePoller implements Poller {
 
     @Override
     public void fail(HecChannel channel, EventBatch batch, Exception ex) {
+        release(channel);
         batch.fail();
         if (callback != null) {
             callback.onEventFailure(Arrays.asList(batch), ex);
@@ -53,27 +47,22 @@ public final class ResponsePoller implements Poller {
     }
 
     @Override
-    public HecChannel getMinLoadChannel() {
-        return null;
-    }
-
-    @Override
-    public void add(HecChannel channel, EventBatch batch, String resp) {
-        try {
-            PostResponse response = jsonMapper.readValue(resp, PostResponse.class);
-            if (!response.isSucceed()) {
-                fail(channel, batch, new HecException(response.getText()));
-                return;
-            }
-        } catch (Exception ex) {
-            log.error("failed to parse response", resp, ex);
-            fail(channel, batch, ex);
+    public void add(HecChannel channel, EventBatch batch, PostResponse response) {
+        if (!response.isSucceed()) {
+            fail(channel, batch, new HecException(response.getText()));
             return;
         }
 
+        release(channel);
         batch.commit();
         if (callback != null) {
             callback.onEventCommitted(Arrays.asList(batch));
         }
     }
+
+    private static void release(HecChannel channel) {
+        if (channel != null) {
+            channel.releaseBatches(1);
+        }
+    }
 }
@@ -0,0 +1,86 @@
+/*
+ * Copyright 2017 Splunk, Inc..
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.splunk.hecclient;
+
+import org.apache.http.conn.DnsResolver;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.net.InetAddress;
+import java.net.UnknownHostException;
+import java.util.Arrays;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+// RoundRobinDnsResolver re-resolves a host name once its cached entry is older than the
+// configured TTL and hands out the resolved addresses in rotating order, so newly opened
+// connections are spread over every A record behind a VIP instead of sticking to the first one.
+// Note the JVM keeps its own InetAddress cache (networkaddress.cache.ttl) underneath this one.
+final class RoundRobinDnsResolver implements DnsResolver {
+    private static final Logger log = LoggerFactory.getLogger(RoundRobinDnsResolver.class);
+
+    private final long ttl; // in milliseconds
+    private final ConcurrentHashMap<String, Entry> cache;
+    private final AtomicInteger cursor;
+
+    RoundRobinDnsResolver(long ttl /* milliseconds */) {
+        this.ttl = ttl;
+        this.cache = new ConcurrentHashMap<>();
+        this.cursor = new AtomicInteger(0);
+    }
+
+    @Override
+    public InetAddress[] resolve(final String host) throws UnknownHostException {
+        long now = System.currentTimeMillis();
+        Entry entry = cache.get(host);
+        if (entry == null || now >= entry.expiresAt) {
+            InetAddress[] addresses = InetAddress.getAllByName(host);
+            if (entry != null && !sameAddresses(entry.addresses, addresses)) {
+                log.info("host={} re-resolved from {} to {}", host, Arrays.toString(entry.addresses), Arrays.toString(addresses));
+            }
+            entry = new Entry(addresses, now + ttl);
+            cache.put(host, entry);
+        }
+        return rotate(entry.addresses);
+    }
+
+    private InetAddress[] rotate(final InetAddress[] addresses) {
+        if (addresses.length <= 1) {
+            return addresses;
+        }
+
+        int start = (cursor.getAndIncrement() & Integer.MAX_VALUE) % addresses.length;
+        InetAddress[] rotated = new InetAddress[addresses.length];
+        for (int i = 0; i < addresses.length; i++) {
+            rotated[i] = addresses[(start + i) % addresses.length];
+        }
+        return rotated;
+    }
+
+    private static boolean sameAddresses(final InetAddress[] lhs, final InetAddress[] rhs) {
+        return lhs.length == rhs.length && Arrays.asList(lhs).containsAll(Arrays.asList(rhs));
+    }
+
+    private static final class Entry {
+        private final InetAddress[] addresses;
+        private final long expiresAt;
+
+        Entry(InetAddress[] addresses, long expiresAt) {
+            this.addresses = addresses;
+            this.expiresAt = expiresAt;
+        }
+    }
+}
@@ -0,0 +1,129 @@
+/*
+ * Copyright 2017 Splunk, Inc..
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.splunk.hecclient;
+
+import org.apache.http.conn.ssl.TrustStrategy;
+import org.apache.http.ssl.SSLContextBuilder;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.net.ssl.SSLContext;
+import javax.net.ssl.SSLSessionContext;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.security.KeyStore;
+import java.security.KeyStoreException;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.security.cert.CertificateException;
+import java.security.cert.X509Certificate;
+import java.util.concurrent.ConcurrentHashMap;
+
+// SSLContextCache shares SSLContexts JVM wide, so all Indexers, Hec clients and connector tasks
+// which use the same trust store also share the client session cache of one SSLContext. JSSE
+// resumes sessions per host and port, so a task restart or rebalance does an abbreviated
+// handshake against indexers which were already connected instead of a full one.
+final class SSLContextCache {
+    private static final Logger log = LoggerFactory.getLogger(SSLContextCache.class);
+
+    static final int SESSION_CACHE_SIZE = 1024; // sessions per context
+    static final int SESSION_TIMEOUT = 24 * 60 * 60; // in seconds
+
+    private static final ConcurrentHashMap<String, SSLContext> contexts = new ConcurrentHashMap<>();
+    private static volatile SSLContext unsecureContext;
+
+    private SSLContextCache() {
+    }
+
+    // Returns the cached context for the trust store, keyed by path and the digest of its
+    // content so a replaced trust store file is picked up again. The password is part of the
+    // digest so a wrong password still fails instead of hitting the cache.
+    static SSLContext getOrLoad(final String path, final String pass) {
+        byte[] content;
+        try {
+            content = Files.readAllBytes(Paths.get(path));
+        } catch (IOException ex) {
+            throw new HecException("error loading trust store, check values for trust store and trust store-password", ex);
+        }
+
+        String key = path + "#" + digest(content, pass);
+        SSLContext context = contexts.get(key);
+        if (context != null) {
+            return context;
+        }
+
+        try {
+            KeyStore ks = KeyStore.getInstance("JKS");
+            ks.load(new ByteArrayInputStream(content), pass.toCharArray());
+            context = configureSessionCache(Hec.loadTrustManagerFactory(ks));
+        } catch (KeyStoreException | IOException | NoSuchAlgorithmException | CertificateException ex) {
+            throw new HecException("error loading trust store, check values for trust store and trust store-password", ex);
+        }
+
+        SSLContext prev = contexts.putIfAbsent(key, context);
+        if (prev != null) {
+            return prev;
+        }
+        log.info("loaded ssl context from trust store={}", path);
+        return context;
+    }
+
+    // Returns the shared context which trusts every certificate
+    static SSLContext getUnsecure() {
+        SSLContext context = unsecureContext;
+        if (context != null) {
+            return context;
+        }
+
+        synchronized (SSLContextCache.class) {
+            if (unsecureContext == null) {
+                TrustStrategy trustStrategy = (X509Certificate[] chain, String authType) -> true;
+                try {
+                    unsecureContext = configureSessionCache(new SSLContextBuilder().loadTrustMaterial(trustStrategy).build());
+                } catch (Exception ex) {
+                    throw new HecException("failed to create SSL connection factory", ex);
+                }
+            }
+            return unsecureContext;
+        }
+    }
+
+    private static SSLContext configureSessionCache(final SSLContext context) {
+        SSLSessionContext sessions = context.getClientSessionContext();
+        if (sessions != null) {
+            sessions.setSessionCacheSize(SESSION_CACHE_SIZE);
+            sessions.setSessionTimeout(SESSION_TIMEOUT);
+        }
+        return context;
+    }
+
+    private static String digest(final byte[] content, final String pass) {
+        try {
+            MessageDigest md = MessageDigest.getInstance("SHA-256");
+            md.update(pass.getBytes(StandardCharsets.UTF_8));
+            StringBuilder builder = new StringBuilder();
+            for (byte b: md.digest(content)) {
+                builder.append(String.format("%02x", b));
+            }
+            return builder.toString();
+        } catch (NoSuchAlgorithmException ex) {
+            throw new HecException("failed to digest trust store", ex);
+        }
+    }
+}
@@ -0,0 +1,75 @@
+/*
+ * Copyright 2017 Splunk, Inc..
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.splunk.hecclient;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+// JVM wide TLS handshake counters of all HTTP clients created by HttpClientBuilder.
+// A handshake is counted as resumed when it ended up with the session id of an earlier handshake of
+// the same client.
+public final class SSLHandshakeMetrics {
+    private static final AtomicLong handshakes = new AtomicLong(0);
+    private static final AtomicLong resumed = new AtomicLong(0);
+    private static final AtomicLong totalLatency = new AtomicLong(0); // in micro-seconds
+    private static final AtomicLong maxLatency = new AtomicLong(0); // in micro-seconds
+
+    private SSLHandshakeMetrics() {
+    }
+
+    static void record(long latency /* micro-seconds */, boolean resumedSession) {
+        handshakes.incrementAndGet();
+        if (resumedSession) {
+            resumed.incrementAndGet();
+        }
+        totalLatency.addAndGet(latency);
+
+        long max = maxLatency.get();
+        while (latency > max && !maxLatency.compareAndSet(max, latency)) {
+            max = maxLatency.get();
+        }
+    }
+
+    public static long getHandshakes() {
+        return handshakes.get();
+    }
+
+    public static long getResumedHandshakes() {
+        return resumed.get();
+    }
+
+    public static long getFullHandshakes() {
+        return handshakes.get() - resumed.get();
+    }
+
+    // average handshake latency in micro-seconds
+    public static long getAverageLatency() {
+        long total = handshakes.get();
+        if (total == 0) {
+            return 0;
+        }
+        return totalLatency.get() / total;
+    }
+
+    // max handshake latency in micro-seconds
+    public static long getMaxLatency() {
+        return maxLatency.get();
+    }
+
+    public static String summary() {
+        return String.format("ssl handshakes=%d, resumed=%d, avgLatency=%dus, maxLatency=%dus",
+                getHandshakes(), getResumedHandshakes(), getAverageLatency(), getMaxLatency());
+    }
+}
@@ -0,0 +1,91 @@
+/*
+ * Copyright 2017 Splunk, Inc..
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.splunk.hecclient;
+
+import javax.naming.NamingEnumeration;
+import javax.naming.NamingException;
+import javax.naming.directory.Attribute;
+import javax.naming.directory.Attributes;
+import javax.naming.directory.DirContext;
+import javax.naming.directory.InitialDirContext;
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Hashtable;
+import java.util.List;
+
+// SrvIndexerDiscovery looks up the SRV records of a service name, for example
+// srv:https://_splunk-hec._tcp.example.com, and turns every target:port into an indexer URI
+final class SrvIndexerDiscovery implements IndexerDiscovery {
+    private final String scheme;
+    private final String name;
+
+    SrvIndexerDiscovery(String uri) {
+        URI parsed = URI.create(uri);
+        // URI does not parse service names like _hec._tcp.example.com as host, they contain '_'
+        if (parsed.getScheme() == null || parsed.getAuthority() == null) {
+            throw new HecException("invalid srv indexer discovery uri=" + uri);
+        }
+        this.scheme = parsed.getScheme();
+        this.name = parsed.getAuthority();
+    }
+
+    @Override
+    public List<String> discover() throws NamingException {
+        Hashtable<String, String> env = new Hashtable<>();
+        env.put("java.naming.factory.initial", "com.sun.jndi.dns.DnsContextFactory");
+        DirContext context = new InitialDirContext(env);
+        try {
+            Attributes attrs = context.getAttributes(name, new String[]{"SRV"});
+            Attribute srv = attrs.get("SRV");
+            List<String> uris = new ArrayList<>();
+            if (srv == null) {
+                return uris;
+            }
+
+            NamingEnumeration<?> records = srv.getAll();
+            while (records.hasMore()) {
+                String uri = toUri(scheme, records.next().toString());
+                if (uri != null && !uris.contains(uri)) {
+                    uris.add(uri);
+                }
+            }
+            Collections.sort(uris);
+            return uris;
+        } finally {
+            context.close();
+        }
+    }
+
+    // record is "priority weight port target", returns null for a malformed record
+    static String toUri(String scheme, String record) {
+        String[] fields = record.trim().split("\\s+");
+        if (fields.length != 4) {
+            return null;
+        }
+
+        String target = fields[3];
+        if (target.endsWith(".")) {
+            target = target.substring(0, target.length() - 1);
+        }
+
+        try {
+            return String.format("%s://%s:%d", scheme, target, Integer.parseInt(fields[2]));
+        } catch (NumberFormatException ex) {
+            return null;
+        }
+    }
+}
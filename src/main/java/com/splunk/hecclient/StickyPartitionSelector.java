@@ -0,0 +1,71 @@
+/*
+ * Copyright 2017 Splunk, Inc..
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.splunk.hecclient;
+
+// StickyPartitionSelector sends all batches of a source partition to the same channel, so the
+// offsets of a partition only wait for the acks of one channel instead of the slowest of all.
+// The channel is picked by weighted rendezvous hashing over the partition and the channel ids:
+// it needs no state, adding or removing a channel only moves the partitions of that channel, and
+// when the preferred channel has back pressure the partition fails over to its next ranked channel
+// until the preferred one recovers. Batches without a partition go to the fallback selector.
+final class StickyPartitionSelector implements ChannelSelector {
+    private final ChannelSelector fallback;
+
+    public StickyPartitionSelector(ChannelSelector fallback) {
+        this.fallback = fallback;
+    }
+
+    @Override
+    public HecChannel select(final HecChannel[] channels) {
+        return fallback.select(channels);
+    }
+
+    @Override
+    public HecChannel select(final HecChannel[] channels, final EventBatch batch) {
+        Object partition = batch.getPartition();
+        if (partition == null) {
+            return fallback.select(channels);
+        }
+
+        long key = mix(partition.hashCode());
+        HecChannel best = null;
+        double bestScore = Double.NEGATIVE_INFINITY;
+        for (HecChannel channel: channels) {
+            double score = score(key, channel);
+            // back pressure is only checked for channels which would win
+            if (score > bestScore && !channel.hasBackPressure()) {
+                best = channel;
+                bestScore = score;
+            }
+        }
+        return best;
+    }
+
+    // -weight / ln(u) with u uniform in (0, 1) derived from the partition and the channel, the
+    // channel with the highest score gets the partition, in proportion to the channel weights
+    static double score(long key, final HecChannel channel) {
+        long hash = mix(key ^ channel.hashCode());
+        double u = ((hash >>> 11) + 0.5) / (1L << 53);
+        return -channel.getWeight() / Math.log(u);
+    }
+
+    // splitmix64 finalizer
+    private static long mix(long z) {
+        z = (z ^ (z >>> 30)) * 0xbf58476d1ce4e5b9L;
+        z = (z ^ (z >>> 27)) * 0x94d049bb133111ebL;
+        return z ^ (z >>> 31);
+    }
+}
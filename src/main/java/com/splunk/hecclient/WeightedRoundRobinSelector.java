@@ -0,0 +1,91 @@
+/*
+ * Copyright 2017 Splunk, Inc..
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.splunk.hecclient;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+// WeightedRoundRobinSelector spreads batches over the channels in proportion to their weight with
+// smooth weighted round robin, so a heavier channel is interleaved with the others instead of
+// getting its share in bursts. The schedule is computed once per channel snapshot, selection is
+// a single atomic cursor increment. With equal weights it is plain round robin.
+final class WeightedRoundRobinSelector implements ChannelSelector {
+    // longest schedule per channel, bounds the rebuild cost for extreme weight ratios
+    private static final int maxScheduleLengthPerChannel = 64;
+
+    private final AtomicInteger index = new AtomicInteger(0);
+    private volatile Schedule schedule;
+
+    @Override
+    public HecChannel select(final HecChannel[] channels) {
+        Schedule current = schedule;
+        if (current == null || current.channels != channels) {
+            // concurrent rebuilds for the same snapshot produce the same schedule
+            current = new Schedule(channels);
+            schedule = current;
+        }
+
+        HecChannel[] order = current.order;
+        for (int tried = 0; tried != order.length; tried++) {
+            // the cursor advances for skipped channels too, so the load stays even around them
+            HecChannel channel = order[(index.getAndIncrement() & Integer.MAX_VALUE) % order.length];
+            if (!channel.hasBackPressure()) {
+                return channel;
+            }
+        }
+        return null;
+    }
+
+    private static final class Schedule {
+        private final HecChannel[] channels;
+        private final HecChannel[] order;
+
+        Schedule(final HecChannel[] channels) {
+            this.channels = channels;
+
+            // normalize so the lightest channel has weight 1 and appears once per cycle
+            double[] weights = new double[channels.length];
+            double min = Double.MAX_VALUE;
+            for (int i = 0; i < channels.length; i++) {
+                weights[i] = channels[i].getWeight();
+                min = Math.min(min, weights[i]);
+            }
+
+            double total = 0;
+            for (int i = 0; i < channels.length; i++) {
+                weights[i] /= min;
+                total += weights[i];
+            }
+
+            int length = (int) Math.min(Math.round(total), (long) maxScheduleLengthPerChannel * channels.length);
+            length = Math.max(length, channels.length);
+            order = new HecChannel[length];
+
+            // nginx smooth weighted round robin
+            double[] current = new double[channels.length];
+            for (int step = 0; step < length; step++) {
+                int best = 0;
+                for (int i = 0; i < channels.length; i++) {
+                    current[i] += weights[i];
+                    if (current[i] > current[best]) {
+                        best = i;
+                    }
+                }
+                current[best] -= total;
+                order[step] = channels[best];
+            }
+        }
+    }
+}
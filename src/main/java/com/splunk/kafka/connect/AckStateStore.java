@@ -0,0 +1,254 @@
+/*
+ * Copyright 2017 Splunk, Inc..
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.splunk.kafka.connect;
+
+import com.splunk.hecclient.ChannelAckState;
+import com.splunk.hecclient.Event;
+import com.splunk.hecclient.EventBatch;
+import org.apache.kafka.common.TopicPartition;
+import org.apache.kafka.connect.sink.SinkRecord;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.*;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.*;
+
+// AckStateStore keeps the outstanding acks of a partition in a local file across restarts: for
+// every channel its indexer uri and id, and for every ack id the offset ranges of the partition's
+// records in its batch. The task the partition is assigned to next polls these acks on the former
+// channels and skips redelivered records Splunk indexed already. Partitions are owned by one task
+// at a time, so whichever task of the connector gets one claims exactly its state. The file is
+// binary, written to a temporary file first and moved in place.
+final class AckStateStore {
+    private static final Logger log = LoggerFactory.getLogger(AckStateStore.class);
+    private static final int magic = 0x53504b41; // SPKA
+    private static final int version = 1;
+    private static final String suffix = ".ackstate";
+
+    private final File file;
+
+    AckStateStore(File file) {
+        this.file = file;
+    }
+
+    // the store of the partition of the connector in dir
+    static AckStateStore forPartition(final File dir, final String connector, final TopicPartition tp) {
+        return new AckStateStore(new File(dir, connector + "-" + tp.topic() + "-" + tp.partition() + suffix));
+    }
+
+    // claim returns the saved channels and removes the file, called by the task the partition is
+    // assigned to
+    List<PendingChannel> claim() {
+        List<PendingChannel> channels = load();
+        delete();
+        return channels;
+    }
+
+    // append adds the channels to the ones saved already, e.g. by a task the partition was revoked from
+    void append(final List<PendingChannel> channels) {
+        List<PendingChannel> all = load();
+        all.addAll(channels);
+        save(all);
+    }
+
+    File getFile() {
+        return file;
+    }
+
+    static final class OffsetRange {
+        final TopicPartition tp;
+        final long start; // inclusive
+        final long end; // inclusive
+
+        OffsetRange(TopicPartition tp, long start, long end) {
+            this.tp = tp;
+            this.start = start;
+            this.end = end;
+        }
+
+        boolean contains(TopicPartition tp, long offset) {
+            return offset >= start && offset <= end && this.tp.equals(tp);
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (!(obj instanceof OffsetRange)) {
+                return false;
+            }
+            OffsetRange other = (OffsetRange) obj;
+            return tp.equals(other.tp) && start == other.start && end == other.end;
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(tp, start, end);
+        }
+
+        @Override
+        public String toString() {
+            return tp + "[" + start + ", " + end + "]";
+        }
+    }
+
+    static final class PendingChannel {
+        final String uri;
+        final String channelId;
+        final Map<Long, List<OffsetRange>> acks; // ack id to the offset ranges of its batch
+
+        PendingChannel(String uri, String channelId, Map<Long, List<OffsetRange>> acks) {
+            this.uri = uri;
+            this.channelId = channelId;
+            this.acks = acks;
+        }
+    }
+
+    void save(final List<PendingChannel> channels) {
+        File parent = file.getParentFile();
+        if (parent != null && !parent.isDirectory() && !parent.mkdirs()) {
+            log.error("failed to create ack state directory {}", parent);
+            return;
+        }
+
+        File tmp = new File(file.getPath() + ".tmp");
+        int acks = 0;
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tmp)))) {
+            out.writeInt(magic);
+            out.writeInt(version);
+            out.writeInt(channels.size());
+            for (PendingChannel channel: channels) {
+                out.writeUTF(channel.uri);
+                out.writeUTF(channel.channelId);
+                out.writeInt(channel.acks.size());
+                for (Map.Entry<Long, List<OffsetRange>> entry: channel.acks.entrySet()) {
+                    out.writeLong(entry.getKey());
+                    out.writeInt(entry.getValue().size());
+                    for (OffsetRange range: entry.getValue()) {
+                        out.writeUTF(range.tp.topic());
+                        out.writeInt(range.tp.partition());
+                        out.writeLong(range.start);
+                        out.writeLong(range.end);
+                    }
+                    acks++;
+                }
+            }
+        } catch (IOException ex) {
+            log.error("failed to save ack state to {}", tmp, ex);
+            return;
+        }
+
+        try {
+            Files.move(tmp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException ex) {
+            log.error("failed to move ack state to {}", file, ex);
+            return;
+        }
+        log.info("saved {} outstanding acks of {} channels to {}", acks, channels.size(), file);
+    }
+
+    // returns the saved channels, none if there is no or no readable file
+    List<PendingChannel> load() {
+        List<PendingChannel> channels = new ArrayList<>();
+        if (!file.exists()) {
+            return channels;
+        }
+
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)))) {
+            if (in.readInt() != magic || in.readInt() != version) {
+                log.warn("ignore ack state {} of unknown format", file);
+                return channels;
+            }
+
+            int channelCount = in.readInt();
+            for (int i = 0; i < channelCount; i++) {
+                String uri = in.readUTF();
+                String channelId = in.readUTF();
+                int ackCount = in.readInt();
+                Map<Long, List<OffsetRange>> acks = new LinkedHashMap<>();
+                for (int j = 0; j < ackCount; j++) {
+                    long ackId = in.readLong();
+                    int rangeCount = in.readInt();
+                    List<OffsetRange> ranges = new ArrayList<>(rangeCount);
+                    for (int k = 0; k < rangeCount; k++) {
+                        TopicPartition tp = new TopicPartition(in.readUTF(), in.readInt());
+                        ranges.add(new OffsetRange(tp, in.readLong(), in.readLong()));
+                    }
+                    acks.put(ackId, ranges);
+                }
+                channels.add(new PendingChannel(uri, channelId, acks));
+            }
+        } catch (IOException ex) {
+            log.warn("ignore unreadable ack state {}", file, ex);
+            return new ArrayList<>();
+        }
+        return channels;
+    }
+
+    void delete() {
+        if (file.exists() && !file.delete()) {
+            log.warn("failed to delete ack state {}", file);
+        }
+    }
+
+    // byPartition splits the outstanding acks of channels by the partitions of their batches' records
+    static Map<TopicPartition, List<PendingChannel>> byPartition(final List<ChannelAckState> states) {
+        Map<TopicPartition, List<PendingChannel>> channels = new HashMap<>();
+        for (ChannelAckState state: states) {
+            Map<TopicPartition, PendingChannel> partitionChannels = new HashMap<>();
+            for (Map.Entry<Long, EventBatch> entry: state.getBatches().entrySet()) {
+                for (OffsetRange range: offsetRanges(entry.getValue())) {
+                    PendingChannel channel = partitionChannels.computeIfAbsent(range.tp,
+                            k -> new PendingChannel(state.getUri(), state.getChannelId(), new LinkedHashMap<>()));
+                    channel.acks.computeIfAbsent(entry.getKey(), k -> new ArrayList<>()).add(range);
+                }
+            }
+            for (Map.Entry<TopicPartition, PendingChannel> entry: partitionChannels.entrySet()) {
+                channels.computeIfAbsent(entry.getKey(), k -> new ArrayList<>()).add(entry.getValue());
+            }
+        }
+        return channels;
+    }
+
+    // the offsets of the records in a batch as ranges of consecutive offsets per partition
+    static List<OffsetRange> offsetRanges(final EventBatch batch) {
+        Map<TopicPartition, List<Long>> offsets = new HashMap<>();
+        for (Event event: batch.getEvents()) {
+            if (event.getTied() instanceof SinkRecord) {
+                SinkRecord record = (SinkRecord) event.getTied();
+                TopicPartition tp = new TopicPartition(record.topic(), record.kafkaPartition());
+                offsets.computeIfAbsent(tp, k -> new ArrayList<>()).add(record.kafkaOffset());
+            }
+        }
+
+        List<OffsetRange> ranges = new ArrayList<>();
+        for (Map.Entry<TopicPartition, List<Long>> entry: offsets.entrySet()) {
+            List<Long> sorted = entry.getValue();
+            Collections.sort(sorted);
+            long start = sorted.get(0);
+            long end = start;
+            for (long offset: sorted.subList(1, sorted.size())) {
+                if (offset > end + 1) {
+                    ranges.add(new OffsetRange(entry.getKey(), start, end));
+                    start = offset;
+                }
+                end = offset;
+            }
+            ranges.add(new OffsetRange(entry.getKey(), start, end));
+        }
+        return ranges;
+    }
+}
@@ -17,6 +17,7 @@ package com.splunk.kafka.connect;
 
 import com.splunk.hecclient.Event;
 import com.splunk.hecclient.EventBatch;
+import com.splunk.hecclient.JsonEventBatch;
 import org.apache.kafka.clients.consumer.OffsetAndMetadata;
 import org.apache.kafka.common.TopicPartition;
 import org.apache.kafka.connect.sink.SinkRecord;
@@ -27,14 +28,40 @@ import java.util.concurrent.ConcurrentLinkedQueue;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+// KafkaRecordTracker is multi-thread safe. Records are added from the task thread while ACK
+// callbacks move the committable offset of a partition forward as soon as its lowest outstanding
+// batches are committed, so computeOffsets only has to hand out the offsets moved since last time.
+// Records are tracked as ranges of consecutive offsets per batch and partition, a batch of records
+// in offset order takes one entry per partition instead of one per record.
+// Every committed batch has to be passed to commitEventBatches, its partitions are not rescanned
+// later. The commit lag is kept up to date the same way from the head ranges of the partitions.
+// Revoked partitions are closed: their records are dropped and ignored until they are opened again.
+// The serialized bytes of a batch count from when it is added until its last range is removed, this
+// covers batches queued, in flight, waiting for ACKs and waiting for a retry.
 final class KafkaRecordTracker {
     private static final Logger log = LoggerFactory.getLogger(SplunkSinkTask.class);
-    private Map<TopicPartition, TreeMap<Long, EventBatch>> all; // TopicPartition + Long offset represents the SinkRecord
+    private Map<TopicPartition, PartitionRanges> all;
+    private Map<TopicPartition, Long> committable; // offsets moved since the last computeOffsets
+    private Set<TopicPartition> closed; // revoked partitions
     private long total;
+    private long totalBytes;
     private ConcurrentLinkedQueue<EventBatch> failed;
+    // send timestamps of the head ranges of the partitions with outstanding records, to the number
+    // of partitions with the timestamp
+    private TreeMap<Long, Integer> headTimestamps;
+    private long headTimestampSum;
+    private int laggingPartitions;
+    // commit lag as of the last computeOffsets, how long the oldest outstanding batch of a partition
+    // holds back its offset, in seconds
+    private double avgCommitLag;
+    private long maxCommitLag;
+    private int lastLaggingPartitions;
 
     public KafkaRecordTracker() {
         all = new HashMap<>();
+        committable = new HashMap<>();
+        closed = new HashSet<>();
+        headTimestamps = new TreeMap<>();
         failed = new ConcurrentLinkedQueue<>();
         total = 0;
     }
@@ -47,63 +74,331 @@ final class KafkaRecordTracker {
         log.info("total failed batches {}", failed.size());
     }
 
-    public void addEventBatch(final EventBatch batch) {
+    public synchronized void addEventBatch(final EventBatch batch) {
+        TrackedBatch tracked = new TrackedBatch(batch);
+        List<SinkRecord> records = new ArrayList<>(batch.size());
         for (final Event event: batch.getEvents()) {
             if (event.getTied() instanceof SinkRecord) {
-                final SinkRecord record = (SinkRecord) event.getTied();
-                TopicPartition tp = new TopicPartition(record.topic(), record.kafkaPartition());
-                TreeMap<Long, EventBatch> tpRecords = all.get(tp);
-                if (tpRecords == null) {
-                    tpRecords = new TreeMap<>();
-                    all.put(tp, tpRecords);
-                }
+                records.add((SinkRecord) event.getTied());
+            }
+        }
+        addRecords(records, tracked);
+
+        if (tracked.ranges > 0) {
+            totalBytes += tracked.bytes;
+        }
+    }
+
+    // addCommittedRecords tracks records which need no sending, e.g. ones indexed before a restart,
+    // as committed right away. The caller has to track all lower offsets of their partitions first,
+    // otherwise the committable offsets would move past records not tracked yet.
+    public synchronized long addCommittedRecords(final Collection<SinkRecord> records) {
+        EventBatch committed = new JsonEventBatch();
+        committed.commit();
+        addRecords(records, new TrackedBatch(committed));
+
+        Set<TopicPartition> partitions = new HashSet<>();
+        for (final SinkRecord record: records) {
+            partitions.add(new TopicPartition(record.topic(), record.kafkaPartition()));
+        }
+        long moved = 0;
+        for (final TopicPartition tp: partitions) {
+            PartitionRanges partition = all.get(tp);
+            if (partition != null) {
+                moved += advance(tp, partition);
+            }
+        }
+        return moved;
+    }
+
+    private void addRecords(final Collection<SinkRecord> records, final TrackedBatch tracked) {
+        TopicPartition tp = null;
+        long start = -1;
+        long end = -1;
+        for (final SinkRecord record: records) {
+            final long offset = record.kafkaOffset();
+            if (tp != null && offset == end + 1 && isPartition(tp, record)) {
+                end = offset;
+                continue;
+            }
 
-                if (!tpRecords.containsKey(record.kafkaOffset())) {
-                    tpRecords.put(record.kafkaOffset(), batch);
-                    total += 1;
+            if (tp != null) {
+                addRange(tp, start, end, tracked);
+                if (!isPartition(tp, record)) {
+                    tp = null;
                 }
             }
+            if (tp == null) {
+                tp = new TopicPartition(record.topic(), record.kafkaPartition());
+            }
+            start = offset;
+            end = offset;
+        }
+
+        if (tp != null) {
+            addRange(tp, start, end, tracked);
         }
     }
 
+    // adds the offsets from start to end of the batch which are not tracked yet, e.g. records
+    // redelivered after a rebalance are tracked with the batch they were first added with
+    private void addRange(final TopicPartition tp, long start, final long end, final TrackedBatch tracked) {
+        if (closed.contains(tp)) {
+            return;
+        }
+
+        PartitionRanges partition = all.get(tp);
+        if (partition == null) {
+            partition = new PartitionRanges();
+            all.put(tp, partition);
+        }
+
+        TreeMap<Long, BatchRange> ranges = partition.ranges;
+
+        Map.Entry<Long, BatchRange> floor = ranges.floorEntry(start);
+        if (floor != null && floor.getValue().end >= start) {
+            start = floor.getValue().end + 1;
+        }
+
+        while (start <= end) {
+            Map.Entry<Long, BatchRange> next = ranges.ceilingEntry(start);
+            if (next == null || next.getKey() > end) {
+                ranges.put(start, new BatchRange(end, tracked));
+                tracked.ranges += 1;
+                total += end - start + 1;
+                break;
+            }
+
+            if (next.getKey() > start) {
+                ranges.put(start, new BatchRange(next.getKey() - 1, tracked));
+                tracked.ranges += 1;
+                total += next.getKey() - start;
+            }
+            start = next.getValue().end + 1;
+        }
+        updateHead(partition);
+    }
+
+    // returns the failed batches without the records of closed partitions, batches left empty are
+    // dropped
     public Collection<EventBatch> getAndRemoveFailedRecords() {
         Collection<EventBatch> records = new ArrayList<>();
         while (!failed.isEmpty()) {
             final EventBatch batch = failed.poll();
-            if (batch != null) {
+            if (batch != null && !removeClosed(batch).isEmpty()) {
                 records.add(batch);
             }
         }
         return records;
     }
 
-    // Loop through all SinkRecords for all topic partitions to
-    // find all lowest consecutive committed offsets, caculate
-    // the topic/partition offsets and then remove them
-    public Map<TopicPartition, OffsetAndMetadata> computeOffsets() {
-        Map<TopicPartition, OffsetAndMetadata> offsets = new HashMap<>();
-        for (Map.Entry<TopicPartition, TreeMap<Long, EventBatch>> entry: all.entrySet()) {
-            long offset = -1;
-            Iterator<Map.Entry<Long, EventBatch>> iter = entry.getValue().entrySet().iterator();
-            for (; iter.hasNext();) {
-                Map.Entry<Long, EventBatch> e = iter.next();
-                if (e.getValue().isCommitted()) {
-                    offset = e.getKey();
-                    iter.remove();
-                    total -= 1;
-                } else {
-                    break;
+    // open starts the partitions clean, e.g. ones assigned back after a rebalance
+    public synchronized void open(final Collection<TopicPartition> partitions) {
+        for (final TopicPartition tp: partitions) {
+            closed.remove(tp);
+            remove(tp);
+        }
+    }
+
+    // close drops the records of revoked partitions, ACKs and failures of their batches in flight
+    // are ignored from now on
+    public synchronized void close(final Collection<TopicPartition> partitions) {
+        for (final TopicPartition tp: partitions) {
+            closed.add(tp);
+            remove(tp);
+        }
+    }
+
+    private void remove(final TopicPartition tp) {
+        committable.remove(tp);
+        PartitionRanges partition = all.remove(tp);
+        if (partition == null) {
+            return;
+        }
+
+        for (Map.Entry<Long, BatchRange> e: partition.ranges.entrySet()) {
+            total -= e.getValue().end - e.getKey() + 1;
+            release(e.getValue());
+        }
+        partition.ranges.clear();
+        updateHead(partition);
+    }
+
+    // removeClosed drops the records of closed partitions from the batch
+    synchronized EventBatch removeClosed(final EventBatch batch) {
+        if (!closed.isEmpty()) {
+            batch.removeEvents(event -> {
+                if (!(event.getTied() instanceof SinkRecord)) {
+                    return false;
                 }
+                final SinkRecord record = (SinkRecord) event.getTied();
+                return closed.contains(new TopicPartition(record.topic(), record.kafkaPartition()));
+            });
+        }
+        return batch;
+    }
+
+    // commitEventBatches moves the committable offsets of the partitions the committed batches
+    // belong to and returns the number of records which became committable
+    public synchronized long commitEventBatches(final List<EventBatch> batches) {
+        Set<TopicPartition> partitions = new HashSet<>();
+        for (final EventBatch batch: batches) {
+            if (batch.getPartition() instanceof TopicPartition) {
+                // batches of a single partition, see sticky partitions
+                partitions.add((TopicPartition) batch.getPartition());
+                continue;
             }
 
-            if (offset >= 0) {
-                offsets.put(entry.getKey(), new OffsetAndMetadata(offset + 1));
+            TopicPartition tp = null;
+            for (final Event event: batch.getEvents()) {
+                if (event.getTied() instanceof SinkRecord) {
+                    final SinkRecord record = (SinkRecord) event.getTied();
+                    if (tp == null || !isPartition(tp, record)) {
+                        tp = new TopicPartition(record.topic(), record.kafkaPartition());
+                        partitions.add(tp);
+                    }
+                }
+            }
+        }
+
+        long moved = 0;
+        for (final TopicPartition tp: partitions) {
+            PartitionRanges partition = all.get(tp);
+            if (partition != null) {
+                moved += advance(tp, partition);
             }
         }
+        return moved;
+    }
+
+    // computeOffsets hands out the offsets moved by commitEventBatches since the last call, it only
+    // touches the partitions which moved.
+    public synchronized Map<TopicPartition, OffsetAndMetadata> computeOffsets() {
+        Map<TopicPartition, OffsetAndMetadata> offsets = new HashMap<>();
+        for (Map.Entry<TopicPartition, Long> entry: committable.entrySet()) {
+            offsets.put(entry.getKey(), new OffsetAndMetadata(entry.getValue()));
+        }
+        committable.clear();
+
+        long now = System.currentTimeMillis();
+        if (laggingPartitions == 0) {
+            avgCommitLag = 0;
+            maxCommitLag = 0;
+        } else {
+            avgCommitLag = Math.max(now - (double) headTimestampSum / laggingPartitions, 0) / 1000;
+            maxCommitLag = Math.max(now - headTimestamps.firstKey(), 0) / 1000;
+        }
+        lastLaggingPartitions = laggingPartitions;
         return offsets;
     }
 
-    public long totalEvents() {
+    public double getAvgCommitLag() {
+        return avgCommitLag;
+    }
+
+    public long getMaxCommitLag() {
+        return maxCommitLag;
+    }
+
+    public int getLaggingPartitions() {
+        return lastLaggingPartitions;
+    }
+
+    public synchronized long totalEvents() {
         return total;
     }
+
+    // serialized bytes of the tracked batches
+    public synchronized long totalBytes() {
+        return totalBytes;
+    }
+
+    // removes the lowest consecutive committed ranges of the partition and returns how many records
+    // they had
+    private long advance(final TopicPartition tp, final PartitionRanges partition) {
+        long offset = -1;
+        long moved = 0;
+        Iterator<Map.Entry<Long, BatchRange>> iter = partition.ranges.entrySet().iterator();
+        while (iter.hasNext()) {
+            Map.Entry<Long, BatchRange> e = iter.next();
+            if (!e.getValue().tracked.batch.isCommitted()) {
+                break;
+            }
+            offset = e.getValue().end;
+            moved += e.getValue().end - e.getKey() + 1;
+            release(e.getValue());
+            iter.remove();
+        }
+
+        if (offset >= 0) {
+            committable.put(tp, offset + 1);
+            total -= moved;
+            updateHead(partition);
+        }
+        return moved;
+    }
+
+    // updateHead keeps the head timestamps in line with the lowest range of the partition
+    private void updateHead(final PartitionRanges partition) {
+        Map.Entry<Long, BatchRange> head = partition.ranges.firstEntry();
+        long headStart = head == null ? -1 : head.getKey();
+        if (headStart == partition.headStart) {
+            return;
+        }
+
+        if (partition.headStart >= 0) {
+            headTimestamps.compute(partition.headTimestamp, (k, v) -> v == 1 ? null : v - 1);
+            headTimestampSum -= partition.headTimestamp;
+            laggingPartitions -= 1;
+        }
+
+        partition.headStart = headStart;
+        if (head != null) {
+            partition.headTimestamp = head.getValue().tracked.batch.getSendTimestamp();
+            headTimestamps.merge(partition.headTimestamp, 1, Integer::sum);
+            headTimestampSum += partition.headTimestamp;
+            laggingPartitions += 1;
+        }
+    }
+
+    private void release(final BatchRange range) {
+        range.tracked.ranges -= 1;
+        if (range.tracked.ranges == 0) {
+            totalBytes -= range.tracked.bytes;
+        }
+    }
+
+    private static boolean isPartition(final TopicPartition tp, final SinkRecord record) {
+        return tp.partition() == record.kafkaPartition() && tp.topic().equals(record.topic());
+    }
+
+    // PartitionRanges is the outstanding records of a partition, range start offset to the range
+    private static final class PartitionRanges {
+        final TreeMap<Long, BatchRange> ranges = new TreeMap<>();
+        long headStart = -1; // start offset of the lowest range, -1 if there is none
+        long headTimestamp; // send timestamp of the lowest range's batch when it became the lowest
+    }
+
+    // BatchRange is the consecutive offsets from its key to end of one batch in one partition
+    private static final class BatchRange {
+        final long end; // inclusive
+        final TrackedBatch tracked;
+
+        BatchRange(long end, TrackedBatch tracked) {
+            this.end = end;
+            this.tracked = tracked;
+        }
+    }
+
+    // TrackedBatch is shared by the ranges of a batch, its bytes are released with the last range
+    private static final class TrackedBatch {
+        final EventBatch batch;
+        final long bytes;
+        int ranges;
+
+        TrackedBatch(EventBatch batch) {
+            this.batch = batch;
+            this.bytes = batch.length();
+        }
+    }
 }
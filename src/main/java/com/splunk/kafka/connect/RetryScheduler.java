@@ -0,0 +1,112 @@
+/*
+ * Copyright 2017 Splunk, Inc..
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.splunk.kafka.connect;
+
+import com.splunk.hecclient.EventBatch;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.DelayQueue;
+import java.util.concurrent.Delayed;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Predicate;
+
+// RetryScheduler holds failed batches back before they are sent again. The delay doubles with every
+// failure of a batch up to a maximum, half of it is random so batches which failed together during
+// an outage don't all come back at the same time. Only used from the task thread.
+final class RetryScheduler {
+    private final DelayQueue<Retry> retries = new DelayQueue<>();
+    private final long initialBackoff; // milli-seconds
+    private final long maxBackoff; // milli-seconds
+    private long events; // events of the batches waiting
+
+    RetryScheduler(long initialBackoff, long maxBackoff) {
+        this.initialBackoff = initialBackoff;
+        this.maxBackoff = Math.max(maxBackoff, initialBackoff);
+    }
+
+    void schedule(final EventBatch batch) {
+        retries.add(new Retry(batch, System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(backoff(batch.getFailureCount()))));
+        events += batch.size();
+    }
+
+    // returns the batches due for a retry, the ones waiting longest first
+    List<EventBatch> pollDue() {
+        List<EventBatch> due = new ArrayList<>();
+        Retry retry;
+        while ((retry = retries.poll()) != null) {
+            due.add(retry.batch);
+            events -= retry.batch.size();
+        }
+        return due;
+    }
+
+    // removeIf drops the waiting batches matching the filter, the filter may also remove events
+    void removeIf(final Predicate<EventBatch> filter) {
+        events = 0;
+        Iterator<Retry> iter = retries.iterator();
+        while (iter.hasNext()) {
+            EventBatch batch = iter.next().batch;
+            if (filter.test(batch)) {
+                iter.remove();
+            } else {
+                events += batch.size();
+            }
+        }
+    }
+
+    int size() {
+        return retries.size();
+    }
+
+    long events() {
+        return events;
+    }
+
+    // backoff is initialBackoff * 2 ^ (failures - 1) capped by maxBackoff, with equal jitter
+    long backoff(final int failures) {
+        if (initialBackoff <= 0) {
+            return 0;
+        }
+
+        int shift = Math.min(Math.max(failures - 1, 0), 30);
+        long backoff = Math.min(initialBackoff << shift, maxBackoff);
+        long half = backoff / 2;
+        return backoff - half + ThreadLocalRandom.current().nextLong(half + 1);
+    }
+
+    private static final class Retry implements Delayed {
+        final EventBatch batch;
+        final long due; // System.nanoTime
+
+        Retry(EventBatch batch, long due) {
+            this.batch = batch;
+            this.due = due;
+        }
+
+        @Override
+        public long getDelay(TimeUnit unit) {
+            return unit.convert(due - System.nanoTime(), TimeUnit.NANOSECONDS);
+        }
+
+        @Override
+        public int compareTo(Delayed other) {
+            return Long.compare(due, ((Retry) other).due);
+        }
+    }
+}
@@ -16,6 +16,7 @@
 package com.splunk.kafka.connect;
 
 import com.splunk.hecclient.HecConfig;
+import com.splunk.hecclient.LoadBalancer;
 import org.apache.kafka.common.config.ConfigException;
 import org.apache.kafka.connect.sink.SinkConnector;
 import org.apache.kafka.common.config.AbstractConfig;
@@ -29,6 +30,7 @@ public final class SplunkSinkConnectorConfig extends AbstractConfig {
     static final String INDEX = "index";
     static final String SOURCE = "source";
     static final String SOURCETYPE = "sourcetype";
+    static final String NAME_CONF = "name"; // connector name, set by Kafka Connect
     // Required Parameters
     static final String URI_CONF = "splunk.hec.uri";
     static final String TOKEN_CONF = "splunk.hec.token";
@@ -43,14 +45,40 @@ public final class SplunkSinkConnectorConfig extends AbstractConfig {
     static final String HEC_THREDS_CONF = "splunk.hec.threads";
     static final String SOCKET_TIMEOUT_CONF = "splunk.hec.socket.timeout"; // seconds
     static final String SSL_VALIDATE_CERTIFICATES_CONF = "splunk.hec.ssl.validate.certs";
+    static final String HTTP_CONNECTION_TTL_CONF = "splunk.hec.http.connection.ttl"; // seconds
+    static final String HTTP_CONNECTION_IDLE_TIMEOUT_CONF = "splunk.hec.http.connection.idle.timeout"; // seconds
+    static final String DNS_CACHE_TTL_CONF = "splunk.hec.dns.cache.ttl"; // seconds
+    static final String LB_POLICY_CONF = "splunk.hec.lb.policy";
+    static final String HEALTH_CHECK_INTERVAL_CONF = "splunk.hec.health.check.interval"; // seconds
+    static final String HEALTH_CHECK_FAILURE_THRESHOLD_CONF = "splunk.hec.health.check.failure.threshold";
+    static final String INDEXER_DISCOVERY_CONF = "splunk.hec.indexer.discovery";
+    static final String URI_WEIGHTS_CONF = "splunk.hec.uri.weights";
+    static final String BACKOFF_INITIAL_CONF = "splunk.hec.backoff.initial"; // seconds
+    static final String BACKOFF_MAX_CONF = "splunk.hec.backoff.max"; // seconds
+    static final String BACKOFF_RAMP_PERIOD_CONF = "splunk.hec.backoff.ramp.period"; // seconds
+    static final String STICKY_PARTITIONS_CONF = "splunk.hec.partition.sticky";
+    static final String CHANNEL_AUTOSCALE_INTERVAL_CONF = "splunk.hec.channel.autoscale.interval"; // seconds
+    static final String CHANNEL_AUTOSCALE_MIN_CONF = "splunk.hec.channel.autoscale.min";
+    static final String CHANNEL_AUTOSCALE_MAX_CONF = "splunk.hec.channel.autoscale.max";
+    static final String CHANNEL_AUTOSCALE_OUTSTANDING_THRESHOLD_CONF = "splunk.hec.channel.autoscale.outstanding.threshold";
+    static final String CHANNEL_AUTOSCALE_ACK_LATENCY_THRESHOLD_CONF = "splunk.hec.channel.autoscale.ack.latency.threshold"; // seconds
+    static final String INDEXER_DISCOVERY_INTERVAL_CONF = "splunk.hec.indexer.discovery.interval"; // seconds
     // Acknowledgement Parameters
     // Use Ack
     static final String ACK_CONF = "splunk.hec.ack.enabled";
     static final String ACK_POLL_INTERVAL_CONF = "splunk.hec.ack.poll.interval"; // seconds
+    static final String ACK_POLL_MIN_INTERVAL_CONF = "splunk.hec.ack.poll.min.interval"; // seconds
     static final String ACK_POLL_THREADS_CONF = "splunk.hec.ack.poll.threads";
+    static final String ACK_POLL_CHUNK_SIZE_CONF = "splunk.hec.ack.poll.chunk.size";
+    static final String ACK_POLL_MAX_HTTP_CONNECTION_CONF = "splunk.hec.ack.poll.max.http.connection";
     static final String EVENT_TIMEOUT_CONF = "splunk.hec.event.timeout"; // seconds
     static final String MAX_OUTSTANDING_EVENTS_CONF = "splunk.hec.max.outstanding.events";
+    static final String MAX_OUTSTANDING_BYTES_CONF = "splunk.hec.max.outstanding.bytes";
     static final String MAX_RETRIES_CONF = "splunk.hec.max.retries";
+    static final String RETRY_BACKOFF_INITIAL_MS_CONF = "splunk.hec.retry.backoff.initial.ms";
+    static final String RETRY_BACKOFF_MAX_MS_CONF = "splunk.hec.retry.backoff.max.ms";
+    static final String COMMIT_REQUEST_THRESHOLD_CONF = "splunk.hec.commit.request.threshold";
+    static final String ACK_STATE_DIR_CONF = "splunk.hec.ack.state.dir";
     // Endpoint Parameters
     static final String RAW_CONF = "splunk.hec.raw";
     // /raw endpoint only
@@ -93,6 +121,63 @@ public final class SplunkSinkConnectorConfig extends AbstractConfig {
             + "Socket timeout.By default, this is set to 60 seconds.";
     static final String SSL_VALIDATE_CERTIFICATES_DOC = "Valid settings are true or false. Enables or disables HTTPS "
             + "certification validation. By default, this is set to true.";
+    static final String HTTP_CONNECTION_TTL_DOC = "Max duration in seconds a pooled HTTP connection is reused before it is "
+            + "closed and re-established. Recycling connections lets a load balancer in front of the indexers "
+            + "spread them again after indexer restarts or scale-out. By default, this is set to -1 which keeps "
+            + "connections forever.";
+    static final String HTTP_CONNECTION_IDLE_TIMEOUT_DOC = "Max duration in seconds a pooled HTTP connection can stay "
+            + "idle before it is evicted. By default, this is set to -1 which disables idle eviction.";
+    static final String DNS_CACHE_TTL_DOC = "Duration in seconds the resolved addresses of a HEC host are cached before "
+            + "the host is resolved again. New connections rotate over all resolved addresses. By default, this "
+            + "is set to -1 which uses the system resolver.";
+    static final String LB_POLICY_DOC = "Policy used to pick the HEC channel for each event batch. Valid settings are "
+            + "round_robin and the power of two choices variants p2c, p2c_outstanding and p2c_latency. These sample two "
+            + "channels at random and pick the one with the lower cost: the POST latency multiplied by the un-acked "
+            + "batches for p2c, the un-acked batches for p2c_outstanding and the moving average POST latency for "
+            + "p2c_latency. By default, this is set to round_robin.";
+    static final String HEALTH_CHECK_INTERVAL_DOC = "Interval in seconds at which /services/collector/health is probed on "
+            + "each indexer. Indexers failing the probes are taken out of the load balancing until they recover. "
+            + "By default, this is set to -1 which disables health checking.";
+    static final String HEALTH_CHECK_FAILURE_THRESHOLD_DOC = "Number of consecutive failed health probes after which an "
+            + "indexer is taken out of the load balancing, and of consecutive successful probes after which it is "
+            + "fully put back. By default, this is set to 3.";
+    static final String INDEXER_DISCOVERY_DOC = "Source the HEC URIs are periodically re-discovered from while the "
+            + "task runs. Valid settings are file:/path/to/file (URIs separated by comma or new line), "
+            + "dns:https://host:port (every A record of the host becomes an indexer) and "
+            + "srv:https://_service._tcp.domain (every SRV record becomes an indexer). Channels of new indexers are "
+            + "added and channels of vanished indexers drain without restarting the task. splunk.hec.uri is used "
+            + "until the first discovery. By default, this is empty which disables discovery.";
+    static final String INDEXER_DISCOVERY_INTERVAL_DOC = "Interval in seconds at which indexers are re-discovered. "
+            + "By default, this is set to 60.";
+    static final String URI_WEIGHTS_DOC = "Relative capacity of HEC URIs as uri=weight pairs separated by comma, for "
+            + "example https://idx1:8088=2,https://idx2:8088=1. Channels are created and event batches are load "
+            + "balanced in proportion to the weights. URIs without a weight, including discovered ones, have weight 1. "
+            + "By default, this is empty which weights all URIs equally.";
+    static final String BACKOFF_INITIAL_DOC = "Duration in seconds an indexer gets no new data after it answered 503/429 "
+            + "or failed with an IO error. The back-off doubles with every consecutive failure, a random jitter of "
+            + "+-20% is applied, and a Retry-After header sent by the indexer takes precedence. By default, this is "
+            + "set to 1.";
+    static final String BACKOFF_MAX_DOC = "Maximum back-off in seconds for an indexer. By default, this is set to 60.";
+    static final String STICKY_PARTITIONS_DOC = "When set to true, event batches are built per topic partition and all "
+            + "batches of a partition go to the same HEC channel, failing over to another channel while it has back "
+            + "pressure. The offsets of a partition then only wait for the acks of one channel instead of the slowest "
+            + "of all channels. By default, this is set to false.";
+    static final String CHANNEL_AUTOSCALE_INTERVAL_DOC = "Interval in seconds at which the number of HEC channels "
+            + "of every indexer is adjusted to its load. An indexer gets one more channel when its channels have too "
+            + "many outstanding acks or acks take too long, and gives one back when the load dropped well below. "
+            + "By default, this is set to -1 which disables auto-scaling and keeps " + TOTAL_HEC_CHANNEL_CONF + " channels.";
+    static final String CHANNEL_AUTOSCALE_MIN_DOC = "Minimum number of HEC channels per indexer when auto-scaling. "
+            + "By default, this is set to -1 which keeps the channels an indexer gets from " + TOTAL_HEC_CHANNEL_CONF
+            + ", so auto-scaling only adds channels on top of them.";
+    static final String CHANNEL_AUTOSCALE_MAX_DOC = "Maximum number of HEC channels per indexer when auto-scaling. "
+            + "By default, this is set to 8.";
+    static final String CHANNEL_AUTOSCALE_OUTSTANDING_THRESHOLD_DOC = "Average number of not yet acked event batches "
+            + "per channel above which an indexer gets another channel. By default, this is set to 50. -1 disables "
+            + "the outstanding acks trigger.";
+    static final String CHANNEL_AUTOSCALE_ACK_LATENCY_THRESHOLD_DOC = "Ack latency in seconds above which an indexer "
+            + "gets another channel. By default, this is set to -1 which disables the ack latency trigger.";
+    static final String BACKOFF_RAMP_PERIOD_DOC = "Duration in seconds over which the traffic to an indexer ramps up from "
+            + "10% to 100% after a back-off. By default, this is set to 10. 0 disables ramping.";
     // Acknowledgement Parameters
     // Use Ack
     static final String ACK_DOC = "Valid settings are true or false. When set to true Splunk Connect for Kafka will "
@@ -100,11 +185,25 @@ public final class SplunkSinkConnectorConfig extends AbstractConfig {
             + "to prevent data loss, as this setting implements guaranteed delivery. By default, this "
             + "setting is set to true.";
     static final String ACK_POLL_INTERVAL_DOC = "This setting is only applicable when splunk.hec.ack.enabled is set to "
-            + "true. Internally it controls the event ACKs polling interval. By default, "
-            + "this setting is 10 seconds.";
+            + "true. Internally it controls the event ACKs polling interval. Every channel polls its ACKs on its own "
+            + "schedule about the expected indexing time after sending and backs off up to this interval while its "
+            + "ACKs are pending. By default, this setting is 10 seconds.";
+    static final String ACK_POLL_MIN_INTERVAL_DOC = "This setting is only applicable when splunk.hec.ack.enabled is set "
+            + "to true. The shortest delay in seconds between two ACK polls of a channel. Set it to "
+            + ACK_POLL_INTERVAL_CONF + " to poll at a fixed interval. By default, this setting is 1 second.";
     static final String ACK_POLL_THREADS_DOC = "This setting is used for performance tuning and is only applicable when "
             + "splunk.hec.ack.enabled is set to true. It controls how many threads "
-            + "should be spawned to poll event ACKs. By default, this is set to 1.";
+            + "should be spawned to poll event ACKs. By default, this is set to 1. The poll threads are shared by all "
+            + "tasks of a worker, the shared pool has as many threads as all tasks ask for together, at most the "
+            + "number set by the JVM system property splunk.hec.ack.poll.max.threads, 32 by default.";
+    static final String ACK_POLL_CHUNK_SIZE_DOC = "This setting is used for performance tuning and is only applicable "
+            + "when splunk.hec.ack.enabled is set to true. It caps the number of ACK ids in one ACK poll request. A "
+            + "channel with more outstanding ACKs is polled with several requests which run in parallel on the ACK "
+            + "poll threads. By default, this setting is 1000.";
+    static final String ACK_POLL_MAX_HTTP_CONNECTION_DOC = "This setting is only applicable when splunk.hec.ack.enabled "
+            + "is set to true. ACK polls have a connection pool of their own, separate from the one for event POSTs, so "
+            + "they don't wait behind large uploads. It controls how many ACK poll connections are cached per indexer. "
+            + "By default, this setting is 2.";
     static final String EVENT_TIMEOUT_DOC = "This setting is applicable when splunk.hec.ack.enabled is set to true. "
             + "When events are POSTed to Splunk and before they are ACKed, this setting "
             + "determines how long the connector will wait before timing out and resending. "
@@ -112,8 +211,26 @@ public final class SplunkSinkConnectorConfig extends AbstractConfig {
     static final String MAX_OUTSTANDING_EVENTS_DOC = "Maximum amount of un-acknowledged events kept in memory by connector. "
             + "Will trigger back-pressure event to slow collection. By default, this "
             + "is set to 1000000.";
+    static final String MAX_OUTSTANDING_BYTES_DOC = "Maximum amount of bytes kept in memory by connector for "
+            + "buffered, queued, in flight, un-acknowledged and to be retried events, measured as the serialized HEC "
+            + "payload. Will trigger back-pressure event to slow collection like splunk.hec.max.outstanding.events. "
+            + "By default, this is set to -1 which only limits the number of events.";
     static final String MAX_RETRIES_DOC = "Number of retries for failed batches before giving up. By default this is set to "
             + "-1 which will retry indefinitely.";
+    static final String RETRY_BACKOFF_INITIAL_MS_DOC = "Milliseconds a failed batch waits before it is sent again. "
+            + "The wait doubles with every further failure of the batch and half of it is random. Retries prefer "
+            + "another indexer than the one the batch failed on. By default, this is set to 1000, 0 retries right away.";
+    static final String RETRY_BACKOFF_MAX_MS_DOC = "Maximum milliseconds a failed batch waits before it is sent again. "
+            + "By default, this is set to 60000.";
+    static final String COMMIT_REQUEST_THRESHOLD_DOC = "Number of Kafka records whose offsets became committable "
+            + "through ACKs after which the connector asks Kafka Connect for an offset commit instead of waiting for "
+            + "offset.flush.interval.ms. A lower value means fewer records replayed after a crash. By default, this is "
+            + "set to -1 which only commits on the offset.flush.interval.ms schedule.";
+    static final String ACK_STATE_DIR_DOC = "This setting is only applicable when splunk.hec.ack.enabled is set to "
+            + "true. Local directory in which a task saves the HEC channel ids and Kafka offsets of its not yet "
+            + "acknowledged events per partition when it stops or a partition is revoked. The task the partition is "
+            + "assigned to next polls these ACKs before resending the events and skips the ones Splunk indexed "
+            + "already. By default, this is empty which disables saving.";
     // Endpoint Parameters
     static final String RAW_DOC = "Set to true in order for Splunk software to ingest data using the the /raw HEC "
             + "endpoint. Default is false, which will use the /event endpoint.";
@@ -155,13 +272,40 @@ public final class SplunkSinkConnectorConfig extends AbstractConfig {
     final int numberOfThreads;
     final int socketTimeout;
     final boolean validateCertificates;
+    final int httpConnectionTtl;
+    final int httpConnectionIdleTimeout;
+    final int dnsCacheTtl;
+    final String lbPolicy;
+    final int healthCheckInterval;
+    final int healthCheckFailureThreshold;
+    final String indexerDiscovery;
+    final int indexerDiscoveryInterval;
+    final Map<String, Integer> uriWeights;
+    final int backoffInitial;
+    final int backoffMax;
+    final int backoffRampPeriod;
+    final boolean stickyPartitions;
+    final int channelAutoScaleInterval;
+    final int channelAutoScaleMin;
+    final int channelAutoScaleMax;
+    final int channelAutoScaleOutstandingThreshold;
+    final int channelAutoScaleAckLatencyThreshold;
 
     final boolean ack;
     final int ackPollInterval;
+    final int ackPollMinInterval;
     final int ackPollThreads;
+    final int ackPollChunkSize;
+    final int ackPollMaxHttpConnection;
     final int eventBatchTimeout;
     final int maxOutstandingEvents;
+    final long maxOutstandingBytes;
     final int maxRetries;
+    final int retryBackoffInitialMs;
+    final int retryBackoffMaxMs;
+    final int commitRequestThreshold;
+    final String ackStateDir;
+    final String connectorName;
 
     final boolean raw;
     final String lineBreaker;
@@ -184,12 +328,41 @@ public final class SplunkSinkConnectorConfig extends AbstractConfig {
         sources = getString(SOURCE_CONF);
         httpKeepAlive = getBoolean(HTTP_KEEPALIVE_CONF);
         validateCertificates = getBoolean(SSL_VALIDATE_CERTIFICATES_CONF);
+        httpConnectionTtl = getInt(HTTP_CONNECTION_TTL_CONF);
+        httpConnectionIdleTimeout = getInt(HTTP_CONNECTION_IDLE_TIMEOUT_CONF);
+        dnsCacheTtl = getInt(DNS_CACHE_TTL_CONF);
+        lbPolicy = getString(LB_POLICY_CONF);
+        healthCheckInterval = getInt(HEALTH_CHECK_INTERVAL_CONF);
+        healthCheckFailureThreshold = getInt(HEALTH_CHECK_FAILURE_THRESHOLD_CONF);
+        indexerDiscovery = getString(INDEXER_DISCOVERY_CONF);
+        indexerDiscoveryInterval = getInt(INDEXER_DISCOVERY_INTERVAL_CONF);
+        uriWeights = parseUriWeights(getString(URI_WEIGHTS_CONF));
+        backoffInitial = getInt(BACKOFF_INITIAL_CONF);
+        backoffMax = getInt(BACKOFF_MAX_CONF);
+        backoffRampPeriod = getInt(BACKOFF_RAMP_PERIOD_CONF);
+        stickyPartitions = getBoolean(STICKY_PARTITIONS_CONF);
+        channelAutoScaleInterval = getInt(CHANNEL_AUTOSCALE_INTERVAL_CONF);
+        channelAutoScaleMin = getInt(CHANNEL_AUTOSCALE_MIN_CONF);
+        channelAutoScaleMax = getInt(CHANNEL_AUTOSCALE_MAX_CONF);
+        if (channelAutoScaleMin == 0 || channelAutoScaleMin < -1) {
+            throw new ConfigException("Invalid " + CHANNEL_AUTOSCALE_MIN_CONF + "=" + channelAutoScaleMin
+                    + ". Expect -1 or a positive number");
+        }
+        if (channelAutoScaleMax < channelAutoScaleMin) {
+            throw new ConfigException("Invalid " + CHANNEL_AUTOSCALE_MAX_CONF + "=" + channelAutoScaleMax
+                    + ". Expect it to be at least " + CHANNEL_AUTOSCALE_MIN_CONF + "=" + channelAutoScaleMin);
+        }
+        channelAutoScaleOutstandingThreshold = getInt(CHANNEL_AUTOSCALE_OUTSTANDING_THRESHOLD_CONF);
+        channelAutoScaleAckLatencyThreshold = getInt(CHANNEL_AUTOSCALE_ACK_LATENCY_THRESHOLD_CONF);
         trustStorePath = getString(SSL_TRUSTSTORE_PATH_CONF);
         hasTrustStorePath = StringUtils.isNotBlank(trustStorePath);
         trustStorePassword = getPassword(SSL_TRUSTSTORE_PASSWORD_CONF).value();
         eventBatchTimeout = getInt(EVENT_TIMEOUT_CONF);
         ackPollInterval = getInt(ACK_POLL_INTERVAL_CONF);
+        ackPollMinInterval = getInt(ACK_POLL_MIN_INTERVAL_CONF);
         ackPollThreads = getInt(ACK_POLL_THREADS_CONF);
+        ackPollChunkSize = getInt(ACK_POLL_CHUNK_SIZE_CONF);
+        ackPollMaxHttpConnection = getInt(ACK_POLL_MAX_HTTP_CONNECTION_CONF);
         maxHttpConnPerChannel = getInt(MAX_HTTP_CONNECTION_PER_CHANNEL_CONF);
         totalHecChannels = getInt(TOTAL_HEC_CHANNEL_CONF);
         socketTimeout = getInt(SOCKET_TIMEOUT_CONF);
@@ -200,7 +373,13 @@ public final class SplunkSinkConnectorConfig extends AbstractConfig {
         numberOfThreads = getInt(HEC_THREDS_CONF);
         lineBreaker = getString(LINE_BREAKER_CONF);
         maxOutstandingEvents = getInt(MAX_OUTSTANDING_EVENTS_CONF);
+        maxOutstandingBytes = getLong(MAX_OUTSTANDING_BYTES_CONF);
         maxRetries = getInt(MAX_RETRIES_CONF);
+        retryBackoffInitialMs = getInt(RETRY_BACKOFF_INITIAL_MS_CONF);
+        retryBackoffMaxMs = getInt(RETRY_BACKOFF_MAX_MS_CONF);
+        commitRequestThreshold = getInt(COMMIT_REQUEST_THRESHOLD_CONF);
+        ackStateDir = getString(ACK_STATE_DIR_CONF);
+        connectorName = taskConfig.getOrDefault(NAME_CONF, "splunk-sink");
         topicMetas = initMetaMap(taskConfig);
     }
 
@@ -219,17 +398,46 @@ public final class SplunkSinkConnectorConfig extends AbstractConfig {
             .define(SSL_TRUSTSTORE_PASSWORD_CONF, ConfigDef.Type.PASSWORD, "", ConfigDef.Importance.HIGH, SSL_TRUSTSTORE_PASSWORD_DOC)
             .define(EVENT_TIMEOUT_CONF, ConfigDef.Type.INT, 300, ConfigDef.Importance.MEDIUM, EVENT_TIMEOUT_DOC)
             .define(ACK_POLL_INTERVAL_CONF, ConfigDef.Type.INT, 10, ConfigDef.Importance.MEDIUM, ACK_POLL_INTERVAL_DOC)
+            .define(ACK_POLL_MIN_INTERVAL_CONF, ConfigDef.Type.INT, 1, ConfigDef.Importance.LOW, ACK_POLL_MIN_INTERVAL_DOC)
             .define(ACK_POLL_THREADS_CONF, ConfigDef.Type.INT, 2, ConfigDef.Importance.MEDIUM, ACK_POLL_THREADS_DOC)
+            .define(ACK_POLL_CHUNK_SIZE_CONF, ConfigDef.Type.INT, 1000, ConfigDef.Range.atLeast(1), ConfigDef.Importance.LOW, ACK_POLL_CHUNK_SIZE_DOC)
+            .define(ACK_POLL_MAX_HTTP_CONNECTION_CONF, ConfigDef.Type.INT, 2, ConfigDef.Range.atLeast(1), ConfigDef.Importance.LOW, ACK_POLL_MAX_HTTP_CONNECTION_DOC)
             .define(MAX_HTTP_CONNECTION_PER_CHANNEL_CONF, ConfigDef.Type.INT, 2, ConfigDef.Importance.MEDIUM, MAX_HTTP_CONNECTION_PER_CHANNEL_DOC)
             .define(TOTAL_HEC_CHANNEL_CONF, ConfigDef.Type.INT, 2, ConfigDef.Importance.HIGH, TOTAL_HEC_CHANNEL_DOC)
             .define(SOCKET_TIMEOUT_CONF, ConfigDef.Type.INT, 60, ConfigDef.Importance.LOW, SOCKET_TIMEOUT_DOC)
+            .define(HTTP_CONNECTION_TTL_CONF, ConfigDef.Type.INT, -1, ConfigDef.Importance.LOW, HTTP_CONNECTION_TTL_DOC)
+            .define(HTTP_CONNECTION_IDLE_TIMEOUT_CONF, ConfigDef.Type.INT, -1, ConfigDef.Importance.LOW, HTTP_CONNECTION_IDLE_TIMEOUT_DOC)
+            .define(DNS_CACHE_TTL_CONF, ConfigDef.Type.INT, -1, ConfigDef.Importance.LOW, DNS_CACHE_TTL_DOC)
+            .define(LB_POLICY_CONF, ConfigDef.Type.STRING, LoadBalancer.ROUND_ROBIN,
+                    ConfigDef.ValidString.in(LoadBalancer.ROUND_ROBIN, LoadBalancer.POWER_OF_TWO_CHOICES_OUTSTANDING,
+                            LoadBalancer.POWER_OF_TWO_CHOICES_LATENCY, LoadBalancer.POWER_OF_TWO_CHOICES),
+                    ConfigDef.Importance.LOW, LB_POLICY_DOC)
+            .define(HEALTH_CHECK_INTERVAL_CONF, ConfigDef.Type.INT, -1, ConfigDef.Importance.LOW, HEALTH_CHECK_INTERVAL_DOC)
+            .define(HEALTH_CHECK_FAILURE_THRESHOLD_CONF, ConfigDef.Type.INT, 3, ConfigDef.Importance.LOW, HEALTH_CHECK_FAILURE_THRESHOLD_DOC)
+            .define(INDEXER_DISCOVERY_CONF, ConfigDef.Type.STRING, "", ConfigDef.Importance.LOW, INDEXER_DISCOVERY_DOC)
+            .define(INDEXER_DISCOVERY_INTERVAL_CONF, ConfigDef.Type.INT, 60, ConfigDef.Importance.LOW, INDEXER_DISCOVERY_INTERVAL_DOC)
+            .define(URI_WEIGHTS_CONF, ConfigDef.Type.STRING, "", ConfigDef.Importance.LOW, URI_WEIGHTS_DOC)
+            .define(BACKOFF_INITIAL_CONF, ConfigDef.Type.INT, 1, ConfigDef.Importance.LOW, BACKOFF_INITIAL_DOC)
+            .define(BACKOFF_MAX_CONF, ConfigDef.Type.INT, 60, ConfigDef.Importance.LOW, BACKOFF_MAX_DOC)
+            .define(BACKOFF_RAMP_PERIOD_CONF, ConfigDef.Type.INT, 10, ConfigDef.Importance.LOW, BACKOFF_RAMP_PERIOD_DOC)
+            .define(STICKY_PARTITIONS_CONF, ConfigDef.Type.BOOLEAN, false, ConfigDef.Importance.LOW, STICKY_PARTITIONS_DOC)
+            .define(CHANNEL_AUTOSCALE_INTERVAL_CONF, ConfigDef.Type.INT, -1, ConfigDef.Importance.LOW, CHANNEL_AUTOSCALE_INTERVAL_DOC)
+            .define(CHANNEL_AUTOSCALE_MIN_CONF, ConfigDef.Type.INT, -1, ConfigDef.Importance.LOW, CHANNEL_AUTOSCALE_MIN_DOC)
+            .define(CHANNEL_AUTOSCALE_MAX_CONF, ConfigDef.Type.INT, 8, ConfigDef.Range.atLeast(1), ConfigDef.Importance.LOW, CHANNEL_AUTOSCALE_MAX_DOC)
+            .define(CHANNEL_AUTOSCALE_OUTSTANDING_THRESHOLD_CONF, ConfigDef.Type.INT, 50, ConfigDef.Importance.LOW, CHANNEL_AUTOSCALE_OUTSTANDING_THRESHOLD_DOC)
+            .define(CHANNEL_AUTOSCALE_ACK_LATENCY_THRESHOLD_CONF, ConfigDef.Type.INT, -1, ConfigDef.Importance.LOW, CHANNEL_AUTOSCALE_ACK_LATENCY_THRESHOLD_DOC)
             .define(ENRICHMENT_CONF, ConfigDef.Type.STRING, "", ConfigDef.Importance.LOW, ENRICHMENT_DOC)
             .define(TRACK_DATA_CONF, ConfigDef.Type.BOOLEAN, false, ConfigDef.Importance.LOW, TRACK_DATA_DOC)
             .define(USE_RECORD_TIMESTAMP_CONF, ConfigDef.Type.BOOLEAN, true, ConfigDef.Importance.MEDIUM, USE_RECORD_TIMESTAMP_DOC)
             .define(HEC_THREDS_CONF, ConfigDef.Type.INT, 1, ConfigDef.Importance.LOW, HEC_THREADS_DOC)
             .define(LINE_BREAKER_CONF, ConfigDef.Type.STRING, "", ConfigDef.Importance.MEDIUM, LINE_BREAKER_DOC)
             .define(MAX_OUTSTANDING_EVENTS_CONF, ConfigDef.Type.INT, 1000000, ConfigDef.Importance.MEDIUM, MAX_OUTSTANDING_EVENTS_DOC)
+            .define(MAX_OUTSTANDING_BYTES_CONF, ConfigDef.Type.LONG, -1L, ConfigDef.Importance.MEDIUM, MAX_OUTSTANDING_BYTES_DOC)
             .define(MAX_RETRIES_CONF, ConfigDef.Type.INT, -1, ConfigDef.Importance.MEDIUM, MAX_RETRIES_DOC)
+            .define(RETRY_BACKOFF_INITIAL_MS_CONF, ConfigDef.Type.INT, 1000, ConfigDef.Range.atLeast(0), ConfigDef.Importance.LOW, RETRY_BACKOFF_INITIAL_MS_DOC)
+            .define(RETRY_BACKOFF_MAX_MS_CONF, ConfigDef.Type.INT, 60000, ConfigDef.Range.atLeast(0), ConfigDef.Importance.LOW, RETRY_BACKOFF_MAX_MS_DOC)
+            .define(COMMIT_REQUEST_THRESHOLD_CONF, ConfigDef.Type.INT, -1, ConfigDef.Importance.LOW, COMMIT_REQUEST_THRESHOLD_DOC)
+            .define(ACK_STATE_DIR_CONF, ConfigDef.Type.STRING, "", ConfigDef.Importance.LOW, ACK_STATE_DIR_DOC)
             .define(MAX_BATCH_SIZE_CONF, ConfigDef.Type.INT, 500, ConfigDef.Importance.MEDIUM, MAX_BATCH_SIZE_DOC);
     }
 
@@ -237,15 +445,40 @@ public final class SplunkSinkConnectorConfig extends AbstractConfig {
         Configuration Method to setup all settings related to Splunk HEC Client
      */
     public HecConfig getHecConfig() {
-        HecConfig config = new HecConfig(Arrays.asList(splunkURI.split(",")), splunkToken);
+        List<String> uris = new ArrayList<>();
+        for (String uri: splunkURI.split(",")) {
+            uris.add(uri.trim());
+        }
+        HecConfig config = new HecConfig(uris, splunkToken);
         config.setDisableSSLCertVerification(!validateCertificates)
                .setSocketTimeout(socketTimeout)
+               .setConnectionTimeToLive(httpConnectionTtl)
+               .setIdleConnectionTimeout(httpConnectionIdleTimeout)
+               .setDnsCacheTtl(dnsCacheTtl)
+               .setLoadBalancerPolicy(lbPolicy)
+               .setHealthCheckInterval(healthCheckInterval)
+               .setHealthCheckFailureThreshold(healthCheckFailureThreshold)
+               .setIndexerDiscovery(indexerDiscovery)
+               .setIndexerDiscoveryInterval(indexerDiscoveryInterval)
+               .setUriWeights(uriWeights)
+               .setBackoffInitial(backoffInitial)
+               .setBackoffMax(backoffMax)
+               .setBackoffRampPeriod(backoffRampPeriod)
+               .setStickyPartitions(stickyPartitions)
+               .setChannelAutoScaleInterval(channelAutoScaleInterval)
+               .setChannelAutoScaleMin(channelAutoScaleMin)
+               .setChannelAutoScaleMax(channelAutoScaleMax)
+               .setChannelAutoScaleOutstandingThreshold(channelAutoScaleOutstandingThreshold)
+               .setChannelAutoScaleAckLatencyThreshold(channelAutoScaleAckLatencyThreshold)
                .setMaxHttpConnectionPerChannel(maxHttpConnPerChannel)
                .setTotalChannels(totalHecChannels)
                .setEventBatchTimeout(eventBatchTimeout)
                .setHttpKeepAlive(httpKeepAlive)
                .setAckPollInterval(ackPollInterval)
+               .setAckPollMinInterval(ackPollMinInterval)
                .setAckPollThreads(ackPollThreads)
+               .setAckPollChunkSize(ackPollChunkSize)
+               .setAckPollMaxHttpConnection(ackPollMaxHttpConnection)
                .setEnableChannelTracking(trackData)
                .setTrustStorePath(trustStorePath)
                .setTrustStorePassword(trustStorePassword)
@@ -270,9 +503,30 @@ public final class SplunkSinkConnectorConfig extends AbstractConfig {
                 + "validateCertificates:" + validateCertificates + ", "
                 + "trustStorePath:" + trustStorePath + ", "
                 + "socketTimeout:" + socketTimeout + ", "
+                + "httpConnectionTtl:" + httpConnectionTtl + ", "
+                + "httpConnectionIdleTimeout:" + httpConnectionIdleTimeout + ", "
+                + "dnsCacheTtl:" + dnsCacheTtl + ", "
+                + "lbPolicy:" + lbPolicy + ", "
+                + "healthCheckInterval:" + healthCheckInterval + ", "
+                + "healthCheckFailureThreshold:" + healthCheckFailureThreshold + ", "
+                + "indexerDiscovery:" + indexerDiscovery + ", "
+                + "indexerDiscoveryInterval:" + indexerDiscoveryInterval + ", "
+                + "uriWeights:" + uriWeights + ", "
+                + "backoffInitial:" + backoffInitial + ", "
+                + "backoffMax:" + backoffMax + ", "
+                + "backoffRampPeriod:" + backoffRampPeriod + ", "
+                + "stickyPartitions:" + stickyPartitions + ", "
+                + "channelAutoScaleInterval:" + channelAutoScaleInterval + ", "
+                + "channelAutoScaleMin:" + channelAutoScaleMin + ", "
+                + "channelAutoScaleMax:" + channelAutoScaleMax + ", "
+                + "channelAutoScaleOutstandingThreshold:" + channelAutoScaleOutstandingThreshold + ", "
+                + "channelAutoScaleAckLatencyThreshold:" + channelAutoScaleAckLatencyThreshold + ", "
                 + "eventBatchTimeout:" + eventBatchTimeout + ", "
                 + "ackPollInterval:" + ackPollInterval + ", "
+                + "ackPollMinInterval:" + ackPollMinInterval + ", "
                 + "ackPollThreads:" + ackPollThreads + ", "
+                + "ackPollChunkSize:" + ackPollChunkSize + ", "
+                + "ackPollMaxHttpConnection:" + ackPollMaxHttpConnection + ", "
                 + "maxHttpConnectionPerChannel:" + maxHttpConnPerChannel + ", "
                 + "totalHecChannels:" + totalHecChannels + ", "
                 + "enrichment: " + getString(ENRICHMENT_CONF) + ", "
@@ -280,7 +534,12 @@ public final class SplunkSinkConnectorConfig extends AbstractConfig {
                 + "numberOfThreads: " + numberOfThreads + ", "
                 + "lineBreaker: " + lineBreaker + ", "
                 + "maxOutstandingEvents: " + maxOutstandingEvents + ", "
+                + "maxOutstandingBytes: " + maxOutstandingBytes + ", "
                 + "maxRetries: " + maxRetries + ", "
+                + "retryBackoffInitialMs: " + retryBackoffInitialMs + ", "
+                + "retryBackoffMaxMs: " + retryBackoffMaxMs + ", "
+                + "commitRequestThreshold: " + commitRequestThreshold + ", "
+                + "ackStateDir: " + ackStateDir + ", "
                 + "useRecordTimestamp: " + useRecordTimestamp + ", "
                 + "trackData: " + trackData;
     }
@@ -309,6 +568,33 @@ public final class SplunkSinkConnectorConfig extends AbstractConfig {
         return enrichmentKvs;
     }
 
+    // uri=weight pairs, the last '=' separates the weight since uris may contain '='
+    private static Map<String, Integer> parseUriWeights(String weights) {
+        String[] pairs = split(weights, ",");
+        Map<String, Integer> uriWeights = new HashMap<>();
+        if (pairs == null) {
+            return uriWeights;
+        }
+
+        for (final String pair: pairs) {
+            int idx = pair.lastIndexOf('=');
+            int weight = -1;
+            if (idx > 0) {
+                try {
+                    weight = Integer.parseInt(pair.substring(idx + 1).trim());
+                } catch (NumberFormatException ex) {
+                    weight = -1;
+                }
+            }
+
+            if (weight <= 0) {
+                throw new ConfigException("Invalid uri weights: " + weights + ". Expect uri=positive integer pairs and separated by comma");
+            }
+            uriWeights.put(pair.substring(0, idx).trim(), weight);
+        }
+        return uriWeights;
+    }
+
     private String getMetaForTopic(String[] metas, int expectedLength, int curIdx, String confKey) {
         if (metas == null) {
             return null;
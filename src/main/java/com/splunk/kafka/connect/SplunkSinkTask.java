@@ -19,11 +19,17 @@ import com.splunk.hecclient.*;
 import com.splunk.kafka.connect.VersionUtils;
 import org.apache.kafka.clients.consumer.OffsetAndMetadata;
 import org.apache.kafka.common.TopicPartition;
+import org.apache.kafka.connect.data.Field;
+import org.apache.kafka.connect.data.Struct;
 import org.apache.kafka.connect.errors.RetriableException;
 import org.apache.kafka.connect.sink.SinkRecord;
 import org.apache.kafka.connect.sink.SinkTask;
+import org.apache.commons.lang3.StringUtils;
 
+import java.io.File;
+import java.nio.ByteBuffer;
 import java.util.*;
+import java.util.concurrent.atomic.AtomicLong;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -34,18 +40,29 @@ public final class SplunkSinkTask extends SinkTask implements PollerCallback {
 
     private HecInf hec;
     private KafkaRecordTracker tracker;
+    private RetryScheduler retryScheduler;
     private SplunkSinkConnectorConfig connectorConfig;
     private List<SinkRecord> bufferedRecords;
+    private long bufferedBytes; // estimated, records are serialized when they are batched
     private long lastFlushed = System.currentTimeMillis();
     private long threadId = Thread.currentThread().getId();
+    private AtomicLong committableRecords = new AtomicLong(0); // moved by ACKs since the last commit
+    // offset ranges indexed before the last restart, redelivered records in them are not sent again
+    // per partition by start offset, drained as the redelivery passes them
+    private Map<TopicPartition, TreeMap<Long, AckStateStore.OffsetRange>> indexedRanges = new HashMap<>();
+    // acks left behind for the assigned partitions which were not acked yet when polled, they are
+    // polled again right before their records are resent
+    private Map<TopicPartition, List<AckStateStore.PendingChannel>> pendingAcks = new HashMap<>();
+    private AckResolver ackResolver;
 
     @Override
     public void start(Map<String, String> taskConfig) {
         connectorConfig = new SplunkSinkConnectorConfig(taskConfig);
         if (hec == null) {
-            hec = createHec();
+            hec = createHec(connectorConfig.getHecConfig());
         }
         tracker = new KafkaRecordTracker();
+        retryScheduler = new RetryScheduler(connectorConfig.retryBackoffInitialMs, connectorConfig.retryBackoffMaxMs);
         bufferedRecords = new ArrayList<>();
 
         log.info("kafka-connect-splunk task starts with config={}", connectorConfig);
@@ -54,13 +71,15 @@ public final class SplunkSinkTask extends SinkTask implements PollerCallback {
     @Override
     public void put(Collection<SinkRecord> records) {
         long startTime = System.currentTimeMillis();
-        log.debug("tid={} received {} records with total {} outstanding events tracked", threadId, records.size(), tracker.totalEvents());
+        log.debug("tid={} received {} records with total {} outstanding events and {} bytes tracked", threadId,
+                records.size(), tracker.totalEvents(), tracker.totalBytes() + bufferedBytes);
 
         handleFailedBatches();
 
         preventTooManyOutstandingEvents();
 
         bufferedRecords.addAll(records);
+        bufferedBytes += estimateBytes(records);
         if (bufferedRecords.size() < connectorConfig.maxBatchSize) {
             if (System.currentTimeMillis() - lastFlushed < flushWindow) {
                 logDuration(startTime);
@@ -78,8 +97,19 @@ public final class SplunkSinkTask extends SinkTask implements PollerCallback {
         // either flush window reached or max batch size reached
         records = bufferedRecords;
         bufferedRecords = new ArrayList<>();
+        bufferedBytes = 0;
         lastFlushed = System.currentTimeMillis();
 
+        if (!pendingAcks.isEmpty()) {
+            resolveReachedAcks(records);
+        }
+
+        List<SinkRecord> skipped = null;
+        if (!indexedRanges.isEmpty()) {
+            skipped = new ArrayList<>();
+            records = skipIndexedRecords(records, skipped);
+        }
+
         if (connectorConfig.raw) {
             /* /raw endpoint */
             handleRaw(records);
@@ -87,6 +117,12 @@ public final class SplunkSinkTask extends SinkTask implements PollerCallback {
             /* /event endpoint */
             handleEvent(records);
         }
+
+        // only now all lower offsets of the skipped records are tracked
+        if (skipped != null && !skipped.isEmpty()) {
+            log.info("skip {} redelivered records indexed before the restart", skipped.size());
+            tracker.addCommittedRecords(skipped);
+        }
         logDuration(startTime);
     }
 
@@ -105,26 +141,38 @@ public final class SplunkSinkTask extends SinkTask implements PollerCallback {
         return tracker;
     }
 
+    RetryScheduler getRetryScheduler() {
+        return retryScheduler;
+    }
+
+    // handleFailedBatches schedules new failures for a retry after their back-off and sends the
+    // retries which are due ahead of the records of this put
     private void handleFailedBatches() {
         Collection<EventBatch> failed = tracker.getAndRemoveFailedRecords();
-        if (failed.isEmpty()) {
-            return;
-        }
-
-        log.debug("going to handle {} failed batches", failed.size());
-        long failedEvents = 0;
-        // if there are failed ones, first deal with them
         for (final EventBatch batch: failed) {
-            failedEvents += batch.size();
             if (connectorConfig.maxRetries > 0 && batch.getFailureCount() > connectorConfig.maxRetries) {
                 log.error("dropping EventBatch with {} events in it since it reaches max retries {}",
                         batch.size(), connectorConfig.maxRetries);
                 continue;
             }
+            retryScheduler.schedule(batch);
+        }
+
+        if (retryScheduler.size() == 0) {
+            return;
+        }
+
+        long retriedEvents = 0;
+        int retried = 0;
+        for (final EventBatch batch: retryScheduler.pollDue()) {
+            retriedEvents += batch.size();
+            retried += 1;
             send(batch);
         }
 
-        log.info("handled {} failed batches with {} events", failed.size(), failedEvents);
+        long failedEvents = retriedEvents + retryScheduler.events();
+        log.info("retried {} failed batches with {} events, {} batches wait for a retry", retried, retriedEvents,
+                retryScheduler.size());
         if (failedEvents * 10 > connectorConfig.maxOutstandingEvents) {
             String msg = String.format("failed events reach 10 %% of max outstanding events %d, pause the pull for a while", connectorConfig.maxOutstandingEvents);
             throw new RetriableException(new HecException(msg));
@@ -136,15 +184,64 @@ public final class SplunkSinkTask extends SinkTask implements PollerCallback {
             String msg = String.format("max outstanding events %d have reached, pause the pull for a while", connectorConfig.maxOutstandingEvents);
             throw new RetriableException(new HecException(msg));
         }
+
+        if (connectorConfig.maxOutstandingBytes > 0
+                && tracker.totalBytes() + bufferedBytes >= connectorConfig.maxOutstandingBytes) {
+            String msg = String.format("max outstanding bytes %d have reached, pause the pull for a while", connectorConfig.maxOutstandingBytes);
+            throw new RetriableException(new HecException(msg));
+        }
+    }
+
+    // estimateBytes approximates the payload of records not serialized yet by the size of their values
+    private static long estimateBytes(final Collection<SinkRecord> records) {
+        long bytes = 0;
+        for (final SinkRecord record: records) {
+            bytes += estimateBytes(record.value());
+        }
+        return bytes;
+    }
+
+    // estimateBytes walks maps, lists and structs down to their strings and bytes, other values like
+    // numbers count as a few bytes each
+    private static long estimateBytes(final Object value) {
+        if (value == null) {
+            return 0;
+        } else if (value instanceof String) {
+            return ((String) value).length();
+        } else if (value instanceof byte[]) {
+            return ((byte[]) value).length;
+        } else if (value instanceof ByteBuffer) {
+            return ((ByteBuffer) value).remaining();
+        } else if (value instanceof Map) {
+            long bytes = 0;
+            for (Map.Entry<?, ?> entry: ((Map<?, ?>) value).entrySet()) {
+                bytes += estimateBytes(entry.getKey()) + estimateBytes(entry.getValue());
+            }
+            return bytes;
+        } else if (value instanceof Collection) {
+            long bytes = 0;
+            for (Object element: (Collection<?>) value) {
+                bytes += estimateBytes(element);
+            }
+            return bytes;
+        } else if (value instanceof Struct) {
+            Struct struct = (Struct) value;
+            long bytes = 0;
+            for (Field field: struct.schema().fields()) {
+                bytes += field.name().length() + estimateBytes(struct.get(field));
+            }
+            return bytes;
+        }
+        return 8;
     }
 
     private void handleRaw(final Collection<SinkRecord> records) {
-        if (connectorConfig.hasMetaDataConfigured()) {
+        if (connectorConfig.hasMetaDataConfigured() || connectorConfig.stickyPartitions) {
             // when setup metadata - index, source, sourcetype, we need partition records for /raw
             Map<TopicPartition, Collection<SinkRecord>> partitionedRecords = partitionRecords(records);
             for (Map.Entry<TopicPartition, Collection<SinkRecord>> entry: partitionedRecords.entrySet()) {
                 EventBatch batch = createRawEventBatch(entry.getKey());
-                sendEvents(entry.getValue(), batch);
+                sendEvents(entry.getValue(), setPartition(batch, entry.getKey()));
             }
         } else {
             EventBatch batch = createRawEventBatch(null);
@@ -153,8 +250,24 @@ public final class SplunkSinkTask extends SinkTask implements PollerCallback {
     }
 
     private void handleEvent(final Collection<SinkRecord> records) {
-        EventBatch batch = new JsonEventBatch();
-        sendEvents(records, batch);
+        if (connectorConfig.stickyPartitions) {
+            // sticky channels need batches of a single partition
+            Map<TopicPartition, Collection<SinkRecord>> partitionedRecords = partitionRecords(records);
+            for (Map.Entry<TopicPartition, Collection<SinkRecord>> entry: partitionedRecords.entrySet()) {
+                sendEvents(entry.getValue(), setPartition(new JsonEventBatch(), entry.getKey()));
+            }
+        } else {
+            EventBatch batch = new JsonEventBatch();
+            sendEvents(records, batch);
+        }
+    }
+
+    // only batches of a single partition are routed by partition
+    private EventBatch setPartition(final EventBatch batch, final TopicPartition tp) {
+        if (connectorConfig.stickyPartitions) {
+            batch.setPartition(tp);
+        }
+        return batch;
     }
 
     private void sendEvents(final Collection<SinkRecord> records, EventBatch batch) {
@@ -172,7 +285,7 @@ public final class SplunkSinkTask extends SinkTask implements PollerCallback {
             if (batch.size() >= connectorConfig.maxBatchSize) {
                 send(batch);
                 // start a new batch after send
-                batch = batch.createFromThis();
+                batch = batch.createFromThis().setPartition(batch.getPartition());
             }
         }
 
@@ -215,15 +328,70 @@ public final class SplunkSinkTask extends SinkTask implements PollerCallback {
     @Override
     public Map<TopicPartition, OffsetAndMetadata> preCommit(Map<TopicPartition, OffsetAndMetadata> meta) {
         // tell Kafka Connect framework what are offsets we can safely commit to Kafka now
+        committableRecords.set(0);
         Map<TopicPartition, OffsetAndMetadata> offsets = tracker.computeOffsets();
         log.debug("commits offsets offered={}, pushed={}", offsets, meta);
+        log.info("commit lag avg={}s max={}s over {} partitions with outstanding events, sticky partitions={}",
+                tracker.getAvgCommitLag(), tracker.getMaxCommitLag(), tracker.getLaggingPartitions(),
+                connectorConfig.stickyPartitions);
         return offsets;
     }
 
+    // open is called with the partitions assigned to the task, after start and after every rebalance
+    @Override
+    public void open(Collection<TopicPartition> partitions) {
+        tracker.open(partitions);
+        if (saveAckState()) {
+            restoreAckState(partitions);
+        }
+        log.info("opened {} partitions", partitions.size());
+    }
+
+    // close is called with the partitions revoked from the task. Their buffered records, outstanding
+    // batches and pending retries are dropped right away, the new owner resends them from the last
+    // committed offsets. Pending acks of theirs are saved back for the new owner.
+    @Override
+    public void close(Collection<TopicPartition> partitions) {
+        Set<TopicPartition> revoked = new HashSet<>(partitions);
+        bufferedRecords.removeIf(record -> revoked.contains(new TopicPartition(record.topic(), record.kafkaPartition())));
+        bufferedBytes = estimateBytes(bufferedRecords);
+        indexedRanges.keySet().removeAll(revoked);
+        for (TopicPartition tp: revoked) {
+            List<AckStateStore.PendingChannel> channels = pendingAcks.remove(tp);
+            if (channels != null) {
+                AckStateStore.forPartition(new File(connectorConfig.ackStateDir), connectorConfig.connectorName, tp)
+                        .append(channels);
+            }
+        }
+        tracker.close(revoked);
+        retryScheduler.removeIf(batch -> tracker.removeClosed(batch).isEmpty());
+        log.info("closed {} partitions, {} outstanding events tracked", revoked.size(), tracker.totalEvents());
+    }
+
     @Override
     public void stop() {
         if (hec != null) {
             hec.close();
+            if (saveAckState()) {
+                Map<TopicPartition, List<AckStateStore.PendingChannel>> channels =
+                        AckStateStore.byPartition(hec.getOutstandingAcks());
+                for (Map.Entry<TopicPartition, List<AckStateStore.PendingChannel>> entry: pendingAcks.entrySet()) {
+                    channels.computeIfAbsent(entry.getKey(), k -> new ArrayList<>()).addAll(entry.getValue());
+                }
+                pendingAcks.clear();
+                for (Map.Entry<TopicPartition, List<AckStateStore.PendingChannel>> entry: channels.entrySet()) {
+                    AckStateStore.forPartition(new File(connectorConfig.ackStateDir), connectorConfig.connectorName,
+                            entry.getKey()).append(entry.getValue());
+                }
+            }
+        }
+        if (ackResolver != null) {
+            try {
+                ackResolver.close();
+            } catch (HecException ex) {
+                log.warn("failed to close the ack resolver", ex);
+            }
+            ackResolver = null;
         }
         log.info("kafka-connect-splunk task ends with config={}", connectorConfig);
     }
@@ -233,10 +401,20 @@ public final class SplunkSinkTask extends SinkTask implements PollerCallback {
         return VersionUtils.getVersionString();
     }
 
+    // onEventCommitted is called from the poller threads. The committable offsets move right away and
+    // once enough records became committable the framework is asked for a commit ahead of schedule.
     public void onEventCommitted(final List<EventBatch> batches) {
-        // for (final EventBatch batch: batches) {
-            // assert batch.isCommitted();
-        // }
+        long moved = tracker.commitEventBatches(batches);
+        if (moved == 0 || connectorConfig.commitRequestThreshold <= 0) {
+            return;
+        }
+
+        long pending = committableRecords.addAndGet(moved);
+        if (pending >= connectorConfig.commitRequestThreshold && committableRecords.compareAndSet(pending, 0)
+                && context != null) {
+            log.debug("request offset commit for {} committable records", pending);
+            context.requestCommit();
+        }
     }
 
     public void onEventFailure(final List<EventBatch> batches, Exception ex) {
@@ -319,16 +497,198 @@ public final class SplunkSinkTask extends SinkTask implements PollerCallback {
         return partitionedRecords;
     }
 
-    private HecInf createHec() {
+    private HecInf createHec(final HecConfig hecConfig) {
         if (connectorConfig.numberOfThreads > 1) {
             return new ConcurrentHec(connectorConfig.numberOfThreads, connectorConfig.ack,
-                    connectorConfig.getHecConfig(), this);
+                    hecConfig, this);
         } else {
             if (connectorConfig.ack) {
-                return Hec.newHecWithAck(connectorConfig.getHecConfig(), this);
+                return Hec.newHecWithAck(hecConfig, this);
+            } else {
+                return Hec.newHecWithoutAck(hecConfig, this);
+            }
+        }
+    }
+
+    private boolean saveAckState() {
+        return connectorConfig.ack && StringUtils.isNotBlank(connectorConfig.ackStateDir);
+    }
+
+    // restoreAckState claims the acks left behind for the partitions and polls them before any of
+    // their records are sent. The offsets of acked batches are remembered to skip their records when
+    // Kafka redelivers them, the other acks stay pending. The former channels are not reused, other
+    // tasks may claim acks of them as well.
+    private void restoreAckState(final Collection<TopicPartition> partitions) {
+        Map<TopicPartition, Long> offsets = new HashMap<>();
+        int pending = 0;
+        for (TopicPartition tp: partitions) {
+            List<AckStateStore.PendingChannel> channels = AckStateStore.forPartition(
+                    new File(connectorConfig.ackStateDir), connectorConfig.connectorName, tp).claim();
+            for (AckStateStore.PendingChannel channel: channels) {
+                pending += channel.acks.size();
+            }
+            if (!channels.isEmpty()) {
+                pendingAcks.computeIfAbsent(tp, k -> new ArrayList<>()).addAll(channels);
+                offsets.put(tp, Long.MAX_VALUE);
+            }
+        }
+
+        if (pending > 0) {
+            int acked = resolvePendingAcks(offsets);
+            log.info("restored {} outstanding acks of {} partitions, {} were indexed already", pending,
+                    offsets.size(), acked);
+        }
+    }
+
+    // resolveReachedAcks polls the pending acks of the records about to be sent a last time. Acks
+    // whose records are all resent now are of no use afterwards and dropped.
+    private void resolveReachedAcks(final Collection<SinkRecord> records) {
+        Map<TopicPartition, Long> offsets = new HashMap<>();
+        for (SinkRecord record: records) {
+            TopicPartition tp = new TopicPartition(record.topic(), record.kafkaPartition());
+            if (pendingAcks.containsKey(tp)) {
+                offsets.merge(tp, record.kafkaOffset(), Math::max);
+            }
+        }
+        if (offsets.isEmpty()) {
+            return;
+        }
+
+        resolvePendingAcks(offsets);
+        for (Map.Entry<TopicPartition, Long> entry: offsets.entrySet()) {
+            List<AckStateStore.PendingChannel> channels = pendingAcks.get(entry.getKey());
+            if (channels == null) {
+                continue;
+            }
+            for (AckStateStore.PendingChannel channel: channels) {
+                channel.acks.values().removeIf(ranges -> maxEnd(ranges) <= entry.getValue());
+            }
+            channels.removeIf(channel -> channel.acks.isEmpty());
+            if (channels.isEmpty()) {
+                pendingAcks.remove(entry.getKey());
+            }
+        }
+    }
+
+    // resolvePendingAcks polls the pending acks of the partitions whose records start at or below the
+    // offsets, one request per channel. Acked ones move to the indexed ranges, returns their number.
+    private int resolvePendingAcks(final Map<TopicPartition, Long> offsets) {
+        Map<String, List<AckStateStore.PendingChannel>> channels = new LinkedHashMap<>();
+        Map<String, Set<Long>> ackIds = new HashMap<>();
+        for (Map.Entry<TopicPartition, Long> entry: offsets.entrySet()) {
+            for (AckStateStore.PendingChannel channel: pendingAcks.getOrDefault(entry.getKey(), Collections.emptyList())) {
+                String key = channel.uri + " " + channel.channelId;
+                channels.computeIfAbsent(key, k -> new ArrayList<>()).add(channel);
+                for (Map.Entry<Long, List<AckStateStore.OffsetRange>> ack: channel.acks.entrySet()) {
+                    if (minStart(ack.getValue()) <= entry.getValue()) {
+                        ackIds.computeIfAbsent(key, k -> new HashSet<>()).add(ack.getKey());
+                    }
+                }
+            }
+        }
+
+        int acked = 0;
+        try {
+            if (ackResolver == null) {
+                ackResolver = new AckResolver(connectorConfig.getHecConfig());
+            }
+            for (Map.Entry<String, Set<Long>> entry: ackIds.entrySet()) {
+                AckStateStore.PendingChannel first = channels.get(entry.getKey()).get(0);
+                Set<Long> indexed = ackResolver.resolve(first.uri, first.channelId, entry.getValue());
+                for (AckStateStore.PendingChannel channel: channels.get(entry.getKey())) {
+                    for (Long ackId: indexed) {
+                        List<AckStateStore.OffsetRange> ranges = channel.acks.remove(ackId);
+                        if (ranges != null) {
+                            addIndexedRanges(ranges);
+                            acked += 1;
+                        }
+                    }
+                }
+            }
+        } catch (Exception ex) {
+            log.error("failed to resolve the pending acks of {} partitions", offsets.size(), ex);
+        }
+
+        for (TopicPartition tp: offsets.keySet()) {
+            List<AckStateStore.PendingChannel> partitionChannels = pendingAcks.get(tp);
+            if (partitionChannels != null) {
+                partitionChannels.removeIf(channel -> channel.acks.isEmpty());
+                if (partitionChannels.isEmpty()) {
+                    pendingAcks.remove(tp);
+                }
+            }
+        }
+        return acked;
+    }
+
+    private static long minStart(final List<AckStateStore.OffsetRange> ranges) {
+        long start = Long.MAX_VALUE;
+        for (AckStateStore.OffsetRange range: ranges) {
+            start = Math.min(start, range.start);
+        }
+        return start;
+    }
+
+    private static long maxEnd(final List<AckStateStore.OffsetRange> ranges) {
+        long end = Long.MIN_VALUE;
+        for (AckStateStore.OffsetRange range: ranges) {
+            end = Math.max(end, range.end);
+        }
+        return end;
+    }
+
+    // for testing hook
+    SplunkSinkTask setAckResolver(final AckResolver resolver) {
+        this.ackResolver = resolver;
+        return this;
+    }
+
+    // for testing hook
+    Map<TopicPartition, List<AckStateStore.PendingChannel>> getPendingAcks() {
+        return pendingAcks;
+    }
+
+    // for testing hook
+    void addIndexedRanges(final List<AckStateStore.OffsetRange> ranges) {
+        for (AckStateStore.OffsetRange range: ranges) {
+            indexedRanges.computeIfAbsent(range.tp, k -> new TreeMap<>()).put(range.start, range);
+        }
+    }
+
+    // for testing hook
+    Map<TopicPartition, TreeMap<Long, AckStateStore.OffsetRange>> getIndexedRanges() {
+        return indexedRanges;
+    }
+
+    // skipIndexedRecords returns the records to send and adds the ones indexed already to skipped.
+    // It runs on the flushed records, the caller tracks the skipped ones as committed once the rest
+    // are sent, so their offsets are committed like the ones of any acked record. Kafka delivers the
+    // records of a partition in offset order, so the ranges ending below the current offset are done
+    // with and dropped, the lookups get cheaper as the redelivery goes on and stop once it passed all.
+    private Collection<SinkRecord> skipIndexedRecords(final Collection<SinkRecord> records, final List<SinkRecord> skipped) {
+        List<SinkRecord> toSend = new ArrayList<>(records.size());
+        for (SinkRecord record: records) {
+            TopicPartition tp = new TopicPartition(record.topic(), record.kafkaPartition());
+            TreeMap<Long, AckStateStore.OffsetRange> ranges = indexedRanges.get(tp);
+            boolean indexed = false;
+            if (ranges != null) {
+                long offset = record.kafkaOffset();
+                while (!ranges.isEmpty() && ranges.firstEntry().getValue().end < offset) {
+                    ranges.pollFirstEntry();
+                }
+                Map.Entry<Long, AckStateStore.OffsetRange> range = ranges.floorEntry(offset);
+                indexed = range != null && range.getValue().contains(tp, offset);
+                if (ranges.isEmpty()) {
+                    indexedRanges.remove(tp);
+                }
+            }
+
+            if (indexed) {
+                skipped.add(record);
             } else {
-                return Hec.newHecWithoutAck(connectorConfig.getHecConfig(), this);
+                toSend.add(record);
             }
         }
+        return toSend;
     }
 }
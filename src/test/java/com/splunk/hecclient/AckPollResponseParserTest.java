@@ -0,0 +1,75 @@
+/*
+ * Copyright 2017 Splunk, Inc..
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.splunk.hecclient;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.function.LongConsumer;
+
+public class AckPollResponseParserTest {
+    private static final String acks = "{\"acks\":{\"1\":true,\"2\":true,\"3\":true,\"4\":false,\"5\":false,\"6\":false}}";
+
+    @Test
+    public void parse() throws IOException {
+        List<Long> acked = new ArrayList<>();
+        ByteArrayInputStream in = new ByteArrayInputStream(acks.getBytes(StandardCharsets.UTF_8));
+        Assert.assertEquals(3, AckPollResponseParser.parse(in, acked::add));
+        Assert.assertEquals(Arrays.asList(1L, 2L, 3L), acked);
+    }
+
+    @Test
+    public void parseWithOtherFields() throws IOException {
+        List<Long> acked = new ArrayList<>();
+        String resp = "{\"text\":\"ok\",\"nested\":{\"acks\":{\"7\":true}},\"acks\":{\"9007199254740993\":true,\"8\":null}}";
+        Assert.assertEquals(1, parse(resp, acked::add));
+        Assert.assertEquals(Arrays.asList(9007199254740993L), acked);
+    }
+
+    @Test
+    public void parseEmpty() throws IOException {
+        Assert.assertEquals(0, parse("{\"acks\":{}}", id -> Assert.fail()));
+        Assert.assertEquals(0, parse("{}", id -> Assert.fail()));
+    }
+
+    @Test
+    public void parseMalformed() {
+        String[] malformed = {"", "[]", "{\"acks\":{\"x\":true}}", "{\"acks\":{\"-1\":true}}", "{\"acks\":{\"1\":true,"};
+        for (String resp: malformed) {
+            List<Long> acked = new ArrayList<>();
+            try {
+                parse(resp, acked::add);
+                Assert.fail("expect failure for " + resp);
+            } catch (IOException ex) {
+                // expected
+            }
+            // ids before the malformed part are handed over
+            if (resp.startsWith("{\"acks\":{\"1\"")) {
+                Assert.assertEquals(Arrays.asList(1L), acked);
+            }
+        }
+    }
+
+    private static int parse(String resp, LongConsumer acked) throws IOException {
+        return AckPollResponseParser.parse(new ByteArrayInputStream(resp.getBytes(StandardCharsets.UTF_8)), acked);
+    }
+}
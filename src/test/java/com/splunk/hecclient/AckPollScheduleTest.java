@@ -0,0 +1,81 @@
+/*
+ * Copyright 2017 Splunk, Inc..
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.splunk.hecclient;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class AckPollScheduleTest {
+    @Test
+    public void activate() {
+        AckPollSchedule schedule = new AckPollSchedule(1000, 10000);
+        Assert.assertEquals(0, schedule.getNextPoll());
+        Assert.assertFalse(schedule.tryStart(Long.MAX_VALUE));
+
+        // expected indexing time below the min
+        schedule.activate(0, 300);
+        Assert.assertEquals(1000, schedule.getDelay());
+        assertJittered(1000, schedule.getNextPoll());
+
+        // already active
+        long next = schedule.getNextPoll();
+        schedule.activate(500, 3000);
+        Assert.assertEquals(next, schedule.getNextPoll());
+
+        Assert.assertFalse(schedule.tryStart(next - 1));
+        Assert.assertTrue(schedule.tryStart(next));
+        // in flight
+        Assert.assertFalse(schedule.tryStart(next));
+    }
+
+    @Test
+    public void backoffWhilePending() {
+        AckPollSchedule schedule = new AckPollSchedule(1000, 5000);
+        schedule.activate(0, 2000);
+        Assert.assertEquals(2000, schedule.getDelay());
+
+        long[] expected = {4000, 5000, 5000};
+        for (long delay: expected) {
+            Assert.assertTrue(schedule.tryStart(schedule.getNextPoll()));
+            schedule.finish(0, false, 2000, () -> true);
+            Assert.assertEquals(delay, schedule.getDelay());
+            assertJittered(delay, schedule.getNextPoll());
+        }
+
+        // progress goes back to the expected indexing time
+        Assert.assertTrue(schedule.tryStart(schedule.getNextPoll()));
+        schedule.finish(0, true, 1500, () -> true);
+        Assert.assertEquals(1500, schedule.getDelay());
+    }
+
+    @Test
+    public void idleWithoutOutstanding() {
+        AckPollSchedule schedule = new AckPollSchedule(1000, 5000);
+        schedule.activate(0, 1000);
+        Assert.assertTrue(schedule.tryStart(schedule.getNextPoll()));
+        schedule.finish(0, true, 1000, () -> false);
+        Assert.assertEquals(0, schedule.getNextPoll());
+        Assert.assertFalse(schedule.tryStart(Long.MAX_VALUE));
+
+        schedule.activate(10000, 1000);
+        assertJittered(11000, schedule.getNextPoll());
+    }
+
+    private static void assertJittered(long expected, long actual) {
+        Assert.assertTrue(actual >= expected * 0.8);
+        Assert.assertTrue(actual <= expected * 1.2);
+    }
+}
@@ -0,0 +1,99 @@
+/*
+ * Copyright 2017 Splunk, Inc..
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.splunk.hecclient;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class AckPollServiceTest {
+    @Test
+    public void sharedByPollers() {
+        HecAckPoller poller1 = new HecAckPoller(null).setAckPollThreads(2);
+        HecAckPoller poller2 = new HecAckPoller(null).setAckPollThreads(4);
+        poller1.start();
+        poller2.start();
+
+        AckPollService service = AckPollService.current();
+        Assert.assertNotNull(service);
+        Assert.assertEquals(2, service.getPollers());
+        // as many threads as the pollers asked for together
+        Assert.assertEquals(6, service.getPollThreads());
+
+        poller1.stop();
+        Assert.assertSame(service, AckPollService.current());
+        Assert.assertEquals(1, service.getPollers());
+        Assert.assertEquals(4, service.getPollThreads());
+
+        // stops with the last poller and starts over with the next one
+        poller2.stop();
+        Assert.assertNull(AckPollService.current());
+        poller1.start();
+        Assert.assertNotSame(service, AckPollService.current());
+        Assert.assertEquals(2, AckPollService.current().getPollThreads());
+        poller1.stop();
+        Assert.assertNull(AckPollService.current());
+    }
+
+    @Test
+    public void capPollThreads() {
+        System.setProperty(AckPollService.maxPollThreadsProperty, "5");
+        try {
+            HecAckPoller poller1 = new HecAckPoller(null).setAckPollThreads(4);
+            HecAckPoller poller2 = new HecAckPoller(null).setAckPollThreads(4);
+            poller1.start();
+            poller2.start();
+            Assert.assertEquals(5, AckPollService.current().getPollThreads());
+            poller2.stop();
+            Assert.assertEquals(4, AckPollService.current().getPollThreads());
+            poller1.stop();
+        } finally {
+            System.clearProperty(AckPollService.maxPollThreadsProperty);
+        }
+
+        System.setProperty(AckPollService.maxPollThreadsProperty, "many");
+        try {
+            Assert.assertEquals(32, AckPollService.maxPollThreads());
+        } finally {
+            System.clearProperty(AckPollService.maxPollThreadsProperty);
+        }
+    }
+
+    @Test
+    public void pollForEveryOwner() {
+        PollerCallbackMock cb1 = new PollerCallbackMock();
+        PollerCallbackMock cb2 = new PollerCallbackMock();
+        HecAckPoller poller1 = new HecAckPoller(cb1).setAckPollThreads(1);
+        HecAckPoller poller2 = new HecAckPoller(cb2).setAckPollThreads(1);
+        poller1.start();
+        poller2.start();
+
+        IndexerMock indexer = new IndexerMock();
+        indexer.setResponse("{\"acks\":{\"1\":true}}");
+        EventBatch batch1 = UnitUtil.createBatch();
+        EventBatch batch2 = UnitUtil.createBatch();
+        poller1.add(new HecChannel(indexer), batch1, "{\"text\":\"Success\",\"code\":0,\"ackId\":1}");
+        poller2.add(new HecChannel(indexer), batch2, "{\"text\":\"Success\",\"code\":0,\"ackId\":1}");
+
+        // each owner's callback gets its own batch
+        UnitUtil.milliSleep(1500);
+        Assert.assertEquals(1, cb1.getCommitted().size());
+        Assert.assertSame(batch1, cb1.getCommitted().get(0));
+        Assert.assertEquals(1, cb2.getCommitted().size());
+        Assert.assertSame(batch2, cb2.getCommitted().get(0));
+        poller1.stop();
+        poller2.stop();
+    }
+}
@@ -0,0 +1,64 @@
+/*
+ * Copyright 2017 Splunk, Inc..
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.splunk.hecclient;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
+
+public class AckResolverTest {
+    private static final String uri = "https://localhost:8088";
+
+    @Test
+    public void resolve() {
+        CloseableHttpClientMock client = new CloseableHttpClientMock();
+        client.setResponse("{\"acks\":{\"1\":true,\"2\":false,\"3\":true}}");
+
+        try (AckResolver resolver = new AckResolver(new HecConfig(Arrays.asList(uri), "token"), client, false)) {
+            Set<Long> acked = resolver.resolve(uri, "c1", Arrays.asList(1L, 2L, 3L));
+            Assert.assertEquals(new HashSet<>(Arrays.asList(1L, 3L)), acked);
+        }
+    }
+
+    @Test
+    public void resolveWithoutAcks() {
+        CloseableHttpClientMock client = new CloseableHttpClientMock();
+        client.setResponse(CloseableHttpClientMock.exception);
+
+        try (AckResolver resolver = new AckResolver(new HecConfig(Arrays.asList(uri), "token"), client, false)) {
+            Assert.assertTrue(resolver.resolve(uri, "c1", Collections.emptyList()).isEmpty());
+        }
+    }
+
+    @Test
+    public void resolveWithError() {
+        CloseableHttpClientMock client = new CloseableHttpClientMock();
+        client.setResponse(CloseableHttpClientMock.serverBusy);
+
+        try (AckResolver resolver = new AckResolver(new HecConfig(Arrays.asList(uri), "token"), client, false)) {
+            Assert.assertTrue(resolver.resolve(uri, "c1", Arrays.asList(1L)).isEmpty());
+        }
+
+        client.setResponse(CloseableHttpClientMock.exception);
+        try (AckResolver resolver = new AckResolver(new HecConfig(Arrays.asList(uri), "token"), client, false)) {
+            Assert.assertTrue(resolver.resolve(uri, "c1", Arrays.asList(1L)).isEmpty());
+        }
+    }
+}
@@ -0,0 +1,231 @@
+/*
+ * Copyright 2017 Splunk, Inc..
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.splunk.hecclient;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+public class AckWindowTest {
+    @Test
+    public void putRemove() {
+        AckWindow window = new AckWindow();
+        Assert.assertTrue(window.isEmpty());
+        Assert.assertNull(window.remove(0));
+
+        EventBatch batch1 = UnitUtil.createBatch();
+        EventBatch batch2 = UnitUtil.createBatch();
+        put(window, 1, batch1);
+        put(window, 2, batch2);
+        Assert.assertEquals(2, window.size());
+        Assert.assertEquals("1,2", pendingIds(window));
+
+        Assert.assertNull(window.remove(3));
+        Assert.assertSame(batch1, window.remove(1));
+        Assert.assertNull(window.remove(1));
+        Assert.assertEquals("2", pendingIds(window));
+        Assert.assertSame(batch2, window.remove(2));
+        Assert.assertTrue(window.isEmpty());
+        Assert.assertEquals("", pendingIds(window));
+    }
+
+    @Test
+    public void slideWithoutGrowing() {
+        AckWindow window = new AckWindow();
+        int capacity = window.capacity();
+        // ack ids keep increasing while only a few are pending at a time
+        for (long id = 0; id < 10 * capacity; id++) {
+            put(window, id, UnitUtil.createBatch());
+            if (id >= 10) {
+                Assert.assertNotNull(window.remove(id - 10));
+            }
+        }
+        Assert.assertEquals(10, window.size());
+        Assert.assertEquals(capacity, window.capacity());
+    }
+
+    @Test
+    public void grow() {
+        AckWindow window = new AckWindow();
+        int capacity = window.capacity();
+        EventBatch first = UnitUtil.createBatch();
+        put(window, 5, first);
+        put(window, 5 + capacity * 3, UnitUtil.createBatch());
+        Assert.assertTrue(window.capacity() > capacity * 3);
+        Assert.assertEquals("5," + (5 + capacity * 3), pendingIds(window));
+        Assert.assertSame(first, window.remove(5));
+        Assert.assertEquals(1, window.size());
+    }
+
+    @Test
+    public void overtakenResponse() {
+        AckWindow window = new AckWindow();
+        put(window, 6, UnitUtil.createBatch());
+        // the response of ack id 5 arrived after the one of 6
+        put(window, 5, UnitUtil.createBatch());
+        Assert.assertEquals("5,6", pendingIds(window));
+    }
+
+    @Test
+    public void restartedAckIds() {
+        AckWindow window = new AckWindow();
+        int capacity = window.capacity();
+        EventBatch old1 = UnitUtil.createBatch();
+        EventBatch old2 = UnitUtil.createBatch();
+        put(window, capacity * 2, old1);
+        put(window, capacity * 2 + 1, old2);
+
+        // the indexer restarted, the old ids are never acked and the ring doesn't stretch to them
+        List<EventBatch> stale = new ArrayList<>();
+        EventBatch batch = UnitUtil.createBatch();
+        window.put(0, batch, stale);
+        Assert.assertEquals(Arrays.asList(old1, old2), stale);
+        Assert.assertEquals("0", pendingIds(window));
+        Assert.assertEquals(capacity, window.capacity());
+        Assert.assertSame(batch, window.get(0));
+
+        // within the ring only an ack id handed out again is stale
+        put(window, 3, old1);
+        stale.clear();
+        window.put(3, old2, stale);
+        Assert.assertEquals(Arrays.asList(old1), stale);
+        Assert.assertEquals("0,3", pendingIds(window));
+        Assert.assertEquals(2, window.size());
+        Assert.assertSame(old2, window.remove(3));
+    }
+
+    @Test
+    public void removeHighest() {
+        AckWindow window = new AckWindow();
+        int capacity = window.capacity();
+        put(window, 1, UnitUtil.createBatch());
+        put(window, 2, UnitUtil.createBatch());
+        put(window, capacity + 10, UnitUtil.createBatch());
+        Assert.assertNotNull(window.remove(capacity + 10));
+
+        // the window ends at the highest pending id again, so ids below it are no restart
+        put(window, 0, UnitUtil.createBatch());
+        put(window, capacity - 2, UnitUtil.createBatch());
+        Assert.assertEquals("0,1,2," + (capacity - 2), pendingIds(window));
+    }
+
+    @Test
+    public void removeIfPendingForBatch() {
+        AckWindow window = new AckWindow();
+        EventBatch batch = UnitUtil.createBatch();
+        EventBatch other = UnitUtil.createBatch();
+        put(window, 1, batch);
+
+        Assert.assertFalse(window.remove(1, other));
+        Assert.assertFalse(window.remove(2, batch));
+        Assert.assertEquals(1, window.size());
+        Assert.assertTrue(window.remove(1, batch));
+        Assert.assertTrue(window.isEmpty());
+        Assert.assertFalse(window.remove(1, batch));
+    }
+
+    @Test
+    public void get() {
+        AckWindow window = new AckWindow();
+        EventBatch batch = UnitUtil.createBatch();
+        Assert.assertNull(window.get(1));
+        put(window, 1, batch);
+        put(window, 3, UnitUtil.createBatch());
+        Assert.assertSame(batch, window.get(1));
+        Assert.assertNull(window.get(2));
+        Assert.assertNull(window.get(4));
+        Assert.assertEquals(2, window.size());
+    }
+
+    @Test
+    public void chunks() {
+        AckWindow window = new AckWindow();
+        for (long id: new long[]{3, 4, 7, 70, 71}) {
+            put(window, id, UnitUtil.createBatch());
+        }
+
+        StringBuilder sb = new StringBuilder();
+        long from = window.appendPendingIds(sb, 0, 2);
+        Assert.assertEquals("3,4", sb.toString());
+        Assert.assertEquals(7, from);
+
+        sb.setLength(0);
+        from = window.appendPendingIds(sb, from, 2);
+        Assert.assertEquals("7,70", sb.toString());
+
+        sb.setLength(0);
+        from = window.appendPendingIds(sb, from, 2);
+        Assert.assertEquals("71", sb.toString());
+        Assert.assertEquals(-1, from);
+    }
+
+    @Test
+    public void removeAll() {
+        AckWindow window = new AckWindow();
+        EventBatch batch1 = UnitUtil.createBatch();
+        EventBatch batch3 = UnitUtil.createBatch();
+        put(window, 1, batch1);
+        put(window, 2, UnitUtil.createBatch());
+        put(window, 3, batch3);
+
+        List<EventBatch> removed = new ArrayList<>();
+        Assert.assertEquals(2, window.removeAll(new long[]{3, 1, 5, 1, 2}, 4, removed));
+        Assert.assertEquals(Arrays.asList(batch3, batch1), removed);
+        Assert.assertEquals("2", pendingIds(window));
+    }
+
+    @Test
+    public void randomOperations() {
+        AckWindow window = new AckWindow();
+        Map<Long, EventBatch> expected = new HashMap<>();
+        Random random = new Random(7);
+        long next = 0;
+        for (int i = 0; i < 20000; i++) {
+            if (random.nextInt(3) != 0 || expected.isEmpty()) {
+                EventBatch batch = UnitUtil.createBatch();
+                expected.put(next, batch);
+                put(window, next, batch);
+                next += 1 + random.nextInt(3);
+            } else {
+                long id = next - 1 - random.nextInt(500);
+                Assert.assertSame(expected.remove(id), window.remove(id));
+            }
+            Assert.assertEquals(expected.size(), window.size());
+        }
+
+        StringBuilder sb = new StringBuilder();
+        expected.keySet().stream().sorted().forEach(id -> sb.append(sb.length() == 0 ? "" : ",").append(id));
+        Assert.assertEquals(sb.toString(), pendingIds(window));
+    }
+
+    private static void put(AckWindow window, long ackId, EventBatch batch) {
+        List<EventBatch> stale = new ArrayList<>();
+        window.put(ackId, batch, stale);
+        Assert.assertTrue(stale.isEmpty());
+    }
+
+    private static String pendingIds(AckWindow window) {
+        StringBuilder sb = new StringBuilder();
+        window.appendPendingIds(sb);
+        return sb.toString();
+    }
+}
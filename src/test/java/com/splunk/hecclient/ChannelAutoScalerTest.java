@@ -0,0 +1,102 @@
+/*
+ * Copyright 2017 Splunk, Inc..
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.splunk.hecclient;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+public class ChannelAutoScalerTest {
+    @Test
+    public void scaleUpOnOutstandingBatches() {
+        ChannelAutoScaler scaler = new ChannelAutoScaler(1, 3, 10, -1);
+        List<HecChannel> channels = createChannels(2, 11);
+        Assert.assertEquals(3, scaler.desiredChannels(channels, 1));
+
+        // never above the max
+        channels = createChannels(3, 11);
+        Assert.assertEquals(3, scaler.desiredChannels(channels, 1));
+
+        // between the scale down and the scale up threshold
+        channels = createChannels(2, 5);
+        Assert.assertEquals(2, scaler.desiredChannels(channels, 1));
+    }
+
+    @Test
+    public void scaleUpOnAckLatency() {
+        ChannelAutoScaler scaler = new ChannelAutoScaler(1, 3, -1, 1000);
+        List<HecChannel> channels = createChannels(2, 1);
+        channels.get(0).recordAckLatency(2000);
+        Assert.assertEquals(3, scaler.desiredChannels(channels, 1));
+
+        // between the scale down and the scale up threshold
+        channels.get(1).recordAckLatency(600);
+        channels.get(0).releaseBatches(1);
+        Assert.assertEquals(2, scaler.desiredChannels(channels, 1));
+
+        // the latency of a channel without outstanding batches is stale
+        channels.get(1).releaseBatches(1);
+        Assert.assertEquals(1, scaler.desiredChannels(channels, 1));
+    }
+
+    @Test
+    public void scaleDown() {
+        ChannelAutoScaler scaler = new ChannelAutoScaler(2, 4, 10, 1000);
+        Assert.assertEquals(2, scaler.desiredChannels(createChannels(3, 2), 1));
+        // never below the min
+        Assert.assertEquals(2, scaler.desiredChannels(createChannels(2, 0), 1));
+    }
+
+    @Test
+    public void clampToBounds() {
+        ChannelAutoScaler scaler = new ChannelAutoScaler(2, 4, 10, -1);
+        Assert.assertEquals(2, scaler.desiredChannels(createChannels(1, 0), 1));
+        Assert.assertEquals(4, scaler.desiredChannels(createChannels(6, 100), 1));
+        Assert.assertEquals(2, scaler.getMinChannels(1));
+        Assert.assertEquals(4, scaler.getMaxChannels());
+    }
+
+    @Test
+    public void keepInitialChannels() {
+        ChannelAutoScaler scaler = new ChannelAutoScaler(-1, 4, 10, -1);
+        // idle, but never below the channels the indexer started with
+        Assert.assertEquals(3, scaler.desiredChannels(createChannels(3, 0), 3));
+        Assert.assertEquals(3, scaler.desiredChannels(createChannels(2, 0), 3));
+        Assert.assertEquals(4, scaler.desiredChannels(createChannels(3, 11), 3));
+        // capped by the max
+        Assert.assertEquals(4, scaler.getMinChannels(6));
+        Assert.assertEquals(1, scaler.getMinChannels(0));
+    }
+
+    @Test(expected = HecException.class)
+    public void createWithInvalidBounds() {
+        new ChannelAutoScaler(3, 2, 10, -1);
+    }
+
+    private static List<HecChannel> createChannels(int count, int outstanding) {
+        List<HecChannel> channels = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            HecChannel channel = new HecChannel(new IndexerMock());
+            for (int j = 0; j < outstanding; j++) {
+                channel.send(UnitUtil.createBatch());
+            }
+            channels.add(channel);
+        }
+        return channels;
+    }
+}
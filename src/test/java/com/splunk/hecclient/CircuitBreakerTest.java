@@ -0,0 +1,81 @@
+/*
+ * Copyright 2017 Splunk, Inc..
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.splunk.hecclient;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class CircuitBreakerTest {
+    @Test
+    public void openAfterConsecutiveFailures() {
+        CircuitBreaker breaker = new CircuitBreaker("https://localhost:8088", 3, 2);
+        Assert.assertEquals(CircuitBreaker.State.CLOSED, breaker.getState());
+        Assert.assertTrue(breaker.allowRequest());
+
+        breaker.recordFailure();
+        breaker.recordFailure();
+        // a success in between resets the failure count
+        breaker.recordSuccess();
+        breaker.recordFailure();
+        breaker.recordFailure();
+        Assert.assertEquals(CircuitBreaker.State.CLOSED, breaker.getState());
+
+        breaker.recordFailure();
+        Assert.assertEquals(CircuitBreaker.State.OPEN, breaker.getState());
+        for (int i = 0; i < 100; i++) {
+            Assert.assertFalse(breaker.allowRequest());
+        }
+    }
+
+    @Test
+    public void closeAfterRecovery() {
+        CircuitBreaker breaker = new CircuitBreaker("https://localhost:8088", 1, 2);
+        breaker.recordFailure();
+        Assert.assertEquals(CircuitBreaker.State.OPEN, breaker.getState());
+
+        breaker.recordSuccess();
+        Assert.assertEquals(CircuitBreaker.State.HALF_OPEN, breaker.getState());
+
+        // only part of the traffic is let through while half open
+        int allowed = 0;
+        int total = 10000;
+        for (int i = 0; i < total; i++) {
+            if (breaker.allowRequest()) {
+                allowed++;
+            }
+        }
+        Assert.assertTrue(allowed > 0);
+        Assert.assertTrue(allowed < total / 2);
+
+        breaker.recordSuccess();
+        Assert.assertEquals(CircuitBreaker.State.CLOSED, breaker.getState());
+        Assert.assertTrue(breaker.allowRequest());
+    }
+
+    @Test
+    public void reopenOnHalfOpenFailure() {
+        CircuitBreaker breaker = new CircuitBreaker("https://localhost:8088", 3, 3);
+        for (int i = 0; i < 3; i++) {
+            breaker.recordFailure();
+        }
+        breaker.recordSuccess();
+        Assert.assertEquals(CircuitBreaker.State.HALF_OPEN, breaker.getState());
+
+        // a single failure while half open opens the breaker again
+        breaker.recordFailure();
+        Assert.assertEquals(CircuitBreaker.State.OPEN, breaker.getState());
+    }
+}
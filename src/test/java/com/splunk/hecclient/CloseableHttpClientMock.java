@@ -29,23 +29,29 @@ import java.io.IOException;
 public class CloseableHttpClientMock extends CloseableHttpClient {
     public static final String success = "{\"text\":\"Success\",\"code\":0,\"ackId\":2}";
     public static final String serverBusy = "{\"text\":\"Server busy\",\"code\":1}";
+    public static final String tooManyRequests = "{\"text\":\"Too many requests\",\"code\":9}";
     public static final String noDataError = "{\"text\":\"No data\",\"code\":5}";
     public static final String exception = "excpetion";
 
     private String resp = "";
     private boolean throwOnClose = false;
     private boolean throwOnGetContent = false;
+    private String retryAfter;
+    private volatile HttpContext lastContext;
 
     protected CloseableHttpResponse doExecute(HttpHost target, HttpRequest request,
             HttpContext context) throws IOException {
+        lastContext = context;
         if (resp == exception) {
             throw new IOException("mocked up");
         }
 
-        if (resp.equals(success)) {
+        if (resp.equals(success) || resp.startsWith("{\"acks\"")) {
             return createResponse(resp, 200);
         } else if (resp.equals(serverBusy)) {
             return createResponse(resp, 503);
+        } else if (resp.equals(tooManyRequests)) {
+            return createResponse(resp, 429);
         } else if (resp.equals(noDataError)) {
             return createResponse(resp, 400);
         } else {
@@ -64,6 +70,9 @@ public class CloseableHttpClientMock extends CloseableHttpClient {
         resp.setThrowOnClose(throwOnClose);
         resp.setEntity(entity);
         resp.setStatusLine(status);
+        if (retryAfter != null) {
+            resp.addHeader("Retry-After", retryAfter);
+        }
         return resp;
     }
 
@@ -72,6 +81,15 @@ public class CloseableHttpClientMock extends CloseableHttpClient {
         return this;
     }
 
+    public CloseableHttpClientMock setRetryAfter(final String retryAfter) {
+        this.retryAfter = retryAfter;
+        return this;
+    }
+
+    public HttpContext getLastContext() {
+        return lastContext;
+    }
+
     public CloseableHttpClientMock setThrowOnClose(final boolean th) {
         this.throwOnClose = th;
         return this;
@@ -18,9 +18,12 @@ package com.splunk.hecclient;
 import org.apache.http.*;
 import org.apache.http.client.methods.CloseableHttpResponse;
 import org.apache.http.impl.client.CloseableHttpClient;
+import org.apache.http.message.BasicHeader;
 import org.apache.http.params.*;
 
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Locale;
 
 @SuppressWarnings("deprecation")
@@ -28,6 +31,7 @@ public class CloseableHttpResponseMock implements CloseableHttpResponse {
     private StatusLine statusLine;
     private HttpEntity entity;
     private boolean throwOnClose = false;
+    private List<Header> headers = new ArrayList<>();
 
     public CloseableHttpResponseMock setThrowOnClose(boolean th) {
         throwOnClose = th;
@@ -102,6 +106,11 @@ public class CloseableHttpResponseMock implements CloseableHttpResponse {
 
     @Override
     public Header getFirstHeader(final String name) {
+        for (Header header: headers) {
+            if (header.getName().equalsIgnoreCase(name)) {
+                return header;
+            }
+        }
         return null;
     }
 
@@ -117,10 +126,12 @@ public class CloseableHttpResponseMock implements CloseableHttpResponse {
 
     @Override
     public void addHeader(final Header header) {
+        headers.add(header);
     }
 
     @Override
     public void addHeader(final String name, final String value) {
+        headers.add(new BasicHeader(name, value));
     }
 
     @Override
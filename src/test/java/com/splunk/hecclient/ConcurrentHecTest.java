@@ -20,6 +20,9 @@ import org.junit.Test;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
 public class ConcurrentHecTest {
     @Test
     public void create() {
@@ -63,4 +66,52 @@ public class ConcurrentHecTest {
         Assert.assertEquals(1, poller.getFailed().get(0).getFailureCount());
         hec.close();
     }
+
+    @Test
+    public void sendRetryWhileIdle() {
+        HecConfig config = UnitUtil.createHecConfig();
+        LoadBalancerMock lb = new LoadBalancerMock();
+        HecInf hec = new ConcurrentHec(1, true, config, null, lb);
+        UnitUtil.milliSleep(20);
+
+        // the idle worker picks up the retry well before its poll for new batches would time out
+        EventBatch batch = UnitUtil.createBatch();
+        batch.fail();
+        hec.send(batch);
+        UnitUtil.milliSleep(300);
+        Assert.assertEquals(1, lb.getBatches().size());
+        hec.close();
+    }
+
+    @Test
+    public void sendWithFullQueue() throws InterruptedException {
+        HecConfig config = UnitUtil.createHecConfig();
+        CountDownLatch release = new CountDownLatch(1);
+        LoadBalancerMock lb = new LoadBalancerMock() {
+            @Override
+            public void send(final EventBatch batch) {
+                try {
+                    release.await(10, TimeUnit.SECONDS);
+                } catch (InterruptedException ex) {
+                    throw new HecException("interrupted", ex);
+                }
+                super.send(batch);
+            }
+        };
+        HecInf hec = new ConcurrentHec(1, true, config, null, lb);
+        // one batch held by the worker, the queue takes 100 more
+        for (int i = 0; i < 101; i++) {
+            hec.send(UnitUtil.createBatch());
+        }
+        UnitUtil.milliSleep(100);
+
+        try {
+            hec.send(UnitUtil.createBatch());
+            Assert.fail("expect HecException");
+        } catch (HecException ex) {
+        } finally {
+            release.countDown();
+            hec.close();
+        }
+    }
 }
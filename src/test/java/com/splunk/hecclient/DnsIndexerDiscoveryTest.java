@@ -0,0 +1,46 @@
+/*
+ * Copyright 2017 Splunk, Inc..
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.splunk.hecclient;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.net.UnknownHostException;
+import java.util.List;
+
+public class DnsIndexerDiscoveryTest {
+    @Test
+    public void discover() throws UnknownHostException {
+        List<String> uris = new DnsIndexerDiscovery("https://localhost:9088").discover();
+        Assert.assertFalse(uris.isEmpty());
+        for (String uri: uris) {
+            Assert.assertTrue(uri, uri.startsWith("https://"));
+            Assert.assertTrue(uri, uri.endsWith(":9088"));
+        }
+    }
+
+    @Test
+    public void discoverWithDefaults() throws UnknownHostException {
+        List<String> uris = new DnsIndexerDiscovery("http://127.0.0.1").discover();
+        Assert.assertEquals(1, uris.size());
+        Assert.assertEquals("http://127.0.0.1:8088", uris.get(0));
+    }
+
+    @Test(expected = HecException.class)
+    public void createWithoutHost() {
+        new DnsIndexerDiscovery("localhost");
+    }
+}
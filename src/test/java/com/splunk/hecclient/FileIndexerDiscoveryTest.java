@@ -0,0 +1,58 @@
+/*
+ * Copyright 2017 Splunk, Inc..
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.splunk.hecclient;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.List;
+
+public class FileIndexerDiscoveryTest {
+    @Test
+    public void parse() {
+        List<String> uris = FileIndexerDiscovery.parse(Arrays.asList(
+                "# indexers",
+                "https://idx1:8088, https://idx2:8088",
+                "",
+                "https://idx3:8088 # new one",
+                "https://idx1:8088"));
+        Assert.assertEquals(Arrays.asList("https://idx1:8088", "https://idx2:8088", "https://idx3:8088"), uris);
+    }
+
+    @Test
+    public void discover() throws IOException {
+        File file = File.createTempFile("indexers", ".txt");
+        file.deleteOnExit();
+        Files.write(file.toPath(), "https://idx1:8088\n".getBytes(StandardCharsets.UTF_8));
+
+        FileIndexerDiscovery discovery = new FileIndexerDiscovery(file.getPath());
+        Assert.assertEquals(Arrays.asList("https://idx1:8088"), discovery.discover());
+
+        Files.write(file.toPath(), "https://idx1:8088\nhttps://idx2:8088\n".getBytes(StandardCharsets.UTF_8));
+        file.setLastModified(file.lastModified() + 2000);
+        Assert.assertEquals(Arrays.asList("https://idx1:8088", "https://idx2:8088"), discovery.discover());
+    }
+
+    @Test(expected = IOException.class)
+    public void discoverWithoutFile() throws IOException {
+        new FileIndexerDiscovery("/non-existent/indexers.txt").discover();
+    }
+}
@@ -18,6 +18,8 @@ package com.splunk.hecclient;
 import org.junit.Assert;
 import org.junit.Test;
 
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 
 public class HecAckPollerTest {
@@ -25,11 +27,16 @@ public class HecAckPollerTest {
     public void getterSetter() {
         HecAckPoller poller = new HecAckPoller(null);
         poller.setAckPollInterval(1);
+        poller.setAckPollMinInterval(2);
         Assert.assertEquals(1, poller.getAckPollInterval());
+        Assert.assertEquals(2, poller.getAckPollMinInterval());
 
         poller.setAckPollThreads(2);
         Assert.assertEquals(2, poller.getAckPollThreads());
 
+        poller.setAckPollChunkSize(4);
+        Assert.assertEquals(4, poller.getAckPollChunkSize());
+
         poller.setEventBatchTimeout(3);
         Assert.assertEquals(3, poller.getEventBatchTimeout());
     }
@@ -117,6 +124,79 @@ public class HecAckPollerTest {
         poller.stop();
     }
 
+    @Test
+    public void addWithAdaptivePolling() {
+        PollerCallbackMock cb = new PollerCallbackMock();
+        HecAckPoller poller = new HecAckPoller(cb);
+        poller.setAckPollThreads(1);
+        poller.setAckPollInterval(10);
+        poller.setAckPollMinInterval(1);
+        poller.start();
+
+        IndexerMock indexer = new IndexerMock();
+        indexer.setResponse("{\"acks\":{\"1\":true}}");
+        HecChannel ch = new HecChannel(indexer);
+        EventBatch batch = UnitUtil.createBatch();
+        poller.add(ch, batch, "{\"text\":\"Success\",\"code\":0,\"ackId\":1}");
+
+        // committed after about the min interval instead of the 10 seconds interval
+        UnitUtil.milliSleep(1500);
+        Assert.assertTrue(batch.isCommitted());
+        Assert.assertEquals(0, poller.getTotalOutstandingEventBatches());
+        Assert.assertEquals(1, indexer.getRequests().size());
+
+        // nothing outstanding, no more polls
+        UnitUtil.milliSleep(1500);
+        Assert.assertEquals(1, indexer.getRequests().size());
+        poller.stop();
+    }
+
+    @Test
+    public void addWithPendingAcksBacksOff() {
+        HecAckPoller poller = new HecAckPoller(null);
+        poller.setAckPollThreads(1);
+        poller.setAckPollInterval(10);
+        poller.setAckPollMinInterval(1);
+        poller.start();
+
+        IndexerMock indexer = new IndexerMock();
+        indexer.setResponse("{\"acks\":{\"1\":false}}");
+        HecChannel ch = new HecChannel(indexer);
+        poller.add(ch, UnitUtil.createBatch(), "{\"text\":\"Success\",\"code\":0,\"ackId\":1}");
+
+        // polls after about 1s, 2s and 4s, not every second
+        UnitUtil.milliSleep(5000);
+        int polls = indexer.getRequests().size();
+        Assert.assertTrue(polls >= 2 && polls <= 3);
+        Assert.assertEquals(1, poller.getTotalOutstandingEventBatches());
+        poller.stop();
+    }
+
+    @Test
+    public void addWithChunkedPolls() {
+        PollerCallbackMock cb = new PollerCallbackMock();
+        HecAckPoller poller = new HecAckPoller(cb);
+        poller.setAckPollThreads(2);
+        poller.setAckPollInterval(2);
+        poller.setAckPollChunkSize(2);
+        poller.start();
+
+        IndexerMock indexer = new IndexerMock();
+        indexer.setResponse("{\"acks\":{\"1\":true,\"2\":true,\"3\":true,\"4\":true,\"5\":true}}");
+        HecChannel ch = new HecChannel(indexer);
+        for (int i = 1; i <= 5; i++) {
+            poller.add(ch, UnitUtil.createBatch(), "{\"text\":\"Success\",\"code\":0,\"ackId\":" + i + "}");
+        }
+
+        // one poll of 5 ack ids in chunks of 2
+        UnitUtil.milliSleep(1500);
+        Assert.assertEquals(3, indexer.getRequests().size());
+        Assert.assertEquals(0, poller.getTotalOutstandingEventBatches());
+        Assert.assertEquals(5, cb.getCommitted().size());
+        Assert.assertEquals(0, cb.getFailed().size());
+        poller.stop();
+    }
+
     @Test
     public void addWithoutCallback() {
         HecAckPoller poller = new HecAckPoller(null);
@@ -204,6 +284,85 @@ public class HecAckPollerTest {
         poller.stop();
     }
 
+    @Test
+    public void addWithPromptTimeout() {
+        PollerCallbackMock cb = new PollerCallbackMock();
+        HecAckPoller poller = new HecAckPoller(cb);
+        poller.setAckPollThreads(1);
+        poller.setAckPollInterval(10);
+        poller.setEventBatchTimeout(2);
+        poller.start();
+
+        IndexerMock indexer = new IndexerMock();
+        indexer.setResponse("{\"acks\":{\"1\":false,\"2\":true}}");
+        HecChannel ch = new HecChannel(indexer);
+        EventBatch pending = UnitUtil.createBatch();
+        EventBatch acked = UnitUtil.createBatch();
+        poller.add(ch, pending, "{\"text\":\"Success\",\"code\":0,\"ackId\":1}");
+        poller.add(ch, acked, "{\"text\":\"Success\",\"code\":0,\"ackId\":2}");
+
+        // expires right after the timeout, not at the next 10 seconds interval, the acked batch
+        // left its deadline behind which is skipped
+        UnitUtil.milliSleep(2500);
+        Assert.assertEquals(0, poller.getTotalOutstandingEventBatches());
+        Assert.assertTrue(pending.isFailed());
+        Assert.assertTrue(acked.isCommitted());
+        Assert.assertEquals(1, cb.getFailed().size());
+        Assert.assertEquals(1, cb.getCommitted().size());
+        poller.stop();
+    }
+
+    @Test
+    public void addWithReusedAckId() {
+        PollerCallbackMock cb = new PollerCallbackMock();
+        HecAckPoller poller = new HecAckPoller(cb);
+        poller.setAckPollThreads(1);
+        poller.setAckPollInterval(10);
+        poller.setEventBatchTimeout(3);
+        poller.start();
+
+        IndexerMock indexer = new IndexerMock();
+        indexer.setResponse("{\"acks\":{\"1\":true}}");
+        HecChannel ch = new HecChannel(indexer);
+        EventBatch acked = UnitUtil.createBatch();
+        poller.add(ch, acked, "{\"text\":\"Success\",\"code\":0,\"ackId\":1}");
+        UnitUtil.milliSleep(1500);
+        Assert.assertTrue(acked.isCommitted());
+
+        // the indexer hands out ack id 1 again, the deadline of the acked batch must not expire
+        // the later one
+        indexer.setResponse("{\"acks\":{\"1\":false}}");
+        EventBatch later = UnitUtil.createBatch();
+        poller.add(ch, later, "{\"text\":\"Success\",\"code\":0,\"ackId\":1}");
+        UnitUtil.milliSleep(2000);
+        Assert.assertFalse(later.isFailed());
+        Assert.assertEquals(1, poller.getTotalOutstandingEventBatches());
+
+        UnitUtil.milliSleep(1500);
+        Assert.assertTrue(later.isFailed());
+        Assert.assertEquals(0, poller.getTotalOutstandingEventBatches());
+        poller.stop();
+    }
+
+    @Test
+    public void addWithRestartedAckIds() {
+        PollerCallbackMock cb = new PollerCallbackMock();
+        HecAckPoller poller = new HecAckPoller(cb);
+
+        IndexerMock indexer = new IndexerMock();
+        HecChannel ch = new HecChannel(indexer);
+        EventBatch old = UnitUtil.createBatch();
+        poller.add(ch, old, "{\"text\":\"Success\",\"code\":0,\"ackId\":1000000}");
+
+        // the indexer restarted and hands out ack ids from 0 again, the old batch is never acked
+        EventBatch batch = UnitUtil.createBatch();
+        poller.add(ch, batch, "{\"text\":\"Success\",\"code\":0,\"ackId\":0}");
+        Assert.assertTrue(old.isFailed());
+        Assert.assertFalse(batch.isFailed());
+        Assert.assertEquals(1, cb.getFailed().size());
+        Assert.assertEquals(1, poller.getTotalOutstandingEventBatches());
+    }
+
     @Test
     public void addWithWrongAckId() {
         PollerCallbackMock cb = new PollerCallbackMock();
@@ -262,65 +421,21 @@ public class HecAckPollerTest {
     }
 
     @Test
-    public void getMinLoadChannel() {
+    public void getOutstandingAcks() {
         HecAckPoller poller = new HecAckPoller(null);
-        HecChannel ch = poller.getMinLoadChannel();
-        Assert.assertNull(ch);
-
-        PollerCallbackMock cb = new PollerCallbackMock();
-        poller = new HecAckPoller(cb);
-        poller.setAckPollThreads(1);
-        poller.setAckPollInterval(2);
-        poller.start();
-
-        // channel 1, 1 outstanding event
-        IndexerMock indexer = new IndexerMock();
-        String ackResponse = "{\"acks\":{\"1\":false}}";
-        indexer.setResponse(ackResponse);
-
-        HecChannel ch1 = new HecChannel(indexer);
-        EventBatch batch = UnitUtil.createBatch();
-
-        String response = "{\"text\":\"Success\",\"code\":0,\"ackId\":1}";
-        poller.add(ch1, batch, response);
-
-        // channel 2, 2 outstanding events
-        indexer = new IndexerMock();
-        ackResponse = "{\"acks\":{\"1\":false,\"2\":false}}";
-        indexer.setResponse(ackResponse);
-
-        HecChannel ch2 = new HecChannel(indexer);
-        batch = UnitUtil.createBatch();
-        response = "{\"text\":\"Success\",\"code\":0,\"ackId\":1}";
-        poller.add(ch2, batch, response);
-
-        batch = UnitUtil.createBatch();
-        response = "{\"text\":\"Success\",\"code\":0,\"ackId\":2}";
-        poller.add(ch2, batch, response);
-
-        // channel 3, 3 outstanding events
-        indexer = new IndexerMock();
-        ackResponse = "{\"acks\":{\"1\":false,\"2\":false, \"3\":false}}";
-        indexer.setResponse(ackResponse);
-
-        HecChannel ch3 = new HecChannel(indexer);
-        batch = UnitUtil.createBatch();
-        response = "{\"text\":\"Success\",\"code\":0,\"ackId\":1}";
-        poller.add(ch3, batch, response);
-
-        batch = UnitUtil.createBatch();
-        response = "{\"text\":\"Success\",\"code\":0,\"ackId\":2}";
-        poller.add(ch3, batch, response);
-
-        batch = UnitUtil.createBatch();
-        response = "{\"text\":\"Success\",\"code\":0,\"ackId\":3}";
-        poller.add(ch3, batch, response);
-
-        long outstanding = poller.getTotalOutstandingEventBatches();
-        Assert.assertEquals(6, outstanding);
-        HecChannel minCh = poller.getMinLoadChannel();
-        Assert.assertEquals(ch1, minCh);
-
-        poller.stop();
+        HecChannel ch = new HecChannel(new IndexerMock(), "c1");
+        EventBatch first = UnitUtil.createBatch();
+        EventBatch second = UnitUtil.createBatch();
+        poller.add(ch, second, "{\"text\":\"Success\",\"code\":0,\"ackId\":2}");
+        poller.add(ch, first, "{\"text\":\"Success\",\"code\":0,\"ackId\":1}");
+        Assert.assertTrue(new HecAckPoller(null).getOutstandingAcks().isEmpty());
+
+        // by increasing ack id
+        List<ChannelAckState> states = poller.getOutstandingAcks();
+        Assert.assertEquals(1, states.size());
+        Assert.assertEquals("c1", states.get(0).getChannelId());
+        Assert.assertEquals("", states.get(0).getUri());
+        Assert.assertEquals(Arrays.asList(1L, 2L), new ArrayList<>(states.get(0).getBatches().keySet()));
+        Assert.assertSame(first, states.get(0).getBatches().get(1L));
     }
 }
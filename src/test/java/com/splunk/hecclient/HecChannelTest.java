@@ -65,6 +65,32 @@ public class HecChannelTest {
         Assert.assertNull(event.getFields());
     }
 
+    @Test
+    public void outstandingBatches() {
+        HecChannel ch = new HecChannel(new IndexerMock());
+        Assert.assertEquals(0, ch.getOutstandingBatches());
+
+        ch.send(UnitUtil.createBatch());
+        ch.send(UnitUtil.createBatch());
+        Assert.assertEquals(2, ch.getOutstandingBatches());
+
+        ch.releaseBatches(2);
+        Assert.assertEquals(0, ch.getOutstandingBatches());
+    }
+
+    @Test
+    public void recordLatency() {
+        HecChannel ch = new HecChannel(new IndexerMock());
+        Assert.assertEquals(0, ch.getLatency(), 0.001);
+
+        // the first sample seeds the average
+        ch.recordLatency(100);
+        Assert.assertEquals(100, ch.getLatency(), 0.001);
+
+        ch.recordLatency(200);
+        Assert.assertEquals(120, ch.getLatency(), 0.001);
+    }
+
     @Test
     public void send() {
         IndexerMock indexer = new IndexerMock();
@@ -19,6 +19,7 @@ import org.junit.Assert;
 import org.junit.Test;
 
 import java.util.Arrays;
+import java.util.Collections;
 import java.util.List;
 
 public class HecConfigTest {
@@ -45,7 +46,26 @@ public class HecConfigTest {
               .setEventBatchTimeout(7)
               .setTrustStorePath("test")
               .setTrustStorePassword("pass")
-              .setHasCustomTrustStore(true);
+              .setHasCustomTrustStore(true)
+              .setConnectionTimeToLive(8)
+              .setIdleConnectionTimeout(9)
+              .setDnsCacheTtl(10)
+              .setLoadBalancerPolicy(LoadBalancer.POWER_OF_TWO_CHOICES_LATENCY)
+              .setHealthCheckInterval(11)
+              .setHealthCheckFailureThreshold(12)
+              .setUriWeights(Collections.singletonMap("https://idx1:8088", 13))
+              .setBackoffInitial(14)
+              .setBackoffMax(15)
+              .setBackoffRampPeriod(16)
+              .setChannelAutoScaleInterval(17)
+              .setChannelAutoScaleMin(18)
+              .setChannelAutoScaleMax(19)
+              .setChannelAutoScaleOutstandingThreshold(20)
+              .setChannelAutoScaleAckLatencyThreshold(21)
+              .setStickyPartitions(true)
+              .setAckPollMinInterval(22)
+              .setAckPollChunkSize(23)
+              .setAckPollMaxHttpConnection(24);
 
         Assert.assertTrue(config.getDisableSSLCertVerification());
         Assert.assertTrue(config.getEnableChannelTracking());
@@ -60,5 +80,37 @@ public class HecConfigTest {
         Assert.assertEquals("test", config.getTrustStorePath());
         Assert.assertEquals("pass", config.getTrustStorePassword());
         Assert.assertTrue(config.getHasCustomTrustStore());
+        Assert.assertEquals(8, config.getConnectionTimeToLive());
+        Assert.assertEquals(9, config.getIdleConnectionTimeout());
+        Assert.assertEquals(10, config.getDnsCacheTtl());
+        Assert.assertEquals(LoadBalancer.POWER_OF_TWO_CHOICES_LATENCY, config.getLoadBalancerPolicy());
+        Assert.assertEquals(11, config.getHealthCheckInterval());
+        Assert.assertEquals(12, config.getHealthCheckFailureThreshold());
+        Assert.assertEquals(13, config.getUriWeight("https://idx1:8088"));
+        Assert.assertEquals(1, config.getUriWeight("https://idx2:8088"));
+        Assert.assertEquals(14, config.getBackoffInitial());
+        Assert.assertEquals(15, config.getBackoffMax());
+        Assert.assertEquals(16, config.getBackoffRampPeriod());
+        Assert.assertEquals(17, config.getChannelAutoScaleInterval());
+        Assert.assertEquals(18, config.getChannelAutoScaleMin());
+        Assert.assertEquals(19, config.getChannelAutoScaleMax());
+        Assert.assertEquals(20, config.getChannelAutoScaleOutstandingThreshold());
+        Assert.assertEquals(21, config.getChannelAutoScaleAckLatencyThreshold());
+        Assert.assertTrue(config.getStickyPartitions());
+        Assert.assertEquals(22, config.getAckPollMinInterval());
+        Assert.assertEquals(23, config.getAckPollChunkSize());
+        Assert.assertEquals(24, config.getAckPollMaxHttpConnection());
+    }
+
+    @Test
+    public void takeChannelId() {
+        HecConfig config = new HecConfig(Arrays.asList("https://dummy:8088"), "mytoken");
+        Assert.assertNull(config.takeChannelId("https://dummy:8088"));
+
+        config.setChannelIds(Collections.singletonMap("https://dummy:8088", Arrays.asList("c1", "c2")));
+        Assert.assertEquals("c1", config.takeChannelId("https://dummy:8088"));
+        Assert.assertEquals("c2", config.takeChannelId("https://dummy:8088"));
+        Assert.assertNull(config.takeChannelId("https://dummy:8088"));
+        Assert.assertNull(config.takeChannelId("https://other:8088"));
     }
 }
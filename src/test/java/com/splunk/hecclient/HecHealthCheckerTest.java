@@ -0,0 +1,82 @@
+/*
+ * Copyright 2017 Splunk, Inc..
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.splunk.hecclient;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class HecHealthCheckerTest {
+    private static final String uri = "https://localhost:8088";
+
+    @Test
+    public void probe() {
+        CloseableHttpClientMock client = new CloseableHttpClientMock();
+        HecHealthChecker checker = new HecHealthChecker(client, 1, 2);
+
+        client.setResponse(CloseableHttpClientMock.success);
+        Assert.assertTrue(checker.probe(uri));
+
+        client.setResponse(CloseableHttpClientMock.serverBusy);
+        Assert.assertFalse(checker.probe(uri));
+
+        client.setResponse(CloseableHttpClientMock.exception);
+        Assert.assertFalse(checker.probe(uri));
+    }
+
+    @Test
+    public void register() {
+        HecHealthChecker checker = new HecHealthChecker(new CloseableHttpClientMock(), 1, 2);
+        CircuitBreaker breaker = checker.register(uri);
+        Assert.assertTrue(breaker == checker.register(uri));
+
+        checker.unregister(uri);
+        Assert.assertFalse(breaker == checker.register(uri));
+    }
+
+    @Test
+    public void check() {
+        CloseableHttpClientMock client = new CloseableHttpClientMock();
+        HecHealthChecker checker = new HecHealthChecker(client, 1, 2);
+        CircuitBreaker breaker = checker.register(uri);
+
+        client.setResponse(CloseableHttpClientMock.serverBusy);
+        checker.check(uri, breaker);
+        checker.check(uri, breaker);
+        Assert.assertEquals(CircuitBreaker.State.OPEN, breaker.getState());
+
+        client.setResponse(CloseableHttpClientMock.success);
+        checker.check(uri, breaker);
+        checker.check(uri, breaker);
+        Assert.assertEquals(CircuitBreaker.State.CLOSED, breaker.getState());
+    }
+
+    @Test
+    public void startStop() {
+        CloseableHttpClientMock client = new CloseableHttpClientMock();
+        client.setResponse(CloseableHttpClientMock.serverBusy);
+        HecHealthChecker checker = new HecHealthChecker(client, 1, 1);
+        CircuitBreaker breaker = checker.register(uri);
+
+        checker.start();
+        // start again to cover more branch
+        checker.start();
+        UnitUtil.milliSleep(1500);
+        Assert.assertEquals(CircuitBreaker.State.OPEN, breaker.getState());
+
+        checker.stop();
+        checker.stop();
+    }
+}
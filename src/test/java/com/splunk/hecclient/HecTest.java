@@ -15,21 +15,36 @@
  */
 package com.splunk.hecclient;
 
+import org.apache.http.impl.conn.PoolingHttpClientConnectionManager;
 import org.junit.Assert;
 import org.junit.Test;
 
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+
 public class HecTest {
     @Test
     public void create() {
         HecConfig config = UnitUtil.createHecConfig();
         Hec hec = Hec.newHecWithAck(config, null);
         Assert.assertNotNull(hec);
+        hec.close();
 
         hec = Hec.newHecWithAck(config, Hec.createHttpClient(config), (PollerCallback) null);
         Assert.assertNotNull(hec);
+        hec.close();
 
         hec = Hec.newHecWithAck(config, null, new LoadBalancerMock());
         Assert.assertNotNull(hec);
+        hec.close();
 
         hec = Hec.newHecWithoutAck(config, null);
         Assert.assertNotNull(hec);
@@ -72,4 +87,177 @@ public class HecTest {
         hec.close();
         Assert.assertFalse(pm.isStarted());
     }
+
+    @Test
+    public void updateIndexers() {
+        LoadBalancer lb = new LoadBalancer();
+        HecConfig config = new HecConfig(Arrays.asList("https://idx1:8088", "https://idx2:8088"), "token");
+        config.setTotalChannels(4);
+        Hec hec = new Hec(config, new CloseableHttpClientMock(), new PollerMock(), lb);
+        Assert.assertEquals(4, lb.size());
+
+        // add one indexer, keep one and remove one
+        hec.updateIndexers(Arrays.asList("https://idx2:8088", "https://idx3:8088"));
+        Assert.assertEquals(new LinkedHashSet<>(Arrays.asList("https://idx2:8088", "https://idx3:8088")), hec.getIndexerUris());
+        Assert.assertEquals(4, lb.size());
+
+        hec.updateIndexers(Arrays.asList("https://idx1:8088", "https://idx2:8088", "https://idx3:8088"));
+        Assert.assertEquals(6, lb.size());
+        hec.close();
+    }
+
+    @Test
+    public void resizeConnectionPools() {
+        HecConfig config = new HecConfig(Arrays.asList("https://idx1:8088", "https://idx2:8088"), "token");
+        config.setTotalChannels(2)
+              .setMaxHttpConnectionPerChannel(4)
+              .setAckPollMaxHttpConnection(2)
+              .setChannelAutoScaleInterval(3600)
+              .setChannelAutoScaleMin(1)
+              .setChannelAutoScaleMax(2)
+              .setChannelAutoScaleOutstandingThreshold(4);
+        Hec hec = new Hec(config, new CloseableHttpClientMock(), new PollerMock(), new LoadBalancer());
+        PoolingHttpClientConnectionManager pool = new PoolingHttpClientConnectionManager();
+        PoolingHttpClientConnectionManager ackPool = new PoolingHttpClientConnectionManager();
+        hec.setConnectionPools(pool, ackPool);
+        Assert.assertEquals(4, pool.getDefaultMaxPerRoute());
+        Assert.assertEquals(8, pool.getMaxTotal());
+        Assert.assertEquals(2, ackPool.getDefaultMaxPerRoute());
+        Assert.assertEquals(4, ackPool.getMaxTotal());
+
+        // a discovered indexer
+        hec.updateIndexers(Arrays.asList("https://idx1:8088", "https://idx2:8088", "https://idx3:8088"));
+        Assert.assertEquals(12, pool.getMaxTotal());
+        Assert.assertEquals(6, ackPool.getMaxTotal());
+
+        // a channel added to a busy indexer
+        HecChannel busy = hec.getIndexers("https://idx1:8088").get(0).getChannel();
+        for (int i = 0; i < 5; i++) {
+            busy.send(UnitUtil.createBatch());
+        }
+        hec.scaleChannels();
+        Assert.assertEquals(2, hec.getIndexers("https://idx1:8088").size());
+        Assert.assertEquals(8, pool.getDefaultMaxPerRoute());
+        Assert.assertEquals(16, pool.getMaxTotal());
+        hec.close();
+        pool.close();
+        ackPool.close();
+    }
+
+    @Test
+    public void createWithChannelIds() {
+        HecConfig config = new HecConfig(Arrays.asList("https://idx1:8088"), "token");
+        config.setTotalChannels(2)
+              .setChannelIds(Collections.singletonMap("https://idx1:8088", Arrays.asList("c1")));
+        Hec hec = new Hec(config, new CloseableHttpClientMock(), new PollerMock(), new LoadBalancer());
+
+        // the channel id left behind is reused once, the other channel gets a new one
+        List<Indexer> indexers = hec.getIndexers("https://idx1:8088");
+        Assert.assertEquals(2, indexers.size());
+        Assert.assertEquals("c1", indexers.get(0).getChannel().getId());
+        Assert.assertNotEquals("c1", indexers.get(1).getChannel().getId());
+        hec.close();
+    }
+
+    @Test
+    public void createWithUriWeights() {
+        LoadBalancer lb = new LoadBalancer();
+        HecConfig config = new HecConfig(Arrays.asList("https://idx1:8088", "https://idx2:8088"), "token");
+        Map<String, Integer> weights = new HashMap<>();
+        weights.put("https://idx1:8088", 3);
+        config.setTotalChannels(4)
+              .setUriWeights(weights);
+        Hec hec = new Hec(config, new CloseableHttpClientMock(), new PollerMock(), lb);
+
+        // 4 * 3 / 4 and 4 * 1 / 4 channels
+        Assert.assertEquals(3, hec.getIndexers("https://idx1:8088").size());
+        Assert.assertEquals(1, hec.getIndexers("https://idx2:8088").size());
+        Assert.assertEquals(4, lb.size());
+        for (Indexer indexer: hec.getIndexers("https://idx1:8088")) {
+            Assert.assertEquals(1.0, indexer.getChannel().getWeight(), 0.001);
+        }
+
+        // a discovered uri without weight
+        hec.updateIndexers(Arrays.asList("https://idx1:8088", "https://idx2:8088", "https://idx3:8088"));
+        Assert.assertEquals(1, hec.getIndexers("https://idx3:8088").size());
+        hec.close();
+    }
+
+    @Test
+    public void scaleChannels() {
+        LoadBalancer lb = new LoadBalancer();
+        HecConfig config = new HecConfig(Arrays.asList("https://idx1:8088", "https://idx2:8088"), "token");
+        config.setTotalChannels(1)
+              .setUriWeights(Collections.singletonMap("https://idx1:8088", 2))
+              .setChannelAutoScaleInterval(3600)
+              .setChannelAutoScaleMin(1)
+              .setChannelAutoScaleMax(2)
+              .setChannelAutoScaleOutstandingThreshold(4);
+        Hec hec = new Hec(config, new CloseableHttpClientMock(), new PollerMock(), lb);
+        Assert.assertEquals(1, hec.getIndexers("https://idx1:8088").size());
+        Assert.assertEquals(1, hec.getIndexers("https://idx2:8088").size());
+
+        // idx1 is busy, idx2 stays between the thresholds
+        HecChannel busy = hec.getIndexers("https://idx1:8088").get(0).getChannel();
+        HecChannel steady = hec.getIndexers("https://idx2:8088").get(0).getChannel();
+        for (int i = 0; i < 5; i++) {
+            busy.send(UnitUtil.createBatch());
+        }
+        for (int i = 0; i < 2; i++) {
+            steady.send(UnitUtil.createBatch());
+        }
+        hec.scaleChannels();
+        Assert.assertEquals(2, hec.getIndexers("https://idx1:8088").size());
+        Assert.assertEquals(1, hec.getIndexers("https://idx2:8088").size());
+        Assert.assertEquals(3, lb.size());
+        for (Indexer indexer: hec.getIndexers("https://idx1:8088")) {
+            Assert.assertEquals(1.0, indexer.getChannel().getWeight(), 0.001);
+        }
+
+        // capped by the max
+        hec.scaleChannels();
+        Assert.assertEquals(2, hec.getIndexers("https://idx1:8088").size());
+
+        // load dropped, the idle new channel is retired and the busy one is kept
+        busy.releaseBatches(4);
+        hec.scaleChannels();
+        Assert.assertEquals(1, hec.getIndexers("https://idx1:8088").size());
+        Assert.assertSame(busy, hec.getIndexers("https://idx1:8088").get(0).getChannel());
+        Assert.assertEquals(2.0, busy.getWeight(), 0.001);
+        Assert.assertEquals(2, lb.size());
+        hec.close();
+    }
+
+    @Test
+    public void createWithIndexerDiscovery() throws IOException {
+        File file = File.createTempFile("indexers", ".txt");
+        file.deleteOnExit();
+        Files.write(file.toPath(), "https://idx1:8088,https://idx2:8088".getBytes(StandardCharsets.UTF_8));
+
+        LoadBalancer lb = new LoadBalancer();
+        HecConfig config = UnitUtil.createHecConfig();
+        config.setIndexerDiscovery("file:" + file.getPath())
+              .setIndexerDiscoveryInterval(60);
+        Hec hec = new Hec(config, new CloseableHttpClientMock(), new PollerMock(), lb);
+
+        // the first discovery runs right away
+        for (int i = 0; i < 50 && hec.getIndexerUris().size() != 2; i++) {
+            UnitUtil.milliSleep(100);
+        }
+        Assert.assertEquals(new LinkedHashSet<>(Arrays.asList("https://idx1:8088", "https://idx2:8088")), hec.getIndexerUris());
+        Assert.assertEquals(4, lb.size());
+        hec.close();
+    }
+
+    @Test
+    public void createWithHealthCheck() {
+        LoadBalancerMock lb = new LoadBalancerMock();
+        HecConfig config = UnitUtil.createHecConfig();
+        config.setHealthCheckInterval(60);
+        PollerMock pm = new PollerMock();
+        Hec hec = new Hec(config, new CloseableHttpClientMock(), pm, lb);
+        hec.send(UnitUtil.createBatch());
+        Assert.assertEquals(1, lb.getBatches().size());
+        hec.close();
+    }
 }
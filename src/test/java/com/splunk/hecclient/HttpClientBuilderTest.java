@@ -19,6 +19,10 @@ import org.apache.http.impl.client.CloseableHttpClient;
 import org.junit.Assert;
 import org.junit.Test;
 
+import java.net.Socket;
+import java.util.HashSet;
+import java.util.Set;
+
 
 public class HttpClientBuilderTest {
     @Test
@@ -57,6 +61,52 @@ public class HttpClientBuilderTest {
         Assert.assertNotNull(client);
     }
 
+    @Test
+    public void buildWithConnectionRecycling() throws Exception {
+        HttpClientBuilder builder = new HttpClientBuilder();
+        CloseableHttpClient client = builder.setConnectionTimeToLive(60)
+                .setIdleConnectionTimeout(30)
+                .setDnsCacheTtl(10)
+                .build();
+        Assert.assertNotNull(client);
+        client.close();
+    }
+
+    @Test
+    public void jitteredTimeToLive() {
+        HttpClientBuilder.JitteredTimeToLive timeToLive = new HttpClientBuilder.JitteredTimeToLive(100000);
+        Assert.assertEquals(120000, timeToLive.getMaxTimeToLive());
+
+        // every connection gets a ttl of its own between ttl and 20% more
+        Set<Long> ttls = new HashSet<>();
+        for (int i = 0; i < 20; i++) {
+            long ttl = timeToLive.remainingTimeToLive(new Socket(), 0);
+            Assert.assertTrue(ttl >= 100000 && ttl <= 120000);
+            ttls.add(ttl);
+        }
+        Assert.assertTrue(ttls.size() > 1);
+
+        // which counts down from the first release and doesn't restart
+        Socket socket = new Socket();
+        long ttl = timeToLive.remainingTimeToLive(socket, 0);
+        Assert.assertEquals(ttl - 50000, timeToLive.remainingTimeToLive(socket, 50000));
+        Assert.assertEquals(1, timeToLive.remainingTimeToLive(socket, 200000));
+    }
+
+    @Test
+    public void sessionIds() {
+        HttpClientBuilder.SessionIds ids = new HttpClientBuilder.SessionIds();
+        byte[] id = {1, 2, 3};
+        Assert.assertFalse(ids.add(id));
+        // compared by value, the same session id resumed
+        Assert.assertTrue(ids.add(new byte[]{1, 2, 3}));
+        Assert.assertFalse(ids.add(new byte[]{1, 2, 4}));
+        // without an id there is nothing to resume
+        Assert.assertFalse(ids.add(new byte[0]));
+        Assert.assertFalse(ids.add(new byte[0]));
+        Assert.assertFalse(ids.add(null));
+    }
+
     @Test
     public void buildDefault() {
         HttpClientBuilder builder = new HttpClientBuilder();
@@ -0,0 +1,38 @@
+/*
+ * Copyright 2017 Splunk, Inc..
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.splunk.hecclient;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class IndexerDiscoveryTest {
+    @Test
+    public void create() {
+        Assert.assertTrue(IndexerDiscovery.create("file:/tmp/uris") instanceof FileIndexerDiscovery);
+        Assert.assertTrue(IndexerDiscovery.create("dns:https://localhost:8088") instanceof DnsIndexerDiscovery);
+        Assert.assertTrue(IndexerDiscovery.create("srv:https://_hec._tcp.example.com") instanceof SrvIndexerDiscovery);
+    }
+
+    @Test(expected = HecException.class)
+    public void createWithUnknownKind() {
+        IndexerDiscovery.create("consul:hec");
+    }
+
+    @Test(expected = HecException.class)
+    public void createWithoutKind() {
+        IndexerDiscovery.create("https://localhost:8088");
+    }
+}
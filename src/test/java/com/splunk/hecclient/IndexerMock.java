@@ -17,15 +17,21 @@ package com.splunk.hecclient;
 
 import org.apache.http.Header;
 import org.apache.http.client.methods.HttpUriRequest;
+import org.apache.http.entity.StringEntity;
+
+import java.io.IOException;
 
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
 
 public final class IndexerMock implements IndexerInf {
-    private List<EventBatch> batches = new ArrayList<>();
-    private List<HttpUriRequest> requests = new ArrayList<>();
+    private List<EventBatch> batches = Collections.synchronizedList(new ArrayList<>());
+    private List<HttpUriRequest> requests = Collections.synchronizedList(new ArrayList<>());
     private String response;
+    private String baseUrl = "";
     private boolean backPressure = false;
+    private boolean rampingUp = false;
 
     @Override
     public boolean send(final EventBatch batch) {
@@ -39,9 +45,27 @@ public final class IndexerMock implements IndexerInf {
         return response;
     }
 
+    @Override
+    public <T> T executeHttpRequest(final HttpUriRequest req, final EntityReader<T> reader) {
+        requests.add(req);
+        if (response == null) {
+            return null;
+        }
+        try {
+            return reader.read(new StringEntity(response, "utf-8"));
+        } catch (IOException ex) {
+            throw new HecException("failed to process http response", ex);
+        }
+    }
+
     @Override
     public String getBaseUrl() {
-        return "";
+        return baseUrl;
+    }
+
+    public IndexerMock setBaseUrl(String baseUrl) {
+        this.baseUrl = baseUrl;
+        return this;
     }
 
     @Override
@@ -59,6 +83,16 @@ public final class IndexerMock implements IndexerInf {
         return this;
     }
 
+    @Override
+    public boolean isRampingUp() {
+        return rampingUp;
+    }
+
+    public IndexerMock setRampingUp(boolean rampingUp) {
+        this.rampingUp = rampingUp;
+        return this;
+    }
+
     public List<EventBatch> getBatches() {
         return batches;
     }
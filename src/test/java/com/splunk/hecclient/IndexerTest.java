@@ -16,10 +16,23 @@
 package com.splunk.hecclient;
 
 import org.apache.http.Header;
+import org.apache.http.HttpHost;
+import org.apache.http.HttpRequest;
+import org.apache.http.client.methods.CloseableHttpResponse;
+import org.apache.http.client.methods.HttpPost;
+import org.apache.http.client.protocol.HttpClientContext;
+import org.apache.http.client.utils.DateUtils;
 import org.apache.http.impl.client.CloseableHttpClient;
+import org.apache.http.message.BasicHeader;
+import org.apache.http.protocol.HttpContext;
 import org.junit.Assert;
 import org.junit.Test;
 
+import java.io.IOException;
+import java.util.Date;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
 public class IndexerTest {
     private static final String baseUrl =  "https://localhost:8088";
     private static final String token =  "mytoken";
@@ -95,7 +108,8 @@ public class IndexerTest {
             Assert.assertNull(poller.getFailedBatch());
             Assert.assertNull(poller.getException());
             Assert.assertEquals(indexer.getChannel(), poller.getChannel());
-            Assert.assertEquals(CloseableHttpClientMock.success, poller.getResponse());
+            Assert.assertTrue(poller.getResponse().isSucceed());
+            Assert.assertEquals(2, poller.getResponse().getAckId());
         }
     }
 
@@ -113,6 +127,137 @@ public class IndexerTest {
         Assert.assertFalse(indexer.hasBackPressure());
     }
 
+    @Test
+    public void backoffGrowsExponentially() {
+        CloseableHttpClientMock client = new CloseableHttpClientMock();
+        client.setResponse(CloseableHttpClientMock.serverBusy);
+        Indexer indexer = new Indexer(baseUrl, token, client, new PollerMock());
+        indexer.setBackPressureThreshhold(1000).setMaxBackPressureThreshhold(5000);
+        Assert.assertEquals(0, indexer.getBackPressureWindow());
+
+        long[] expected = {1000, 2000, 4000, 5000, 5000};
+        for (long window: expected) {
+            indexer.send(UnitUtil.createBatch());
+            // +-20% jitter
+            Assert.assertTrue(indexer.getBackPressureWindow() >= window * 0.8);
+            Assert.assertTrue(indexer.getBackPressureWindow() <= window * 1.2);
+        }
+
+        client.setResponse(CloseableHttpClientMock.success);
+        indexer.send(UnitUtil.createBatch());
+        Assert.assertEquals(0, indexer.getBackPressureWindow());
+        Assert.assertFalse(indexer.hasBackPressure());
+    }
+
+    @Test
+    public void backoffWithRetryAfter() {
+        CloseableHttpClientMock client = new CloseableHttpClientMock();
+        client.setResponse(CloseableHttpClientMock.tooManyRequests).setRetryAfter("3");
+        Indexer indexer = new Indexer(baseUrl, token, client, new PollerMock());
+        indexer.setBackPressureThreshhold(100);
+
+        indexer.send(UnitUtil.createBatch());
+        Assert.assertTrue(indexer.hasBackPressure());
+        // Retry-After is honored, jitter only ever delays
+        Assert.assertTrue(indexer.getBackPressureWindow() >= 3000);
+        Assert.assertTrue(indexer.getBackPressureWindow() <= 3600);
+
+        // capped by the max back-off
+        indexer.setMaxBackPressureThreshhold(1000);
+        indexer.send(UnitUtil.createBatch());
+        Assert.assertTrue(indexer.getBackPressureWindow() <= 1200);
+    }
+
+    @Test
+    public void ackPollKeepsBackPressure() {
+        CloseableHttpClientMock client = new CloseableHttpClientMock();
+        client.setResponse(CloseableHttpClientMock.serverBusy);
+        CloseableHttpClientMock ackClient = new CloseableHttpClientMock();
+        ackClient.setResponse(CloseableHttpClientMock.success);
+        Indexer indexer = new Indexer(baseUrl, token, client, new PollerMock()).setAckHttpClient(ackClient);
+        indexer.setBackPressureThreshhold(60 * 1000);
+
+        indexer.send(UnitUtil.createBatch());
+        Assert.assertTrue(indexer.hasBackPressure());
+
+        // acks still flow while the POSTs are pushed back, they must not end the back-off
+        indexer.executeHttpRequest(new HttpPost(baseUrl + "/services/collector/ack"));
+        Assert.assertTrue(indexer.hasBackPressure());
+        Assert.assertTrue(indexer.getBackPressureWindow() > 0);
+
+        // nor does a failing ack poll count as back pressure of the POSTs
+        client.setResponse(CloseableHttpClientMock.success);
+        indexer.send(UnitUtil.createBatch());
+        ackClient.setResponse(CloseableHttpClientMock.exception);
+        try {
+            indexer.executeHttpRequest(new HttpPost(baseUrl + "/services/collector/ack"));
+            Assert.fail("expect HecException");
+        } catch (HecException ex) {
+        }
+        Assert.assertFalse(indexer.hasBackPressure());
+    }
+
+    @Test
+    public void parseRetryAfter() {
+        Assert.assertEquals(0, Indexer.parseRetryAfter(null));
+        Assert.assertEquals(0, Indexer.parseRetryAfter(new BasicHeader("Retry-After", "soon")));
+        Assert.assertEquals(0, Indexer.parseRetryAfter(new BasicHeader("Retry-After", "-1")));
+        Assert.assertEquals(120000, Indexer.parseRetryAfter(new BasicHeader("Retry-After", " 120 ")));
+
+        String date = DateUtils.formatDate(new Date(System.currentTimeMillis() + 60 * 1000));
+        long delay = Indexer.parseRetryAfter(new BasicHeader("Retry-After", date));
+        // HTTP dates have second precision
+        Assert.assertTrue(delay > 58 * 1000 && delay <= 60 * 1000);
+
+        date = DateUtils.formatDate(new Date(System.currentTimeMillis() - 60 * 1000));
+        Assert.assertEquals(0, Indexer.parseRetryAfter(new BasicHeader("Retry-After", date)));
+    }
+
+    @Test
+    public void rampUpAfterBackoff() {
+        CloseableHttpClientMock client = new CloseableHttpClientMock();
+        client.setResponse(CloseableHttpClientMock.serverBusy);
+        Indexer indexer = new Indexer(baseUrl, token, client, new PollerMock());
+        indexer.setBackPressureThreshhold(100).setRampPeriod(60 * 1000);
+
+        indexer.send(UnitUtil.createBatch());
+        Assert.assertFalse(indexer.isRampingUp());
+        client.setResponse(CloseableHttpClientMock.success);
+        UnitUtil.milliSleep(200);
+        indexer.send(UnitUtil.createBatch());
+        Assert.assertTrue(indexer.isRampingUp());
+
+        // right after recovery only about 10% of the requests are admitted
+        int admitted = 0;
+        for (int i = 0; i < 1000; i++) {
+            if (!indexer.hasBackPressure()) {
+                admitted++;
+            }
+        }
+        Assert.assertTrue(admitted > 0);
+        Assert.assertTrue(admitted < 300);
+
+        indexer.setRampPeriod(0);
+        Assert.assertFalse(indexer.hasBackPressure());
+        Assert.assertFalse(indexer.isRampingUp());
+    }
+
+    @Test
+    public void hasBackPressureWithCircuitBreaker() {
+        Indexer indexer = new Indexer(baseUrl, token, new CloseableHttpClientMock(), new PollerMock());
+        CircuitBreaker breaker = new CircuitBreaker(baseUrl, 1, 1);
+        indexer.setCircuitBreaker(breaker);
+        Assert.assertTrue(breaker == indexer.getCircuitBreaker());
+        Assert.assertFalse(indexer.hasBackPressure());
+
+        breaker.recordFailure();
+        Assert.assertTrue(indexer.hasBackPressure());
+
+        // half open then closed again with a success threshold of 1
+        breaker.recordSuccess();
+        Assert.assertFalse(indexer.hasBackPressure());
+    }
+
     @Test
     public void sendWithIOError() {
         CloseableHttpClientMock client = new CloseableHttpClientMock();
@@ -136,6 +281,43 @@ public class IndexerTest {
         assertFailure(client);
     }
 
+    @Test
+    public void ackPollLane() throws InterruptedException {
+        CountDownLatch posting = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        CloseableHttpClientMock client = new CloseableHttpClientMock() {
+            @Override
+            protected CloseableHttpResponse doExecute(HttpHost target, HttpRequest request, HttpContext context) throws IOException {
+                // a slow upload
+                posting.countDown();
+                try {
+                    release.await(10, TimeUnit.SECONDS);
+                } catch (InterruptedException ex) {
+                    throw new IOException(ex);
+                }
+                return super.doExecute(target, request, context);
+            }
+        };
+        client.setResponse(CloseableHttpClientMock.success);
+        CloseableHttpClientMock ackClient = new CloseableHttpClientMock();
+        ackClient.setResponse(CloseableHttpClientMock.success);
+
+        Indexer indexer = new Indexer(baseUrl, token, client, new PollerMock()).setAckHttpClient(ackClient);
+        Thread sender = new Thread(() -> indexer.send(UnitUtil.createBatch()));
+        sender.start();
+        Assert.assertTrue(posting.await(10, TimeUnit.SECONDS));
+
+        // the ack poll neither waits for the upload nor goes through its pool
+        String resp = indexer.executeHttpRequest(new HttpPost(baseUrl + "/services/collector/ack"));
+        Assert.assertEquals(CloseableHttpClientMock.success, resp);
+        release.countDown();
+        sender.join();
+
+        // both lanes share the cookies, e.g. of a load balancer
+        Assert.assertSame(HttpClientContext.adapt(client.getLastContext()).getCookieStore(),
+                HttpClientContext.adapt(ackClient.getLastContext()).getCookieStore());
+    }
+
     private Indexer assertFailure(CloseableHttpClient client) {
         PollerMock poller = new PollerMock();
 
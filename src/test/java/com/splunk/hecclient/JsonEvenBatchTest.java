@@ -59,6 +59,19 @@ public class JsonEvenBatchTest {
         Assert.assertEquals(batch.getContentType(), JsonEventBatch.contentType);
     }
 
+    @Test
+    public void removeEvents() {
+        EventBatch batch = new JsonEventBatch();
+        batch.add(new JsonEvent("ni", "hao"));
+        batch.add(new JsonEvent("hello", "world"));
+        int length = batch.getEvents().get(1).length();
+
+        batch.removeEvents(event -> "hao".equals(event.getTied()));
+        Assert.assertEquals(1, batch.size());
+        Assert.assertEquals("world", batch.getEvents().get(0).getTied());
+        Assert.assertEquals(length, batch.length());
+    }
+
     @Test
     public void createFromThis() {
         EventBatch batch = new JsonEventBatch();
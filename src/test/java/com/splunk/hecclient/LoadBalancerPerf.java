@@ -0,0 +1,196 @@
+/*
+ * Copyright 2017 Splunk, Inc..
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.splunk.hecclient;
+
+import org.apache.http.Header;
+import org.apache.http.client.methods.HttpUriRequest;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+// LoadBalancerPerf compares the throughput of LoadBalancer.send before and after it went lock
+// free: a synchronized round robin over a channel list against LoadBalancer with every policy.
+// The channels sit on stub indexers which only count the batches, so the numbers reflect channel
+// selection alone. It is not a unit test, run it with the test classpath.
+// Usage: LoadBalancerPerf [batches-per-thread] [total-channels]
+public final class LoadBalancerPerf {
+    private static final Logger log = LoggerFactory.getLogger(LoadBalancerPerf.class);
+    private static final int[] threadCounts = {1, 4, 16};
+    private static final int indexers = 3;
+
+    public static void main(String[] args) throws Exception {
+        int batchesPerThread = args.length > 0 ? Integer.parseInt(args[0]) : 200000;
+        int totalChannels = args.length > 1 ? Integer.parseInt(args[1]) : 12;
+
+        List<HecChannel> channels = new ArrayList<>();
+        List<StubIndexer> stubs = new ArrayList<>();
+        for (int i = 0; i < indexers; i++) {
+            stubs.add(new StubIndexer("https://127.0.0." + (i + 1) + ":8088"));
+        }
+        for (int i = 0; i < totalChannels; i++) {
+            channels.add(new HecChannel(stubs.get(i % indexers)));
+        }
+        // one indexer pushes back, the balancers have to skip its channels
+        stubs.get(0).backPressure = true;
+
+        EventBatch batch = new JsonEventBatch();
+        batch.add(new JsonEvent("perf", null));
+
+        List<String> names = new ArrayList<>();
+        List<Supplier<LoadBalancerInf>> balancers = new ArrayList<>();
+        names.add("synchronized");
+        balancers.add(SynchronizedRoundRobin::new);
+        for (String policy: new String[]{LoadBalancer.ROUND_ROBIN, LoadBalancer.POWER_OF_TWO_CHOICES_OUTSTANDING,
+                LoadBalancer.POWER_OF_TWO_CHOICES_LATENCY, LoadBalancer.POWER_OF_TWO_CHOICES}) {
+            names.add(policy);
+            balancers.add(() -> new LoadBalancer(policy));
+        }
+
+        // warm up
+        for (Supplier<LoadBalancerInf> balancer: balancers) {
+            run(balancer.get(), channels, batch, 4, batchesPerThread);
+        }
+
+        for (int threads: threadCounts) {
+            for (int i = 0; i < balancers.size(); i++) {
+                long took = run(balancers.get(i).get(), channels, batch, threads, batchesPerThread);
+                long total = (long) threads * batchesPerThread;
+                log.info("balancer={} threads={} batches={} took={}ms throughput={} batches/s",
+                        names.get(i), threads, total, took / 1000000, total * 1000000000L / Math.max(took, 1));
+            }
+        }
+    }
+
+    // returns elapsed time in nano-seconds
+    private static long run(LoadBalancerInf lb, List<HecChannel> channels, EventBatch batch, int threads, int batchesPerThread)
+            throws InterruptedException {
+        for (HecChannel channel: channels) {
+            lb.add(channel);
+        }
+
+        CountDownLatch ready = new CountDownLatch(threads);
+        CountDownLatch start = new CountDownLatch(1);
+        CountDownLatch done = new CountDownLatch(threads);
+        for (int i = 0; i < threads; i++) {
+            Thread thr = new Thread(() -> {
+                ready.countDown();
+                try {
+                    start.await();
+                } catch (InterruptedException ex) {
+                    return;
+                }
+                for (int j = 0; j < batchesPerThread; j++) {
+                    lb.send(batch);
+                }
+                done.countDown();
+            }, "lb-perf-thread-" + i);
+            thr.start();
+        }
+
+        ready.await();
+        long begin = System.nanoTime();
+        start.countDown();
+        done.await();
+        long took = System.nanoTime() - begin;
+
+        for (HecChannel channel: channels) {
+            channel.releaseBatches(channel.getOutstandingBatches());
+        }
+        return took;
+    }
+
+    // SynchronizedRoundRobin is the load balancer before it went lock free, made thread safe the
+    // straightforward way
+    private static final class SynchronizedRoundRobin implements LoadBalancerInf {
+        private final List<HecChannel> channels = new ArrayList<>();
+        private int index;
+
+        @Override
+        public synchronized void add(HecChannel channel) {
+            channels.add(channel);
+        }
+
+        @Override
+        public synchronized void remove(HecChannel channel) {
+            channels.remove(channel);
+        }
+
+        @Override
+        public synchronized void send(final EventBatch batch) {
+            for (int tried = 0; tried != channels.size(); tried++) {
+                HecChannel channel = channels.get(index);
+                index = (index + 1) % channels.size();
+                if (!channel.hasBackPressure()) {
+                    channel.send(batch);
+                    return;
+                }
+            }
+            throw new HecException("All channels have back pressure");
+        }
+
+        @Override
+        public synchronized int size() {
+            return channels.size();
+        }
+    }
+
+    // StubIndexer takes every batch without any HTTP
+    private static final class StubIndexer implements IndexerInf {
+        private final String baseUrl;
+        private final LongAdder sent = new LongAdder();
+        private volatile boolean backPressure;
+
+        StubIndexer(String baseUrl) {
+            this.baseUrl = baseUrl;
+        }
+
+        @Override
+        public boolean send(final EventBatch batch) {
+            sent.increment();
+            return true;
+        }
+
+        @Override
+        public String executeHttpRequest(final HttpUriRequest req) {
+            return null;
+        }
+
+        @Override
+        public <T> T executeHttpRequest(final HttpUriRequest req, final EntityReader<T> reader) {
+            return null;
+        }
+
+        @Override
+        public boolean hasBackPressure() {
+            return backPressure;
+        }
+
+        @Override
+        public String getBaseUrl() {
+            return baseUrl;
+        }
+
+        @Override
+        public Header[] getHeaders() {
+            return null;
+        }
+    }
+}
@@ -21,6 +21,8 @@ import org.junit.Test;
 
 import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 public class LoadBalancerTest {
     @Test
@@ -61,6 +63,33 @@ public class LoadBalancerTest {
         }
     }
 
+    @Test
+    public void sendRetryToOtherIndexer() {
+        LoadBalancer lb = new LoadBalancer();
+        IndexerMock idx1 = new IndexerMock().setBaseUrl("https://idx1:8088");
+        IndexerMock idx2 = new IndexerMock().setBaseUrl("https://idx2:8088");
+        lb.add(new HecChannel(idx1));
+        lb.add(new HecChannel(idx1));
+        lb.add(new HecChannel(idx2));
+
+        // a batch failed on idx1 avoids it while round robin would pick it twice out of three
+        for (int i = 0; i < 6; i++) {
+            EventBatch batch = UnitUtil.createBatch();
+            batch.setLastIndexer("https://idx1:8088").fail();
+            lb.send(batch);
+        }
+        Assert.assertEquals(0, idx1.getBatches().size());
+        Assert.assertEquals(6, idx2.getBatches().size());
+        Assert.assertEquals("https://idx2:8088", idx2.getBatches().get(0).getLastIndexer());
+
+        // with the other indexer under back pressure the retry goes to the failed one again
+        idx2.setBackPressure(true);
+        EventBatch batch = UnitUtil.createBatch();
+        batch.setLastIndexer("https://idx1:8088").fail();
+        lb.send(batch);
+        Assert.assertEquals(1, idx1.getBatches().size());
+    }
+
     @Test(expected = HecException.class)
     public void sendWithAllBackPressure() {
         LoadBalancer lb = new LoadBalancer();
@@ -78,6 +107,31 @@ public class LoadBalancerTest {
         lb.send(UnitUtil.createBatch());
     }
 
+    @Test
+    public void sendWithAllRampingUp() {
+        LoadBalancer lb = new LoadBalancer();
+        List<IndexerMock> indexers = new ArrayList<>();
+
+        int numberOfChannels = 3;
+        for (int i = 0; i < numberOfChannels; i++) {
+            IndexerMock indexer = new IndexerMock();
+            indexers.add(indexer);
+            indexer.setBackPressure(true);
+            lb.add(new HecChannel(indexer));
+        }
+        // the ramp up throttles but never rejects batches nobody else takes
+        indexers.get(1).setRampingUp(true);
+
+        int numberOfBatches = 5;
+        for (int i = 0; i < numberOfBatches; i++) {
+            lb.send(UnitUtil.createBatch());
+        }
+
+        Assert.assertEquals(0, indexers.get(0).getBatches().size());
+        Assert.assertEquals(numberOfBatches, indexers.get(1).getBatches().size());
+        Assert.assertEquals(0, indexers.get(2).getBatches().size());
+    }
+
     @Test
     public void sendWithOneBackPressure() {
         LoadBalancer lb = new LoadBalancer();
@@ -128,6 +182,142 @@ public class LoadBalancerTest {
         Assert.assertEquals(0, lb.size());
     }
 
+    @Test
+    public void sendConcurrently() throws InterruptedException {
+        LoadBalancer lb = new LoadBalancer();
+        List<IndexerMock> indexers = new ArrayList<>();
+
+        int numberOfChannels = 3;
+        for (int i = 0; i < numberOfChannels; i++) {
+            IndexerMock indexer = new IndexerMock();
+            indexers.add(indexer);
+            lb.add(new HecChannel(indexer));
+        }
+
+        int numberOfThreads = 8;
+        int batchesPerThread = 3000;
+        CountDownLatch start = new CountDownLatch(1);
+        List<Thread> threads = new ArrayList<>();
+        for (int i = 0; i < numberOfThreads; i++) {
+            Thread thr = new Thread(() -> {
+                try {
+                    start.await();
+                } catch (InterruptedException ex) {
+                    return;
+                }
+                for (int j = 0; j < batchesPerThread; j++) {
+                    lb.send(UnitUtil.createBatch());
+                }
+            });
+            thr.start();
+            threads.add(thr);
+        }
+
+        start.countDown();
+        for (Thread thr: threads) {
+            thr.join();
+        }
+
+        // every batch is sent exactly once and the cursor keeps the load even
+        for (IndexerMock indexer: indexers) {
+            Assert.assertEquals(numberOfThreads * batchesPerThread / numberOfChannels, indexer.getBatches().size());
+        }
+    }
+
+    @Test
+    public void addRemoveWhileSending() throws InterruptedException {
+        LoadBalancer lb = new LoadBalancer();
+        IndexerMock stable = new IndexerMock();
+        lb.add(new HecChannel(stable));
+
+        AtomicBoolean done = new AtomicBoolean(false);
+        List<Throwable> errors = new ArrayList<>();
+        Thread sender = new Thread(() -> {
+            try {
+                while (!done.get()) {
+                    lb.send(UnitUtil.createBatch());
+                }
+            } catch (Throwable ex) {
+                errors.add(ex);
+            }
+        });
+        sender.start();
+
+        int rounds = 2000;
+        for (int i = 0; i < rounds; i++) {
+            HecChannel ch = new HecChannel(new IndexerMock());
+            lb.add(ch);
+            lb.remove(ch);
+        }
+
+        done.set(true);
+        sender.join();
+
+        Assert.assertTrue(errors.isEmpty());
+        Assert.assertEquals(1, lb.size());
+    }
+
+    @Test
+    public void sendWithPolicies() {
+        String[] policies = {LoadBalancer.ROUND_ROBIN, LoadBalancer.POWER_OF_TWO_CHOICES_OUTSTANDING, LoadBalancer.POWER_OF_TWO_CHOICES_LATENCY, LoadBalancer.POWER_OF_TWO_CHOICES};
+        for (String policy: policies) {
+            LoadBalancer lb = new LoadBalancer(policy);
+            List<IndexerMock> indexers = new ArrayList<>();
+            for (int i = 0; i < 3; i++) {
+                IndexerMock indexer = new IndexerMock();
+                indexers.add(indexer);
+                lb.add(new HecChannel(indexer));
+            }
+            indexers.get(0).setBackPressure(true);
+
+            int numberOfBatches = 30;
+            for (int i = 0; i < numberOfBatches; i++) {
+                lb.send(UnitUtil.createBatch());
+            }
+
+            Assert.assertEquals(0, indexers.get(0).getBatches().size());
+            Assert.assertEquals(numberOfBatches, indexers.get(1).getBatches().size() + indexers.get(2).getBatches().size());
+        }
+    }
+
+    @Test
+    public void sendWithStickyPartitions() {
+        LoadBalancer lb = new LoadBalancer(LoadBalancer.ROUND_ROBIN, true);
+        List<IndexerMock> indexers = new ArrayList<>();
+        for (int i = 0; i < 3; i++) {
+            IndexerMock indexer = new IndexerMock();
+            indexers.add(indexer);
+            lb.add(new HecChannel(indexer));
+        }
+
+        for (int i = 0; i < 10; i++) {
+            lb.send(UnitUtil.createBatch().setPartition("t-0"));
+        }
+
+        // all batches of the partition on a single channel
+        int used = 0;
+        for (IndexerMock indexer: indexers) {
+            if (!indexer.getBatches().isEmpty()) {
+                Assert.assertEquals(10, indexer.getBatches().size());
+                used++;
+            }
+        }
+        Assert.assertEquals(1, used);
+
+        // batches without partition are still round robin
+        for (int i = 0; i < 3; i++) {
+            lb.send(UnitUtil.createBatch());
+        }
+        for (IndexerMock indexer: indexers) {
+            Assert.assertFalse(indexer.getBatches().isEmpty());
+        }
+    }
+
+    @Test(expected = HecException.class)
+    public void createWithUnknownPolicy() {
+        new LoadBalancer("random");
+    }
+
     @Test
     public void size() {
         LoadBalancer lb = new LoadBalancer();
@@ -25,7 +25,7 @@ public class PollerMock implements Poller {
     private HecChannel channel;
     private EventBatch batch;
     private EventBatch failedBatch;
-    private String response;
+    private PostResponse response;
     private Exception exception;
 
     @Override
@@ -51,12 +51,7 @@ public class PollerMock implements Poller {
     }
 
     @Override
-    public HecChannel getMinLoadChannel() {
-        return null;
-    }
-
-    @Override
-    public void add(HecChannel channel, EventBatch batch, String resp) {
+    public void add(HecChannel channel, EventBatch batch, PostResponse resp) {
         this.channel = channel;
         this.batch = batch;
         this.response = resp;
@@ -82,7 +77,7 @@ public class PollerMock implements Poller {
         return exception;
     }
 
-    public String getResponse() {
+    public PostResponse getResponse() {
         return response;
     }
 }
@@ -0,0 +1,77 @@
+/*
+ * Copyright 2017 Splunk, Inc..
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.splunk.hecclient;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+
+public class PostResponseParserTest {
+    @Test
+    public void parseSuccessWithAckId() throws IOException {
+        PostResponse resp = PostResponseParser.parse(stream("{\"text\":\"Success\",\"code\":0,\"ackId\":7}"));
+        Assert.assertTrue(resp.isSucceed());
+        Assert.assertEquals("Success", resp.getText());
+        Assert.assertEquals(7, resp.getAckId());
+
+        resp = PostResponseParser.parse(stream("{\"text\":\"Success\",\"code\":0,\"ackId\":1234567890123}\n"));
+        Assert.assertEquals(1234567890123L, resp.getAckId());
+    }
+
+    @Test
+    public void parseSuccessWithoutAckId() throws IOException {
+        PostResponse resp = PostResponseParser.parse(stream("{\"text\":\"Success\",\"code\":0}"));
+        Assert.assertTrue(resp.isSucceed());
+        Assert.assertEquals("Success", resp.getText());
+        Assert.assertEquals(-1, resp.getAckId());
+    }
+
+    @Test
+    public void parseFallback() throws IOException {
+        // different field order and spacing go through Jackson
+        PostResponse resp = PostResponseParser.parse(stream("{ \"code\": 0, \"ackId\": 9, \"text\": \"Success\" }"));
+        Assert.assertTrue(resp.isSucceed());
+        Assert.assertEquals(9, resp.getAckId());
+
+        resp = PostResponseParser.parse(stream("{\"text\":\"Server busy\",\"code\":1}"));
+        Assert.assertFalse(resp.isSucceed());
+        Assert.assertEquals("Server busy", resp.getText());
+    }
+
+    @Test
+    public void parseLargeResponse() throws IOException {
+        StringBuilder text = new StringBuilder();
+        for (int i = 0; i < 1000; i++) {
+            text.append('a');
+        }
+        PostResponse resp = PostResponseParser.parse(stream("{\"text\":\"" + text + "\",\"code\":3}"));
+        Assert.assertFalse(resp.isSucceed());
+        Assert.assertEquals(text.toString(), resp.getText());
+    }
+
+    @Test(expected = IOException.class)
+    public void parseInvalid() throws IOException {
+        PostResponseParser.parse(stream("{\"text\":\"Success\",\"code\":0,\"ackId\":}"));
+    }
+
+    private static InputStream stream(String data) {
+        return new ByteArrayInputStream(data.getBytes(StandardCharsets.UTF_8));
+    }
+}
@@ -0,0 +1,94 @@
+/*
+ * Copyright 2017 Splunk, Inc..
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.splunk.hecclient;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class PowerOfTwoChoicesSelectorTest {
+    @Test
+    public void selectLeastOutstanding() {
+        ChannelSelector selector = ChannelSelector.create(LoadBalancer.POWER_OF_TWO_CHOICES_OUTSTANDING);
+        HecChannel busy = new HecChannel(new IndexerMock());
+        HecChannel idle = new HecChannel(new IndexerMock());
+        for (int i = 0; i < 10; i++) {
+            busy.send(UnitUtil.createBatch());
+        }
+
+        // with two channels both are always sampled
+        HecChannel[] channels = {busy, idle};
+        for (int i = 0; i < 20; i++) {
+            Assert.assertSame(idle, selector.select(channels));
+        }
+    }
+
+    @Test
+    public void selectLowestLatency() {
+        ChannelSelector selector = ChannelSelector.create(LoadBalancer.POWER_OF_TWO_CHOICES_LATENCY);
+        HecChannel slow = new HecChannel(new IndexerMock());
+        HecChannel fast = new HecChannel(new IndexerMock());
+        slow.recordLatency(500);
+        fast.recordLatency(20);
+
+        HecChannel[] channels = {slow, fast};
+        for (int i = 0; i < 20; i++) {
+            Assert.assertSame(fast, selector.select(channels));
+        }
+    }
+
+    @Test
+    public void selectLowestExpectedWait() {
+        ChannelSelector selector = ChannelSelector.create(LoadBalancer.POWER_OF_TWO_CHOICES);
+        HecChannel fastButBusy = new HecChannel(new IndexerMock());
+        HecChannel slowButIdle = new HecChannel(new IndexerMock());
+        fastButBusy.recordLatency(50);
+        for (int i = 0; i < 10; i++) {
+            fastButBusy.send(UnitUtil.createBatch());
+        }
+        slowButIdle.recordLatency(100);
+
+        HecChannel[] channels = {fastButBusy, slowButIdle};
+        for (int i = 0; i < 20; i++) {
+            Assert.assertSame(slowButIdle, selector.select(channels));
+        }
+    }
+
+    @Test
+    public void selectWithBackPressure() {
+        ChannelSelector selector = ChannelSelector.create(LoadBalancer.POWER_OF_TWO_CHOICES_OUTSTANDING);
+        HecChannel[] channels = new HecChannel[5];
+        for (int i = 0; i < channels.length; i++) {
+            channels[i] = new HecChannel(new IndexerMock().setBackPressure(i != 3));
+        }
+
+        for (int i = 0; i < 20; i++) {
+            Assert.assertSame(channels[3], selector.select(channels));
+        }
+
+        channels[3] = new HecChannel(new IndexerMock().setBackPressure(true));
+        Assert.assertNull(selector.select(channels));
+    }
+
+    @Test
+    public void selectSingleChannel() {
+        ChannelSelector selector = ChannelSelector.create(LoadBalancer.POWER_OF_TWO_CHOICES_LATENCY);
+        HecChannel ch = new HecChannel(new IndexerMock());
+        Assert.assertSame(ch, selector.select(new HecChannel[]{ch}));
+
+        HecChannel blocked = new HecChannel(new IndexerMock().setBackPressure(true));
+        Assert.assertNull(selector.select(new HecChannel[]{blocked}));
+    }
+}
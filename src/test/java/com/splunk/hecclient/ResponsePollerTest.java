@@ -47,12 +47,6 @@ public class ResponsePollerTest {
         Assert.assertEquals(0, poller.getTotalOutstandingEventBatches());
     }
 
-    @Test
-    public void getMinLoadChannel() {
-        ResponsePoller poller = new ResponsePoller(null);
-        Assert.assertNull(poller.getMinLoadChannel());
-    }
-
     @Test
     public void addFailedBatch() {
         PollerCallbackMock cb = new PollerCallbackMock();
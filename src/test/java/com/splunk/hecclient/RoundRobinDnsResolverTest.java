@@ -0,0 +1,56 @@
+/*
+ * Copyright 2017 Splunk, Inc..
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.splunk.hecclient;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.net.InetAddress;
+import java.net.UnknownHostException;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Set;
+
+public class RoundRobinDnsResolverTest {
+    @Test
+    public void resolve() throws UnknownHostException {
+        RoundRobinDnsResolver resolver = new RoundRobinDnsResolver(60 * 1000);
+        InetAddress[] addresses = resolver.resolve("localhost");
+        Assert.assertTrue(addresses.length > 0);
+
+        Set<InetAddress> expected = new HashSet<>(Arrays.asList(InetAddress.getAllByName("localhost")));
+        Assert.assertEquals(expected, new HashSet<>(Arrays.asList(addresses)));
+    }
+
+    @Test
+    public void rotate() throws UnknownHostException {
+        RoundRobinDnsResolver resolver = new RoundRobinDnsResolver(60 * 1000);
+        int total = InetAddress.getAllByName("localhost").length;
+
+        // every resolved address shall be handed out first once per full rotation
+        Set<InetAddress> firsts = new HashSet<>();
+        for (int i = 0; i < total; i++) {
+            firsts.add(resolver.resolve("localhost")[0]);
+        }
+        Assert.assertEquals(total, firsts.size());
+    }
+
+    @Test(expected = UnknownHostException.class)
+    public void resolveUnknownHost() throws UnknownHostException {
+        RoundRobinDnsResolver resolver = new RoundRobinDnsResolver(1);
+        resolver.resolve("unknown.invalid");
+    }
+}
@@ -0,0 +1,70 @@
+/*
+ * Copyright 2017 Splunk, Inc..
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.splunk.hecclient;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import javax.net.ssl.SSLContext;
+
+public class SSLContextCacheTest {
+    private static final String trustStore = "./src/test/resources/keystoretest.jks";
+    private static final String trustStorePassword = "Notchangeme";
+
+    @Test
+    public void getOrLoad() {
+        SSLContext context = SSLContextCache.getOrLoad(trustStore, trustStorePassword);
+        Assert.assertNotNull(context);
+        Assert.assertEquals(SSLContextCache.SESSION_CACHE_SIZE, context.getClientSessionContext().getSessionCacheSize());
+        Assert.assertEquals(SSLContextCache.SESSION_TIMEOUT, context.getClientSessionContext().getSessionTimeout());
+
+        // the same trust store shall share the same context
+        Assert.assertSame(context, SSLContextCache.getOrLoad(trustStore, trustStorePassword));
+        Assert.assertSame(context, Hec.loadCustomSSLContext(trustStore, trustStorePassword));
+    }
+
+    @Test(expected = HecException.class)
+    public void getOrLoadWithNonExistingTrustStore() {
+        SSLContextCache.getOrLoad("./src/test/resources/nonexisting.jks", trustStorePassword);
+    }
+
+    @Test(expected = HecException.class)
+    public void getOrLoadWithWrongPassword() {
+        SSLContextCache.getOrLoad(trustStore, "wrongpassword");
+    }
+
+    @Test
+    public void getUnsecure() {
+        SSLContext context = SSLContextCache.getUnsecure();
+        Assert.assertNotNull(context);
+        Assert.assertSame(context, SSLContextCache.getUnsecure());
+    }
+
+    @Test
+    public void handshakeMetrics() {
+        long handshakes = SSLHandshakeMetrics.getHandshakes();
+        long resumed = SSLHandshakeMetrics.getResumedHandshakes();
+
+        SSLHandshakeMetrics.record(100, false);
+        SSLHandshakeMetrics.record(20, true);
+
+        Assert.assertEquals(handshakes + 2, SSLHandshakeMetrics.getHandshakes());
+        Assert.assertEquals(resumed + 1, SSLHandshakeMetrics.getResumedHandshakes());
+        Assert.assertTrue(SSLHandshakeMetrics.getMaxLatency() >= 100);
+        Assert.assertTrue(SSLHandshakeMetrics.getAverageLatency() > 0);
+        Assert.assertNotNull(SSLHandshakeMetrics.summary());
+    }
+}
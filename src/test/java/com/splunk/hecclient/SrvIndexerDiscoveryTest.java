@@ -0,0 +1,34 @@
+/*
+ * Copyright 2017 Splunk, Inc..
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.splunk.hecclient;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class SrvIndexerDiscoveryTest {
+    @Test
+    public void toUri() {
+        Assert.assertEquals("https://idx1.example.com:8088", SrvIndexerDiscovery.toUri("https", "10 5 8088 idx1.example.com."));
+        Assert.assertEquals("http://idx2:9088", SrvIndexerDiscovery.toUri("http", "0 0 9088 idx2"));
+        Assert.assertNull(SrvIndexerDiscovery.toUri("https", "10 5 idx1.example.com."));
+        Assert.assertNull(SrvIndexerDiscovery.toUri("https", "10 5 port idx1.example.com."));
+    }
+
+    @Test(expected = HecException.class)
+    public void createWithoutName() {
+        new SrvIndexerDiscovery("_hec._tcp");
+    }
+}
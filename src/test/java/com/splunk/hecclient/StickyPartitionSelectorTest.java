@@ -0,0 +1,125 @@
+/*
+ * Copyright 2017 Splunk, Inc..
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.splunk.hecclient;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+public class StickyPartitionSelectorTest {
+    @Test
+    public void selectSameChannelForPartition() {
+        ChannelSelector selector = new StickyPartitionSelector(new WeightedRoundRobinSelector());
+        HecChannel[] channels = createChannels(4);
+
+        Set<HecChannel> used = new HashSet<>();
+        for (int partition = 0; partition < 64; partition++) {
+            EventBatch batch = UnitUtil.createBatch().setPartition(partition);
+            HecChannel channel = selector.select(channels, batch);
+            used.add(channel);
+            for (int i = 0; i < 10; i++) {
+                Assert.assertSame(channel, selector.select(channels, batch));
+            }
+        }
+        // partitions are spread over the channels
+        Assert.assertEquals(4, used.size());
+    }
+
+    @Test
+    public void selectWithoutPartition() {
+        ChannelSelector selector = new StickyPartitionSelector(new WeightedRoundRobinSelector());
+        HecChannel[] channels = createChannels(2);
+        EventBatch batch = UnitUtil.createBatch();
+        Assert.assertSame(channels[0], selector.select(channels, batch));
+        Assert.assertSame(channels[1], selector.select(channels, batch));
+    }
+
+    @Test
+    public void failoverAndBack() {
+        ChannelSelector selector = new StickyPartitionSelector(new WeightedRoundRobinSelector());
+        IndexerMock[] indexers = new IndexerMock[3];
+        HecChannel[] channels = new HecChannel[3];
+        for (int i = 0; i < channels.length; i++) {
+            indexers[i] = new IndexerMock();
+            channels[i] = new HecChannel(indexers[i]);
+        }
+
+        EventBatch batch = UnitUtil.createBatch().setPartition("t-1");
+        HecChannel preferred = selector.select(channels, batch);
+        int idx = Arrays.asList(channels).indexOf(preferred);
+
+        indexers[idx].setBackPressure(true);
+        HecChannel failover = selector.select(channels, batch);
+        Assert.assertNotSame(preferred, failover);
+        Assert.assertSame(failover, selector.select(channels, batch));
+
+        indexers[idx].setBackPressure(false);
+        Assert.assertSame(preferred, selector.select(channels, batch));
+
+        for (IndexerMock indexer: indexers) {
+            indexer.setBackPressure(true);
+        }
+        Assert.assertNull(selector.select(channels, batch));
+    }
+
+    @Test
+    public void removeChannelOnlyMovesItsPartitions() {
+        ChannelSelector selector = new StickyPartitionSelector(new WeightedRoundRobinSelector());
+        HecChannel[] channels = createChannels(4);
+        Map<Integer, HecChannel> assignment = new HashMap<>();
+        for (int partition = 0; partition < 100; partition++) {
+            assignment.put(partition, selector.select(channels, UnitUtil.createBatch().setPartition(partition)));
+        }
+
+        HecChannel[] remaining = Arrays.copyOf(channels, 3);
+        for (int partition = 0; partition < 100; partition++) {
+            HecChannel before = assignment.get(partition);
+            HecChannel after = selector.select(remaining, UnitUtil.createBatch().setPartition(partition));
+            if (before != channels[3]) {
+                Assert.assertSame(before, after);
+            }
+        }
+    }
+
+    @Test
+    public void selectByWeight() {
+        ChannelSelector selector = new StickyPartitionSelector(new WeightedRoundRobinSelector());
+        HecChannel[] channels = createChannels(2);
+        channels[0].setWeight(3);
+
+        int heavy = 0;
+        for (int partition = 0; partition < 4000; partition++) {
+            if (selector.select(channels, UnitUtil.createBatch().setPartition(partition)) == channels[0]) {
+                heavy++;
+            }
+        }
+        // about 3000 of 4000
+        Assert.assertTrue(heavy > 2700 && heavy < 3300);
+    }
+
+    private static HecChannel[] createChannels(int count) {
+        HecChannel[] channels = new HecChannel[count];
+        for (int i = 0; i < count; i++) {
+            channels[i] = new HecChannel(new IndexerMock());
+        }
+        return channels;
+    }
+}
@@ -0,0 +1,97 @@
+/*
+ * Copyright 2017 Splunk, Inc..
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.splunk.hecclient;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.HashMap;
+import java.util.Map;
+
+public class WeightedRoundRobinSelectorTest {
+    @Test
+    public void selectEqualWeights() {
+        HecChannel[] channels = createChannels(1, 1, 1);
+        WeightedRoundRobinSelector selector = new WeightedRoundRobinSelector();
+        for (int i = 0; i < 9; i++) {
+            Assert.assertSame(channels[i % 3], selector.select(channels));
+        }
+    }
+
+    @Test
+    public void selectWeighted() {
+        HecChannel[] channels = createChannels(5, 1, 1);
+        WeightedRoundRobinSelector selector = new WeightedRoundRobinSelector();
+
+        // one cycle of smooth weighted round robin: a a b a c a a
+        HecChannel a = channels[0];
+        HecChannel b = channels[1];
+        HecChannel c = channels[2];
+        HecChannel[] expected = {a, a, b, a, c, a, a};
+        for (int i = 0; i < expected.length * 3; i++) {
+            Assert.assertSame(expected[i % expected.length], selector.select(channels));
+        }
+    }
+
+    @Test
+    public void selectFractionalWeights() {
+        // channels of an indexer with weight 3 and 2 channels vs an indexer with weight 1 and 1 channel
+        HecChannel[] channels = createChannels(1.5, 1.5, 1);
+        WeightedRoundRobinSelector selector = new WeightedRoundRobinSelector();
+
+        Map<HecChannel, Integer> counts = new HashMap<>();
+        int total = 4000;
+        for (int i = 0; i < total; i++) {
+            counts.merge(selector.select(channels), 1, Integer::sum);
+        }
+
+        int heavy = counts.get(channels[0]) + counts.get(channels[1]);
+        Assert.assertEquals(3.0, (double) heavy / counts.get(channels[2]), 0.1);
+    }
+
+    @Test
+    public void selectWithBackPressure() {
+        HecChannel[] channels = new HecChannel[2];
+        channels[0] = new HecChannel(new IndexerMock().setBackPressure(true)).setWeight(3);
+        channels[1] = new HecChannel(new IndexerMock());
+        WeightedRoundRobinSelector selector = new WeightedRoundRobinSelector();
+        for (int i = 0; i < 10; i++) {
+            Assert.assertSame(channels[1], selector.select(channels));
+        }
+
+        // snapshots are never modified in place, a changed channel set is a new array
+        HecChannel[] blocked = {channels[0], new HecChannel(new IndexerMock().setBackPressure(true))};
+        Assert.assertNull(selector.select(blocked));
+    }
+
+    @Test
+    public void rebuildOnNewSnapshot() {
+        WeightedRoundRobinSelector selector = new WeightedRoundRobinSelector();
+        HecChannel[] channels = createChannels(1);
+        Assert.assertSame(channels[0], selector.select(channels));
+
+        HecChannel[] updated = createChannels(1);
+        Assert.assertSame(updated[0], selector.select(updated));
+    }
+
+    private static HecChannel[] createChannels(double... weights) {
+        HecChannel[] channels = new HecChannel[weights.length];
+        for (int i = 0; i < weights.length; i++) {
+            channels[i] = new HecChannel(new IndexerMock()).setWeight(weights[i]);
+        }
+        return channels;
+    }
+}
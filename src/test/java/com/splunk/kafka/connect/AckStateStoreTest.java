@@ -0,0 +1,161 @@
+/*
+ * Copyright 2017 Splunk, Inc..
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.splunk.kafka.connect;
+
+import com.splunk.hecclient.ChannelAckState;
+import com.splunk.hecclient.EventBatch;
+import com.splunk.hecclient.JsonEvent;
+import com.splunk.hecclient.JsonEventBatch;
+import org.apache.kafka.common.TopicPartition;
+import org.apache.kafka.common.record.TimestampType;
+import org.apache.kafka.connect.sink.SinkRecord;
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.*;
+
+public class AckStateStoreTest {
+    private static final TopicPartition tp0 = new TopicPartition("t", 0);
+    private static final TopicPartition tp1 = new TopicPartition("t", 1);
+
+    @Rule
+    public TemporaryFolder dir = new TemporaryFolder();
+
+    @Test
+    public void offsetRanges() {
+        EventBatch batch = createBatch(tp0, 1, 2, 3, 5);
+        batch.add(new JsonEvent("ni, hao", createSinkRecord(tp1, 7)));
+        batch.add(new JsonEvent("ni, hao", null));
+
+        Set<AckStateStore.OffsetRange> ranges = new HashSet<>(AckStateStore.offsetRanges(batch));
+        Set<AckStateStore.OffsetRange> expected = new HashSet<>(Arrays.asList(
+                new AckStateStore.OffsetRange(tp0, 1, 3),
+                new AckStateStore.OffsetRange(tp0, 5, 5),
+                new AckStateStore.OffsetRange(tp1, 7, 7)));
+        Assert.assertEquals(expected, ranges);
+
+        Assert.assertTrue(new AckStateStore.OffsetRange(tp0, 1, 3).contains(tp0, 3));
+        Assert.assertFalse(new AckStateStore.OffsetRange(tp0, 1, 3).contains(tp0, 4));
+        Assert.assertFalse(new AckStateStore.OffsetRange(tp0, 1, 3).contains(tp1, 2));
+    }
+
+    @Test
+    public void byPartition() {
+        EventBatch batch = createBatch(tp0, 0, 1, 2);
+        batch.add(new JsonEvent("ni, hao", createSinkRecord(tp1, 10)));
+        Map<Long, EventBatch> batches = new LinkedHashMap<>();
+        batches.put(3L, batch);
+        batches.put(4L, createBatch(tp1, 12));
+        List<ChannelAckState> states = Arrays.asList(
+                new ChannelAckState("https://idx1:8088", "c1", batches),
+                new ChannelAckState("https://idx2:8088", "c2", Collections.singletonMap(1L, createBatch(tp0, 3))));
+
+        Map<TopicPartition, List<AckStateStore.PendingChannel>> channels = AckStateStore.byPartition(states);
+        Assert.assertEquals(2, channels.size());
+
+        List<AckStateStore.PendingChannel> tp0Channels = channels.get(tp0);
+        Assert.assertEquals(2, tp0Channels.size());
+        Assert.assertEquals("c1", tp0Channels.get(0).channelId);
+        Assert.assertEquals(Collections.singletonMap(3L, Arrays.asList(new AckStateStore.OffsetRange(tp0, 0, 2))),
+                tp0Channels.get(0).acks);
+        Assert.assertEquals("c2", tp0Channels.get(1).channelId);
+        Assert.assertEquals(Collections.singletonMap(1L, Arrays.asList(new AckStateStore.OffsetRange(tp0, 3, 3))),
+                tp0Channels.get(1).acks);
+
+        List<AckStateStore.PendingChannel> tp1Channels = channels.get(tp1);
+        Assert.assertEquals(1, tp1Channels.size());
+        Assert.assertEquals("https://idx1:8088", tp1Channels.get(0).uri);
+        Assert.assertEquals(Arrays.asList(3L, 4L), new ArrayList<>(tp1Channels.get(0).acks.keySet()));
+        Assert.assertEquals(Arrays.asList(new AckStateStore.OffsetRange(tp1, 10, 10)), tp1Channels.get(0).acks.get(3L));
+        Assert.assertEquals(Arrays.asList(new AckStateStore.OffsetRange(tp1, 12, 12)), tp1Channels.get(0).acks.get(4L));
+    }
+
+    @Test
+    public void saveLoad() {
+        Map<Long, List<AckStateStore.OffsetRange>> acks = new LinkedHashMap<>();
+        acks.put(3L, Arrays.asList(new AckStateStore.OffsetRange(tp0, 0, 2)));
+        acks.put(4L, Arrays.asList(new AckStateStore.OffsetRange(tp0, 4, 4), new AckStateStore.OffsetRange(tp0, 6, 6)));
+
+        AckStateStore store = AckStateStore.forPartition(dir.getRoot(), "conn", tp0);
+        store.save(Arrays.asList(new AckStateStore.PendingChannel("https://idx1:8088", "c1", acks)));
+        Assert.assertTrue(store.getFile().exists());
+
+        List<AckStateStore.PendingChannel> channels = store.load();
+        Assert.assertEquals(1, channels.size());
+        Assert.assertEquals("https://idx1:8088", channels.get(0).uri);
+        Assert.assertEquals("c1", channels.get(0).channelId);
+        Assert.assertEquals(acks, channels.get(0).acks);
+        Assert.assertEquals(Arrays.asList(3L, 4L), new ArrayList<>(channels.get(0).acks.keySet()));
+
+        store.delete();
+        Assert.assertFalse(store.getFile().exists());
+        Assert.assertTrue(store.load().isEmpty());
+    }
+
+    @Test
+    public void loadCorrupted() throws IOException {
+        AckStateStore store = AckStateStore.forPartition(dir.getRoot(), "conn", tp0);
+        Files.write(store.getFile().toPath(), new byte[] {1, 2, 3, 4, 5, 6, 7, 8});
+        Assert.assertTrue(store.load().isEmpty());
+
+        // truncated
+        store.save(Collections.singletonList(createChannel("c1", 1L, tp0)));
+        byte[] data = Files.readAllBytes(store.getFile().toPath());
+        Files.write(store.getFile().toPath(), Arrays.copyOf(data, data.length - 4));
+        Assert.assertTrue(store.load().isEmpty());
+    }
+
+    @Test
+    public void claimAppend() {
+        Assert.assertTrue(AckStateStore.forPartition(new File(dir.getRoot(), "missing"), "conn", tp0).claim().isEmpty());
+
+        AckStateStore.forPartition(dir.getRoot(), "conn", tp0).append(Collections.singletonList(createChannel("c1", 1L, tp0)));
+        AckStateStore.forPartition(dir.getRoot(), "conn", tp0).append(Collections.singletonList(createChannel("c2", 2L, tp0)));
+        AckStateStore.forPartition(dir.getRoot(), "conn", tp1).save(Collections.singletonList(createChannel("c1", 3L, tp1)));
+
+        // partitions and connectors don't share state
+        Assert.assertTrue(AckStateStore.forPartition(dir.getRoot(), "other", tp0).claim().isEmpty());
+        List<AckStateStore.PendingChannel> claimed = AckStateStore.forPartition(dir.getRoot(), "conn", tp0).claim();
+        Assert.assertEquals(2, claimed.size());
+        Assert.assertEquals("c1", claimed.get(0).channelId);
+        Assert.assertEquals("c2", claimed.get(1).channelId);
+        Assert.assertTrue(AckStateStore.forPartition(dir.getRoot(), "conn", tp0).claim().isEmpty());
+        Assert.assertEquals(1, AckStateStore.forPartition(dir.getRoot(), "conn", tp1).load().size());
+    }
+
+    private static AckStateStore.PendingChannel createChannel(String channelId, long ackId, TopicPartition tp) {
+        Map<Long, List<AckStateStore.OffsetRange>> acks = new LinkedHashMap<>();
+        acks.put(ackId, Arrays.asList(new AckStateStore.OffsetRange(tp, ackId, ackId)));
+        return new AckStateStore.PendingChannel("https://idx1:8088", channelId, acks);
+    }
+
+    private static EventBatch createBatch(TopicPartition tp, long... offsets) {
+        EventBatch batch = new JsonEventBatch();
+        for (long offset: offsets) {
+            batch.add(new JsonEvent("ni, hao", createSinkRecord(tp, offset)));
+        }
+        return batch;
+    }
+
+    private static SinkRecord createSinkRecord(TopicPartition tp, long offset) {
+        return new SinkRecord(tp.topic(), tp.partition(), null, null, null, "ni, hao", offset, 0L, TimestampType.NO_TIMESTAMP_TYPE);
+    }
+}
@@ -15,6 +15,7 @@
  */
 package com.splunk.kafka.connect;
 
+import com.splunk.hecclient.ChannelAckState;
 import com.splunk.hecclient.EventBatch;
 import com.splunk.hecclient.HecException;
 import com.splunk.hecclient.HecInf;
@@ -27,10 +28,12 @@ public class HecMock implements HecInf {
     static final String success = "success";
     static final String successAndThenFailure = "successAndThenFailure";
     static final String failure = "failure";
+    static final String pending = "pending";
 
     private List<EventBatch> batches;
     private SplunkSinkTask task;
     private String sentResult = "success";
+    private List<ChannelAckState> outstandingAcks = new ArrayList<>();
 
     public HecMock(SplunkSinkTask task) {
         this.task = task;
@@ -47,6 +50,9 @@ public class HecMock implements HecInf {
         if (sentResult.equals(success)) {
             batch.commit();
             task.onEventCommitted(Arrays.asList(batch));
+        } else if (sentResult.equals(pending)) {
+            // sent but not acked yet
+            return;
         } else if (sentResult.equals(failure)) {
             batch.fail();
             task.onEventFailure(Arrays.asList(batch), new HecException("mockup"));
@@ -56,6 +62,15 @@ public class HecMock implements HecInf {
         }
     }
 
+    @Override
+    public List<ChannelAckState> getOutstandingAcks() {
+        return outstandingAcks;
+    }
+
+    public void setOutstandingAcks(final List<ChannelAckState> acks) {
+        outstandingAcks = acks;
+    }
+
     public void setSendReturnResult(final String result) {
         sentResult = result;
     }
@@ -16,6 +16,8 @@
 package com.splunk.kafka.connect;
 
 import com.splunk.hecclient.EventBatch;
+import com.splunk.hecclient.JsonEvent;
+import com.splunk.hecclient.JsonEventBatch;
 import com.splunk.hecclient.UnitUtil;
 import org.apache.kafka.clients.consumer.OffsetAndMetadata;
 import org.apache.kafka.common.TopicPartition;
@@ -24,6 +26,7 @@ import org.junit.Assert;
 import org.junit.Test;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
 import java.util.List;
 import java.util.Map;
@@ -60,15 +63,15 @@ public class KafkaRecordTrackerTest {
         Map<TopicPartition, OffsetAndMetadata> offsets = tracker.computeOffsets();
         Assert.assertTrue(offsets.isEmpty());
 
-        batches.get(0).commit();
+        commit(tracker, batches.get(0));
         offsets = tracker.computeOffsets();
         Assert.assertEquals(1, offsets.size());
 
-        batches.get(2).commit();
+        commit(tracker, batches.get(2));
         offsets = tracker.computeOffsets();
         Assert.assertEquals(0, offsets.size());
 
-        batches.get(1).commit();
+        commit(tracker, batches.get(1));
         offsets = tracker.computeOffsets();
         Assert.assertEquals(1, offsets.size());
 
@@ -77,6 +80,191 @@ public class KafkaRecordTrackerTest {
 
     }
 
+    @Test
+    public void commitEventBatches() {
+        List<EventBatch> batches = new ArrayList<>();
+        KafkaRecordTracker tracker = new KafkaRecordTracker();
+        for (int i = 0; i < 3; i++) {
+            EventBatch batch = UnitUtil.createBatch();
+            batch.getEvents().get(0).setTied(createSinkRecord(i));
+            batches.add(batch);
+            tracker.addEventBatch(batch);
+        }
+
+        // offset 1 is committable only once offset 0 is
+        batches.get(1).commit();
+        Assert.assertEquals(0, tracker.commitEventBatches(batches.subList(1, 2)));
+        batches.get(0).commit();
+        Assert.assertEquals(2, tracker.commitEventBatches(batches.subList(0, 1)));
+        Assert.assertEquals(1, tracker.totalEvents());
+
+        Map<TopicPartition, OffsetAndMetadata> offsets = tracker.computeOffsets();
+        Assert.assertEquals(1, offsets.size());
+        Assert.assertEquals(2, offsets.get(new TopicPartition("t", 1)).offset());
+
+        // handed out once
+        Assert.assertTrue(tracker.computeOffsets().isEmpty());
+    }
+
+    @Test
+    public void addEventBatchWithRanges() {
+        KafkaRecordTracker tracker = new KafkaRecordTracker();
+        // offsets 0 to 4 and 6 to 7 of partition 1 interleaved with partition 2
+        EventBatch first = createBatch(new long[] {0, 1, 2}, new int[] {1, 1, 1});
+        first.add(new JsonEvent("ni, hao", new SinkRecord("t", 2, null, null, null, "ni, hao", 0)));
+        first.add(new JsonEvent("ni, hao", createSinkRecord(3)));
+        first.add(new JsonEvent("ni, hao", createSinkRecord(4)));
+        EventBatch second = createBatch(new long[] {6, 7}, new int[] {1, 1});
+        tracker.addEventBatch(first);
+        tracker.addEventBatch(second);
+        Assert.assertEquals(8, tracker.totalEvents());
+
+        commit(tracker, second);
+        Assert.assertTrue(tracker.computeOffsets().isEmpty());
+
+        // the gap at offset 5 does not hold back the offset
+        commit(tracker, first);
+        Map<TopicPartition, OffsetAndMetadata> offsets = tracker.computeOffsets();
+        Assert.assertEquals(2, offsets.size());
+        Assert.assertEquals(8, offsets.get(new TopicPartition("t", 1)).offset());
+        Assert.assertEquals(1, offsets.get(new TopicPartition("t", 2)).offset());
+        Assert.assertEquals(0, tracker.totalEvents());
+    }
+
+    @Test
+    public void addEventBatchWithOverlaps() {
+        KafkaRecordTracker tracker = new KafkaRecordTracker();
+        EventBatch first = createBatch(new long[] {2, 3, 4}, new int[] {1, 1, 1});
+        EventBatch second = createBatch(new long[] {8, 9}, new int[] {1, 1});
+        tracker.addEventBatch(first);
+        tracker.addEventBatch(second);
+
+        // redelivered records keep the batch they were first tracked with
+        EventBatch redelivered = createBatch(new long[] {0, 1, 2, 3, 4, 5, 6, 7, 8, 9, 10}, new int[] {1, 1, 1, 1, 1, 1, 1, 1, 1, 1, 1});
+        tracker.addEventBatch(redelivered);
+        Assert.assertEquals(11, tracker.totalEvents());
+
+        commit(tracker, redelivered);
+        Map<TopicPartition, OffsetAndMetadata> offsets = tracker.computeOffsets();
+        Assert.assertEquals(2, offsets.get(new TopicPartition("t", 1)).offset());
+
+        first.commit();
+        Assert.assertEquals(6, tracker.commitEventBatches(Arrays.asList(first)));
+        second.commit();
+        Assert.assertEquals(3, tracker.commitEventBatches(Arrays.asList(second)));
+        Assert.assertEquals(11, tracker.computeOffsets().get(new TopicPartition("t", 1)).offset());
+        Assert.assertEquals(0, tracker.totalEvents());
+    }
+
+    @Test
+    public void computeOffsetsWithoutNotification() {
+        KafkaRecordTracker tracker = new KafkaRecordTracker();
+        EventBatch batch = createBatch(new long[] {0, 1}, new int[] {1, 1});
+        tracker.addEventBatch(batch);
+
+        // partitions are not rescanned, only batches passed to commitEventBatches move offsets
+        batch.commit();
+        Assert.assertTrue(tracker.computeOffsets().isEmpty());
+        Assert.assertEquals(1, tracker.getLaggingPartitions());
+
+        Assert.assertEquals(2, tracker.commitEventBatches(Arrays.asList(batch)));
+        Assert.assertEquals(2, tracker.computeOffsets().get(new TopicPartition("t", 1)).offset());
+        Assert.assertEquals(0, tracker.getLaggingPartitions());
+    }
+
+    @Test
+    public void closeOpen() {
+        KafkaRecordTracker tracker = new KafkaRecordTracker();
+        TopicPartition tp1 = new TopicPartition("t", 1);
+        TopicPartition tp2 = new TopicPartition("t", 2);
+        EventBatch first = createBatch(new long[] {0, 1, 0}, new int[] {1, 1, 2});
+        EventBatch second = createBatch(new long[] {1, 2}, new int[] {2, 2});
+        tracker.addEventBatch(first);
+        tracker.addEventBatch(second);
+        Assert.assertEquals(5, tracker.totalEvents());
+
+        // the revoked partition no longer counts and its late ACKs and batches are ignored
+        tracker.close(Arrays.asList(tp2));
+        Assert.assertEquals(2, tracker.totalEvents());
+        commit(tracker, second);
+        tracker.addEventBatch(createBatch(new long[] {3}, new int[] {2}));
+        Assert.assertTrue(tracker.computeOffsets().isEmpty());
+        Assert.assertEquals(1, tracker.getLaggingPartitions());
+        Assert.assertEquals(2, tracker.totalEvents());
+
+        // failed batches lose the records of the revoked partition
+        first.fail();
+        tracker.addFailedEventBatch(first);
+        second.fail();
+        tracker.addFailedEventBatch(second);
+        List<EventBatch> failed = new ArrayList<>(tracker.getAndRemoveFailedRecords());
+        Assert.assertEquals(1, failed.size());
+        Assert.assertSame(first, failed.get(0));
+        Assert.assertEquals(2, first.size());
+
+        // assigned back, the partition starts clean
+        tracker.open(Arrays.asList(tp2));
+        EventBatch third = createBatch(new long[] {1}, new int[] {2});
+        tracker.addEventBatch(third);
+        Assert.assertEquals(3, tracker.totalEvents());
+        commit(tracker, third);
+        Map<TopicPartition, OffsetAndMetadata> offsets = tracker.computeOffsets();
+        Assert.assertEquals(1, offsets.size());
+        Assert.assertEquals(2, offsets.get(tp2).offset());
+        Assert.assertFalse(offsets.containsKey(tp1));
+    }
+
+    @Test
+    public void totalBytes() {
+        KafkaRecordTracker tracker = new KafkaRecordTracker();
+        EventBatch first = createBatch(new long[] {0, 0}, new int[] {1, 2});
+        EventBatch second = createBatch(new long[] {1}, new int[] {1});
+        tracker.addEventBatch(first);
+        tracker.addEventBatch(second);
+        Assert.assertEquals(first.length() + second.length(), tracker.totalBytes());
+
+        // resent batches are not counted twice
+        tracker.addEventBatch(first);
+        Assert.assertEquals(first.length() + second.length(), tracker.totalBytes());
+
+        // the bytes of a batch count until its last range is removed
+        commit(tracker, second);
+        Assert.assertEquals(first.length() + second.length(), tracker.totalBytes());
+        tracker.close(Arrays.asList(new TopicPartition("t", 2)));
+        Assert.assertEquals(first.length() + second.length(), tracker.totalBytes());
+        commit(tracker, first);
+        Assert.assertEquals(0, tracker.totalBytes());
+    }
+
+    @Test
+    public void commitLag() {
+        KafkaRecordTracker tracker = new KafkaRecordTracker();
+        tracker.computeOffsets();
+        Assert.assertEquals(0, tracker.getLaggingPartitions());
+        Assert.assertEquals(0, tracker.getMaxCommitLag());
+
+        List<EventBatch> batches = new ArrayList<>();
+        for (int i = 0; i < 2; i++) {
+            EventBatch batch = UnitUtil.createBatch();
+            batch.getEvents().get(0).setTied(new SinkRecord("t", i, null, null, null, "ni, hao", 0));
+            batches.add(batch);
+            tracker.addEventBatch(batch);
+        }
+
+        tracker.computeOffsets();
+        Assert.assertEquals(2, tracker.getLaggingPartitions());
+        Assert.assertTrue(tracker.getMaxCommitLag() <= 1);
+
+        commit(tracker, batches.get(0));
+        tracker.computeOffsets();
+        Assert.assertEquals(1, tracker.getLaggingPartitions());
+
+        commit(tracker, batches.get(1));
+        tracker.computeOffsets();
+        Assert.assertEquals(0, tracker.getLaggingPartitions());
+        Assert.assertEquals(0, tracker.getAvgCommitLag(), 0.001);
+    }
+
     @Test
     public void addEventBatchWithNonSinkRecord() {
         KafkaRecordTracker tracker = new KafkaRecordTracker();
@@ -90,7 +278,39 @@ public class KafkaRecordTrackerTest {
         Assert.assertEquals(0, offsets.size());
     }
 
-    private SinkRecord createSinkRecord(long offset) {
+    @Test
+    public void addCommittedRecords() {
+        KafkaRecordTracker tracker = new KafkaRecordTracker();
+        EventBatch batch = createBatch(new long[]{0, 1}, new int[]{1, 1});
+        tracker.addEventBatch(batch);
+
+        // committed records only move the offset once the records below them are committed
+        Assert.assertEquals(0, tracker.addCommittedRecords(Arrays.asList(createSinkRecord(2), createSinkRecord(3))));
+        Assert.assertTrue(tracker.computeOffsets().isEmpty());
+        Assert.assertEquals(4, tracker.totalEvents());
+
+        commit(tracker, batch);
+        Map<TopicPartition, OffsetAndMetadata> offsets = tracker.computeOffsets();
+        Assert.assertEquals(new OffsetAndMetadata(4), offsets.get(new TopicPartition("t", 1)));
+        Assert.assertEquals(0, tracker.totalEvents());
+        Assert.assertEquals(0, tracker.totalBytes());
+    }
+
+    // commits the batch and notifies the tracker like the ACK callbacks do
+    private static void commit(KafkaRecordTracker tracker, EventBatch batch) {
+        batch.commit();
+        tracker.commitEventBatches(Arrays.asList(batch));
+    }
+
+    private EventBatch createBatch(long[] offsets, int[] partitions) {
+        EventBatch batch = new JsonEventBatch();
+        for (int i = 0; i < offsets.length; i++) {
+            batch.add(new JsonEvent("ni, hao", new SinkRecord("t", partitions[i], null, null, null, "ni, hao", offsets[i])));
+        }
+        return batch;
+    }
+
+        private SinkRecord createSinkRecord(long offset) {
         return new SinkRecord("t", 1, null, null, null, "ni, hao", offset);
     }
 }
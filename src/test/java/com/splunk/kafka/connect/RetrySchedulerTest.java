@@ -0,0 +1,83 @@
+/*
+ * Copyright 2017 Splunk, Inc..
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.splunk.kafka.connect;
+
+import com.splunk.hecclient.EventBatch;
+import com.splunk.hecclient.UnitUtil;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.List;
+
+public class RetrySchedulerTest {
+    @Test
+    public void backoff() {
+        RetryScheduler scheduler = new RetryScheduler(1000, 5000);
+        for (int i = 0; i < 10; i++) {
+            long first = scheduler.backoff(1);
+            Assert.assertTrue(first >= 500 && first <= 1000);
+            long third = scheduler.backoff(3);
+            Assert.assertTrue(third >= 2000 && third <= 4000);
+            // capped
+            long tenth = scheduler.backoff(10);
+            Assert.assertTrue(tenth >= 2500 && tenth <= 5000);
+            long many = scheduler.backoff(1000);
+            Assert.assertTrue(many >= 2500 && many <= 5000);
+        }
+
+        Assert.assertEquals(0, new RetryScheduler(0, 5000).backoff(3));
+    }
+
+    @Test
+    public void pollDue() throws InterruptedException {
+        RetryScheduler scheduler = new RetryScheduler(100, 100);
+        EventBatch batch = UnitUtil.createBatch();
+        batch.fail();
+        scheduler.schedule(batch);
+        Assert.assertEquals(1, scheduler.size());
+        Assert.assertEquals(batch.size(), scheduler.events());
+        Assert.assertTrue(scheduler.pollDue().isEmpty());
+
+        Thread.sleep(150);
+        List<EventBatch> due = scheduler.pollDue();
+        Assert.assertEquals(1, due.size());
+        Assert.assertSame(batch, due.get(0));
+        Assert.assertEquals(0, scheduler.size());
+        Assert.assertEquals(0, scheduler.events());
+    }
+
+    @Test
+    public void pollDueWithoutBackoff() {
+        RetryScheduler scheduler = new RetryScheduler(0, 0);
+        EventBatch batch = UnitUtil.createBatch();
+        batch.fail();
+        scheduler.schedule(batch);
+        Assert.assertEquals(1, scheduler.pollDue().size());
+    }
+
+    @Test
+    public void removeIf() {
+        RetryScheduler scheduler = new RetryScheduler(1000, 1000);
+        EventBatch kept = UnitUtil.createBatch();
+        EventBatch removed = UnitUtil.createBatch();
+        scheduler.schedule(kept);
+        scheduler.schedule(removed);
+
+        scheduler.removeIf(batch -> batch == removed);
+        Assert.assertEquals(1, scheduler.size());
+        Assert.assertEquals(kept.size(), scheduler.events());
+    }
+}
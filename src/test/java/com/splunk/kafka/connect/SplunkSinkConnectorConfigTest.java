@@ -17,6 +17,7 @@ package com.splunk.kafka.connect;
 
 import com.splunk.hecclient.Hec;
 import com.splunk.hecclient.HecConfig;
+import com.splunk.hecclient.LoadBalancer;
 import org.apache.kafka.common.config.ConfigException;
 import org.apache.kafka.connect.sink.SinkConnector;
 
@@ -70,6 +71,24 @@ public class SplunkSinkConnectorConfigTest {
             Assert.assertEquals(uu.configProfile.getAckPollInterval(), config.getAckPollInterval());
             Assert.assertEquals(uu.configProfile.getAckPollThreads(), config.getAckPollThreads());
             Assert.assertEquals(uu.configProfile.isTrackData(), config.getEnableChannelTracking());
+            Assert.assertEquals(-1, config.getConnectionTimeToLive());
+            Assert.assertEquals(-1, config.getIdleConnectionTimeout());
+            Assert.assertEquals(-1, config.getDnsCacheTtl());
+            Assert.assertEquals(LoadBalancer.ROUND_ROBIN, config.getLoadBalancerPolicy());
+            Assert.assertEquals(-1, config.getHealthCheckInterval());
+            Assert.assertEquals(3, config.getHealthCheckFailureThreshold());
+            Assert.assertEquals(1, config.getBackoffInitial());
+            Assert.assertEquals(60, config.getBackoffMax());
+            Assert.assertEquals(10, config.getBackoffRampPeriod());
+            Assert.assertFalse(config.getStickyPartitions());
+            Assert.assertEquals(1, config.getAckPollMinInterval());
+            Assert.assertEquals(1000, config.getAckPollChunkSize());
+            Assert.assertEquals(2, config.getAckPollMaxHttpConnection());
+            Assert.assertEquals(-1, config.getChannelAutoScaleInterval());
+            Assert.assertEquals(-1, config.getChannelAutoScaleMin());
+            Assert.assertEquals(8, config.getChannelAutoScaleMax());
+            Assert.assertEquals(50, config.getChannelAutoScaleOutstandingThreshold());
+            Assert.assertEquals(-1, config.getChannelAutoScaleAckLatencyThreshold());
         }
     }
 
@@ -138,6 +157,42 @@ public class SplunkSinkConnectorConfigTest {
         SplunkSinkConnectorConfig connectorConfig = new SplunkSinkConnectorConfig(config);
     }
 
+    @Test
+    public void createWithUriWeights() {
+        UnitUtil uu = new UnitUtil(0);
+        Map<String, String> config = uu.createTaskConfig();
+        config.put(SplunkSinkConnectorConfig.URI_WEIGHTS_CONF, "https://idx1:8088=3, https://idx2:8088 = 1");
+        SplunkSinkConnectorConfig connectorConfig = new SplunkSinkConnectorConfig(config);
+        Assert.assertEquals(3, connectorConfig.getHecConfig().getUriWeight("https://idx1:8088"));
+        Assert.assertEquals(1, connectorConfig.getHecConfig().getUriWeight("https://idx2:8088"));
+        Assert.assertEquals(1, connectorConfig.getHecConfig().getUriWeight("https://idx3:8088"));
+    }
+
+    @Test(expected = ConfigException.class)
+    public void createWithInvalidChannelAutoScaleBounds() {
+        UnitUtil uu = new UnitUtil(0);
+        Map<String, String> config = uu.createTaskConfig();
+        config.put(SplunkSinkConnectorConfig.CHANNEL_AUTOSCALE_MIN_CONF, "4");
+        config.put(SplunkSinkConnectorConfig.CHANNEL_AUTOSCALE_MAX_CONF, "2");
+        new SplunkSinkConnectorConfig(config);
+    }
+
+    @Test(expected = ConfigException.class)
+    public void createWithInvalidChannelAutoScaleMin() {
+        UnitUtil uu = new UnitUtil(0);
+        Map<String, String> config = uu.createTaskConfig();
+        config.put(SplunkSinkConnectorConfig.CHANNEL_AUTOSCALE_MIN_CONF, "0");
+        new SplunkSinkConnectorConfig(config);
+    }
+
+    @Test(expected = ConfigException.class)
+    public void createWithInvalidUriWeights() {
+        UnitUtil uu = new UnitUtil(0);
+        Map<String, String> config = uu.createTaskConfig();
+        config.put(SplunkSinkConnectorConfig.URI_WEIGHTS_CONF, "https://idx1:8088=0");
+        new SplunkSinkConnectorConfig(config);
+    }
+
     @Test
     public void createWithMetaDataUniform() {
         // index, source, sourcetype have same number of elements
@@ -15,20 +15,34 @@
  */
 package com.splunk.kafka.connect;
 
+import com.splunk.hecclient.AckResolver;
+import com.splunk.hecclient.ChannelAckState;
+import com.splunk.hecclient.CloseableHttpClientMock;
 import com.splunk.hecclient.Event;
+import com.splunk.hecclient.HecConfig;
 import com.splunk.hecclient.EventBatch;
+import com.splunk.hecclient.JsonEvent;
+import com.splunk.hecclient.JsonEventBatch;
 import com.splunk.hecclient.RawEventBatch;
 import org.apache.kafka.clients.consumer.OffsetAndMetadata;
 import org.apache.kafka.common.TopicPartition;
 import org.apache.kafka.common.record.TimestampType;
+import org.apache.kafka.connect.data.Schema;
+import org.apache.kafka.connect.data.SchemaBuilder;
+import org.apache.kafka.connect.data.Struct;
 import org.apache.kafka.connect.errors.RetriableException;
 import org.apache.kafka.connect.sink.SinkRecord;
 import org.junit.Assert;
+import org.junit.Rule;
 import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
 
 import java.util.*;
 
 public class SplunkSinkTaskTest {
+    @Rule
+    public TemporaryFolder ackStateDir = new TemporaryFolder();
+
     @Test
     public void startStopDefault() {
         SplunkSinkTask task = new SplunkSinkTask();
@@ -91,6 +105,289 @@ public class SplunkSinkTaskTest {
         task.stop();
     }
 
+    @Test
+    public void putWithStickyPartitions() {
+        for (boolean raw: new boolean[]{false, true}) {
+            UnitUtil uu = new UnitUtil(0);
+            Map<String, String> config = uu.createTaskConfig();
+            config.put(SplunkSinkConnectorConfig.RAW_CONF, String.valueOf(raw));
+            config.put(SplunkSinkConnectorConfig.ACK_CONF, String.valueOf(true));
+            config.put(SplunkSinkConnectorConfig.MAX_BATCH_SIZE_CONF, String.valueOf(100));
+            config.put(SplunkSinkConnectorConfig.STICKY_PARTITIONS_CONF, String.valueOf(true));
+
+            SplunkSinkTask task = new SplunkSinkTask();
+            HecMock hec = new HecMock(task);
+            hec.setSendReturnResult(HecMock.success);
+            task.setHec(hec);
+            task.start(config);
+
+            // 2 partitions interleaved
+            List<SinkRecord> records = new ArrayList<>();
+            for (int i = 0; i < 120; i++) {
+                records.add(new SinkRecord(uu.configProfile.getTopics(), i % 2, null, null, null, "ni, hao", i / 2));
+            }
+            task.put(records);
+
+            // a batch per partition, each batch carries its partition
+            Assert.assertEquals(2, hec.getBatches().size());
+            for (EventBatch batch: hec.getBatches()) {
+                TopicPartition tp = (TopicPartition) batch.getPartition();
+                Assert.assertEquals(60, batch.size());
+                for (Event event: batch.getEvents()) {
+                    Assert.assertEquals(tp.partition(), ((SinkRecord) event.getTied()).kafkaPartition().intValue());
+                }
+            }
+
+            Map<TopicPartition, OffsetAndMetadata> offsets = new HashMap<>();
+            offsets.put(new TopicPartition(uu.configProfile.getTopics(), 0), new OffsetAndMetadata(60));
+            offsets.put(new TopicPartition(uu.configProfile.getTopics(), 1), new OffsetAndMetadata(60));
+            Assert.assertEquals(offsets, task.preCommit(new HashMap<>()));
+            task.stop();
+        }
+    }
+
+    @Test
+    public void putWithCommitRequests() {
+        UnitUtil uu = new UnitUtil(0);
+        Map<String, String> config = uu.createTaskConfig();
+        config.put(SplunkSinkConnectorConfig.RAW_CONF, String.valueOf(false));
+        config.put(SplunkSinkConnectorConfig.ACK_CONF, String.valueOf(true));
+        config.put(SplunkSinkConnectorConfig.MAX_BATCH_SIZE_CONF, String.valueOf(100));
+        config.put(SplunkSinkConnectorConfig.COMMIT_REQUEST_THRESHOLD_CONF, String.valueOf(250));
+
+        SplunkSinkTask task = new SplunkSinkTask();
+        SinkTaskContextMock context = new SinkTaskContextMock();
+        task.initialize(context);
+        HecMock hec = new HecMock(task);
+        hec.setSendReturnResult(HecMock.success);
+        task.setHec(hec);
+        task.start(config);
+
+        // batches of 100 records, a commit is requested at 300, 600 and 900 committable records
+        task.put(createSinkRecords(1000));
+        Assert.assertEquals(3, context.getCommitRequests());
+
+        Map<TopicPartition, OffsetAndMetadata> offsets = new HashMap<>();
+        offsets.put(new TopicPartition(uu.configProfile.getTopics(), 1), new OffsetAndMetadata(1000));
+        Assert.assertEquals(offsets, task.preCommit(new HashMap<>()));
+
+        // the commit resets the count
+        task.put(createSinkRecords(200, 1000, "ni, hao"));
+        Assert.assertEquals(3, context.getCommitRequests());
+        task.stop();
+    }
+
+    @Test
+    public void putWithIndexedRecords() {
+        UnitUtil uu = new UnitUtil(0);
+        Map<String, String> config = uu.createTaskConfig();
+        config.put(SplunkSinkConnectorConfig.RAW_CONF, String.valueOf(false));
+        config.put(SplunkSinkConnectorConfig.ACK_CONF, String.valueOf(true));
+        config.put(SplunkSinkConnectorConfig.MAX_BATCH_SIZE_CONF, String.valueOf(100));
+
+        SplunkSinkTask task = new SplunkSinkTask();
+        HecMock hec = new HecMock(task);
+        hec.setSendReturnResult(HecMock.pending);
+        task.setHec(hec);
+        task.start(config);
+
+        // records 0 to 49 were indexed before the restart
+        TopicPartition tp = new TopicPartition(uu.configProfile.getTopics(), 1);
+        task.addIndexedRanges(Arrays.asList(new AckStateStore.OffsetRange(tp, 200, 209),
+                new AckStateStore.OffsetRange(tp, 0, 49)));
+        task.put(createSinkRecords(150));
+
+        // the passed range is dropped, the one ahead is kept
+        Assert.assertEquals(Collections.singleton(200L), task.getIndexedRanges().get(tp).keySet());
+        Assert.assertEquals(1, hec.getBatches().size());
+        Assert.assertEquals(100, hec.getBatches().get(0).size());
+        Assert.assertEquals("50", hec.getBatches().get(0).getEvents().get(0).getFields().get("kafka_offset"));
+
+        // the skipped records are committed while the sent ones are not acked yet
+        Map<TopicPartition, OffsetAndMetadata> offsets = new HashMap<>();
+        offsets.put(tp, new OffsetAndMetadata(50));
+        Assert.assertEquals(offsets, task.preCommit(new HashMap<>()));
+
+        // once the redelivery passed all ranges nothing is looked up anymore
+        task.put(createSinkRecords(100, 210, "ni, hao"));
+        Assert.assertTrue(task.getIndexedRanges().isEmpty());
+        task.stop();
+    }
+
+    @Test
+    public void putWithIndexedRecordsBehindBufferedOnes() {
+        UnitUtil uu = new UnitUtil(0);
+        Map<String, String> config = uu.createTaskConfig();
+        config.put(SplunkSinkConnectorConfig.RAW_CONF, String.valueOf(false));
+        config.put(SplunkSinkConnectorConfig.ACK_CONF, String.valueOf(true));
+        config.put(SplunkSinkConnectorConfig.MAX_BATCH_SIZE_CONF, String.valueOf(100));
+
+        SplunkSinkTask task = new SplunkSinkTask();
+        HecMock hec = new HecMock(task);
+        hec.setSendReturnResult(HecMock.pending);
+        task.setHec(hec);
+        task.start(config);
+
+        TopicPartition tp = new TopicPartition(uu.configProfile.getTopics(), 1);
+        task.addIndexedRanges(Arrays.asList(new AckStateStore.OffsetRange(tp, 5, 9)));
+
+        // a tombstone among the indexed records
+        List<SinkRecord> records = new ArrayList<>(createSinkRecords(10));
+        records.set(7, createSinkRecords(1, 7, null).iterator().next());
+        task.put(records);
+
+        // offsets 0 to 4 are only buffered, the skipped ones must not be committed past them
+        Assert.assertEquals(0, hec.getBatches().size());
+        Assert.assertTrue(task.preCommit(new HashMap<>()).isEmpty());
+
+        task.put(createSinkRecords(90, 10, "ni, hao"));
+        Assert.assertEquals(1, hec.getBatches().size());
+        Assert.assertEquals(95, hec.getBatches().get(0).size());
+        Assert.assertTrue(task.preCommit(new HashMap<>()).isEmpty());
+
+        // acked, everything up to the end is committed
+        hec.getBatches().get(0).commit();
+        task.onEventCommitted(Arrays.asList(hec.getBatches().get(0)));
+        Map<TopicPartition, OffsetAndMetadata> offsets = new HashMap<>();
+        offsets.put(tp, new OffsetAndMetadata(100));
+        Assert.assertEquals(offsets, task.preCommit(new HashMap<>()));
+        task.stop();
+    }
+
+    @Test
+    public void stopStartWithAckState() {
+        UnitUtil uu = new UnitUtil(0);
+        Map<String, String> config = uu.createTaskConfig();
+        config.put(SplunkSinkConnectorConfig.ACK_CONF, String.valueOf(true));
+        config.put(SplunkSinkConnectorConfig.ACK_STATE_DIR_CONF, ackStateDir.getRoot().getPath());
+        config.put(SplunkSinkConnectorConfig.NAME_CONF, "conn");
+
+        SplunkSinkTask task = new SplunkSinkTask();
+        HecMock hec = new HecMock(task);
+        task.setHec(hec);
+        task.start(config);
+
+        // nothing outstanding, nothing to save
+        task.stop();
+        Assert.assertEquals(0, ackStateDir.getRoot().list().length);
+
+        // the state is saved per partition
+        TopicPartition tp1 = new TopicPartition(uu.configProfile.getTopics(), 1);
+        TopicPartition tp2 = new TopicPartition(uu.configProfile.getTopics(), 2);
+        EventBatch batch = new JsonEventBatch();
+        batch.add(new JsonEvent("ni, hao", createSinkRecords(1).iterator().next()));
+        batch.add(new JsonEvent("ni, hao", new SinkRecord(tp2.topic(), tp2.partition(), null, null, null, "ni, hao", 5,
+                0L, TimestampType.NO_TIMESTAMP_TYPE)));
+        hec.setOutstandingAcks(Arrays.asList(new ChannelAckState(uu.configProfile.getUri(), "c1",
+                Collections.singletonMap(1L, batch))));
+        task.stop();
+        Assert.assertEquals(2, ackStateDir.getRoot().list().length);
+
+        // a restarted task claims the state of its partitions only, the ack isn't indexed yet and stays pending
+        CloseableHttpClientMock client = new CloseableHttpClientMock();
+        client.setResponse("{\"acks\":{\"1\":false}}");
+        task = new SplunkSinkTask();
+        task.setHec(new HecMock(task));
+        task.setAckResolver(new AckResolver(new HecConfig(Arrays.asList(uu.configProfile.getUri()), "token"),
+                client, false));
+        task.start(config);
+        task.open(Arrays.asList(tp1));
+        Assert.assertEquals(1, ackStateDir.getRoot().list().length);
+        Assert.assertEquals(1, task.getPendingAcks().get(tp1).size());
+
+        // revoked, the pending ack is saved back for the next owner
+        task.close(Arrays.asList(tp1));
+        Assert.assertTrue(task.getPendingAcks().isEmpty());
+        Assert.assertEquals(2, ackStateDir.getRoot().list().length);
+        task.stop();
+    }
+
+    @Test
+    public void pendingAcksPolledBeforeResend() {
+        UnitUtil uu = new UnitUtil(0);
+        Map<String, String> config = uu.createTaskConfig();
+        config.put(SplunkSinkConnectorConfig.RAW_CONF, String.valueOf(false));
+        config.put(SplunkSinkConnectorConfig.ACK_CONF, String.valueOf(true));
+        config.put(SplunkSinkConnectorConfig.MAX_BATCH_SIZE_CONF, String.valueOf(100));
+        config.put(SplunkSinkConnectorConfig.ACK_STATE_DIR_CONF, ackStateDir.getRoot().getPath());
+        config.put(SplunkSinkConnectorConfig.NAME_CONF, "conn");
+
+        TopicPartition tp = new TopicPartition(uu.configProfile.getTopics(), 1);
+        Map<Long, List<AckStateStore.OffsetRange>> acks = new LinkedHashMap<>();
+        acks.put(1L, Arrays.asList(new AckStateStore.OffsetRange(tp, 0, 9)));
+        acks.put(2L, Arrays.asList(new AckStateStore.OffsetRange(tp, 100, 109)));
+        AckStateStore.forPartition(ackStateDir.getRoot(), "conn", tp).save(Arrays.asList(
+                new AckStateStore.PendingChannel(uu.configProfile.getUri(), "c1", acks)));
+
+        SplunkSinkTask task = new SplunkSinkTask();
+        HecMock hec = new HecMock(task);
+        hec.setSendReturnResult(HecMock.pending);
+        task.setHec(hec);
+        CloseableHttpClientMock client = new CloseableHttpClientMock();
+        client.setResponse("{\"acks\":{\"1\":false,\"2\":false}}");
+        task.setAckResolver(new AckResolver(new HecConfig(Arrays.asList(uu.configProfile.getUri()), "token"),
+                client, false));
+        task.start(config);
+        task.open(Arrays.asList(tp));
+        Assert.assertEquals(2, task.getPendingAcks().get(tp).get(0).acks.size());
+
+        // acked by now, polled again right before its records are resent
+        client.setResponse("{\"acks\":{\"1\":true,\"2\":false}}");
+        task.put(createSinkRecords(100));
+        Assert.assertEquals(1, hec.getBatches().size());
+        Assert.assertEquals(90, hec.getBatches().get(0).size());
+        Assert.assertEquals(Collections.singleton(2L), task.getPendingAcks().get(tp).get(0).acks.keySet());
+
+        // not acked when its records are resent, of no use afterwards
+        task.put(createSinkRecords(100, 100, "ni, hao"));
+        Assert.assertEquals(2, hec.getBatches().size());
+        Assert.assertEquals(100, hec.getBatches().get(1).size());
+        Assert.assertTrue(task.getPendingAcks().isEmpty());
+        task.stop();
+    }
+
+    @Test
+    public void closeRevokedPartitions() {
+        UnitUtil uu = new UnitUtil(0);
+        Map<String, String> config = uu.createTaskConfig();
+        config.put(SplunkSinkConnectorConfig.RAW_CONF, String.valueOf(false));
+        config.put(SplunkSinkConnectorConfig.ACK_CONF, String.valueOf(true));
+        config.put(SplunkSinkConnectorConfig.MAX_BATCH_SIZE_CONF, String.valueOf(100));
+
+        SplunkSinkTask task = new SplunkSinkTask();
+        HecMock hec = new HecMock(task);
+        hec.setSendReturnResult(HecMock.failure);
+        task.setHec(hec);
+        task.start(config);
+        TopicPartition tp = new TopicPartition(uu.configProfile.getTopics(), 1);
+        task.open(Arrays.asList(tp));
+
+        // 100 records sent and failed, then the failed batch waits for a retry and 50 records buffered
+        task.put(createSinkRecords(100));
+        task.put(createSinkRecords(50, 100, "ni, hao"));
+        Assert.assertEquals(1, hec.getBatches().size());
+        Assert.assertEquals(1, task.getRetryScheduler().size());
+        Assert.assertEquals(100, task.getTracker().totalEvents());
+
+        // neither the failed batch nor the buffered records are sent after the partition is revoked
+        task.close(Arrays.asList(tp));
+        Assert.assertEquals(0, task.getTracker().totalEvents());
+        Assert.assertEquals(0, task.getRetryScheduler().size());
+        Assert.assertTrue(task.getTracker().getAndRemoveFailedRecords().isEmpty());
+
+        // assigned back, the records are redelivered from the last committed offset
+        hec.setSendReturnResult(HecMock.success);
+        task.open(Arrays.asList(tp));
+        task.put(createSinkRecords(100));
+        Assert.assertEquals(2, hec.getBatches().size());
+        Assert.assertEquals(100, hec.getBatches().get(1).size());
+
+        Map<TopicPartition, OffsetAndMetadata> offsets = new HashMap<>();
+        offsets.put(tp, new OffsetAndMetadata(100));
+        Assert.assertEquals(offsets, task.preCommit(new HashMap<>()));
+        task.stop();
+    }
+
     @Test
     public void putWithFailure() {
         UnitUtil uu = new UnitUtil(0);
@@ -113,6 +410,43 @@ public class SplunkSinkTaskTest {
         task.stop();
     }
 
+    @Test
+    public void putWithFailureRetriedAfterBackoff() throws InterruptedException {
+        UnitUtil uu = new UnitUtil(0);
+        Map<String, String> config = uu.createTaskConfig();
+        config.put(SplunkSinkConnectorConfig.RAW_CONF, String.valueOf(false));
+        config.put(SplunkSinkConnectorConfig.ACK_CONF, String.valueOf(true));
+        config.put(SplunkSinkConnectorConfig.MAX_BATCH_SIZE_CONF, String.valueOf(100));
+        config.put(SplunkSinkConnectorConfig.RETRY_BACKOFF_INITIAL_MS_CONF, String.valueOf(100));
+        config.put(SplunkSinkConnectorConfig.RETRY_BACKOFF_MAX_MS_CONF, String.valueOf(100));
+
+        SplunkSinkTask task = new SplunkSinkTask();
+        HecMock hec = new HecMock(task);
+        hec.setSendReturnResult(HecMock.failure);
+        task.setHec(hec);
+        task.start(config);
+        task.put(createSinkRecords(100));
+
+        // the failed batch waits for its back-off while new records go out
+        hec.setSendReturnResult(HecMock.success);
+        task.put(createSinkRecords(100, 100, "ni, hao"));
+        Assert.assertEquals(2, hec.getBatches().size());
+        Assert.assertEquals(1, task.getRetryScheduler().size());
+        Assert.assertTrue(task.preCommit(new HashMap<>()).isEmpty());
+
+        // once due, the retry goes out ahead of new records
+        Thread.sleep(200);
+        task.put(createSinkRecords(100, 200, "ni, hao"));
+        Assert.assertEquals(4, hec.getBatches().size());
+        Assert.assertSame(hec.getBatches().get(0), hec.getBatches().get(2));
+        Assert.assertEquals(0, task.getRetryScheduler().size());
+
+        Map<TopicPartition, OffsetAndMetadata> offsets = new HashMap<>();
+        offsets.put(new TopicPartition(uu.configProfile.getTopics(), 1), new OffsetAndMetadata(300));
+        Assert.assertEquals(offsets, task.preCommit(new HashMap<>()));
+        task.stop();
+    }
+
     @Test(expected = RetriableException.class)
     public void putWithFailureAndBackpressure() {
         UnitUtil uu = new UnitUtil(0);
@@ -167,7 +501,8 @@ public class SplunkSinkTaskTest {
 
         SplunkSinkTask task = new SplunkSinkTask();
         HecMock hec = new HecMock(task);
-        hec.setSendReturnResult(HecMock.success);
+        // acked events leave the tracker right away, only un-acked ones count
+        hec.setSendReturnResult(HecMock.pending);
         task.setHec(hec);
         task.start(config);
         task.put(createSinkRecords(1000));
@@ -176,6 +511,90 @@ public class SplunkSinkTaskTest {
         task.stop();
     }
 
+    @Test
+    public void putWithMaxBytes() {
+        UnitUtil uu = new UnitUtil(0);
+        Map<String, String> config = uu.createTaskConfig();
+        config.put(SplunkSinkConnectorConfig.RAW_CONF, String.valueOf(false));
+        config.put(SplunkSinkConnectorConfig.ACK_CONF, String.valueOf(true));
+        config.put(SplunkSinkConnectorConfig.MAX_BATCH_SIZE_CONF, String.valueOf(100));
+        config.put(SplunkSinkConnectorConfig.MAX_OUTSTANDING_BYTES_CONF, String.valueOf(50 * 1024));
+
+        SplunkSinkTask task = new SplunkSinkTask();
+        HecMock hec = new HecMock(task);
+        hec.setSendReturnResult(HecMock.pending);
+        task.setHec(hec);
+        task.start(config);
+
+        // 100 small records stay below the budget, 100 records of 1KB each do not
+        task.put(createSinkRecords(100));
+        task.put(createSinkRecords(100, 100, "ni, hao"));
+        Assert.assertTrue(task.getTracker().totalBytes() < 50 * 1024);
+
+        char[] large = new char[1024];
+        Arrays.fill(large, 'a');
+        task.put(createSinkRecords(100, 200, new String(large)));
+        Assert.assertTrue(task.getTracker().totalBytes() > 100 * 1024);
+        try {
+            task.put(createSinkRecords(1, 300, "ni, hao"));
+            Assert.fail("expected back-pressure on outstanding bytes");
+        } catch (RetriableException ex) {
+            Assert.assertTrue(ex.getMessage().contains("max outstanding bytes"));
+        }
+
+        // acked events release their bytes
+        for (EventBatch batch: hec.getBatches()) {
+            batch.commit();
+            task.onEventCommitted(Arrays.asList(batch));
+        }
+        Assert.assertEquals(0, task.getTracker().totalBytes());
+        task.put(createSinkRecords(1, 300, "ni, hao"));
+        task.stop();
+    }
+
+    @Test
+    public void putWithMaxBytesOfMapAndStructValues() {
+        UnitUtil uu = new UnitUtil(0);
+        Map<String, String> config = uu.createTaskConfig();
+        config.put(SplunkSinkConnectorConfig.RAW_CONF, String.valueOf(false));
+        config.put(SplunkSinkConnectorConfig.ACK_CONF, String.valueOf(true));
+        config.put(SplunkSinkConnectorConfig.MAX_BATCH_SIZE_CONF, String.valueOf(100));
+        config.put(SplunkSinkConnectorConfig.MAX_OUTSTANDING_BYTES_CONF, String.valueOf(50 * 1024));
+
+        SplunkSinkTask task = new SplunkSinkTask();
+        HecMock hec = new HecMock(task);
+        hec.setSendReturnResult(HecMock.pending);
+        task.setHec(hec);
+        task.start(config);
+
+        char[] large = new char[1024];
+        Arrays.fill(large, 'a');
+        Schema schema = SchemaBuilder.struct().field("message", Schema.STRING_SCHEMA).field("count", Schema.INT32_SCHEMA)
+                .build();
+        String topic = uu.configProfile.getTopics();
+        List<SinkRecord> records = new ArrayList<>();
+        for (int i = 0; i < 50; i++) {
+            Object value;
+            if (i % 2 == 0) {
+                value = Collections.singletonMap("message", new String(large));
+            } else {
+                value = new Struct(schema).put("message", new String(large)).put("count", i);
+            }
+            records.add(new SinkRecord(topic, 1, null, null, schema, value, i, 0L, TimestampType.NO_TIMESTAMP_TYPE));
+        }
+
+        // 50 records of 1KB each are only buffered, yet count against the budget
+        task.put(records);
+        Assert.assertEquals(0, hec.getBatches().size());
+        try {
+            task.put(createSinkRecords(1, 50, "ni, hao"));
+            Assert.fail("expected back-pressure on outstanding bytes");
+        } catch (RetriableException ex) {
+            Assert.assertTrue(ex.getMessage().contains("max outstanding bytes"));
+        }
+        task.stop();
+    }
+
     @Test
     public void putWithEmptyRecords() {
         UnitUtil uu = new UnitUtil(0);